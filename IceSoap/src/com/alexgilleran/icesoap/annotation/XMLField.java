@@ -16,7 +16,10 @@ import com.alexgilleran.icesoap.parser.processor.Processor;
  * 
  * Use with no arguments to make the annotated object take the value of the tag
  * specified in the {@link XMLObject} annotation of the enclosing class.
- * 
+ *
+ * {@link java.util.List}, {@link java.util.Set} and array fields (including
+ * arrays of primitives) get a value for every element that matches the XPath.
+ *
  * @author Alex Gilleran
  * 
  */
@@ -41,8 +44,19 @@ public @interface XMLField {
 	/**
 	 * The processor to use for this field - entirely optional. If a processor
 	 * is specified, ensure that it returns the same Type as that of the field
-	 * that recieves the processed value.
+	 * that recieves the processed value. A new instance of the processor is
+	 * created for every value unless the processor class is annotated with
+	 * {@link com.alexgilleran.icesoap.parser.processor.ProcessorScope}.
 	 */
 	@SuppressWarnings("rawtypes")
 	Class<? extends Processor> processor() default Processor.class;
+
+	/**
+	 * The number of values expected for this field, if it's a collection or
+	 * an array - entirely optional. This is used as the initial capacity of the
+	 * collection (or of the buffer the array is built in), so setting it for
+	 * fields that usually get a lot of values saves growing them repeatedly.
+	 * Values of 0 or less mean no particular number is expected.
+	 */
+	int capacity() default 0;
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.alexgilleran.icesoap.parser;
+
+/**
+ * <p>
+ * Creates and sets the fields of instances of one
+ * {@link com.alexgilleran.icesoap.annotation.XMLObject}-annotated
+ * class without reflection. Implementations are generated at build time by
+ * the IceSoap annotation processor, as a class in the same package called
+ * <code>&lt;binary class name&gt;$$IceSoapBinder</code> - e.g.
+ * <code>com.example.Outer$Inner$$IceSoapBinder</code> for
+ * <code>com.example.Outer.Inner</code>.
+ * </p>
+ *
+ * <p>
+ * When a parser is first created for a class, it looks for a binder for the
+ * class (and for each superclass that declares
+ * {@link com.alexgilleran.icesoap.annotation.XMLField}s) and uses it
+ * for anything the binder can do, falling back to reflection for anything it
+ * can't - generated code can't touch private fields or constructors, so these
+ * are always set by reflection.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ * @param <T>
+ *            The class that the binder is for.
+ *
+ * @see com.alexgilleran.icesoap.annotation.XMLObject
+ * @see com.alexgilleran.icesoap.annotation.XMLField
+ */
+public interface GeneratedBinder<T> {
+	/** Suffix added to the binary name of a class to get its binder. */
+	String SUFFIX = "$$IceSoapBinder";
+
+	/**
+	 * Creates a new, blank instance of the class.
+	 *
+	 * @return The new instance, or null if the class can't be created without
+	 *         reflection.
+	 */
+	T newInstance();
+
+	/**
+	 * Gets a setter for a field declared by the class.
+	 *
+	 * @param fieldName
+	 *            The name of the field.
+	 * @return A setter for the field, or null if the field can't be set
+	 *         without reflection.
+	 */
+	Setter getSetter(String fieldName);
+
+	/**
+	 * Sets parsed values on one field. If the field is a {@link java.util.List}
+	 * , each value is added to the list instead, creating the list if it's
+	 * null. Note that text values for primitive fields are converted and set
+	 * without boxing them rather than passed to a setter, so the setter of a
+	 * primitive field is only used for nil values.
+	 */
+	interface Setter {
+		/**
+		 * Sets a value on an object.
+		 *
+		 * @param target
+		 *            The object to set the value on.
+		 * @param value
+		 *            The value to set.
+		 */
+		void set(Object target, Object value);
+	}
+}
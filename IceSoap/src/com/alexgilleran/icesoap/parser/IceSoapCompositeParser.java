@@ -0,0 +1,45 @@
+package com.alexgilleran.icesoap.parser;
+
+/**
+ * Parser that gets several objects and lists out of one document in a single
+ * pass, rather than reading it again for each one - e.g. a SOAP header object,
+ * a summary object and a list of items from the same response.
+ *
+ * Each target is parsed from the first element matching the xpath in its
+ * class' {@link com.alexgilleran.icesoap.annotation.XMLObject} annotation (or
+ * for a list target, from every matching element), in the same way as an
+ * {@link IceSoapParser} or {@link IceSoapListParser} for the class would. An
+ * element that a target is parsed from is only passed to that target - if it's
+ * inside an element that another target is being parsed from, the other
+ * target doesn't see it. When more than one target matches the same element,
+ * the one added first gets it.
+ *
+ * @author Alex Gilleran
+ */
+public interface IceSoapCompositeParser extends IceSoapParser<ParseResults> {
+	/**
+	 * Adds a class to parse a single object of - get it from the results with
+	 * {@link ParseResults#get(Class)}.
+	 *
+	 * @param <T>
+	 *            The class to parse.
+	 * @param targetClass
+	 *            The class to parse.
+	 * @throws IllegalArgumentException
+	 *             If the class has already been added with this method.
+	 */
+	<T> void addTarget(Class<T> targetClass);
+
+	/**
+	 * Adds a class to parse a list of - get it from the results with
+	 * {@link ParseResults#getList(Class)}.
+	 *
+	 * @param <T>
+	 *            The class of the items in the list.
+	 * @param itemClass
+	 *            The class of the items in the list.
+	 * @throws IllegalArgumentException
+	 *             If the class has already been added with this method.
+	 */
+	<T> void addListTarget(Class<T> itemClass);
+}
@@ -30,4 +30,24 @@ public interface IceSoapParser<ReturnType> {
 	 *             parse.
 	 */
 	ReturnType parse(InputStream inputStream) throws XMLParsingException;
+
+	/**
+	 * Populates an existing ReturnType object with data parsed from the
+	 * provided {@link InputStream}, rather than instantiating a new one - e.g.
+	 * to reuse the same object every time a service is polled. Note that
+	 * fields the XML has no value for keep whatever value they already had,
+	 * and values for collection and array fields are added to whatever's
+	 * already there.
+	 * 
+	 * @param inputStream
+	 *            A stream containing the XML to parse.
+	 * @param target
+	 *            The object to populate - if this is null, a new object is
+	 *            instantiated as in {@link #parse(InputStream)}.
+	 * @return The populated object - target, unless it was null.
+	 * @throws XMLParsingException
+	 *             In the event of invalid XML being encountered during the
+	 *             parse.
+	 */
+	ReturnType parse(InputStream inputStream, ReturnType target) throws XMLParsingException;
 }
@@ -0,0 +1,27 @@
+package com.alexgilleran.icesoap.parser;
+
+/**
+ * Creates the objects that a parser populates, in place of their zero-arg
+ * constructor - e.g. to take them from a pool of objects that are reused from
+ * one parse to the next, or to create objects of a class that doesn't have a
+ * zero-arg constructor.
+ * 
+ * @author Alex Gilleran
+ * 
+ * @param <T>
+ *            The class of the objects created.
+ * 
+ * @see com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl#setInstanceFactory(Class,
+ *      InstanceFactory)
+ */
+public interface InstanceFactory<T> {
+	/**
+	 * Creates (or otherwise gets hold of) an object for the parser to
+	 * populate. Note that any values already in the object's fields are kept
+	 * unless the XML has a value for them, and values for collection and array
+	 * fields are added to whatever's already there.
+	 * 
+	 * @return The object - must not be null.
+	 */
+	T newInstance();
+}
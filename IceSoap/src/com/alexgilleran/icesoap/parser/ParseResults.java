@@ -0,0 +1,76 @@
+package com.alexgilleran.icesoap.parser;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the objects and lists parsed by an {@link IceSoapCompositeParser} out
+ * of one document, by the class that was registered for them.
+ *
+ * @author Alex Gilleran
+ */
+public class ParseResults {
+	/** The objects parsed for each registered target class. */
+	private final Map<Class<?>, Object> objects = new HashMap<Class<?>, Object>();
+	/** The items parsed for each registered list item class. */
+	private final Map<Class<?>, List<?>> lists = new HashMap<Class<?>, List<?>>();
+
+	/**
+	 * Gets the object parsed for a target class.
+	 *
+	 * @param <T>
+	 *            The class of the object.
+	 * @param targetClass
+	 *            The class registered with
+	 *            {@link IceSoapCompositeParser#addTarget(Class)}.
+	 * @return The object, or null if nothing was found for the class.
+	 */
+	public <T> T get(Class<T> targetClass) {
+		return targetClass.cast(objects.get(targetClass));
+	}
+
+	/**
+	 * Sets the object for a target class.
+	 *
+	 * @param <T>
+	 *            The class of the object.
+	 * @param targetClass
+	 *            The class.
+	 * @param object
+	 *            The object.
+	 */
+	public <T> void put(Class<T> targetClass, T object) {
+		objects.put(targetClass, object);
+	}
+
+	/**
+	 * Gets the items parsed for a list item class.
+	 *
+	 * @param <T>
+	 *            The class of the items.
+	 * @param itemClass
+	 *            The class registered with
+	 *            {@link IceSoapCompositeParser#addListTarget(Class)}.
+	 * @return The items - an empty list if none were found, or null if no
+	 *         list was parsed for the class.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getList(Class<T> itemClass) {
+		return (List<T>) lists.get(itemClass);
+	}
+
+	/**
+	 * Sets the list for a list item class.
+	 *
+	 * @param <T>
+	 *            The class of the items.
+	 * @param itemClass
+	 *            The class.
+	 * @param items
+	 *            The list - items parsed for the class are added to it.
+	 */
+	public <T> void putList(Class<T> itemClass, List<T> items) {
+		lists.put(itemClass, items);
+	}
+}
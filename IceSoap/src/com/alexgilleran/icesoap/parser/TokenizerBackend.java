@@ -0,0 +1,22 @@
+package com.alexgilleran.icesoap.parser;
+
+/**
+ * Creates the {@link XmlTokenizer}s that parsers read XML with. IceSoap comes
+ * with backends for XmlPull (the default), StAX and its own scanner in
+ * {@link com.alexgilleran.icesoap.parser.impl.tokenizers} - they all produce
+ * the same events, so which is fastest depends on the platform and the
+ * documents being parsed.
+ * 
+ * Backends are shared between parsers, so implementations must be
+ * thread-safe. The tokenizers they create aren't shared.
+ * 
+ * @author Alex Gilleran
+ */
+public interface TokenizerBackend {
+	/**
+	 * Creates a new tokenizer.
+	 * 
+	 * @return The tokenizer.
+	 */
+	XmlTokenizer newTokenizer();
+}
@@ -4,6 +4,7 @@
 package com.alexgilleran.icesoap.parser;
 
 import java.io.InputStream;
+import java.util.Set;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -49,6 +50,21 @@ public interface XPathPullParser {
 	 */
 	String getCurrentValue();
 
+	/**
+	 * Gets the value of the current node in the same way as
+	 * {@link #getCurrentValue()}, but for text nodes, without copying it out of
+	 * the underlying parser's buffer into a new {@link String} - use this when
+	 * the value is going to be converted into something else (e.g. a number)
+	 * anyway.
+	 *
+	 * The returned {@link CharSequence} may be reused and is only valid until
+	 * the parser next moves - call {@link CharSequence#toString()} on it to keep
+	 * the value.
+	 *
+	 * @return The value of the current node.
+	 */
+	CharSequence getCurrentValueChars();
+
 	/**
 	 * Delegates to {@link XmlPullParser#next()} - gets the next event from the
 	 * pull parser.
@@ -64,6 +80,18 @@ public interface XPathPullParser {
 	 */
 	int next() throws XMLParsingException;
 
+	/**
+	 * Skips the rest of the current element, including its attributes, text
+	 * and any elements inside it, leaving the parser at its {@link #END_TAG}.
+	 * This doesn't keep track of the xpath or read values while skipping, so
+	 * it's much faster than calling {@link #next()} repeatedly.
+	 * 
+	 * @throws XMLParsingException
+	 *             If an error is encountered in the XML, or the parser isn't
+	 *             at the start of an element.
+	 */
+	void skipElement() throws XMLParsingException;
+
 	/**
 	 * Gets the current element being passed, as an {@link XPathElement}.
 	 * 
@@ -71,6 +99,16 @@ public interface XPathPullParser {
 	 */
 	XPathElement getCurrentElement();
 
+	/**
+	 * Gets the depth of the current element - the document element has a depth
+	 * of 1. For attribute events, this is the depth of the element that the
+	 * attribute belongs to.
+	 * 
+	 * @return The depth of the current element.
+	 * @see org.xmlpull.v1.XmlPullParser#getDepth()
+	 */
+	int getDepth();
+
 	/**
 	 * Gets the type of the current event. Be aware that although this delegates
 	 * to {@link XmlPullParser#getEventType()} in most cases, on attribute
@@ -98,6 +136,18 @@ public interface XPathPullParser {
 	 */
 	void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException;
 
+	/**
+	 * Restricts the attributes that are added to elements as predicates to
+	 * those with the supplied names - attributes are still reported as
+	 * {@link #ATTRIBUTE} events regardless. If only a few xpaths use
+	 * predicates, this saves copying every attribute of every element.
+	 * 
+	 * @param attributeNames
+	 *            The names of attributes to capture as predicates, or null to
+	 *            capture all of them (the default).
+	 */
+	void setCapturedPredicates(Set<String> attributeNames);
+
 	/**
 	 * Checks if the current element has the xsi:nil attribute.
 	 * 
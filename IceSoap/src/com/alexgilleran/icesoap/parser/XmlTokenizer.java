@@ -0,0 +1,155 @@
+package com.alexgilleran.icesoap.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
+/**
+ * Turns a stream of XML into the tag and text events that an
+ * {@link XPathPullParser} keeps track of the current xpath from - this is the
+ * layer that actually reads the XML, and can be swapped by choosing a
+ * different {@link TokenizerBackend}.
+ * 
+ * Events follow the model of {@link XmlPullParser#next()} with namespace
+ * processing turned on: only {@link XmlPullParser#START_TAG},
+ * {@link XmlPullParser#END_TAG}, {@link XmlPullParser#TEXT} and
+ * {@link XmlPullParser#END_DOCUMENT} are returned, names are local names
+ * without a prefix, namespace declarations aren't reported as attributes, and
+ * the depth of an element is the same at its start and end tags.
+ * 
+ * @author Alex Gilleran
+ */
+public interface XmlTokenizer {
+	/**
+	 * Sets the stream to read XML from, starting a new document.
+	 * 
+	 * @param inputStream
+	 *            The stream.
+	 * @param inputEncoding
+	 *            The encoding of the stream, or null to detect it from the
+	 *            XML declaration.
+	 * @throws XmlPullParserException
+	 *             If the stream can't be read from.
+	 */
+	void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException;
+
+	/**
+	 * Moves to the next event.
+	 * 
+	 * @return The type of the event, as in {@link #getEventType()}.
+	 * @throws XmlPullParserException
+	 *             If the XML isn't well-formed.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	int next() throws XmlPullParserException, IOException;
+
+	/**
+	 * Gets the type of the current event.
+	 * 
+	 * @return One of the {@link XmlPullParser} event types listed above, or
+	 *         {@link XmlPullParser#START_DOCUMENT} before the first call to
+	 *         {@link #next()}.
+	 * @throws XmlPullParserException
+	 *             If the event type can't be determined.
+	 */
+	int getEventType() throws XmlPullParserException;
+
+	/**
+	 * Gets the depth of the current element - 1 for the root element, 0
+	 * outside it.
+	 * 
+	 * @return The depth.
+	 */
+	int getDepth();
+
+	/**
+	 * Gets the local name of the current element, at a start or end tag.
+	 * 
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Gets the {@link SymbolTable} ID of the local name of the current
+	 * element, at a start or end tag - tokenizers that cache names can keep
+	 * the ID with them rather than it being looked up again for every tag.
+	 * 
+	 * @return The ID, or {@link SymbolTable#UNKNOWN} if the name isn't
+	 *         registered.
+	 */
+	int getNameId();
+
+	/**
+	 * Gets the number of attributes of the current element, at a start tag.
+	 * 
+	 * @return The number of attributes, or -1 if the current event isn't a
+	 *         start tag.
+	 */
+	int getAttributeCount();
+
+	/**
+	 * Gets the local name of an attribute of the current element.
+	 * 
+	 * @param index
+	 *            The index of the attribute.
+	 * @return The name.
+	 */
+	String getAttributeName(int index);
+
+	/**
+	 * Gets the {@link SymbolTable} ID of the local name of an attribute of the
+	 * current element.
+	 * 
+	 * @param index
+	 *            The index of the attribute.
+	 * @return The ID, or {@link SymbolTable#UNKNOWN} if the name isn't
+	 *         registered.
+	 */
+	int getAttributeNameId(int index);
+
+	/**
+	 * Gets the value of an attribute of the current element.
+	 * 
+	 * @param index
+	 *            The index of the attribute.
+	 * @return The value.
+	 */
+	String getAttributeValue(int index);
+
+	/**
+	 * Gets the value of an attribute of the current element by its namespace
+	 * and name.
+	 * 
+	 * @param namespace
+	 *            The namespace URI of the attribute - an empty String for
+	 *            attributes without a prefix.
+	 * @param name
+	 *            The local name of the attribute.
+	 * @return The value, or null if there's no such attribute.
+	 */
+	String getAttributeValue(String namespace, String name);
+
+	/**
+	 * Gets the current text, at a text event.
+	 * 
+	 * @return The text.
+	 */
+	String getText();
+
+	/**
+	 * Gets the current text without creating a {@link String} - see
+	 * {@link XmlPullParser#getTextCharacters(int[])}.
+	 * 
+	 * @param holderForStartAndLength
+	 *            Receives the start and length of the text in the returned
+	 *            array.
+	 * @return The array holding the text, only valid until the next event, or
+	 *         null if there is no text.
+	 */
+	char[] getTextCharacters(int[] holderForStartAndLength);
+}
@@ -4,6 +4,10 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -14,8 +18,11 @@ import com.alexgilleran.icesoap.exception.ClassDefException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.exception.XPathParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.XmlPullBackend;
 import com.alexgilleran.icesoap.request.Request;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
 import com.alexgilleran.icesoap.xpath.XPathFactory;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
@@ -34,6 +41,25 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 * start parsing at the start of these nodes, and stop parsing at the end.
 	 */
 	private XPathRepository<XPathElement> rootXPaths;
+	/** Tracks the position of the parser relative to the root xpath(s). */
+	private XPathAutomaton<XPathElement>.Cursor rootCursor;
+	/** The depth in the document of the root element currently being parsed. */
+	private int rootDepth;
+	/**
+	 * Whether the {@link XPathPullParser}s created by this parser should reuse
+	 * their xpath elements rather than creating new ones.
+	 */
+	private boolean reuseXPathElements = false;
+	/** Creates the tokenizers that read the XML passed to this parser. */
+	private TokenizerBackend tokenizerBackend = XmlPullBackend.getDefault();
+	/**
+	 * The names of the attributes tested by predicates in any xpath this
+	 * parser matches against - lazily worked out by
+	 * {@link #getPredicateNames()}.
+	 */
+	private Set<String> predicateNames;
+	/** Whether {@link #predicateNames} has been worked out yet. */
+	private boolean predicateNamesCollected = false;
 
 	/**
 	 * Instantiates a new {@link BaseIceSoapParserImpl}
@@ -60,9 +86,27 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 *            first one of these XPaths it encounters, then finish.
 	 */
 	protected BaseIceSoapParserImpl(XPathRepository<XPathElement> rootXPaths) {
+		this(rootXPaths, rootXPaths.compile());
+	}
+
+	/**
+	 * Instantiates a new {@link BaseIceSoapParserImpl} with root xpaths that
+	 * have already been compiled.
+	 * 
+	 * @param rootXPaths
+	 *            An XPathRepository containing the root xpath(s) of the type to
+	 *            parse - see {@link #BaseIceSoapParserImpl(XPathRepository)}.
+	 * @param rootAutomaton
+	 *            The compiled form of rootXPaths - this can be shared between
+	 *            parsers.
+	 */
+	protected BaseIceSoapParserImpl(XPathRepository<XPathElement> rootXPaths,
+			XPathAutomaton<XPathElement> rootAutomaton) {
 		this.rootXPaths = rootXPaths;
 
 		checkIfXPathsRelative(rootXPaths);
+
+		this.rootCursor = rootAutomaton.newCursor();
 	}
 
 	/**
@@ -94,19 +138,137 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 		return rootXPaths;
 	}
 
+	/**
+	 * Sets whether {@link #parse(InputStream)} should use a pull parser that
+	 * reuses its xpath elements, rather than creating new ones for every tag
+	 * and attribute. This cuts out almost all allocation that comes from
+	 * keeping track of the position in the document, but means that the
+	 * elements passed to {@link #onNewTag(XPathPullParser, Object)} and
+	 * {@link #onText(XPathPullParser, Object)} are only valid for the duration
+	 * of the call - extending classes that keep hold of them must clone them.
+	 * Defaults to false.
+	 * 
+	 * @param reuseXPathElements
+	 *            Whether to reuse xpath elements.
+	 * @see XPathPullParserImpl#XPathPullParserImpl(boolean)
+	 */
+	public void setReuseXPathElements(boolean reuseXPathElements) {
+		this.reuseXPathElements = reuseXPathElements;
+	}
+
+	/**
+	 * Gets whether {@link #parse(InputStream)} uses a pull parser that reuses
+	 * its xpath elements.
+	 * 
+	 * @return Whether xpath elements are reused.
+	 * @see #setReuseXPathElements(boolean)
+	 */
+	protected boolean isReuseXPathElements() {
+		return reuseXPathElements;
+	}
+
+	/**
+	 * Gets the backend that reads the XML passed to {@link #parse(InputStream)}.
+	 * 
+	 * @return The backend.
+	 */
+	protected TokenizerBackend getTokenizerBackend() {
+		return tokenizerBackend;
+	}
+
+	/**
+	 * Sets the backend that reads the XML passed to
+	 * {@link #parse(InputStream)} - defaults to {@link XmlPullBackend}.
+	 * 
+	 * @param tokenizerBackend
+	 *            The backend - null to go back to the default.
+	 */
+	public void setTokenizerBackend(TokenizerBackend tokenizerBackend) {
+		this.tokenizerBackend = tokenizerBackend == null ? XmlPullBackend.getDefault() : tokenizerBackend;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public ReturnType parse(InputStream inputStream) throws XMLParsingException {
-		XPathPullParserImpl parser = new XPathPullParserImpl();
+		return parse(inputStream, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ReturnType parse(InputStream inputStream, ReturnType target) throws XMLParsingException {
+		XPathPullParserImpl parser = new XPathPullParserImpl(reuseXPathElements, tokenizerBackend.newTokenizer());
+		parser.setCapturedPredicates(getPredicateNames());
+
 		try {
 			parser.setInput(inputStream, null);
 		} catch (XmlPullParserException e) {
 			throw new XMLParsingException(e);
 		}
 
-		return parse(parser);
+		return parse(parser, target);
+	}
+
+	/**
+	 * Gets the names of all the attributes that are tested by predicates in
+	 * xpaths that this parser, or any parser it creates for nested objects,
+	 * matches against - these are the only attributes that the
+	 * {@link XPathPullParser} needs to capture as predicates. This is only
+	 * worked out once for each parser.
+	 * 
+	 * @return The attribute names, or null if every attribute should be
+	 *         captured.
+	 */
+	protected final Set<String> getPredicateNames() {
+		if (!predicateNamesCollected) {
+			Set<String> names = new HashSet<String>();
+			addPredicateNames(names, new HashSet<Class<?>>());
+
+			if (!names.contains(null)) {
+				predicateNames = Collections.unmodifiableSet(names);
+			}
+
+			predicateNamesCollected = true;
+		}
+
+		return predicateNames;
+	}
+
+	/**
+	 * Adds the names of attributes that are tested by predicates in the
+	 * xpaths this parser matches against to the supplied set. Implementing
+	 * classes that match against other xpaths, or create other parsers,
+	 * should override this and add their names as well - if an implementing
+	 * class needs every attribute to be captured, it can add null to the set.
+	 * 
+	 * @param names
+	 *            The set to add names to.
+	 * @param visitedClasses
+	 *            Classes whose names have already been added - used to avoid
+	 *            going around in circles with recursive types.
+	 */
+	protected void addPredicateNames(Set<String> names, Set<Class<?>> visitedClasses) {
+		addPredicateNames(rootXPaths.keySet(), names);
+	}
+
+	/**
+	 * Adds the names of attributes tested by predicates in every element of
+	 * the supplied xpaths to a set.
+	 * 
+	 * @param xpaths
+	 *            The xpaths to get predicate names from.
+	 * @param names
+	 *            The set to add names to.
+	 */
+	protected static void addPredicateNames(Collection<XPathElement> xpaths, Set<String> names) {
+		for (XPathElement xpath : xpaths) {
+			for (XPathElement element = xpath; element != null; element = element.getPreviousElement()) {
+				names.addAll(element.getPredicates().keySet());
+			}
+		}
 	}
 
 	/**
@@ -148,12 +310,19 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	protected final ReturnType parse(XPathPullParser parser, ReturnType objectToModify) throws XMLParsingException {
 		boolean isInRootElement = false;
 
+		rootCursor.reset();
+		onParseStart();
+
 		try {
 			while (true) {
 				if (rootXPaths == null) {
 					// No root xpath is specified - just parse every element
 					// that comes along.
 					objectToModify = parseElement(parser, objectToModify);
+
+					if (isParseComplete()) {
+						break;
+					}
 				} else {
 					if (isInRootElement == false && enteringRootElement(parser)) {
 						isInRootElement = true;
@@ -166,6 +335,21 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 
 					if (isInRootElement && isEventTypeParseable(parser.getEventType())) {
 						objectToModify = parseElement(parser, objectToModify);
+
+						if (isParseComplete()) {
+							// Everything's been found - there's no need to
+							// read the rest of the element
+							break;
+						}
+					}
+
+					if (parser.getEventType() == XPathPullParser.START_TAG
+							&& (isInRootElement ? isCurrentElementExhausted() : rootCursor.isExhausted())) {
+						// Nothing inside this element can be parsed - skip
+						// straight to the end of it, then check the end tag
+						// like any other event.
+						parser.skipElement();
+						continue;
 					}
 				}
 
@@ -179,13 +363,64 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 			}
 
 			// At this point we're either at the end of the root element or the
-			// document, so the object should be completely parsed - return it.
+			// document (or have everything we need before then), so the object
+			// should be completely parsed - return it.
+			if (objectToModify != null) {
+				onParseEnd(objectToModify);
+			}
+
 			return objectToModify;
 		} catch (XmlPullParserException e) {
 			throw new XMLParsingException(e);
 		}
 	}
 
+	/**
+	 * Called at the start of every parse, before any events are passed to
+	 * {@link #onNewTag(XPathPullParser, Object)} or
+	 * {@link #onText(XPathPullParser, Object)}. Parsers that keep track of
+	 * their position in the document should reset it here. Does nothing by
+	 * default.
+	 */
+	protected void onParseStart() {
+		// Nothing to reset by default
+	}
+
+	/**
+	 * Called at the end of every parse that produced an object, before it's
+	 * returned. Parsers that hold on to values until the whole object has been
+	 * parsed should put them on the object here. Does nothing by default.
+	 * 
+	 * @param parsedObject
+	 *            The object that's been parsed.
+	 */
+	protected void onParseEnd(ReturnType parsedObject) {
+		// Nothing to finish by default
+	}
+
+	/**
+	 * Determines whether the object being parsed is already complete, so the
+	 * parse can finish without waiting for the end of the root element -
+	 * checked after every event that's passed on. Returns false by default.
+	 * 
+	 * @return Whether to stop parsing.
+	 */
+	protected boolean isParseComplete() {
+		return false;
+	}
+
+	/**
+	 * Determines whether nothing inside the element that was just passed to
+	 * {@link #onNewTag(XPathPullParser, Object)} (including its attributes and
+	 * text) is of interest to this parser, so that it can be skipped. Returns
+	 * false by default, so that every event is passed on.
+	 * 
+	 * @return Whether the current element can be skipped.
+	 */
+	protected boolean isCurrentElementExhausted() {
+		return false;
+	}
+
 	/**
 	 * Determines whether the {@link XPathPullParser} event provided should
 	 * result in an attempt to parse the event (i.e. a new tag, text or
@@ -210,12 +445,22 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 *             If a problem is encountered in the {@link XmlPullParser}
 	 */
 	private boolean enteringRootElement(XPathPullParser parser) throws XmlPullParserException {
-		return parser.getEventType() == XPathPullParser.START_TAG && rootXPaths.contains(parser.getCurrentElement());
+		if (parser.getEventType() == XPathPullParser.START_TAG
+				&& rootCursor.enter(parser.getCurrentElement(), parser.getDepth()) != null) {
+			rootDepth = parser.getDepth();
+			return true;
+		}
+
+		return false;
 	}
 
 	/**
 	 * Determines whether the current location of the provided parser is at the
-	 * very end of a root XPath.
+	 * very end of a root XPath. Elements at other depths than the root element
+	 * that was entered can't be its end, so they're ruled out without matching
+	 * them - but an end tag at the same depth has to match a root xpath too, as
+	 * it may belong to a different element (e.g. the parent of a list item that
+	 * was consumed by the item's parser).
 	 * 
 	 * @param parser
 	 *            The parser to determine the location.
@@ -224,7 +469,8 @@ public abstract class BaseIceSoapParserImpl<ReturnType> implements IceSoapParser
 	 *             If a problem is encountered in the {@link XmlPullParser}
 	 */
 	private boolean exitingRootElement(XPathPullParser parser) throws XmlPullParserException {
-		return parser.getEventType() == XPathPullParser.END_TAG && rootXPaths.contains(parser.getCurrentElement());
+		return parser.getEventType() == XPathPullParser.END_TAG && parser.getDepth() == rootDepth
+				&& rootXPaths.contains(parser.getCurrentElement());
 	}
 
 	/**
@@ -0,0 +1,992 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.ClassDefException;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.GeneratedBinder;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.CharSequenceParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.ConverterRegistry;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.StringParser;
+import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
+import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.CompiledXPathElement;
+
+/**
+ * <p>
+ * Everything an {@link IceSoapParserImpl} works out about the class it parses
+ * before it starts parsing - the compiled xpaths of its fields and how each
+ * field is set.
+ * </p>
+ *
+ * <p>
+ * Plans only depend on the class and the root xpaths, and can't be changed
+ * once built, so they're kept in a process-wide registry and shared between
+ * every parser (and thread) for the same class and roots. This means that
+ * creating a parser only does reflection and xpath compilation the first time
+ * its class is seen. Parsers themselves still hold their own position in the
+ * document, so they aren't shared.
+ * </p>
+ *
+ * <p>
+ * The registry doesn't keep classes from being unloaded: classes are only
+ * weakly referenced, plans (which refer to their class) are softly referenced
+ * so they can be collected and rebuilt, and only the most recently used
+ * {@link #MAX_ROOTS_PER_CLASS} sets of root xpaths are kept for each class.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ * @param <T>
+ *            The class that the plan is for.
+ */
+final class BindingPlan<T> {
+	/** The most sets of root xpaths to keep plans for, for each class. */
+	static final int MAX_ROOTS_PER_CLASS = 16;
+	/**
+	 * Every plan that's been built, against its class and then its roots -
+	 * see {@link #copyRoots(XPathRepository)}. Guarded by itself.
+	 */
+	private static final Map<Class<?>, Map<Set<XPathElement>, SoftReference<BindingPlan<?>>>> PLANS = new WeakHashMap<Class<?>, Map<Set<XPathElement>, SoftReference<BindingPlan<?>>>>();
+
+	/** The class that the plan is for. */
+	private final Class<T> targetClass;
+	/**
+	 * The binder generated for {@link #targetClass} by the annotation
+	 * processor, or null if there isn't one.
+	 */
+	private final GeneratedBinder<T> binder;
+	/**
+	 * The zero-arg constructor of {@link #targetClass}, already made
+	 * accessible, or null if it doesn't have one.
+	 */
+	private final Constructor<T> constructor;
+	/** The root xpaths of the class. Shouldn't be changed. */
+	private final XPathRepository<XPathElement> rootXPaths;
+	/** Compiled form of {@link #rootXPaths}. */
+	private final XPathAutomaton<XPathElement> rootAutomaton;
+	/** The xpaths of the fields of the class. Shouldn't be changed. */
+	private final XPathRepository<Field> fieldXPaths;
+	/**
+	 * Compiled form of {@link #fieldXPaths}, with relative xpaths relative to
+	 * {@link #rootXPaths}.
+	 */
+	private final XPathAutomaton<Field> fieldAutomaton;
+	/** How to set each field. */
+	private final Map<Field, FieldBinding> fieldBindings;
+	/**
+	 * The root xpaths for the parsers of fields that need one, against the
+	 * xpath of the field.
+	 */
+	private final Map<XPathElement, XPathRepository<XPathElement>> nestedRootXPaths;
+	/**
+	 * The names of predicates tested by the xpaths of the fields of this class
+	 * and of every class parsed inside it - lazily worked out.
+	 */
+	private volatile Set<String> fieldPredicateNames;
+	/**
+	 * The number of fields whose values are collected in a {@link ValueBuffer}
+	 * - see {@link FieldBinding#getBufferIndex()}.
+	 */
+	private final int bufferCount;
+	/**
+	 * Whether every field takes a single value, i.e. none are collections or
+	 * arrays.
+	 */
+	private final boolean singleValued;
+
+	/**
+	 * Builds a new plan.
+	 *
+	 * @param targetClass
+	 *            The class to build a plan for.
+	 * @param rootXPaths
+	 *            The root xpaths of the class.
+	 */
+	private BindingPlan(Class<T> targetClass, XPathRepository<XPathElement> rootXPaths) {
+		this.targetClass = targetClass;
+		this.binder = findBinder(targetClass);
+		this.constructor = findConstructor(targetClass);
+		this.rootXPaths = rootXPaths;
+		this.rootAutomaton = rootXPaths.compile();
+
+		Map<Field, FieldBinding> bindings = new HashMap<Field, FieldBinding>();
+		Map<XPathElement, XPathRepository<XPathElement>> nestedRoots = new HashMap<XPathElement, XPathRepository<XPathElement>>();
+		List<FieldBinding> bufferedBindings = new ArrayList<FieldBinding>();
+		fieldXPaths = new XPathRepository<Field>();
+
+		for (Class<?> currentClass = targetClass; !currentClass.equals(Object.class); currentClass = currentClass
+				.getSuperclass()) {
+			addFields(currentClass, bindings, nestedRoots, bufferedBindings);
+		}
+
+		this.fieldBindings = Collections.unmodifiableMap(bindings);
+		this.bufferCount = bufferedBindings.size();
+		this.singleValued = isSingleValued(bindings.values());
+		this.nestedRootXPaths = Collections.unmodifiableMap(nestedRoots);
+		this.fieldAutomaton = fieldXPaths.compile(rootXPaths);
+	}
+
+	/**
+	 * Gets the plan for a class, using the root xpaths from the class's
+	 * {@link com.alexgilleran.icesoap.annotation.XMLObject} annotation.
+	 *
+	 * @param targetClass
+	 *            The class to get a plan for.
+	 * @return The plan - built the first time it's asked for.
+	 */
+	static <T> BindingPlan<T> forClass(Class<T> targetClass) {
+		return forClass(targetClass, null);
+	}
+
+	/**
+	 * Gets the plan for a class with specific root xpaths.
+	 *
+	 * @param targetClass
+	 *            The class to get a plan for.
+	 * @param rootXPaths
+	 *            The root xpaths, or null to use the ones from the class's
+	 *            {@link com.alexgilleran.icesoap.annotation.XMLObject}
+	 *            annotation.
+	 * @return The plan - built the first time it's asked for.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> BindingPlan<T> forClass(Class<T> targetClass, XPathRepository<XPathElement> rootXPaths) {
+		Set<XPathElement> roots = copyRoots(rootXPaths);
+		BindingPlan<?> plan = getPlan(targetClass, roots);
+
+		if (plan == null) {
+			// Build outside of any lock - if two threads build the same plan
+			// at once, the first one stored wins.
+			XPathRepository<XPathElement> planRootXPaths;
+
+			if (roots == null) {
+				planRootXPaths = BaseIceSoapParserImpl.retrieveRootXPaths(targetClass);
+			} else {
+				planRootXPaths = new XPathRepository<XPathElement>();
+
+				for (XPathElement root : roots) {
+					planRootXPaths.put(root, root);
+				}
+			}
+
+			plan = putPlan(targetClass, roots, new BindingPlan<T>(targetClass, planRootXPaths));
+		}
+
+		return (BindingPlan<T>) plan;
+	}
+
+	/**
+	 * Makes the key for some root xpaths in the registry - an immutable copy,
+	 * so it can't be changed once it's stored.
+	 *
+	 * @param rootXPaths
+	 *            The root xpaths, or null for the class's own.
+	 * @return The key, or null for the class's own roots.
+	 */
+	private static Set<XPathElement> copyRoots(XPathRepository<XPathElement> rootXPaths) {
+		if (rootXPaths == null) {
+			return null;
+		}
+
+		Set<XPathElement> roots = new HashSet<XPathElement>();
+
+		for (XPathElement rootXPath : rootXPaths.keySet()) {
+			roots.add(CompiledXPathElement.of(rootXPath));
+		}
+
+		return Collections.unmodifiableSet(roots);
+	}
+
+	/**
+	 * Looks up a plan in the registry.
+	 *
+	 * @param targetClass
+	 *            The class of the plan.
+	 * @param roots
+	 *            The roots of the plan, from {@link #copyRoots(XPathRepository)}.
+	 * @return The plan, or null if there isn't one (or it's been collected).
+	 */
+	private static BindingPlan<?> getPlan(Class<?> targetClass, Set<XPathElement> roots) {
+		synchronized (PLANS) {
+			Map<Set<XPathElement>, SoftReference<BindingPlan<?>>> plansForClass = PLANS.get(targetClass);
+
+			if (plansForClass == null) {
+				return null;
+			}
+
+			SoftReference<BindingPlan<?>> reference = plansForClass.get(roots);
+			return reference == null ? null : reference.get();
+		}
+	}
+
+	/**
+	 * Stores a plan in the registry, unless there's one there already.
+	 *
+	 * @param targetClass
+	 *            The class of the plan.
+	 * @param roots
+	 *            The roots of the plan, from {@link #copyRoots(XPathRepository)}.
+	 * @param plan
+	 *            The plan.
+	 * @return The plan that's now stored - either the one passed in or the one
+	 *         that was already there.
+	 */
+	private static BindingPlan<?> putPlan(Class<?> targetClass, Set<XPathElement> roots, BindingPlan<?> plan) {
+		synchronized (PLANS) {
+			Map<Set<XPathElement>, SoftReference<BindingPlan<?>>> plansForClass = PLANS.get(targetClass);
+
+			if (plansForClass == null) {
+				// Access-ordered, so the least recently used roots go first
+				plansForClass = new LinkedHashMap<Set<XPathElement>, SoftReference<BindingPlan<?>>>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<Set<XPathElement>, SoftReference<BindingPlan<?>>> eldest) {
+						return size() > MAX_ROOTS_PER_CLASS;
+					}
+				};
+				PLANS.put(targetClass, plansForClass);
+			}
+
+			SoftReference<BindingPlan<?>> reference = plansForClass.get(roots);
+			BindingPlan<?> existing = reference == null ? null : reference.get();
+
+			if (existing != null) {
+				return existing;
+			}
+
+			plansForClass.put(roots, new SoftReference<BindingPlan<?>>(plan));
+			return plan;
+		}
+	}
+
+	/**
+	 * Looks for the binder generated for a class by the annotation processor.
+	 *
+	 * @param boundClass
+	 *            The class to look for a binder for.
+	 * @return An instance of the binder, or null if one wasn't generated.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <C> GeneratedBinder<C> findBinder(Class<C> boundClass) {
+		ClassLoader loader = boundClass.getClassLoader();
+
+		if (loader == null) {
+			// A system class - nothing can have been generated for it
+			return null;
+		}
+
+		try {
+			Class<?> binderClass = Class.forName(boundClass.getName() + GeneratedBinder.SUFFIX, true, loader);
+
+			return (GeneratedBinder<C>) binderClass.newInstance();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (InstantiationException e) {
+			throw new ClassDefException("Could not instantiate the generated binder for " + boundClass.getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ClassDefException("Could not instantiate the generated binder for " + boundClass.getName(), e);
+		}
+	}
+
+	/**
+	 * Looks up the zero-arg constructor of a class once, so that creating
+	 * each instance doesn't have to look it up (and check access to it) again
+	 * as {@link Class#newInstance()} does.
+	 *
+	 * @param targetClass
+	 *            The class.
+	 * @return The constructor, made accessible, or null if there isn't one.
+	 */
+	private static <C> Constructor<C> findConstructor(Class<C> targetClass) {
+		try {
+			Constructor<C> constructor = targetClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+
+			return constructor;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds the fields declared by one class in the hierarchy to
+	 * {@link #fieldXPaths}.
+	 *
+	 * @param currentClass
+	 *            The class to get fields from.
+	 * @param bindings
+	 *            The map to add the binding of each field to.
+	 * @param nestedRoots
+	 *            The map to add the root xpaths of nested parsers to.
+	 * @param bufferedBindings
+	 *            The list to add the bindings of fields whose values are
+	 *            buffered to - each binding's buffer index is its position in
+	 *            this list.
+	 */
+	private void addFields(Class<?> currentClass, Map<Field, FieldBinding> bindings,
+			Map<XPathElement, XPathRepository<XPathElement>> nestedRoots, List<FieldBinding> bufferedBindings) {
+		GeneratedBinder<?> declaringBinder = currentClass == targetClass ? binder : findBinder(currentClass);
+
+		for (Field field : currentClass.getDeclaredFields()) {
+			XMLField xPath = field.getAnnotation(XMLField.class);
+
+			if (xPath != null) {
+				XPathRepository<XPathElement> xpathsFromField;
+
+				if (!xPath.value().equals(XMLField.DEFAULT_XPATH_STRING)) {
+					// Relative xpaths are left relative - they're matched
+					// against the root xpaths by the automaton, so each is
+					// only stored once however many root xpaths there are.
+					xpathsFromField = BaseIceSoapParserImpl.compileXPath(xPath, field);
+				} else {
+					// XPath has no value - set to the root value
+					xpathsFromField = rootXPaths;
+				}
+
+				GeneratedBinder.Setter generatedSetter = declaringBinder == null ? null : declaringBinder
+						.getSetter(field.getName());
+				FieldBinding binding = new FieldBinding(field, generatedSetter, bindings.size(),
+						bufferedBindings.size());
+				bindings.put(field, binding);
+
+				if (binding.getBufferIndex() >= 0) {
+					bufferedBindings.add(binding);
+				}
+
+				for (XPathElement element : xpathsFromField.keySet()) {
+					fieldXPaths.put(element, field);
+
+					if (binding.needsParser()) {
+						nestedRoots.put(element, buildNestedRootXPaths(element));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Works out the root xpaths for a parser for a field.
+	 *
+	 * @param fieldXPath
+	 *            The xpath of the field - if this is relative, the root xpaths
+	 *            are this xpath attached to each of the root xpaths of this
+	 *            plan.
+	 * @return The root xpaths.
+	 */
+	private XPathRepository<XPathElement> buildNestedRootXPaths(XPathElement fieldXPath) {
+		if (!fieldXPath.getFirstElement().isRelative()) {
+			return new XPathRepository<XPathElement>(fieldXPath, fieldXPath);
+		}
+
+		XPathRepository<XPathElement> roots = new XPathRepository<XPathElement>();
+
+		for (XPathElement rootXPath : rootXPaths.keySet()) {
+			XPathElement absoluteXPath = CompiledXPathElement.rebase(fieldXPath, rootXPath);
+			roots.put(absoluteXPath, absoluteXPath);
+		}
+
+		return roots;
+	}
+
+	/**
+	 * Gets the class that the plan is for.
+	 *
+	 * @return The class.
+	 */
+	Class<T> getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Creates a new instance of the class with its generated binder.
+	 *
+	 * @return The new instance, or null if there's no generated binder or it
+	 *         can't create one - in this case, the caller should fall back to
+	 *         reflection.
+	 */
+	T newInstance() {
+		return binder == null ? null : binder.newInstance();
+	}
+
+	/**
+	 * Gets the zero-arg constructor of the class, for when there's no
+	 * generated binder to create instances.
+	 *
+	 * @return The constructor, already accessible, or null if the class
+	 *         doesn't have one.
+	 */
+	Constructor<T> getConstructor() {
+		return constructor;
+	}
+
+	/**
+	 * Gets the root xpaths of the class.
+	 *
+	 * @return The root xpaths - these mustn't be changed.
+	 */
+	XPathRepository<XPathElement> getRootXPaths() {
+		return rootXPaths;
+	}
+
+	/**
+	 * Gets the compiled root xpaths of the class.
+	 *
+	 * @return The automaton for the root xpaths.
+	 */
+	XPathAutomaton<XPathElement> getRootAutomaton() {
+		return rootAutomaton;
+	}
+
+	/**
+	 * Gets the xpaths of the fields of the class.
+	 *
+	 * @return The field xpaths - these mustn't be changed.
+	 */
+	XPathRepository<Field> getFieldXPaths() {
+		return fieldXPaths;
+	}
+
+	/**
+	 * Gets the compiled field xpaths of the class.
+	 *
+	 * @return The automaton for the field xpaths.
+	 */
+	XPathAutomaton<Field> getFieldAutomaton() {
+		return fieldAutomaton;
+	}
+
+	/**
+	 * Gets the number of fields whose values are collected in a
+	 * {@link ValueBuffer} while parsing - parsers keep one buffer for each.
+	 *
+	 * @return The number of buffered fields.
+	 */
+	int getBufferCount() {
+		return bufferCount;
+	}
+
+	/**
+	 * Gets the number of {@link XMLField}-annotated fields in the class -
+	 * see {@link FieldBinding#getIndex()}.
+	 *
+	 * @return The number of fields.
+	 */
+	int getFieldCount() {
+		return fieldBindings.size();
+	}
+
+	/**
+	 * Determines whether every field of the class takes a single value, so
+	 * that the object is complete once each has been set.
+	 *
+	 * @return true if no fields are collections or arrays.
+	 */
+	boolean isSingleValued() {
+		return singleValued;
+	}
+
+	/**
+	 * Determines whether every one of some fields takes a single value.
+	 *
+	 * @param bindings
+	 *            The bindings of the fields.
+	 * @return true if none are collections or arrays.
+	 */
+	private static boolean isSingleValued(Collection<FieldBinding> bindings) {
+		for (FieldBinding binding : bindings) {
+			if (binding.isCollection() || binding.isArray()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gets how a field of the class is set.
+	 *
+	 * @param field
+	 *            The field - must be an {@link XMLField}-annotated field of
+	 *            the class.
+	 * @return The binding of the field.
+	 */
+	FieldBinding getBinding(Field field) {
+		return fieldBindings.get(field);
+	}
+
+	/**
+	 * Gets the root xpaths to use for a parser for a field.
+	 *
+	 * @param fieldXPath
+	 *            The xpath that the field was matched with.
+	 * @return The root xpaths for the field's parser.
+	 */
+	XPathRepository<XPathElement> getNestedRootXPaths(XPathElement fieldXPath) {
+		XPathRepository<XPathElement> roots = nestedRootXPaths.get(fieldXPath);
+
+		if (roots == null) {
+			// Not one of the field xpaths of this plan - use it as-is
+			roots = new XPathRepository<XPathElement>(fieldXPath, fieldXPath);
+		}
+
+		return roots;
+	}
+
+	/**
+	 * Gets the names of the attributes tested by predicates in the xpaths of
+	 * the fields of this class, and of the fields of every class that's
+	 * parsed inside it.
+	 *
+	 * @return An unmodifiable set of the attribute names.
+	 */
+	Set<String> getFieldPredicateNames() {
+		Set<String> names = fieldPredicateNames;
+
+		if (names == null) {
+			names = new LinkedHashSet<String>();
+			addXPathPredicateNames(fieldXPaths.keySet(), names);
+
+			Set<Class<?>> visitedClasses = new HashSet<Class<?>>();
+			visitedClasses.add(targetClass);
+			addNestedPredicateNames(targetClass, names, visitedClasses);
+
+			names = Collections.unmodifiableSet(names);
+			fieldPredicateNames = names;
+		}
+
+		return names;
+	}
+
+	/**
+	 * Adds the predicate names from the fields of classes that will be parsed
+	 * by nested parsers for the fields of the supplied class, recursing into
+	 * their fields in turn.
+	 *
+	 * @param parsedClass
+	 *            The class whose fields should be checked.
+	 * @param names
+	 *            The set to add names to.
+	 * @param visitedClasses
+	 *            The classes that have already been checked.
+	 */
+	private static void addNestedPredicateNames(Class<?> parsedClass, Set<String> names, Set<Class<?>> visitedClasses) {
+		for (Class<?> currentClass = parsedClass; !currentClass.equals(Object.class); currentClass = currentClass
+				.getSuperclass()) {
+			for (Field field : currentClass.getDeclaredFields()) {
+				if (field.getAnnotation(XMLField.class) == null) {
+					continue;
+				}
+
+				if (FieldBinding.needsParser(field)) {
+					Class<?> nestedClass = FieldBinding.parsedClassOf(field);
+
+					if (visitedClasses.add(nestedClass)) {
+						addFieldPredicateNames(nestedClass, names);
+						addNestedPredicateNames(nestedClass, names, visitedClasses);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the predicate names from the {@link XMLField} xpaths of a class
+	 * (and its superclasses).
+	 *
+	 * @param nestedClass
+	 *            The class to get xpaths from.
+	 * @param names
+	 *            The set to add names to.
+	 */
+	private static void addFieldPredicateNames(Class<?> nestedClass, Set<String> names) {
+		for (Class<?> currentClass = nestedClass; !currentClass.equals(Object.class); currentClass = currentClass
+				.getSuperclass()) {
+			for (Field field : currentClass.getDeclaredFields()) {
+				XMLField xPath = field.getAnnotation(XMLField.class);
+
+				if (xPath != null && !xPath.value().equals(XMLField.DEFAULT_XPATH_STRING)) {
+					addXPathPredicateNames(BaseIceSoapParserImpl.compileXPath(xPath, field).keySet(), names);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the names of attributes tested by predicates in every element of
+	 * the supplied xpaths to a set.
+	 *
+	 * @param xpaths
+	 *            The xpaths to get predicate names from.
+	 * @param names
+	 *            The set to add names to.
+	 */
+	private static void addXPathPredicateNames(Collection<XPathElement> xpaths, Set<String> names) {
+		for (XPathElement xpath : xpaths) {
+			for (XPathElement element = xpath; element != null; element = element.getPreviousElement()) {
+				names.addAll(element.getPredicates().keySet());
+			}
+		}
+	}
+
+	/**
+	 * How a single {@link XMLField}-annotated field is set - worked out once
+	 * from the field's type and annotation.
+	 */
+	static final class FieldBinding {
+		/**
+		 * Expected number of values of collection and array fields that don't
+		 * say otherwise.
+		 */
+		static final int DEFAULT_CAPACITY = 10;
+
+		/** The field. */
+		private final Field field;
+		/** The converter for text values, or null if there isn't one. */
+		private final StringParser<?> converter;
+		/** The annotation on the field. */
+		private final XMLField annotation;
+		/** The processor class from the annotation, or null if there isn't one. */
+		@SuppressWarnings("rawtypes")
+		private final Class<? extends Processor> processorClass;
+		/**
+		 * Gets instances of {@link #processorClass}, or null if there isn't a
+		 * processor.
+		 */
+		private final ProcessorFactory processorFactory;
+		/** Whether values are added to a {@link Collection} rather than set. */
+		private final boolean collection;
+		/** Whether values are collected into an array rather than set. */
+		private final boolean array;
+		/** The position of the field among the fields of the class. */
+		private final int index;
+		/**
+		 * The index of the {@link ValueBuffer} that parsers collect values of
+		 * the field in, or -1 if values are set straight on the field.
+		 */
+		private final int bufferIndex;
+		/** Whether values are parsed by a nested parser. */
+		private final boolean needsParser;
+		/**
+		 * The class of each value - the type of the field, or of the items in
+		 * the collection or array.
+		 */
+		private final Class<?> parsedClass;
+		/** Sets values on the field. */
+		private final FieldAccessor accessor;
+		/**
+		 * Converts and sets text values without boxing, or null if the field
+		 * isn't primitive.
+		 */
+		private final PrimitiveSetter primitiveSetter;
+		/**
+		 * The converter for text values if it can parse straight from the pull
+		 * parser's buffer, or null if values have to be read as Strings.
+		 */
+		private final CharSequenceParser<?> charConverter;
+
+		/**
+		 * Works out how a field is set.
+		 *
+		 * @param field
+		 *            The field.
+		 * @param generatedSetter
+		 *            The setter generated for the field, or null if it's set
+		 *            by reflection.
+		 * @param index
+		 *            The position of the field among the fields of the class.
+		 * @param nextBufferIndex
+		 *            The buffer index to use if the field's values are
+		 *            buffered.
+		 */
+		private FieldBinding(Field field, GeneratedBinder.Setter generatedSetter, int index, int nextBufferIndex) {
+			this.field = field;
+			this.index = index;
+			this.annotation = field.getAnnotation(XMLField.class);
+			this.processorClass = hasProcessor(annotation) ? annotation.processor() : null;
+			this.processorFactory = processorClass == null ? null : ProcessorFactory.forClass(processorClass);
+			this.collection = Collection.class.isAssignableFrom(field.getType());
+			this.array = isArrayField(field);
+			// Generated setters add to collections themselves, so only
+			// collections set by reflection are buffered.
+			this.bufferIndex = array || (collection && generatedSetter == null) ? nextBufferIndex : -1;
+			this.parsedClass = parsedClassOf(field);
+			this.converter = processorClass == null ? ConverterRegistry.getConverter(parsedClass) : null;
+			this.needsParser = needsParser(field);
+			this.accessor = FieldAccessor.forField(field, generatedSetter, getCapacity());
+			this.primitiveSetter = processorClass == null ? PrimitiveSetter.forField(field, converter) : null;
+			this.charConverter = processorClass == null && converter instanceof CharSequenceParser ? (CharSequenceParser<?>) converter
+					: null;
+		}
+
+		/**
+		 * Determines whether a field's {@link XMLField} annotation specifies a
+		 * processor.
+		 *
+		 * @param annotation
+		 *            The annotation on the field.
+		 * @return true if there's a processor.
+		 */
+		private static boolean hasProcessor(XMLField annotation) {
+			return !annotation.processor().equals(Processor.class);
+		}
+
+		/**
+		 * Determines whether a parser needs to be created for values of a
+		 * field - this is true if the field's type is not derived from a text
+		 * node or a list of types derived from text nodes and will not be
+		 * processed with a processor.
+		 *
+		 * @param field
+		 *            The {@link XMLField}-annotated field.
+		 * @return true if a parser is needed.
+		 */
+		static boolean needsParser(Field field) {
+			if (hasProcessor(field.getAnnotation(XMLField.class))) {
+				return false;
+			}
+
+			return !ConverterRegistry.canConvert(parsedClassOf(field));
+		}
+
+		/**
+		 * Gets the class of each value of a field - the type of the field, or
+		 * of the items if it's a {@link Collection} or an array.
+		 *
+		 * @param field
+		 *            The field.
+		 * @return The class of each value.
+		 */
+		static Class<?> parsedClassOf(Field field) {
+			if (Collection.class.isAssignableFrom(field.getType())) {
+				return getCollectionItemClass(field);
+			} else if (isArrayField(field)) {
+				return field.getType().getComponentType();
+			}
+
+			return field.getType();
+		}
+
+		/**
+		 * Determines whether a field's values are collected into an array -
+		 * this is true for array fields unless there's a converter for the
+		 * whole array (e.g. byte[], which is set from a single base64 value)
+		 * or a processor, which is expected to produce the whole array.
+		 *
+		 * @param field
+		 *            The field.
+		 * @return true if each value is an item of the array.
+		 */
+		private static boolean isArrayField(Field field) {
+			XMLField annotation = field.getAnnotation(XMLField.class);
+
+			return field.getType().isArray() && !ConverterRegistry.canConvert(field.getType())
+					&& (annotation == null || !hasProcessor(annotation));
+		}
+
+		/**
+		 * Gets the class of the items of a collection field.
+		 *
+		 * @param field
+		 *            The collection field.
+		 * @return The class of the items.
+		 */
+		private static Class<?> getCollectionItemClass(Field field) {
+			ParameterizedType paramType = (ParameterizedType) field.getGenericType();
+
+			return (Class<?>) paramType.getActualTypeArguments()[0];
+		}
+
+		/**
+		 * Gets the field.
+		 *
+		 * @return The field.
+		 */
+		Field getField() {
+			return field;
+		}
+
+		/**
+		 * Gets the converter for text values of the field.
+		 *
+		 * @return The converter, or null if the value should be set as a
+		 *         String.
+		 */
+		StringParser<?> getConverter() {
+			return converter;
+		}
+
+		/**
+		 * Gets the processor class of the field.
+		 *
+		 * @return The processor class, or null if the field doesn't have
+		 *         one.
+		 */
+		@SuppressWarnings("rawtypes")
+		Class<? extends Processor> getProcessorClass() {
+			return processorClass;
+		}
+
+		/**
+		 * Gets the setter used to convert and set text values on the field
+		 * without boxing them.
+		 *
+		 * @return The setter, or null if values should be converted with
+		 *         {@link #getConverter()} and set with {@link #getAccessor()}.
+		 */
+		PrimitiveSetter getPrimitiveSetter() {
+			return primitiveSetter;
+		}
+
+		/**
+		 * Gets the converter for text values of the field if it can parse
+		 * them without a String being created for them.
+		 *
+		 * @return The converter, or null if values should be converted from
+		 *         Strings with {@link #getConverter()}.
+		 */
+		CharSequenceParser<?> getCharConverter() {
+			return charConverter;
+		}
+
+		/**
+		 * Gets the factory for the processor of the field.
+		 *
+		 * @return The factory, or null if the field doesn't have a
+		 *         processor.
+		 */
+		ProcessorFactory getProcessorFactory() {
+			return processorFactory;
+		}
+
+		/**
+		 * Gets the {@link XMLField} annotation on the field.
+		 *
+		 * @return The annotation.
+		 */
+		XMLField getAnnotation() {
+			return annotation;
+		}
+
+		/**
+		 * Determines whether values are added to a collection rather than set.
+		 *
+		 * @return true if the field is a {@link Collection}.
+		 */
+		boolean isCollection() {
+			return collection;
+		}
+
+		/**
+		 * Determines whether values are collected into an array rather than
+		 * set.
+		 *
+		 * @return true if the field is an array of values.
+		 */
+		boolean isArray() {
+			return array;
+		}
+
+		/**
+		 * Gets the index of the {@link ValueBuffer} that values of the field
+		 * are collected in while parsing.
+		 *
+		 * @return The index, or -1 if values are set straight on the field.
+		 */
+		int getBufferIndex() {
+			return bufferIndex;
+		}
+
+		/**
+		 * Gets the position of the field among the {@link XMLField}-annotated
+		 * fields of the class, from 0 to {@link BindingPlan#getFieldCount()}
+		 * - 1.
+		 *
+		 * @return The index.
+		 */
+		int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Gets the number of values expected for the field, from
+		 * {@link XMLField#capacity()}.
+		 *
+		 * @return The expected number of values, or a default if the
+		 *         annotation doesn't give one.
+		 */
+		int getCapacity() {
+			return annotation.capacity() > 0 ? annotation.capacity() : DEFAULT_CAPACITY;
+		}
+
+		/**
+		 * Converts a text value with the field's converter, from the
+		 * {@link CharSequence} if the converter can and from a String
+		 * otherwise.
+		 *
+		 * @param text
+		 *            The text value.
+		 * @return The converted value - the text as a String if the field has
+		 *         no converter.
+		 * @throws XMLParsingException
+		 *             If the value can't be converted.
+		 */
+		Object convertText(CharSequence text) throws XMLParsingException {
+			if (charConverter != null) {
+				return charConverter.parse(text, annotation);
+			}
+
+			String value = text == null ? null : text.toString();
+
+			return converter == null ? value : converter.parse(value, annotation);
+		}
+
+		/**
+		 * Determines whether values of the field are parsed by a nested parser
+		 * rather than from a text node.
+		 *
+		 * @return true if a parser is needed.
+		 */
+		boolean needsParser() {
+			return needsParser;
+		}
+
+		/**
+		 * Gets the accessor used to set values on the field.
+		 *
+		 * @return The accessor.
+		 */
+		FieldAccessor getAccessor() {
+			return accessor;
+		}
+
+		/**
+		 * Gets the class that a nested parser for the field should parse.
+		 *
+		 * @return The type of the field, or of the items in the collection or array.
+		 */
+		Class<?> getParsedClass() {
+			return parsedClass;
+		}
+	}
+}
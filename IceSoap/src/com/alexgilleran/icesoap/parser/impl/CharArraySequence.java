@@ -0,0 +1,80 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+/**
+ * A reusable {@link CharSequence} view of a window of a char array - used by
+ * {@link XPathPullParserImpl} to hand out text values straight from the pull
+ * parser's buffer without copying them into a {@link String}.
+ *
+ * The view is only valid until it's pointed at another window, which happens
+ * as the parser moves on - call {@link #toString()} to keep the value.
+ *
+ * @author Alex Gilleran
+ *
+ */
+class CharArraySequence implements CharSequence {
+	/** The array being viewed. */
+	private char[] chars;
+	/** The index of the first char in the window. */
+	private int start;
+	/** The number of chars in the window. */
+	private int length;
+
+	/**
+	 * Points this view at a new window.
+	 *
+	 * @param chars
+	 *            The array to view.
+	 * @param start
+	 *            The index of the first char in the window.
+	 * @param length
+	 *            The number of chars in the window.
+	 */
+	void set(char[] chars, int start, int length) {
+		this.chars = chars;
+		this.start = start;
+		this.length = length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+		}
+
+		return chars[start + index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * As this view is reused, the subsequence is copied into a {@link String}.
+	 */
+	@Override
+	public CharSequence subSequence(int subStart, int subEnd) {
+		if (subStart < 0 || subEnd > length || subStart > subEnd) {
+			throw new IndexOutOfBoundsException("Subsequence " + subStart + "-" + subEnd + " out of range for length "
+					+ length);
+		}
+
+		return new String(chars, start + subStart, subEnd - subStart);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return new String(chars, start, length);
+	}
+}
@@ -0,0 +1,204 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+
+import com.alexgilleran.icesoap.exception.ClassDefException;
+import com.alexgilleran.icesoap.parser.GeneratedBinder;
+
+/**
+ * <p>
+ * Sets parsed values on a single {@link Field}. One of these is created for
+ * each bound field when its {@link BindingPlan} is built, so everything about
+ * how the field is set (whether it's accessible, whether values are added to
+ * a collection) is decided once rather than for every value.
+ * </p>
+ *
+ * <p>
+ * Accessors hold no state beyond the field, so they're shared by every parser
+ * that uses the plan.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+abstract class FieldAccessor {
+	/** The field being set. */
+	protected final Field field;
+
+	/**
+	 * Creates a new accessor.
+	 *
+	 * @param field
+	 *            The field to set.
+	 */
+	protected FieldAccessor(Field field) {
+		this.field = field;
+	}
+
+	/**
+	 * Gets the right accessor for a field - if there's a generated setter for
+	 * it, that's used, otherwise it's set by reflection. Values of
+	 * {@link Collection} fields are added to the collection, anything else
+	 * (including whole arrays) is set directly.
+	 *
+	 * @param field
+	 *            The field to create an accessor for.
+	 * @param generatedSetter
+	 *            The setter generated for the field, or null if there isn't
+	 *            one.
+	 * @param capacity
+	 *            The initial capacity of collections created for the field.
+	 * @return The accessor.
+	 */
+	static FieldAccessor forField(Field field, GeneratedBinder.Setter generatedSetter, int capacity) {
+		if (generatedSetter != null) {
+			return new GeneratedAccessor(field, generatedSetter);
+		}
+
+		// Only fields set by reflection need to be made accessible - this is
+		// done once here, rather than every time the field is set.
+		field.setAccessible(true);
+
+		if (Collection.class.isAssignableFrom(field.getType())) {
+			return new CollectionAppender(field, capacity);
+		}
+
+		return new ScalarSetter(field);
+	}
+
+	/**
+	 * Creates a new, empty collection that can be assigned to a field - an
+	 * {@link ArrayList} for lists, a {@link LinkedHashSet} (so that values
+	 * stay in document order) for sets, otherwise a new instance of the
+	 * field's own type.
+	 *
+	 * @param type
+	 *            The type of the collection field.
+	 * @param capacity
+	 *            The initial capacity of the collection, where it has one.
+	 * @return The new collection.
+	 */
+	@SuppressWarnings("unchecked")
+	static Collection<Object> newCollection(Class<?> type, int capacity) {
+		if (type.isAssignableFrom(ArrayList.class)) {
+			return new ArrayList<Object>(capacity);
+		} else if (type.isAssignableFrom(LinkedHashSet.class)) {
+			return new LinkedHashSet<Object>(capacity * 4 / 3 + 1);
+		}
+
+		try {
+			return (Collection<Object>) type.newInstance();
+		} catch (InstantiationException e) {
+			throw new ClassDefException("Could not instantiate collection of type " + type.getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new ClassDefException("Could not instantiate collection of type " + type.getName(), e);
+		}
+	}
+
+	/**
+	 * Sets a value on an object.
+	 *
+	 * @param target
+	 *            The object to set the value on.
+	 * @param value
+	 *            The value to set.
+	 */
+	final void set(Object target, Object value) {
+		try {
+			doSet(target, value);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Does the work of {@link #set(Object, Object)}.
+	 *
+	 * @param target
+	 *            The object to set the value on.
+	 * @param value
+	 *            The value to set.
+	 * @throws IllegalAccessException
+	 *             If the field can't be set.
+	 */
+	protected abstract void doSet(Object target, Object value) throws IllegalAccessException;
+
+	/**
+	 * Sets the value of the field directly.
+	 */
+	private static final class ScalarSetter extends FieldAccessor {
+		/**
+		 * @param field
+		 *            The field to set.
+		 */
+		private ScalarSetter(Field field) {
+			super(field);
+		}
+
+		@Override
+		protected void doSet(Object target, Object value) throws IllegalAccessException {
+			field.set(target, value);
+		}
+	}
+
+	/**
+	 * Adds each value to the collection in the field, creating the collection
+	 * if the field is null.
+	 */
+	private static final class CollectionAppender extends FieldAccessor {
+		/** The initial capacity of new collections. */
+		private final int capacity;
+
+		/**
+		 * @param field
+		 *            The collection field to add to.
+		 * @param capacity
+		 *            The initial capacity of new collections.
+		 */
+		private CollectionAppender(Field field, int capacity) {
+			super(field);
+			this.capacity = capacity;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected void doSet(Object target, Object value) throws IllegalAccessException {
+			Collection<Object> collection = (Collection<Object>) field.get(target);
+
+			if (collection == null) {
+				collection = newCollection(field.getType(), capacity);
+				field.set(target, collection);
+			}
+
+			collection.add(value);
+		}
+	}
+
+	/**
+	 * Sets the field with a setter generated by the annotation processor.
+	 */
+	private static final class GeneratedAccessor extends FieldAccessor {
+		/** The generated setter. */
+		private final GeneratedBinder.Setter setter;
+
+		/**
+		 * @param field
+		 *            The field to set.
+		 * @param setter
+		 *            The generated setter for the field.
+		 */
+		private GeneratedAccessor(Field field, GeneratedBinder.Setter setter) {
+			super(field);
+			this.setter = setter;
+		}
+
+		@Override
+		protected void doSet(Object target, Object value) {
+			setter.set(target, value);
+		}
+	}
+}
@@ -0,0 +1,634 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.IceSoapCompositeParser;
+import com.alexgilleran.icesoap.parser.ParseResults;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.XmlPullBackend;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * Implementation of {@link IceSoapCompositeParser}.
+ * </p>
+ *
+ * <p>
+ * Every target has an {@link IceSoapParserImpl} for its class, and keeps track
+ * of where the document is relative to the class' root xpath while it's
+ * waiting for an element to parse. The document is read with one
+ * {@link XPathPullParser}, and when a start tag matches a waiting target, that
+ * target's parser is run on the element - it's passed a parser that reads from
+ * the same one, but checks the other waiting targets on every start tag it
+ * reads, so that a target inside another is parsed along the way. Elements are
+ * only skipped when none of the waiting targets could be inside them.
+ * </p>
+ *
+ * <p>
+ * Once every target that parses a single object has been parsed, and there are
+ * no list targets, the rest of the document isn't read at all.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+public class IceSoapCompositeParserImpl implements IceSoapCompositeParser {
+	/** The targets to parse, in the order they were added. */
+	private final List<Target<?>> targets = new ArrayList<Target<?>>();
+	/**
+	 * Whether the {@link XPathPullParser} used should reuse its xpath elements
+	 * - see {@link BaseIceSoapParserImpl#setReuseXPathElements(boolean)}.
+	 */
+	private boolean reuseXPathElements = false;
+	/** Creates the tokenizers that read the XML passed to this parser. */
+	private TokenizerBackend tokenizerBackend = XmlPullBackend.getDefault();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> void addTarget(Class<T> targetClass) {
+		checkNotAdded(targetClass, ObjectTarget.class);
+		targets.add(new ObjectTarget<T>(targetClass));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> void addListTarget(Class<T> itemClass) {
+		checkNotAdded(itemClass, ListTarget.class);
+		targets.add(new ListTarget<T>(itemClass));
+	}
+
+	/**
+	 * Checks that a class hasn't already been added as the same kind of
+	 * target - the results are kept by class, so two targets would overwrite
+	 * each other's.
+	 *
+	 * @param targetClass
+	 *            The class.
+	 * @param targetType
+	 *            The kind of target.
+	 * @throws IllegalArgumentException
+	 *             If it has been added.
+	 */
+	@SuppressWarnings("rawtypes")
+	private void checkNotAdded(Class<?> targetClass, Class<? extends Target> targetType) {
+		for (Target<?> target : targets) {
+			if (target.targetClass == targetClass && targetType.isInstance(target)) {
+				throw new IllegalArgumentException(targetClass.getName() + " has already been added");
+			}
+		}
+	}
+
+	/**
+	 * Sets whether the {@link XPathPullParser} used should reuse its xpath
+	 * elements - see
+	 * {@link BaseIceSoapParserImpl#setReuseXPathElements(boolean)}.
+	 *
+	 * @param reuseXPathElements
+	 *            Whether to reuse xpath elements.
+	 */
+	public void setReuseXPathElements(boolean reuseXPathElements) {
+		this.reuseXPathElements = reuseXPathElements;
+	}
+
+	/**
+	 * Sets the backend that reads the XML passed to this parser - defaults to
+	 * {@link XmlPullBackend}.
+	 *
+	 * @param tokenizerBackend
+	 *            The backend - null to go back to the default.
+	 */
+	public void setTokenizerBackend(TokenizerBackend tokenizerBackend) {
+		this.tokenizerBackend = tokenizerBackend == null ? XmlPullBackend.getDefault() : tokenizerBackend;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ParseResults parse(InputStream inputStream) throws XMLParsingException {
+		return parse(inputStream, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Objects already in the results are parsed into, and list items are added
+	 * to the lists already there.
+	 */
+	@Override
+	public ParseResults parse(InputStream inputStream, ParseResults results) throws XMLParsingException {
+		if (results == null) {
+			results = new ParseResults();
+		}
+
+		XPathPullParserImpl parser = new XPathPullParserImpl(reuseXPathElements, tokenizerBackend.newTokenizer());
+		parser.setCapturedPredicates(getPredicateNames());
+
+		try {
+			parser.setInput(inputStream, null);
+		} catch (XmlPullParserException e) {
+			throw new XMLParsingException(e);
+		}
+
+		for (Target<?> target : targets) {
+			target.reset(results);
+		}
+
+		new DispatchingPullParser(parser, results).parseDocument();
+
+		return results;
+	}
+
+	/**
+	 * Gets the names of the attributes tested by predicates in the xpaths of
+	 * any target.
+	 *
+	 * @return The names, or null if every attribute should be captured.
+	 */
+	private Set<String> getPredicateNames() {
+		Set<String> names = new HashSet<String>();
+
+		for (Target<?> target : targets) {
+			Set<String> targetNames = target.parser.getPredicateNames();
+
+			if (targetNames == null) {
+				return null;
+			}
+
+			names.addAll(targetNames);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Something to parse out of the document.
+	 *
+	 * @param <T>
+	 *            The class to parse.
+	 */
+	private abstract static class Target<T> {
+		/** The class to parse. */
+		protected final Class<T> targetClass;
+		/** The parser for the class. */
+		protected final IceSoapParserImpl<T> parser;
+		/** Tracks the position of the document relative to the root xpaths. */
+		private final XPathAutomaton<XPathElement>.Cursor rootCursor;
+		/** Whether an element is being parsed for this target right now. */
+		private boolean active;
+
+		/**
+		 * Creates a new target.
+		 *
+		 * @param targetClass
+		 *            The class to parse.
+		 */
+		Target(Class<T> targetClass) {
+			this.targetClass = targetClass;
+			this.parser = new IceSoapParserImpl<T>(targetClass);
+			this.rootCursor = parser.getRootXPaths().compile().newCursor();
+		}
+
+		/**
+		 * Gets ready for a new document.
+		 *
+		 * @param results
+		 *            The results the document will be parsed into.
+		 */
+		void reset(ParseResults results) {
+			rootCursor.reset();
+			active = false;
+		}
+
+		/**
+		 * Determines whether this target is waiting for an element to parse.
+		 *
+		 * @return true if it is.
+		 */
+		boolean isWaiting() {
+			return !active && !isDone();
+		}
+
+		/**
+		 * Determines whether this target doesn't need anything more from the
+		 * document.
+		 *
+		 * @return true if it doesn't.
+		 */
+		abstract boolean isDone();
+
+		/**
+		 * Moves into a new element.
+		 *
+		 * @param element
+		 *            The element.
+		 * @param depth
+		 *            Its depth.
+		 * @return true if this target should be parsed from the element.
+		 */
+		boolean enter(XPathElement element, int depth) {
+			return rootCursor.enter(element, depth) != null;
+		}
+
+		/**
+		 * Determines whether this target can't be inside the element most
+		 * recently entered.
+		 *
+		 * @return true if it can't.
+		 */
+		boolean isExhausted() {
+			return rootCursor.isExhausted();
+		}
+
+		/**
+		 * Parses the element the pull parser is at the start of.
+		 *
+		 * @param pullParser
+		 *            The pull parser.
+		 * @param results
+		 *            The results to put the parsed object in.
+		 * @throws XMLParsingException
+		 *             If the XML is invalid.
+		 */
+		void parse(XPathPullParser pullParser, ParseResults results) throws XMLParsingException {
+			active = true;
+
+			try {
+				parseElement(pullParser, results);
+			} finally {
+				active = false;
+			}
+		}
+
+		/**
+		 * Parses the element the pull parser is at the start of.
+		 *
+		 * @param pullParser
+		 *            The pull parser.
+		 * @param results
+		 *            The results to put the parsed object in.
+		 * @throws XMLParsingException
+		 *             If the XML is invalid.
+		 */
+		protected abstract void parseElement(XPathPullParser pullParser, ParseResults results)
+				throws XMLParsingException;
+	}
+
+	/**
+	 * A target that parses a single object, from the first element it matches.
+	 *
+	 * @param <T>
+	 *            The class to parse.
+	 */
+	private static final class ObjectTarget<T> extends Target<T> {
+		/** Whether the object has been parsed. */
+		private boolean done;
+
+		/**
+		 * Creates a new target.
+		 *
+		 * @param targetClass
+		 *            The class to parse.
+		 */
+		ObjectTarget(Class<T> targetClass) {
+			super(targetClass);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		void reset(ParseResults results) {
+			super.reset(results);
+			done = false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void parseElement(XPathPullParser pullParser, ParseResults results) throws XMLParsingException {
+			T object = parser.parse(pullParser, results.get(targetClass));
+
+			if (object != null) {
+				results.put(targetClass, object);
+			}
+
+			done = true;
+		}
+	}
+
+	/**
+	 * A target that parses an item from every element it matches.
+	 *
+	 * @param <T>
+	 *            The class of the items.
+	 */
+	private static final class ListTarget<T> extends Target<T> {
+		/**
+		 * Creates a new target.
+		 *
+		 * @param itemClass
+		 *            The class of the items.
+		 */
+		ListTarget(Class<T> itemClass) {
+			super(itemClass);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * The results get a list for the items if they don't have one yet, so
+		 * it's there even if no items are found.
+		 */
+		@Override
+		void reset(ParseResults results) {
+			super.reset(results);
+
+			if (results.getList(targetClass) == null) {
+				results.putList(targetClass, new ArrayList<T>());
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * There could always be another item, so this is never true.
+		 */
+		@Override
+		boolean isDone() {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void parseElement(XPathPullParser pullParser, ParseResults results) throws XMLParsingException {
+			// Same as IceSoapListParserImpl - the nil check has to come before
+			// the parser moves past the start tag
+			boolean isXsiNil = pullParser.isCurrentValueXsiNil();
+			T item = parser.parse(pullParser);
+
+			if (isXsiNil) {
+				item = null;
+			}
+
+			if (item != null || isXsiNil) {
+				results.getList(targetClass).add(item);
+			}
+		}
+	}
+
+	/**
+	 * Reads the document for all the targets. This is passed to the parsers
+	 * of the targets in place of the underlying {@link XPathPullParser}, so
+	 * that every start tag is checked against the waiting targets no matter
+	 * which parser is reading.
+	 */
+	private final class DispatchingPullParser implements XPathPullParser {
+		/** The parser reading the document. */
+		private final XPathPullParser source;
+		/** The results to put parsed objects in. */
+		private final ParseResults results;
+
+		/**
+		 * Creates a new parser.
+		 *
+		 * @param source
+		 *            The parser reading the document.
+		 * @param results
+		 *            The results to put parsed objects in.
+		 */
+		DispatchingPullParser(XPathPullParser source, ParseResults results) {
+			this.source = source;
+			this.results = results;
+		}
+
+		/**
+		 * Reads through the document until every target is done, or it ends.
+		 *
+		 * @throws XMLParsingException
+		 *             If the XML is invalid.
+		 */
+		void parseDocument() throws XMLParsingException {
+			try {
+				while (source.getEventType() != END_DOCUMENT && !isComplete()) {
+					if (next() == START_TAG && isExhausted()) {
+						skipElement();
+					}
+				}
+			} catch (XmlPullParserException e) {
+				throw new XMLParsingException(e);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * If the next event is the start of an element that a waiting target
+		 * matches, the element is parsed for that target, and this returns
+		 * the end tag of the element instead.
+		 */
+		@Override
+		public int next() throws XMLParsingException {
+			int eventType = source.next();
+
+			if (eventType == START_TAG) {
+				Target<?> target = enter(source.getCurrentElement(), source.getDepth());
+
+				if (target != null) {
+					int depth = source.getDepth();
+
+					target.parse(this, results);
+
+					// If the target finished early, read the rest of the
+					// element - other targets could still be inside it
+					moveToEndTag(depth);
+					eventType = END_TAG;
+				}
+			}
+
+			return eventType;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * If a waiting target could be inside the element, it's read rather
+		 * than skipped.
+		 */
+		@Override
+		public void skipElement() throws XMLParsingException {
+			if (isExhausted()) {
+				source.skipElement();
+			} else {
+				moveToEndTag(source.getDepth());
+			}
+		}
+
+		/**
+		 * Moves every waiting target into a new element.
+		 *
+		 * @param element
+		 *            The element.
+		 * @param depth
+		 *            Its depth.
+		 * @return The first target to be parsed from the element, or null if
+		 *         none match it.
+		 */
+		private Target<?> enter(XPathElement element, int depth) {
+			Target<?> matched = null;
+
+			for (Target<?> target : targets) {
+				// Every waiting target has to enter the element, even once one
+				// has matched, to keep track of the position.
+				if (target.isWaiting() && target.enter(element, depth) && matched == null) {
+					matched = target;
+				}
+			}
+
+			return matched;
+		}
+
+		/**
+		 * Determines whether none of the waiting targets could be inside the
+		 * element most recently entered.
+		 *
+		 * @return true if none could be.
+		 */
+		private boolean isExhausted() {
+			for (Target<?> target : targets) {
+				if (target.isWaiting() && !target.isExhausted()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Determines whether every target is done.
+		 *
+		 * @return true if they are.
+		 */
+		private boolean isComplete() {
+			for (Target<?> target : targets) {
+				if (!target.isDone()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Reads up to the end tag of the element at a depth.
+		 *
+		 * @param depth
+		 *            The depth of the element.
+		 * @throws XMLParsingException
+		 *             If the XML is invalid, or the document ends before the
+		 *             element does.
+		 */
+		private void moveToEndTag(int depth) throws XMLParsingException {
+			try {
+				while (source.getEventType() != END_TAG || source.getDepth() != depth) {
+					if (source.getEventType() == END_DOCUMENT) {
+						throw new XMLParsingException("Document ended before the element being parsed did");
+					}
+
+					next();
+				}
+			} catch (XmlPullParserException e) {
+				throw new XMLParsingException(e);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getCurrentValue() {
+			return source.getCurrentValue();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public CharSequence getCurrentValueChars() {
+			return source.getCurrentValueChars();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public XPathElement getCurrentElement() {
+			return source.getCurrentElement();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getDepth() {
+			return source.getDepth();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getEventType() throws XmlPullParserException {
+			return source.getEventType();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+			throw new UnsupportedOperationException("The input is set by "
+					+ IceSoapCompositeParserImpl.class.getSimpleName());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setCapturedPredicates(Set<String> attributeNames) {
+			throw new UnsupportedOperationException("Predicates are set by "
+					+ IceSoapCompositeParserImpl.class.getSimpleName());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isCurrentValueXsiNil() {
+			return source.isCurrentValueXsiNil();
+		}
+	}
+}
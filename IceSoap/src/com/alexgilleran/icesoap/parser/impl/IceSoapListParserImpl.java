@@ -1,15 +1,25 @@
 package com.alexgilleran.icesoap.parser.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapListParser;
+import com.alexgilleran.icesoap.parser.InstanceFactory;
 import com.alexgilleran.icesoap.parser.ItemObserver;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
@@ -23,6 +33,9 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
  */
 public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<List<ListItemType>> implements
 		IceSoapListParser<ListItemType> {
+	/** The default for {@link #setItemsPerChunk(int)}. */
+	public static final int DEFAULT_ITEMS_PER_CHUNK = 256;
+
 	/**
 	 * The parser to use for parsing individual items in the list. This is
 	 * programmed to the implementation so it can use the
@@ -32,8 +45,20 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 	private BaseIceSoapParserImpl<ListItemType> parser;
 	/** The XPath of the list items within the XML document */
 	private XPathRepository<XPathElement> objectXPaths;
+	/**
+	 * Tracks the position of the parser relative to {@link #objectXPaths} -
+	 * null if there are no object xpaths.
+	 */
+	private XPathAutomaton<XPathElement>.Cursor objectCursor;
 	/** A set of observers to notify of new items as they're parsed. */
 	private Set<ItemObserver<ListItemType>> observers = new HashSet<ItemObserver<ListItemType>>();
+	/**
+	 * Parses chunks of the list in parallel - null to parse on the calling
+	 * thread.
+	 */
+	private ExecutorService executor;
+	/** The most items in each chunk parsed in parallel. */
+	private int itemsPerChunk = DEFAULT_ITEMS_PER_CHUNK;
 
 	/**
 	 * Instantiates a new list parser.
@@ -78,9 +103,71 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 
 		objectXPaths = super.retrieveRootXPaths(clazz);
 
+		if (objectXPaths != null) {
+			objectCursor = objectXPaths.compile().newCursor();
+		}
+
+		this.parser = parser;
+	}
+
+	/**
+	 * Instantiates a new list parser for parsing one chunk of a list on its own
+	 * thread, with a copy of the item parser of the list parser doing the
+	 * splitting.
+	 * 
+	 * @param parser
+	 *            The parser to use for the items.
+	 */
+	private IceSoapListParserImpl(IceSoapParserImpl<ListItemType> parser) {
+		super(parser.getRootXPaths(), parser.getRootAutomaton());
+
 		this.parser = parser;
 	}
 
+	/**
+	 * <p>
+	 * Sets an executor to parse the list in parallel with. Rather than
+	 * parsing items as it reads them, the parser reads the whole document in,
+	 * splits it into chunks of up to {@link #setItemsPerChunk(int)} items with
+	 * a quick scan of the markup, and passes each chunk to the executor to be
+	 * parsed by its own copy of the item parser. The items are put in the list
+	 * in the same order as they were in the document, and observers are
+	 * notified on the calling thread as each chunk finishes, also in order.
+	 * </p>
+	 * 
+	 * <p>
+	 * This is only worth it for lists big enough that parsing the items takes
+	 * longer than reading the document in - and as the whole document is held
+	 * in memory, it's not meant for ones too big for that. It only applies to
+	 * parsers created with {@link #IceSoapListParserImpl(Class)}, and only to
+	 * UTF-8 documents without a DTD - anything else is parsed on the calling
+	 * thread as usual. The executor isn't shut down by the parser.
+	 * </p>
+	 * 
+	 * @param executor
+	 *            The executor, or null to parse on the calling thread (the
+	 *            default).
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the most items in each chunk parsed in parallel - see
+	 * {@link #setExecutor(ExecutorService)}. Defaults to
+	 * {@link #DEFAULT_ITEMS_PER_CHUNK}.
+	 * 
+	 * @param itemsPerChunk
+	 *            The most items in a chunk.
+	 */
+	public void setItemsPerChunk(int itemsPerChunk) {
+		if (itemsPerChunk < 1) {
+			throw new IllegalArgumentException("There must be at least one item per chunk");
+		}
+
+		this.itemsPerChunk = itemsPerChunk;
+	}
+
 	/**
 	 * Registers an observer. This observer will be called every time a new item
 	 * is parsed.
@@ -102,6 +189,32 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		observers.remove(observer);
 	}
 
+	/**
+	 * Sets the factory used to create objects of a class, in place of its
+	 * zero-arg constructor - see
+	 * {@link IceSoapParserImpl#setInstanceFactory(Class, InstanceFactory)}.
+	 * This applies to the items of the list and any objects parsed inside
+	 * them.
+	 * 
+	 * @param <T>
+	 *            The class of the objects created.
+	 * @param type
+	 *            The class.
+	 * @param factory
+	 *            The factory, or null to go back to using the constructor.
+	 * @throws UnsupportedOperationException
+	 *             If the parser used for items isn't an
+	 *             {@link IceSoapParserImpl}.
+	 */
+	public <T> void setInstanceFactory(Class<T> type, InstanceFactory<? extends T> factory) {
+		if (!(parser instanceof IceSoapParserImpl)) {
+			throw new UnsupportedOperationException("Instance factories can only be set on an "
+					+ IceSoapParserImpl.class.getSimpleName());
+		}
+
+		((IceSoapParserImpl<ListItemType>) parser).setInstanceFactory(type, factory);
+	}
+
 	/**
 	 * Notifies the observers of this parser that a new item has been completely
 	 * parsed.
@@ -115,6 +228,101 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * If an executor has been set with {@link #setExecutor(ExecutorService)},
+	 * the items are parsed in parallel.
+	 */
+	@Override
+	public List<ListItemType> parse(InputStream inputStream, List<ListItemType> target) throws XMLParsingException {
+		if (executor == null || objectCursor != null || !(parser instanceof IceSoapParserImpl)) {
+			return super.parse(inputStream, target);
+		}
+
+		byte[] document = readFully(inputStream);
+		IceSoapParserImpl<ListItemType> itemParser = (IceSoapParserImpl<ListItemType>) parser;
+		ItemBoundaryScanner scanner = new ItemBoundaryScanner(document, itemParser.getRootAutomaton().newCursor(),
+				getPredicateNames(), itemsPerChunk);
+
+		if (!scanner.start()) {
+			return super.parse(new ByteArrayInputStream(document), target);
+		}
+
+		List<Future<List<ListItemType>>> chunks = new ArrayList<Future<List<ListItemType>>>();
+		boolean finished = false;
+
+		try {
+			// Every chunk is passed on as soon as it's found, so the first
+			// ones are being parsed while the rest are still being looked for
+			byte[] chunk;
+			while ((chunk = scanner.nextChunk()) != null) {
+				chunks.add(executor.submit(new ChunkTask(itemParser, chunk)));
+			}
+
+			for (Future<List<ListItemType>> future : chunks) {
+				for (ListItemType item : future.get()) {
+					if (target == null) {
+						// Only create the list once there's something in it,
+						// like the sequential parse does
+						target = initializeParsedObject();
+					}
+
+					target.add(item);
+					notifyObservers(item);
+				}
+			}
+
+			finished = true;
+
+			return target;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new XMLParsingException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new XMLParsingException(cause);
+		} finally {
+			if (!finished) {
+				for (Future<List<ListItemType>> future : chunks) {
+					future.cancel(true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads everything from a stream.
+	 * 
+	 * @param inputStream
+	 *            The stream.
+	 * @return Its contents.
+	 * @throws XMLParsingException
+	 *             If the stream can't be read from.
+	 */
+	private static byte[] readFully(InputStream inputStream) throws XMLParsingException {
+		ByteArrayOutputStream contents = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+
+		try {
+			int read;
+			while ((read = inputStream.read(buffer)) != -1) {
+				contents.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new XMLParsingException(e);
+		}
+
+		return contents.toByteArray();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -123,13 +331,51 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		return new ArrayList<ListItemType>();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Adds the names from the xpaths of the list items and from the parser
+	 * used for them.
+	 */
+	@Override
+	protected void addPredicateNames(Set<String> names, Set<Class<?>> visitedClasses) {
+		super.addPredicateNames(names, visitedClasses);
+
+		if (objectXPaths != null) {
+			addPredicateNames(objectXPaths.keySet(), names);
+		}
+
+		parser.addPredicateNames(names, visitedClasses);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void onParseStart() {
+		if (objectCursor != null) {
+			objectCursor.reset();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This is true when the list items can't be inside the element.
+	 */
+	@Override
+	protected boolean isCurrentElementExhausted() {
+		return objectCursor != null && objectCursor.isExhausted();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	protected List<ListItemType> onNewTag(XPathPullParser xmlPullParser, List<ListItemType> listSoFar)
 			throws XMLParsingException {
-		if ((objectXPaths == null || objectXPaths.contains(xmlPullParser.getCurrentElement()))) {
+		if (objectCursor == null
+				|| objectCursor.enter(xmlPullParser.getCurrentElement(), xmlPullParser.getDepth()) != null) {
 			// Figure out if the element is XSI nil before the parser skips past
 			// the relevant markup in the XML
 			boolean isXsiNil = xmlPullParser.isCurrentValueXsiNil();
@@ -162,4 +408,40 @@ public class IceSoapListParserImpl<ListItemType> extends BaseIceSoapParserImpl<L
 		// least for now).
 		return objectToModify;
 	}
+
+	/**
+	 * Parses one chunk of the list, with its own parsers.
+	 */
+	private final class ChunkTask implements Callable<List<ListItemType>> {
+		/** The parser to copy for the items. */
+		private final IceSoapParserImpl<ListItemType> itemParser;
+		/** The chunk, as a document of its own. */
+		private final byte[] chunk;
+
+		/**
+		 * Creates a new task.
+		 * 
+		 * @param itemParser
+		 *            The parser to copy for the items.
+		 * @param chunk
+		 *            The chunk, as a document of its own.
+		 */
+		ChunkTask(IceSoapParserImpl<ListItemType> itemParser, byte[] chunk) {
+			this.itemParser = itemParser;
+			this.chunk = chunk;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public List<ListItemType> call() throws XMLParsingException {
+			IceSoapListParserImpl<ListItemType> chunkParser = new IceSoapListParserImpl<ListItemType>(
+					itemParser.copy());
+			chunkParser.setTokenizerBackend(getTokenizerBackend());
+			chunkParser.setReuseXPathElements(isReuseXPathElements());
+
+			return chunkParser.parse(new ByteArrayInputStream(chunk));
+		}
+	}
 }
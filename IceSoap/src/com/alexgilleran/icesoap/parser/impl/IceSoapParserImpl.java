@@ -1,13 +1,12 @@
 package com.alexgilleran.icesoap.parser.impl;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -19,17 +18,12 @@ import com.alexgilleran.icesoap.annotation.XMLObject;
 import com.alexgilleran.icesoap.exception.ClassDefException;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.InstanceFactory;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.BigDecimalParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.BooleanParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.CharacterParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.DateParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.DoubleParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.FloatParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.IntegerParser;
-import com.alexgilleran.icesoap.parser.impl.stringparsers.LongParser;
 import com.alexgilleran.icesoap.parser.impl.stringparsers.StringParser;
 import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
 import com.alexgilleran.icesoap.xpath.XPathRepository;
 import com.alexgilleran.icesoap.xpath.XPathRepository.XPathRecord;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
@@ -52,11 +46,12 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
  * exception is thrown.</li> <li>For complex types annotated by
  * {@link XMLObject}, it will instantiate another parser to parse an instance of
  * this object, then set the instance to that field and continue parsing.</li>
- * <li>If the field is a {@link List}, every time an element is encountered that
- * matches the XPath specified in the {@link List} field's {@link XMLField}
- * annotation, it will parse that object and add it to the list. This will work
- * even if there's elements in between. Note that this is different to how it
- * used to work in 1.0.4 and previous.
+ * <li>If the field is a {@link List}, {@link Set} or array, every time an
+ * element is encountered that matches the XPath specified in the field's
+ * {@link XMLField} annotation, it will parse that object and add it to the
+ * field. This will work even if there's elements in between. Note that this is
+ * different to how it used to work in 1.0.4 and previous. Array values are
+ * collected in a buffer and set on the field once the object has been parsed.
  * 
  * @author Alex Gilleran
  * 
@@ -70,43 +65,58 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	private static final int PRIMITIVE_NULL_NUMBER = 0;
 
 	/**
-	 * An {@link XPathRepository} that maps xpaths to the fields represented by
-	 * them.
+	 * Everything worked out about the target class before parsing - shared
+	 * with every other parser for the same class and root xpaths.
 	 */
-	private XPathRepository<Field> fieldXPaths;
+	private final BindingPlan<ReturnType> plan;
+	/** Tracks the position of the parser relative to the field xpaths. */
+	private XPathAutomaton<Field>.Cursor fieldCursor;
 
 	/**
 	 * The class of ReturnType.
 	 */
 	private Class<ReturnType> targetClass;
 
-	private static final Map<Type, StringParser<?>> parserMap = new HashMap<Type, StringParser<?>>();
-	static {
-		StringParser<Integer> integerParser = new IntegerParser();
-		StringParser<Boolean> booleanParser = new BooleanParser();
-		StringParser<Date> dateParser = new DateParser();
-		StringParser<Character> characterParser = new CharacterParser();
-		StringParser<Double> doubleParser = new DoubleParser();
-		StringParser<Float> floatParser = new FloatParser();
-		StringParser<Long> longParser = new LongParser();
-		StringParser<BigDecimal> bigDecimalParser = new BigDecimalParser();
-
-		parserMap.put(Integer.class, integerParser);
-		parserMap.put(int.class, integerParser);
-		parserMap.put(boolean.class, booleanParser);
-		parserMap.put(Boolean.class, booleanParser);
-		parserMap.put(Date.class, dateParser);
-		parserMap.put(Character.class, characterParser);
-		parserMap.put(char.class, characterParser);
-		parserMap.put(double.class, doubleParser);
-		parserMap.put(Double.class, doubleParser);
-		parserMap.put(Long.class, longParser);
-		parserMap.put(long.class, longParser);
-		parserMap.put(Float.class, floatParser);
-		parserMap.put(float.class, floatParser);
-		parserMap.put(BigDecimal.class, bigDecimalParser);
-		parserMap.put(String.class, null);
-	}
+	/**
+	 * Processors with {@link ProcessorScope.Scope#PARSE} that have been
+	 * created for the current parse, against their class. This is shared with
+	 * the parsers this parser creates for nested objects, so that there's
+	 * only one of each for the whole document.
+	 */
+	private Map<Class<?>, Processor<?>> parseProcessors = new HashMap<Class<?>, Processor<?>>();
+	/**
+	 * Whether this parser is the one that {@link #parseProcessors} belongs to
+	 * (rather than a nested parser sharing it) and should clear it at the start
+	 * of each parse.
+	 */
+	private boolean ownsParseProcessors = true;
+	/**
+	 * Factories set with {@link #setInstanceFactory(Class, InstanceFactory)},
+	 * against the class they create. Like {@link #parseProcessors}, this is
+	 * shared with the parsers this parser creates for nested objects.
+	 */
+	private Map<Class<?>, InstanceFactory<?>> instanceFactories = new HashMap<Class<?>, InstanceFactory<?>>();
+
+	/**
+	 * Collects the values of array and collection fields during a parse,
+	 * indexed by {@link BindingPlan.FieldBinding#getBufferIndex()} - each is
+	 * created the first time its field gets a value.
+	 */
+	private final ValueBuffer[] buffers;
+
+	/**
+	 * Whether to stop parsing as soon as every field has been set - see
+	 * {@link #setStopWhenFieldsSet(boolean)}.
+	 */
+	private boolean stopWhenFieldsSet = false;
+	/**
+	 * Which fields have been set in the current parse, by
+	 * {@link BindingPlan.FieldBinding#getIndex()} - null if the parse isn't
+	 * going to stop when they're all set.
+	 */
+	private boolean[] fieldsSet;
+	/** The number of fields that haven't been set in the current parse. */
+	private int fieldsUnset;
 
 	/** Maintains a cache of instantiated parsers for reuse **/
 	private HashMap<XPathElement, BaseIceSoapParserImpl<?>> parserCache = new HashMap<XPathElement, BaseIceSoapParserImpl<?>>();
@@ -119,7 +129,7 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 *            zero-arg constructor
 	 */
 	public IceSoapParserImpl(Class<ReturnType> targetClass) {
-		this(targetClass, retrieveRootXPaths(targetClass));
+		this(BindingPlan.forClass(targetClass));
 	}
 
 	/**
@@ -154,129 +164,131 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 *            until it finds the end, then finish.
 	 */
 	public IceSoapParserImpl(Class<ReturnType> targetClass, XPathRepository<XPathElement> rootXPaths) {
-		super(rootXPaths);
-		this.targetClass = targetClass;
-
-		fieldXPaths = getFieldXPaths(targetClass);
+		this(BindingPlan.forClass(targetClass, rootXPaths));
 	}
 
 	/**
-	 * Gets the xpaths declared with the {@link XMLField} annotation on a class.
+	 * Instantiates a new parser from a plan - the field xpaths and everything
+	 * else that's worked out by reflection come from the plan, so this does no
+	 * reflection or xpath compilation itself.
 	 * 
-	 * @param targetClass
-	 *            The class to get xpaths for.
-	 * @return An {@link XPathRepository} linking xpaths to fields.
+	 * @param plan
+	 *            The plan for the class to parse.
 	 */
-	private XPathRepository<Field> getFieldXPaths(Class<ReturnType> targetClass) {
-		XPathRepository<Field> fieldXPaths = new XPathRepository<Field>();
+	private IceSoapParserImpl(BindingPlan<ReturnType> plan) {
+		super(plan.getRootXPaths(), plan.getRootAutomaton());
+		this.plan = plan;
+		this.targetClass = plan.getTargetClass();
 
-		Class<?> currentClass = targetClass;
+		fieldCursor = plan.getFieldAutomaton().newCursor();
+		buffers = new ValueBuffer[plan.getBufferCount()];
+	}
 
-		while (!currentClass.equals(Object.class)) {
-			addXPathFieldsToRepo(currentClass, fieldXPaths);
-			currentClass = currentClass.getSuperclass();
-		}
+	/**
+	 * Creates a new parser for the same class and root xpaths that uses the
+	 * same instance factories - parsers can't be shared between threads, so
+	 * this is used to get one for each thread.
+	 * 
+	 * @return The new parser.
+	 */
+	IceSoapParserImpl<ReturnType> copy() {
+		IceSoapParserImpl<ReturnType> copy = new IceSoapParserImpl<ReturnType>(plan);
+		copy.instanceFactories = instanceFactories;
+		copy.stopWhenFieldsSet = stopWhenFieldsSet;
 
-		return fieldXPaths;
+		return copy;
 	}
 
 	/**
-	 * Adds the fields from the specified class to the passed
-	 * {@link XPathRepository}, with the XPaths specified in the
-	 * {@link XMLField} annotations.
+	 * Gets the compiled form of the root xpaths, which can be shared between
+	 * parsers and threads.
 	 * 
-	 * @param targetClass
-	 *            The class to draw fields from
-	 * @param fieldXPaths
-	 *            The repository to add fields too
-	 */
-	private void addXPathFieldsToRepo(Class<?> targetClass, XPathRepository<Field> fieldXPaths) {
-		for (Field field : targetClass.getDeclaredFields()) {
-			XMLField xPath = field.getAnnotation(XMLField.class);
-
-			if (xPath != null) {
-				// Annotation is not present: do nothing for this field.
-				XPathRepository<XPathElement> xpathsFromField;
-
-				if (!xPath.value().equals(XMLField.DEFAULT_XPATH_STRING)) {
-					// If the XPath has a value specified, compile it
-					xpathsFromField = compileXPath(xPath, field);
-
-					addRootToRelativeXPaths(xpathsFromField);
-				} else {
-					// XPath has no value - set to the root value
-					xpathsFromField = getRootXPaths();
-				}
+	 * @return The compiled root xpaths.
+	 */
+	XPathAutomaton<XPathElement> getRootAutomaton() {
+		return plan.getRootAutomaton();
+	}
 
-				for (XPathElement element : xpathsFromField.keySet()) {
-					fieldXPaths.put(element, field);
-				}
-			}
+	/**
+	 * Sets the factory used to create objects of a class, in place of its
+	 * zero-arg constructor. This applies to the objects this parser returns
+	 * if they're of that class, and to any objects of that class parsed
+	 * inside them.
+	 * 
+	 * @param <T>
+	 *            The class of the objects created.
+	 * @param type
+	 *            The class.
+	 * @param factory
+	 *            The factory, or null to go back to using the constructor.
+	 */
+	public <T> void setInstanceFactory(Class<T> type, InstanceFactory<? extends T> factory) {
+		if (factory == null) {
+			instanceFactories.remove(type);
+		} else {
+			instanceFactories.put(type, factory);
 		}
 	}
 
 	/**
-	 * Go through the supplied XPaths and for relative ones, add the root XPaths
-	 * to the front of them so they're no longer relative and can be matched
-	 * against.
+	 * Sets whether to stop parsing as soon as every field of the object has
+	 * been set, rather than at the end of the object's element, so that
+	 * nothing after the last field is read - for a request, this means the
+	 * rest of the response can be drained or aborted straight away (see
+	 * {@link com.alexgilleran.icesoap.request.CompletionPolicy}).
 	 * 
-	 * @param xpaths
-	 *            An {@link XPathRepository} of the xpaths to check and modify
-	 *            if necessary.
-	 */
-	private void addRootToRelativeXPaths(XPathRepository<XPathElement> xpaths) {
-		// Make a copy of the repo keyset, as we may need to concurrently remove
-		// xpaths from the repo while looping through.
-		Set<XPathElement> xpathsSet = new HashSet<XPathElement>(xpaths.keySet());
-
-		for (XPathElement thisXPath : xpathsSet) {
-			XPathElement firstXPathElement = thisXPath.getFirstElement();
-
-			if (firstXPathElement.isRelative()) {
-				// If the xpath is relative, we want to add the root xpath(s) of
-				// the object to the start of it.
-
-				if (getRootXPaths().keySet().size() == 1) {
-					thisXPath.getFirstElement().setPreviousElement(getRootXPaths().keySet().iterator().next());
-				} else {
-					// As there are multiple root xpaths, we need to create an
-					// new instance of this field xpath for each root xpath
-					// (using the existing field xpath object as a prototype)
-					// and add the enclosing xpath to the start of each.
-
-					// Remove the existing xpath from the repo (we'll add a
-					// modified clone of it later)
-					xpaths.remove(thisXPath);
-
-					for (XPathElement rootXPath : getRootXPaths().keySet()) {
-						// Copy the relative xpath for the field
-						XPathElement element = thisXPath.clone();
-
-						// Append the new xpath to this root xpath.
-						element.getFirstElement().setPreviousElement(rootXPath);
-
-						// Put the new element in the xpaths repository.
-						xpaths.put(element, element);
-					}
-				}
-			}
-		}
+	 * This only applies to classes whose fields all take a single value (no
+	 * lists, sets or arrays) - nested objects are still parsed to the end of
+	 * their element. If the element for a field appears more than once, the
+	 * later ones may not be read, and if a field doesn't get a value at all
+	 * the parse goes on to the end of the element as usual. Defaults to false.
+	 * 
+	 * @param stopWhenFieldsSet
+	 *            Whether to stop once every field is set.
+	 */
+	public void setStopWhenFieldsSet(boolean stopWhenFieldsSet) {
+		this.stopWhenFieldsSet = stopWhenFieldsSet;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * Uses {@link Class#newInstance()} to instantiate a new instance of
+	 * Uses the {@link InstanceFactory} set for ReturnType if there is one,
+	 * then the {@link com.alexgilleran.icesoap.parser.GeneratedBinder} for
+	 * ReturnType if there is one, otherwise its zero-arg constructor (which is
+	 * only looked up once per class), to instantiate a new instance of
 	 * ReturnType.
 	 */
 	@Override
 	public ReturnType initializeParsedObject() {
+		if (!instanceFactories.isEmpty()) {
+			InstanceFactory<?> factory = instanceFactories.get(targetClass);
+
+			if (factory != null) {
+				return targetClass.cast(factory.newInstance());
+			}
+		}
+
+		ReturnType generatedInstance = plan.newInstance();
+
+		if (generatedInstance != null) {
+			return generatedInstance;
+		}
+
+		Constructor<ReturnType> constructor = plan.getConstructor();
+
+		if (constructor == null) {
+			throwInitializationException(new NoSuchMethodException(targetClass.getName() + ".<init>()"));
+		}
+
 		try {
-			return targetClass.newInstance();
+			return constructor.newInstance();
 		} catch (InstantiationException e) {
 			throwInitializationException(e);
 		} catch (IllegalAccessException e) {
 			throwInitializationException(e);
+		} catch (InvocationTargetException e) {
+			throwInitializationException(e.getCause());
 		}
 
 		return null;
@@ -295,10 +307,92 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 						+ targetClass.getName()
 						+ ". This is probably because it doesn't implement a zero-arg constructor. To fix this, either change it so it has a zero-arg constructor, extend "
 						+ getClass().getSimpleName()
-						+ " and override the initializeParsedObject method, or make sure to always pass an existing object to the parser.",
+						+ " and override the initializeParsedObject method, set an InstanceFactory for it, or make sure to always pass an existing object to the parser.",
 				cause);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void onParseStart() {
+		fieldCursor.reset();
+
+		if (ownsParseProcessors) {
+			parseProcessors.clear();
+		}
+
+		// Anything left over from a parse that failed part-way through
+		for (ValueBuffer buffer : buffers) {
+			if (buffer != null) {
+				buffer.reset();
+			}
+		}
+
+		if (stopWhenFieldsSet && plan.isSingleValued() && plan.getFieldCount() > 0) {
+			if (fieldsSet == null) {
+				fieldsSet = new boolean[plan.getFieldCount()];
+			} else {
+				Arrays.fill(fieldsSet, false);
+			}
+
+			fieldsUnset = fieldsSet.length;
+		} else {
+			fieldsSet = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This is true once every field has been set, if
+	 * {@link #setStopWhenFieldsSet(boolean)} is on.
+	 */
+	@Override
+	protected boolean isParseComplete() {
+		return fieldsSet != null && fieldsUnset == 0;
+	}
+
+	/**
+	 * Records that a field has been set, for
+	 * {@link #setStopWhenFieldsSet(boolean)}.
+	 * 
+	 * @param binding
+	 *            The binding of the field.
+	 */
+	private void onFieldSet(BindingPlan.FieldBinding binding) {
+		if (fieldsSet != null && !fieldsSet[binding.getIndex()]) {
+			fieldsSet[binding.getIndex()] = true;
+			fieldsUnset--;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Puts the values collected for array and collection fields onto the
+	 * parsed object.
+	 */
+	@Override
+	protected void onParseEnd(ReturnType parsedObject) {
+		for (ValueBuffer buffer : buffers) {
+			if (buffer != null) {
+				buffer.finish(parsedObject);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This is true when no field's xpath can match the element, its attributes
+	 * or anything inside it.
+	 */
+	@Override
+	protected boolean isCurrentElementExhausted() {
+		return fieldCursor.isExhausted();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -315,7 +409,8 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	@Override
 	protected ReturnType onNewTag(XPathPullParser xmlPullParser, ReturnType objectToModify) throws XMLParsingException {
 		// Get the field to set and the XPath it was stored against
-		XPathRecord<Field> xPathRecord = fieldXPaths.getFullRecord(xmlPullParser.getCurrentElement());
+		XPathRecord<Field> xPathRecord = fieldCursor.enter(xmlPullParser.getCurrentElement(),
+				xmlPullParser.getDepth());
 
 		if (xPathRecord != null) {
 			Object valueToSet = null;
@@ -341,25 +436,45 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 */
 	@Override
 	protected ReturnType onText(XPathPullParser pullParser, ReturnType objectToModify) throws XMLParsingException {
-		Field fieldToSet = fieldXPaths.get(pullParser.getCurrentElement());
+		XPathRecord<Field> xPathRecord = fieldCursor.lookup(pullParser.getCurrentElement(), pullParser.getDepth());
 
-		if (fieldToSet != null) {
-			try {
-				String textNodeValue = pullParser.getCurrentValue();
-				XMLField annotation = fieldToSet.getAnnotation(XMLField.class);
-				boolean hasProcessor = hasProcessor(fieldToSet);
+		if (xPathRecord != null) {
+			Field fieldToSet = xPathRecord.getValue();
 
-				if (!needsParser(fieldToSet)) {
+			try {
+				BindingPlan.FieldBinding binding = plan.getBinding(fieldToSet);
+
+				// Values that are converted anyway are read straight from the
+				// pull parser's buffer, so only Strings get created for them
+				// when they're needed.
+				if (binding.getBufferIndex() >= 0) {
+					// Array or collection - nested objects are added in onNewTag
+					if (binding.getProcessorFactory() != null) {
+						Processor<?> processor = binding.getProcessorFactory().getProcessor(parseProcessors);
+						getBuffer(binding).add(objectToModify, processor.process(pullParser.getCurrentValue()));
+					} else if (!binding.needsParser()) {
+						getBuffer(binding).addText(objectToModify, pullParser.getCurrentValueChars());
+					}
+				} else if (binding.getPrimitiveSetter() != null) {
+					// Primitive field - convert and set without boxing
+					binding.getPrimitiveSetter().convertAndSet(objectToModify, pullParser.getCurrentValueChars(),
+							binding.getAnnotation());
+					onFieldSet(binding);
+				} else if (!binding.needsParser()) {
 					Object valueToSet;
 
-					if (hasProcessor) {
-						Processor<?> processor = annotation.processor().newInstance();
-						valueToSet = processor.process(textNodeValue);
+					if (binding.getProcessorFactory() != null) {
+						Processor<?> processor = binding.getProcessorFactory().getProcessor(parseProcessors);
+						valueToSet = processor.process(pullParser.getCurrentValue());
+					} else if (binding.getCharConverter() != null) {
+						valueToSet = binding.getCharConverter().parse(pullParser.getCurrentValueChars(),
+								binding.getAnnotation());
 					} else {
-						valueToSet = convertToFieldType(fieldToSet, textNodeValue);
+						valueToSet = convertToFieldType(binding, pullParser.getCurrentValue());
 					}
 
-					setField(objectToModify, fieldToSet, valueToSet);
+					binding.getAccessor().set(objectToModify, valueToSet);
+					onFieldSet(binding);
 				}
 			} catch (InstantiationException e) {
 				throw new XMLParsingException(e);
@@ -379,7 +494,7 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 * @return Whether or not it has a processor.
 	 */
 	protected boolean hasProcessor(Field field) {
-		return !field.getAnnotation(XMLField.class).processor().equals(Processor.class);
+		return plan.getBinding(field).getProcessorClass() != null;
 	}
 
 	/**
@@ -391,25 +506,7 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 * @return
 	 */
 	private boolean needsParser(Field fieldToSet) {
-		// Is it a text node?
-		if (parserMap.containsKey(fieldToSet.getType())) {
-			return false;
-		}
-
-		// Does it have a processor to deal with it rather than a generic
-		// parser?
-		if (hasProcessor(fieldToSet)) {
-			return false;
-		}
-
-		// Is it a list of text nodes?
-		if (List.class.isAssignableFrom(fieldToSet.getType())
-				&& parserMap.containsKey(getListItemClass(fieldToSet.getGenericType()))) {
-			return false;
-		}
-
-		// No to all of the above, .'. it needs a parser
-		return true;
+		return plan.getBinding(fieldToSet).needsParser();
 	}
 
 	/**
@@ -427,22 +524,23 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 *            same as typeToParse.
 	 * @param pullParser
 	 *            The pull parser used to do the parsing.
+	 * @param fieldXPath
+	 *            The xpath of the field - if this is relative, the new parser's
+	 *            root xpaths are this xpath attached to each of the root xpaths
+	 *            of this parser.
 	 * @return A new instance of {@link IceSoapParser}
 	 */
 	private BaseIceSoapParserImpl<?> getParserForField(Field field, XPathPullParser pullParser, XPathElement fieldXPath) {
-		Class<?> classForParser = field.getType();
-
-		if (List.class.isAssignableFrom(field.getType())) {
-			// Class to parse is a list - find out the parameterized type of the
-			// list and create a parser for that, then wrap a ListParser around
-			// it.
-			classForParser = getListItemClass(field.getGenericType());
-		}
-
 		BaseIceSoapParserImpl<?> parserForClass = parserCache.get(fieldXPath);
 
 		if (parserForClass == null) {
-			parserForClass = new IceSoapParserImpl(classForParser, fieldXPath);
+			IceSoapParserImpl<?> nestedParser = new IceSoapParserImpl(plan.getBinding(field).getParsedClass(),
+					plan.getNestedRootXPaths(fieldXPath));
+			nestedParser.parseProcessors = parseProcessors;
+			nestedParser.ownsParseProcessors = false;
+			nestedParser.instanceFactories = instanceFactories;
+
+			parserForClass = nestedParser;
 			parserCache.put(fieldXPath, parserForClass);
 		}
 
@@ -450,6 +548,21 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 		return parserForClass;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * As well as the root xpath(s), this adds names from the xpaths of every
+	 * field in the target class, and from the fields of any classes that will
+	 * be parsed by nested parsers.
+	 */
+	@Override
+	protected void addPredicateNames(Set<String> names, Set<Class<?>> visitedClasses) {
+		super.addPredicateNames(names, visitedClasses);
+
+		names.addAll(plan.getFieldPredicateNames());
+		visitedClasses.add(targetClass);
+	}
+
 	/**
 	 * Sets the supplied field of the supplied object to null, substituting
 	 * equivalent values if the field's type is a primitive and cannot be null.
@@ -474,9 +587,30 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 		setField(objectToModify, fieldToSet, value);
 	}
 
+	/**
+	 * Gets the buffer for a field, creating it if this is the first value the
+	 * field has had.
+	 * 
+	 * @param binding
+	 *            The binding of the field - its values must be buffered.
+	 * @return The buffer.
+	 */
+	private ValueBuffer getBuffer(BindingPlan.FieldBinding binding) {
+		ValueBuffer buffer = buffers[binding.getBufferIndex()];
+
+		if (buffer == null) {
+			buffer = ValueBuffer.forBinding(binding);
+			buffers[binding.getBufferIndex()] = buffer;
+		}
+
+		return buffer;
+	}
+
 	/**
 	 * Sets the supplied {@link Field} in the supplied object to the supplied
-	 * value, handling setting of accessibility and reflection exceptions.
+	 * value, using the accessor worked out for the field in the plan - for
+	 * array and collection fields, the value is added to the field's buffer
+	 * (or straight to the collection, if it has a generated setter).
 	 * 
 	 * @param objectToModify
 	 *            The object to set the value on
@@ -485,36 +619,14 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 * @param valueToSet
 	 *            The value to set to the field.
 	 */
-	@SuppressWarnings("unchecked")
 	private void setField(ReturnType objectToModify, Field fieldToSet, Object valueToSet) {
-		try {
-			boolean isAccessibleBefore = fieldToSet.isAccessible();
-			fieldToSet.setAccessible(true);
-
-			if (List.class.isAssignableFrom(fieldToSet.getType())) {
-				Object valueOfField = fieldToSet.get(objectToModify);
+		BindingPlan.FieldBinding binding = plan.getBinding(fieldToSet);
 
-				if (valueOfField == null) {
-					List<Object> newList = new ArrayList<Object>();
-					newList.add(valueToSet);
-
-					valueToSet = newList;
-				} else if (valueOfField instanceof List<?>) {
-					((List<Object>) valueOfField).add(valueToSet);
-
-					valueToSet = valueOfField;
-				}
-			}
-
-			fieldToSet.set(objectToModify, valueToSet);
-
-			fieldToSet.setAccessible(isAccessibleBefore);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+		if (binding.getBufferIndex() >= 0) {
+			getBuffer(binding).add(objectToModify, valueToSet);
+		} else {
+			binding.getAccessor().set(objectToModify, valueToSet);
+			onFieldSet(binding);
 		}
 	}
 
@@ -523,18 +635,18 @@ public class IceSoapParserImpl<ReturnType> extends BaseIceSoapParserImpl<ReturnT
 	 * primitive or primitive-esque (e.g. {@link BigDecimal}) type with the
 	 * correct method.
 	 * 
-	 * @param field
-	 *            The field to get the appropriate type from.
+	 * @param binding
+	 *            The binding of the field to get the appropriate type from.
 	 * @param valueString
 	 *            The string to parse to the correct type.
 	 * @return The string's value as the appropriate type.
 	 * @throws XMLParseException
 	 */
-	private Object convertToFieldType(Field field, String valueString) throws XMLParsingException {
-		StringParser<?> objectParser = parserMap.get(field.getType());
+	private Object convertToFieldType(BindingPlan.FieldBinding binding, String valueString) throws XMLParsingException {
+		StringParser<?> objectParser = binding.getConverter();
 
 		if (objectParser != null) {
-			return objectParser.parse(valueString, field.getAnnotation(XMLField.class));
+			return objectParser.parse(valueString, binding.getAnnotation());
 		}
 
 		return valueString;
@@ -0,0 +1,285 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.ScannerTokenizer;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * Splits a document into chunks at the elements of a list's items, so that
+ * {@link IceSoapListParserImpl} can parse the chunks on different threads.
+ * </p>
+ *
+ * <p>
+ * The document is read with a {@link ScannerTokenizer} behind an
+ * {@link XPathPullParserImpl} that reuses its elements, so text is never
+ * decoded, and the items (and any element that an item can't be inside) are
+ * skipped. The tokenizer's positions say where the tags are, so every chunk
+ * can be copied out of the document as it is: the start tags of the elements
+ * the items are inside (so absolute xpaths, predicates and namespace
+ * declarations still work), up to {@link #itemsPerChunk} items that have the
+ * same parent element, and end tags to close it all off.
+ * </p>
+ *
+ * <p>
+ * Only UTF-8 (or ASCII) documents without a DTD are split - see
+ * {@link #start()}.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+final class ItemBoundaryScanner {
+	/** The start of a DTD. */
+	private static final byte[] DOCTYPE = { '<', '!', 'D', 'O', 'C', 'T', 'Y', 'P', 'E' };
+
+	/** The document. */
+	private final byte[] document;
+	/** Reads the document. */
+	private final ScannerTokenizer tokenizer = new ScannerTokenizer();
+	/** Keeps track of the current xpath as the tokenizer reads. */
+	private final XPathPullParserImpl parser = new XPathPullParserImpl(true, tokenizer);
+	/** Tracks the position of the document relative to the items' xpaths. */
+	private final XPathAutomaton<XPathElement>.Cursor itemCursor;
+	/** The most items to put in a chunk. */
+	private final int itemsPerChunk;
+	/**
+	 * Whether the parser is at a start tag that hasn't been looked at yet, so
+	 * it shouldn't be moved on.
+	 */
+	private boolean pending;
+
+	/** The positions the start tags of the open elements start at, by depth. */
+	private int[] tagStarts = new int[16];
+	/** The positions just after the start tags of the open elements, by depth. */
+	private int[] tagEnds = new int[16];
+	/** Numbers that tell the open elements apart from any others, by depth. */
+	private int[] ids = new int[16];
+	/** The number for the next element opened. */
+	private int nextId;
+
+	/**
+	 * Creates a new scanner.
+	 *
+	 * @param document
+	 *            The document.
+	 * @param itemCursor
+	 *            A new cursor for the xpaths of the items.
+	 * @param capturedPredicates
+	 *            The names of attributes tested by predicates in the xpaths,
+	 *            or null if any attribute could be.
+	 * @param itemsPerChunk
+	 *            The most items to put in a chunk.
+	 */
+	ItemBoundaryScanner(byte[] document, XPathAutomaton<XPathElement>.Cursor itemCursor,
+			Set<String> capturedPredicates, int itemsPerChunk) {
+		this.document = document;
+		this.itemCursor = itemCursor;
+		this.itemsPerChunk = itemsPerChunk;
+
+		parser.setCapturedPredicates(capturedPredicates);
+	}
+
+	/**
+	 * Reads up to the document element.
+	 *
+	 * @return true if the document can be split, false if it's in an encoding
+	 *         other than UTF-8 or has a DTD, which could declare entities that
+	 *         the chunks wouldn't know about.
+	 * @throws XMLParsingException
+	 *             If the markup before the document element is broken.
+	 */
+	boolean start() throws XMLParsingException {
+		if (document.length > 0 && document[0] == 0) {
+			// UTF-16 or UTF-32 without a byte order mark
+			return false;
+		}
+
+		try {
+			parser.setInput(new ByteArrayInputStream(document), null);
+		} catch (XmlPullParserException e) {
+			throw new XMLParsingException(e);
+		}
+
+		if (tokenizer.isReencoded()) {
+			return false;
+		}
+
+		if (nextTag() != XPathPullParser.START_TAG) {
+			// No document element, so no items either
+			return true;
+		}
+
+		pending = true;
+
+		return indexOf(DOCTYPE, (int) tokenizer.getTagStart()) < 0;
+	}
+
+	/**
+	 * Reads up to the end of the next chunk of items.
+	 *
+	 * @return The chunk, as a document of its own, or null if there are no
+	 *         more items.
+	 * @throws XMLParsingException
+	 *             If the markup is broken.
+	 */
+	byte[] nextChunk() throws XMLParsingException {
+		ByteArrayOutputStream chunk = null;
+		int items = 0;
+		int parentDepth = 0;
+		int parentId = -1;
+		int itemsStart = 0;
+		int itemsEnd = 0;
+
+		while (true) {
+			int eventType = pending ? XPathPullParser.START_TAG : nextTag();
+			int depth = parser.getDepth();
+			pending = false;
+
+			if (eventType == XPathPullParser.END_DOCUMENT) {
+				break;
+			} else if (eventType == XPathPullParser.END_TAG) {
+				if (items > 0 && depth == parentDepth) {
+					// The parent of the items is finished
+					break;
+				}
+			} else if (itemCursor.enter(parser.getCurrentElement(), depth) != null) {
+				int id = depth > 1 ? ids[depth - 1] : -1;
+
+				if (items > 0 && id != parentId) {
+					// This item goes in the next chunk - look at it again then
+					pending = true;
+					break;
+				}
+
+				if (items == 0) {
+					parentDepth = depth - 1;
+					parentId = id;
+					itemsStart = (int) tokenizer.getTagStart();
+					chunk = new ByteArrayOutputStream();
+
+					for (int i = 1; i < depth; i++) {
+						chunk.write(document, tagStarts[i], tagEnds[i] - tagStarts[i]);
+					}
+				}
+
+				parser.skipElement();
+				itemsEnd = (int) tokenizer.getTagEnd();
+
+				if (++items == itemsPerChunk) {
+					break;
+				}
+			} else if (itemCursor.isExhausted()) {
+				parser.skipElement();
+			} else {
+				openElement(depth);
+			}
+		}
+
+		if (items == 0) {
+			return null;
+		}
+
+		chunk.write(document, itemsStart, itemsEnd - itemsStart);
+
+		for (int i = parentDepth; i >= 1; i--) {
+			writeEndTag(chunk, tagStarts[i]);
+		}
+
+		return chunk.toByteArray();
+	}
+
+	/**
+	 * Moves the parser on to the next start tag, end tag or the end of the
+	 * document.
+	 *
+	 * @return The type of the event.
+	 * @throws XMLParsingException
+	 *             If the markup is broken.
+	 */
+	private int nextTag() throws XMLParsingException {
+		while (true) {
+			int eventType = parser.next();
+
+			if (eventType == XPathPullParser.START_TAG || eventType == XPathPullParser.END_TAG
+					|| eventType == XPathPullParser.END_DOCUMENT) {
+				return eventType;
+			}
+		}
+	}
+
+	/**
+	 * Records where the start tag of the element the parser is at is.
+	 *
+	 * @param depth
+	 *            The depth of the element.
+	 */
+	private void openElement(int depth) {
+		if (depth >= tagStarts.length) {
+			int grown = Math.max(depth + 1, tagStarts.length * 2);
+			tagStarts = Arrays.copyOf(tagStarts, grown);
+			tagEnds = Arrays.copyOf(tagEnds, grown);
+			ids = Arrays.copyOf(ids, grown);
+		}
+
+		tagStarts[depth] = (int) tokenizer.getTagStart();
+		tagEnds[depth] = (int) tokenizer.getTagEnd();
+		ids[depth] = nextId++;
+	}
+
+	/**
+	 * Writes the end tag for a start tag, copying its name as it is so the
+	 * prefix (if any) is kept.
+	 *
+	 * @param chunk
+	 *            The chunk to write to.
+	 * @param tagStart
+	 *            The position of the start tag.
+	 */
+	private void writeEndTag(ByteArrayOutputStream chunk, int tagStart) {
+		int nameEnd = tagStart + 1;
+
+		while (document[nameEnd] != '>' && document[nameEnd] != '/' && document[nameEnd] != ' '
+				&& document[nameEnd] != '\t' && document[nameEnd] != '\r' && document[nameEnd] != '\n') {
+			nameEnd++;
+		}
+
+		chunk.write('<');
+		chunk.write('/');
+		chunk.write(document, tagStart + 1, nameEnd - tagStart - 1);
+		chunk.write('>');
+	}
+
+	/**
+	 * Finds some bytes in the document before a position.
+	 *
+	 * @param bytes
+	 *            The bytes to look for.
+	 * @param end
+	 *            The position to stop looking at.
+	 * @return The position of the bytes, or -1 if they aren't there.
+	 */
+	private int indexOf(byte[] bytes, int end) {
+		for (int i = 0; i + bytes.length <= end; i++) {
+			int j = 0;
+
+			while (j < bytes.length && document[i + j] == bytes[j]) {
+				j++;
+			}
+
+			if (j == bytes.length) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
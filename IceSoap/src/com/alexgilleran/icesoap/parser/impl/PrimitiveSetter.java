@@ -0,0 +1,202 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.lang.reflect.Field;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveBooleanParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveCharParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveDoubleParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveFloatParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveIntParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveLongParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.StringParser;
+
+/**
+ * <p>
+ * Converts text values and sets them on a primitive field without boxing them -
+ * the value is parsed with one of the primitive parsers (e.g.
+ * {@link PrimitiveIntParser}) and set with the matching primitive setter on
+ * {@link Field} (e.g. {@link Field#setInt(Object, int)}).
+ * </p>
+ *
+ * <p>
+ * One of these is created for each primitive field when its
+ * {@link BindingPlan} is built, if the field's converter has a primitive form.
+ * Like {@link FieldAccessor}s, they're shared by every parser that uses the
+ * plan.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+abstract class PrimitiveSetter {
+	/** The field being set. */
+	protected final Field field;
+
+	/**
+	 * Creates a new setter - the field is made accessible once here. This is
+	 * used even if there's a generated setter for the field, as generated
+	 * setters take boxed values.
+	 *
+	 * @param field
+	 *            The field to set.
+	 */
+	protected PrimitiveSetter(Field field) {
+		this.field = field;
+		field.setAccessible(true);
+	}
+
+	/**
+	 * Gets the primitive setter for a field, if there is one.
+	 *
+	 * @param field
+	 *            The field.
+	 * @param converter
+	 *            The converter for the field's type.
+	 * @return The setter, or null if the field isn't primitive or the
+	 *         converter doesn't have a primitive form.
+	 */
+	static PrimitiveSetter forField(Field field, StringParser<?> converter) {
+		Class<?> type = field.getType();
+
+		if (type == int.class && converter instanceof PrimitiveIntParser) {
+			return new IntSetter(field, (PrimitiveIntParser) converter);
+		} else if (type == long.class && converter instanceof PrimitiveLongParser) {
+			return new LongSetter(field, (PrimitiveLongParser) converter);
+		} else if (type == double.class && converter instanceof PrimitiveDoubleParser) {
+			return new DoubleSetter(field, (PrimitiveDoubleParser) converter);
+		} else if (type == float.class && converter instanceof PrimitiveFloatParser) {
+			return new FloatSetter(field, (PrimitiveFloatParser) converter);
+		} else if (type == boolean.class && converter instanceof PrimitiveBooleanParser) {
+			return new BooleanSetter(field, (PrimitiveBooleanParser) converter);
+		} else if (type == char.class && converter instanceof PrimitiveCharParser) {
+			return new CharSetter(field, (PrimitiveCharParser) converter);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Converts a text value and sets it on an object.
+	 *
+	 * @param target
+	 *            The object to set the value on.
+	 * @param text
+	 *            The text value.
+	 * @param annotation
+	 *            The annotation on the field.
+	 */
+	final void convertAndSet(Object target, CharSequence text, XMLField annotation) {
+		try {
+			doConvertAndSet(target, text, annotation);
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException(e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Does the work of {@link #convertAndSet(Object, CharSequence, XMLField)}.
+	 *
+	 * @param target
+	 *            The object to set the value on.
+	 * @param text
+	 *            The text value.
+	 * @param annotation
+	 *            The annotation on the field.
+	 * @throws IllegalAccessException
+	 *             If the field can't be set.
+	 */
+	protected abstract void doConvertAndSet(Object target, CharSequence text, XMLField annotation)
+			throws IllegalAccessException;
+
+	/** Sets int fields. */
+	private static final class IntSetter extends PrimitiveSetter {
+		private final PrimitiveIntParser parser;
+
+		private IntSetter(Field field, PrimitiveIntParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setInt(target, parser.parseInt(text, annotation));
+		}
+	}
+
+	/** Sets long fields. */
+	private static final class LongSetter extends PrimitiveSetter {
+		private final PrimitiveLongParser parser;
+
+		private LongSetter(Field field, PrimitiveLongParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setLong(target, parser.parseLong(text, annotation));
+		}
+	}
+
+	/** Sets double fields. */
+	private static final class DoubleSetter extends PrimitiveSetter {
+		private final PrimitiveDoubleParser parser;
+
+		private DoubleSetter(Field field, PrimitiveDoubleParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setDouble(target, parser.parseDouble(text, annotation));
+		}
+	}
+
+	/** Sets float fields. */
+	private static final class FloatSetter extends PrimitiveSetter {
+		private final PrimitiveFloatParser parser;
+
+		private FloatSetter(Field field, PrimitiveFloatParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setFloat(target, parser.parseFloat(text, annotation));
+		}
+	}
+
+	/** Sets boolean fields. */
+	private static final class BooleanSetter extends PrimitiveSetter {
+		private final PrimitiveBooleanParser parser;
+
+		private BooleanSetter(Field field, PrimitiveBooleanParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setBoolean(target, parser.parseBoolean(text, annotation));
+		}
+	}
+
+	/** Sets char fields. */
+	private static final class CharSetter extends PrimitiveSetter {
+		private final PrimitiveCharParser parser;
+
+		private CharSetter(Field field, PrimitiveCharParser parser) {
+			super(field);
+			this.parser = parser;
+		}
+
+		@Override
+		protected void doConvertAndSet(Object target, CharSequence text, XMLField annotation) throws IllegalAccessException {
+			field.setChar(target, parser.parseChar(text, annotation));
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.util.Map;
+
+import com.alexgilleran.icesoap.exception.ClassDefException;
+import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+
+/**
+ * <p>
+ * Gets instances of the {@link Processor} for a field, according to the
+ * processor's {@link ProcessorScope}. One of these is created for each field
+ * with a processor when its {@link BindingPlan} is built, so the processor
+ * class and its scope are only looked up once.
+ * </p>
+ *
+ * <p>
+ * Factories are shared by every parser that uses the plan, so anything they
+ * keep must be safe to use from multiple threads.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+abstract class ProcessorFactory {
+	/** The class of the processor. */
+	@SuppressWarnings("rawtypes")
+	protected final Class<? extends Processor> processorClass;
+
+	/**
+	 * Creates a new factory.
+	 *
+	 * @param processorClass
+	 *            The class of the processor.
+	 */
+	@SuppressWarnings("rawtypes")
+	protected ProcessorFactory(Class<? extends Processor> processorClass) {
+		this.processorClass = processorClass;
+	}
+
+	/**
+	 * Gets the right factory for a processor class, depending on its
+	 * {@link ProcessorScope} - {@link ProcessorScope.Scope#VALUE} if it
+	 * doesn't have one.
+	 *
+	 * @param processorClass
+	 *            The class of the processor.
+	 * @return The factory.
+	 */
+	@SuppressWarnings("rawtypes")
+	static ProcessorFactory forClass(Class<? extends Processor> processorClass) {
+		ProcessorScope scope = processorClass.getAnnotation(ProcessorScope.class);
+
+		if (scope == null) {
+			return new PerValueFactory(processorClass);
+		}
+
+		switch (scope.value()) {
+		case SHARED:
+			return new SharedFactory(processorClass);
+		case THREAD:
+			return new PerThreadFactory(processorClass);
+		case PARSE:
+			return new PerParseFactory(processorClass);
+		default:
+			return new PerValueFactory(processorClass);
+		}
+	}
+
+	/**
+	 * Gets a processor to process a value with.
+	 *
+	 * @param parseProcessors
+	 *            The processors that have been created for the parse currently
+	 *            under way, against their class - used by processors with
+	 *            {@link ProcessorScope.Scope#PARSE}.
+	 * @return The processor.
+	 * @throws InstantiationException
+	 *             If a new processor can't be created.
+	 * @throws IllegalAccessException
+	 *             If a new processor can't be created.
+	 */
+	abstract Processor<?> getProcessor(Map<Class<?>, Processor<?>> parseProcessors) throws InstantiationException,
+			IllegalAccessException;
+
+	/**
+	 * Creates a new instance of the processor.
+	 *
+	 * @return The new instance.
+	 * @throws InstantiationException
+	 *             If a new processor can't be created.
+	 * @throws IllegalAccessException
+	 *             If a new processor can't be created.
+	 */
+	protected Processor<?> newProcessor() throws InstantiationException, IllegalAccessException {
+		return processorClass.newInstance();
+	}
+
+	/**
+	 * Creates a new processor for every value.
+	 */
+	private static final class PerValueFactory extends ProcessorFactory {
+		/**
+		 * @param processorClass
+		 *            The class of the processor.
+		 */
+		@SuppressWarnings("rawtypes")
+		private PerValueFactory(Class<? extends Processor> processorClass) {
+			super(processorClass);
+		}
+
+		@Override
+		Processor<?> getProcessor(Map<Class<?>, Processor<?>> parseProcessors) throws InstantiationException,
+				IllegalAccessException {
+			return newProcessor();
+		}
+	}
+
+	/**
+	 * Uses one processor for everything - it's created along with the plan.
+	 */
+	private static final class SharedFactory extends ProcessorFactory {
+		/** The single instance of the processor. */
+		private final Processor<?> processor;
+
+		/**
+		 * @param processorClass
+		 *            The class of the processor.
+		 */
+		@SuppressWarnings("rawtypes")
+		private SharedFactory(Class<? extends Processor> processorClass) {
+			super(processorClass);
+
+			try {
+				processor = newProcessor();
+			} catch (InstantiationException e) {
+				throw new ClassDefException("Could not instantiate shared processor " + processorClass.getName(), e);
+			} catch (IllegalAccessException e) {
+				throw new ClassDefException("Could not instantiate shared processor " + processorClass.getName(), e);
+			}
+		}
+
+		@Override
+		Processor<?> getProcessor(Map<Class<?>, Processor<?>> parseProcessors) {
+			return processor;
+		}
+	}
+
+	/**
+	 * Uses one processor for each thread.
+	 */
+	private static final class PerThreadFactory extends ProcessorFactory {
+		/** The processor for each thread - null until first used. */
+		private final ThreadLocal<Processor<?>> processors = new ThreadLocal<Processor<?>>();
+
+		/**
+		 * @param processorClass
+		 *            The class of the processor.
+		 */
+		@SuppressWarnings("rawtypes")
+		private PerThreadFactory(Class<? extends Processor> processorClass) {
+			super(processorClass);
+		}
+
+		@Override
+		Processor<?> getProcessor(Map<Class<?>, Processor<?>> parseProcessors) throws InstantiationException,
+				IllegalAccessException {
+			Processor<?> processor = processors.get();
+
+			if (processor == null) {
+				processor = newProcessor();
+				processors.set(processor);
+			}
+
+			return processor;
+		}
+	}
+
+	/**
+	 * Uses one processor for each parse - shared by every field in the
+	 * document that uses the same processor class.
+	 */
+	private static final class PerParseFactory extends ProcessorFactory {
+		/**
+		 * @param processorClass
+		 *            The class of the processor.
+		 */
+		@SuppressWarnings("rawtypes")
+		private PerParseFactory(Class<? extends Processor> processorClass) {
+			super(processorClass);
+		}
+
+		@Override
+		Processor<?> getProcessor(Map<Class<?>, Processor<?>> parseProcessors) throws InstantiationException,
+				IllegalAccessException {
+			Processor<?> processor = parseProcessors.get(processorClass);
+
+			if (processor == null) {
+				processor = newProcessor();
+				parseProcessors.put(processorClass, processor);
+			}
+
+			return processor;
+		}
+	}
+}
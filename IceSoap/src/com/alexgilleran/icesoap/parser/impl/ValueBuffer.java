@@ -0,0 +1,655 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.alexgilleran.icesoap.exception.ClassDefException;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveBooleanParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveCharParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveDoubleParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveFloatParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveIntParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.PrimitiveLongParser;
+
+/**
+ * <p>
+ * Collects the values of a collection or array field while an object is being
+ * parsed, then puts them on the field once the object's element ends.
+ * </p>
+ *
+ * <p>
+ * For arrays, values are kept in a growable array of the right component type
+ * - for primitive arrays, text values are converted with the primitive
+ * parsers, so no value is ever boxed. The array is trimmed and set on the
+ * field once, at the end of the object. For collections, the collection is
+ * taken from (or put on) the field once, and values are added to it directly.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link FieldAccessor}s, buffers hold the state of a parse, so each
+ * parser has its own. They're reused from one parse to the next, so once a
+ * buffer has grown to fit a document, it doesn't need to grow again.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+abstract class ValueBuffer {
+	/** The binding of the field that values are buffered for. */
+	protected final BindingPlan.FieldBinding binding;
+
+	/**
+	 * Creates a new buffer.
+	 *
+	 * @param binding
+	 *            The binding of the field that values are buffered for.
+	 */
+	protected ValueBuffer(BindingPlan.FieldBinding binding) {
+		this.binding = binding;
+	}
+
+	/**
+	 * Creates the right buffer for a field.
+	 *
+	 * @param binding
+	 *            The binding of the field - its values must be buffered (see
+	 *            {@link BindingPlan.FieldBinding#getBufferIndex()}).
+	 * @return The new buffer.
+	 */
+	static ValueBuffer forBinding(BindingPlan.FieldBinding binding) {
+		if (binding.isCollection()) {
+			return new CollectionBuffer(binding);
+		}
+
+		Class<?> componentType = binding.getParsedClass();
+		Object converter = binding.getConverter();
+
+		if (!componentType.isPrimitive()) {
+			return new ObjectArrayBuffer(binding);
+		} else if (componentType == int.class) {
+			return new IntArrayBuffer(binding, converter instanceof PrimitiveIntParser ? (PrimitiveIntParser) converter
+					: null);
+		} else if (componentType == long.class) {
+			return new LongArrayBuffer(binding, converter instanceof PrimitiveLongParser ? (PrimitiveLongParser) converter
+					: null);
+		} else if (componentType == double.class) {
+			return new DoubleArrayBuffer(binding,
+					converter instanceof PrimitiveDoubleParser ? (PrimitiveDoubleParser) converter : null);
+		} else if (componentType == float.class) {
+			return new FloatArrayBuffer(binding,
+					converter instanceof PrimitiveFloatParser ? (PrimitiveFloatParser) converter : null);
+		} else if (componentType == boolean.class) {
+			return new BooleanArrayBuffer(binding,
+					converter instanceof PrimitiveBooleanParser ? (PrimitiveBooleanParser) converter : null);
+		} else if (componentType == char.class) {
+			return new CharArrayBuffer(binding, converter instanceof PrimitiveCharParser ? (PrimitiveCharParser) converter
+					: null);
+		}
+
+		throw new ClassDefException("Arrays of " + componentType.getName() + " are not supported, as used by field "
+				+ binding.getField().getName());
+	}
+
+	/**
+	 * Adds a value that's already been converted - either parsed by a nested
+	 * parser, processed by a processor or null (for xsi:nil elements).
+	 *
+	 * @param target
+	 *            The object being parsed.
+	 * @param value
+	 *            The value to add.
+	 */
+	abstract void add(Object target, Object value);
+
+	/**
+	 * Converts a text value with the field's converter and adds it.
+	 *
+	 * @param target
+	 *            The object being parsed.
+	 * @param text
+	 *            The text value - only valid for the duration of the call.
+	 * @throws XMLParsingException
+	 *             If the value can't be converted.
+	 */
+	void addText(Object target, CharSequence text) throws XMLParsingException {
+		add(target, binding.convertText(text));
+	}
+
+	/**
+	 * Puts everything that's been buffered onto the field of the parsed
+	 * object, then empties the buffer ready for the next object.
+	 *
+	 * @param target
+	 *            The object that's been parsed.
+	 */
+	abstract void finish(Object target);
+
+	/**
+	 * Empties the buffer without putting anything on the field - used if a
+	 * parse is abandoned part of the way through.
+	 */
+	abstract void reset();
+
+	/**
+	 * Adds values straight to the collection in the field, creating it if the
+	 * field is null - the field is only read once per object.
+	 */
+	private static final class CollectionBuffer extends ValueBuffer {
+		/** The collection for the object being parsed, once it's been found. */
+		private Collection<Object> collection;
+
+		/**
+		 * @param binding
+		 *            The binding of the collection field.
+		 */
+		private CollectionBuffer(BindingPlan.FieldBinding binding) {
+			super(binding);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		void add(Object target, Object value) {
+			if (collection == null) {
+				Field field = binding.getField();
+
+				try {
+					collection = (Collection<Object>) field.get(target);
+
+					if (collection == null) {
+						collection = FieldAccessor.newCollection(field.getType(), binding.getCapacity());
+						field.set(target, collection);
+					}
+				} catch (IllegalAccessException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			collection.add(value);
+		}
+
+		@Override
+		void finish(Object target) {
+			collection = null;
+		}
+
+		@Override
+		void reset() {
+			collection = null;
+		}
+	}
+
+	/**
+	 * Base class for buffers that build an array - keeps track of the size of
+	 * the buffer and grows it when it's full.
+	 */
+	private abstract static class ArrayBuffer extends ValueBuffer {
+		/** The number of values in the buffer. */
+		protected int size;
+		/** The length of the buffer array. */
+		private int length;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field - subclasses should
+		 *            create a buffer array of {@link #initialLength()}.
+		 */
+		protected ArrayBuffer(BindingPlan.FieldBinding binding) {
+			super(binding);
+			this.length = binding.getCapacity();
+
+			// Existing values are read by reflection, even if the field has a
+			// generated setter
+			binding.getField().setAccessible(true);
+		}
+
+		/**
+		 * Gets the length of the buffer array to start with.
+		 *
+		 * @return The initial length.
+		 */
+		protected final int initialLength() {
+			return binding.getCapacity();
+		}
+
+		/**
+		 * Gets the buffer array.
+		 *
+		 * @return The array values are buffered in.
+		 */
+		protected abstract Object getBuffer();
+
+		/**
+		 * Replaces the buffer array with a bigger one.
+		 *
+		 * @param buffer
+		 *            The new buffer array, with the buffered values copied in.
+		 */
+		protected abstract void setBuffer(Object buffer);
+
+		/**
+		 * Makes sure there's room in the buffer for another value, doubling
+		 * its length if it's full.
+		 */
+		protected final void ensureSpace() {
+			if (size == length) {
+				length = length * 2;
+
+				Object bigger = Array.newInstance(binding.getParsedClass(), length);
+				System.arraycopy(getBuffer(), 0, bigger, 0, size);
+				setBuffer(bigger);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * The buffered values are copied into an array of exactly the right
+		 * length - after any values already in the field, in the same way that
+		 * values are added to an existing collection.
+		 */
+		@Override
+		void finish(Object target) {
+			if (size == 0) {
+				return;
+			}
+
+			try {
+				Object existing = binding.getField().get(target);
+				int existingLength = existing == null ? 0 : Array.getLength(existing);
+				Object array = Array.newInstance(binding.getParsedClass(), existingLength + size);
+
+				if (existingLength > 0) {
+					System.arraycopy(existing, 0, array, 0, existingLength);
+				}
+				System.arraycopy(getBuffer(), 0, array, existingLength, size);
+
+				binding.getAccessor().set(target, array);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} finally {
+				reset();
+			}
+		}
+
+		@Override
+		void reset() {
+			size = 0;
+		}
+	}
+
+	/** Buffers the items of an array of objects. */
+	private static final class ObjectArrayBuffer extends ArrayBuffer {
+		/** The buffer. */
+		private Object[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 */
+		private ObjectArrayBuffer(BindingPlan.FieldBinding binding) {
+			super(binding);
+			values = (Object[]) Array.newInstance(binding.getParsedClass(), initialLength());
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		void reset() {
+			// Don't hold on to the objects from the last parse
+			Arrays.fill(values, 0, size, null);
+			super.reset();
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (Object[]) buffer;
+		}
+	}
+
+	/** Buffers the items of an int array. */
+	private static final class IntArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no int form. */
+		private final PrimitiveIntParser parser;
+		/** The buffer. */
+		private int[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            int form.
+		 */
+		private IntArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveIntParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new int[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? 0 : ((Number) value).intValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseInt(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(int value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (int[]) buffer;
+		}
+	}
+
+	/** Buffers the items of a long array. */
+	private static final class LongArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no long form. */
+		private final PrimitiveLongParser parser;
+		/** The buffer. */
+		private long[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            long form.
+		 */
+		private LongArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveLongParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new long[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? 0 : ((Number) value).longValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseLong(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(long value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (long[]) buffer;
+		}
+	}
+
+	/** Buffers the items of a double array. */
+	private static final class DoubleArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no double form. */
+		private final PrimitiveDoubleParser parser;
+		/** The buffer. */
+		private double[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            double form.
+		 */
+		private DoubleArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveDoubleParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new double[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? 0 : ((Number) value).doubleValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseDouble(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(double value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (double[]) buffer;
+		}
+	}
+
+	/** Buffers the items of a float array. */
+	private static final class FloatArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no float form. */
+		private final PrimitiveFloatParser parser;
+		/** The buffer. */
+		private float[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            float form.
+		 */
+		private FloatArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveFloatParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new float[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? 0 : ((Number) value).floatValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseFloat(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(float value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (float[]) buffer;
+		}
+	}
+
+	/** Buffers the items of a boolean array. */
+	private static final class BooleanArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no boolean form. */
+		private final PrimitiveBooleanParser parser;
+		/** The buffer. */
+		private boolean[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            boolean form.
+		 */
+		private BooleanArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveBooleanParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new boolean[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? false : ((Boolean) value).booleanValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseBoolean(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(boolean value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (boolean[]) buffer;
+		}
+	}
+
+	/** Buffers the items of a char array. */
+	private static final class CharArrayBuffer extends ArrayBuffer {
+		/** Converts text values, or null if the converter has no char form. */
+		private final PrimitiveCharParser parser;
+		/** The buffer. */
+		private char[] values;
+
+		/**
+		 * @param binding
+		 *            The binding of the array field.
+		 * @param parser
+		 *            Converts text values, or null if the converter has no
+		 *            char form.
+		 */
+		private CharArrayBuffer(BindingPlan.FieldBinding binding, PrimitiveCharParser parser) {
+			super(binding);
+			this.parser = parser;
+			this.values = new char[initialLength()];
+		}
+
+		@Override
+		void add(Object target, Object value) {
+			append(value == null ? '\0' : ((Character) value).charValue());
+		}
+
+		@Override
+		void addText(Object target, CharSequence text) throws XMLParsingException {
+			if (parser == null) {
+				super.addText(target, text);
+			} else {
+				append(parser.parseChar(text, binding.getAnnotation()));
+			}
+		}
+
+		/**
+		 * Adds a value to the buffer.
+		 *
+		 * @param value
+		 *            The value.
+		 */
+		private void append(char value) {
+			ensureSpace();
+			values[size++] = value;
+		}
+
+		@Override
+		protected Object getBuffer() {
+			return values;
+		}
+
+		@Override
+		protected void setBuffer(Object buffer) {
+			values = (char[]) buffer;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package com.alexgilleran.icesoap.parser.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.AttributeXPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
+
+/**
+ * <p>
+ * A reusable stack of the elements that an {@link XPathPullParserImpl} is
+ * currently inside, used when the parser is set to reuse its xpath elements.
+ * </p>
+ *
+ * <p>
+ * Each depth of the document has one slot that is allocated the first time the
+ * document gets that deep, and is then overwritten by every element at that
+ * depth - so once the stack has grown to the depth of the document, moving
+ * through elements and attributes allocates nothing. The slots are exposed as
+ * {@link XPathElement}s, but because they're overwritten, they're only valid
+ * until the parser moves to another element - use
+ * {@link XPathElement#clone()} to get a copy that can be kept.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+class XPathElementStack {
+	/** The starting number of slots. */
+	private static final int INITIAL_DEPTH = 16;
+	/** The starting number of predicates in each slot. */
+	private static final int INITIAL_PREDICATES = 4;
+
+	/** The element slots - index 0 is unused, as depth starts at 1. */
+	private Slot[] elements = new Slot[INITIAL_DEPTH];
+	/** An attribute for each element slot. */
+	private AttributeXPathElement[] attributes = new AttributeXPathElement[INITIAL_DEPTH];
+	/** The name of the attribute in each attribute slot. */
+	private Slot[] attributeNames = new Slot[INITIAL_DEPTH];
+	/** The depth of the current element. */
+	private int depth = 0;
+
+	/**
+	 * Pushes a new element on to the stack.
+	 *
+	 * @param name
+	 *            The name of the element.
+	 * @param nameId
+	 *            The {@link SymbolTable} ID of the name.
+	 * @return The element, with no predicates.
+	 */
+	public XPathElement push(String name, int nameId) {
+		depth++;
+
+		if (depth >= elements.length) {
+			int newLength = elements.length * 2;
+			elements = Arrays.copyOf(elements, newLength);
+			attributes = Arrays.copyOf(attributes, newLength);
+			attributeNames = Arrays.copyOf(attributeNames, newLength);
+		}
+
+		Slot element = elements[depth];
+
+		if (element == null) {
+			element = new Slot(depth == 1 ? null : elements[depth - 1]);
+			elements[depth] = element;
+			attributeNames[depth] = new Slot(element);
+			attributes[depth] = new AttributeXPathElement(attributeNames[depth]);
+		}
+
+		element.reset(name, nameId);
+
+		return element;
+	}
+
+	/**
+	 * Removes the current element from the stack.
+	 *
+	 * @return The element that's now current, or null if there isn't one.
+	 */
+	public XPathElement pop() {
+		depth--;
+
+		return peek();
+	}
+
+	/**
+	 * Gets the current element.
+	 *
+	 * @return The current element, or null if there isn't one.
+	 */
+	public XPathElement peek() {
+		return depth > 0 ? elements[depth] : null;
+	}
+
+	/**
+	 * Gets an attribute of the current element.
+	 *
+	 * @param name
+	 *            The name of the attribute.
+	 * @param nameId
+	 *            The {@link SymbolTable} ID of the name.
+	 * @return The attribute.
+	 */
+	public XPathElement attribute(String name, int nameId) {
+		attributeNames[depth].reset(name, nameId);
+
+		return attributes[depth];
+	}
+
+	/**
+	 * Empties the stack, ready for a new document.
+	 */
+	public void clear() {
+		depth = 0;
+	}
+
+	/**
+	 * One slot of the stack - behaves like a {@link SingleSlashXPathElement},
+	 * but can be overwritten and stores its predicates in arrays rather than a
+	 * map.
+	 */
+	private static class Slot implements XPathElement {
+		/** The prefix of all slots. */
+		private static final String PREFIX = "/";
+		/** The slot for the parent element, or null for the document element. */
+		private final Slot previousElement;
+		/** The name of the element. */
+		private String name;
+		/**
+		 * The ID of the name - given when the slot is overwritten, and looked
+		 * up again if it wasn't known then, as the name might have been
+		 * registered since.
+		 */
+		private int nameId;
+		/** The names of the element's predicates. */
+		private String[] predicateNames = new String[INITIAL_PREDICATES];
+		/** The values of the element's predicates. */
+		private String[] predicateValues = new String[INITIAL_PREDICATES];
+		/** The number of predicates in use. */
+		private int predicateCount;
+
+		/**
+		 * Creates a new slot.
+		 *
+		 * @param previousElement
+		 *            The slot for the parent element.
+		 */
+		private Slot(Slot previousElement) {
+			this.previousElement = previousElement;
+		}
+
+		/**
+		 * Overwrites the slot with a new element.
+		 *
+		 * @param name
+		 *            The name of the new element.
+		 * @param nameId
+		 *            The ID of the name.
+		 */
+		private void reset(String name, int nameId) {
+			this.name = name;
+			this.nameId = nameId;
+
+			// Clear out the old values so they can be garbage collected
+			Arrays.fill(predicateValues, 0, predicateCount, null);
+			predicateCount = 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNameId() {
+			if (nameId == SymbolTable.UNKNOWN) {
+				nameId = SymbolTable.getInstance().lookup(name);
+			}
+
+			return nameId;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * Returns a copy of this slot that won't change, as a
+		 * {@link SingleSlashXPathElement}.
+		 */
+		@Override
+		public XPathElement clone() {
+			XPathElement previousCopy = previousElement == null ? null : previousElement.clone();
+			XPathElement copy = new SingleSlashXPathElement(name, previousCopy);
+
+			for (int i = 0; i < predicateCount; i++) {
+				copy.addPredicate(predicateNames[i], predicateValues[i]);
+			}
+
+			return copy;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getPredicate(String predicateName) {
+			for (int i = 0; i < predicateCount; i++) {
+				if (predicateNames[i].equals(predicateName)) {
+					return predicateValues[i];
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Map<String, String> getPredicates() {
+			Map<String, String> predicates = new HashMap<String, String>();
+
+			for (int i = 0; i < predicateCount; i++) {
+				predicates.put(predicateNames[i], predicateValues[i]);
+			}
+
+			return Collections.unmodifiableMap(predicates);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void addPredicate(String name, String value) {
+			for (int i = 0; i < predicateCount; i++) {
+				if (predicateNames[i].equals(name)) {
+					predicateValues[i] = value;
+					return;
+				}
+			}
+
+			if (predicateCount == predicateNames.length) {
+				predicateNames = Arrays.copyOf(predicateNames, predicateCount * 2);
+				predicateValues = Arrays.copyOf(predicateValues, predicateCount * 2);
+			}
+
+			predicateNames[predicateCount] = name;
+			predicateValues[predicateCount] = value;
+			predicateCount++;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean matches(XPathElement otherElement) {
+			if (!SymbolTable.sameName(this, otherElement) || otherElement.isAttribute()) {
+				return false;
+			}
+
+			for (int i = 0; i < predicateCount; i++) {
+				if (!predicateValues[i].equals(otherElement.getPredicate(predicateNames[i]))) {
+					return false;
+				}
+			}
+
+			if (isFirstElement() != otherElement.isFirstElement()) {
+				return false;
+			}
+
+			return isFirstElement() || previousElement.matches(otherElement.getPreviousElement());
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public XPathElement getPreviousElement() {
+			return previousElement;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isFirstElement() {
+			return previousElement == null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public StringBuilder toStringBuilder() {
+			StringBuilder builder = isFirstElement() ? new StringBuilder() : previousElement.toStringBuilder();
+
+			builder.append(PREFIX).append(name);
+
+			if (predicateCount > 0) {
+				builder.append("[");
+
+				for (int i = 0; i < predicateCount; i++) {
+					if (i > 0) {
+						builder.append(" and ");
+					}
+
+					builder.append("@").append(predicateNames[i]).append("=\"").append(predicateValues[i])
+							.append("\"");
+				}
+
+				builder.append("]");
+			}
+
+			return builder;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return toStringBuilder().toString();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isAttribute() {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isRelative() {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getPrefix() {
+			return PREFIX;
+		}
+
+		/**
+		 * Slots always belong to the slot above them in the stack, so this is
+		 * unsupported.
+		 */
+		@Override
+		public void setPreviousElement(XPathElement previousElement) {
+			throw new UnsupportedOperationException("Elements from a reusable stack cannot be moved");
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public XPathElement getFirstElement() {
+			Slot element = this;
+
+			while (element.previousElement != null) {
+				element = element.previousElement;
+			}
+
+			return element;
+		}
+	}
+}
@@ -2,30 +2,35 @@ package com.alexgilleran.icesoap.parser.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Set;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
 import com.alexgilleran.icesoap.parser.XPathPullParser;
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.XmlPullBackend;
 import com.alexgilleran.icesoap.xml.XMLNode;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.AttributeXPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
 
 /**
- * Wrapper for {@link XmlPullParser} for XPath operations. Basically this acts
+ * Wrapper for {@link XmlTokenizer} for XPath operations. Basically this acts
  * in much the same manner as an {@link XmlPullParser}, but keeps track of the
  * current position in the document as an {@link XPathElement}, which can be
  * retrieved at any time. It also changes the parser so that attributes are an
- * event.
+ * event. The XML itself is read by a tokenizer from a {@link TokenizerBackend}
+ * - by default, {@link XmlPullBackend}.
  * 
  * @author Alex Gilleran
  * 
  */
 public class XPathPullParserImpl implements XPathPullParser {
-	/** The wrapped {@link XmlPullParser}. */
-	private XmlPullParser parser = PullParserFactory.getInstance().buildParser();
+	/** The wrapped {@link XmlTokenizer}. */
+	private final XmlTokenizer parser;
 	/** The element that the parser is currently at. */
 	private XPathElement currentElement;
 	/** The type of the current event as an int. */
@@ -40,13 +45,68 @@ public class XPathPullParserImpl implements XPathPullParser {
 
 	/** Index of the current attribute being parsed, within the current tag */
 	private int currentAttributeIndex = 0;
+	/**
+	 * Reusable stack of elements - if this is null, new elements are created
+	 * for each tag and attribute instead.
+	 */
+	private XPathElementStack elementStack;
+	/**
+	 * The names of attributes to add to elements as predicates - null means
+	 * all of them.
+	 */
+	private Set<String> capturedPredicates;
+	/**
+	 * Reusable view of the current text in the parser's buffer, returned by
+	 * {@link #getCurrentValueChars()}.
+	 */
+	private final CharArraySequence textWindow = new CharArraySequence();
+	/**
+	 * Holds the start and length of the current text within the parser's
+	 * buffer, as passed to {@link XmlTokenizer#getTextCharacters(int[])}.
+	 */
+	private final int[] textWindowHolder = new int[2];
 
+	/**
+	 * Instantiates a new {@link XPathPullParserImpl} that creates a new
+	 * {@link XPathElement} for every tag and attribute.
+	 */
 	public XPathPullParserImpl() {
-		try {
-			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
-		} catch (XmlPullParserException e) {
-			throw new RuntimeException(e);
+		this(false);
+	}
+
+	/**
+	 * Instantiates a new {@link XPathPullParserImpl}.
+	 * 
+	 * @param reuseElements
+	 *            If true, the parser keeps the current xpath in a reusable
+	 *            stack rather than creating new {@link XPathElement}s for every
+	 *            tag and attribute, so parsing allocates nothing per element.
+	 *            The downside is that the element returned by
+	 *            {@link #getCurrentElement()} (and its previous elements) will
+	 *            change as the parser moves - if it needs to be kept, use
+	 *            {@link XPathElement#clone()} to take a copy.
+	 */
+	public XPathPullParserImpl(boolean reuseElements) {
+		this(reuseElements, XmlPullBackend.getDefault().newTokenizer());
+	}
+
+	/**
+	 * Instantiates a new {@link XPathPullParserImpl} that reads XML with a
+	 * specific tokenizer.
+	 * 
+	 * @param reuseElements
+	 *            Whether to keep the current xpath in a reusable stack - see
+	 *            {@link #XPathPullParserImpl(boolean)}.
+	 * @param tokenizer
+	 *            The tokenizer to read XML with, e.g. from
+	 *            {@link TokenizerBackend#newTokenizer()}.
+	 */
+	public XPathPullParserImpl(boolean reuseElements, XmlTokenizer tokenizer) {
+		if (reuseElements) {
+			elementStack = new XPathElementStack();
 		}
+
+		this.parser = tokenizer;
 	}
 
 	/**
@@ -61,6 +121,25 @@ public class XPathPullParserImpl implements XPathPullParser {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CharSequence getCurrentValueChars() {
+		if (currentElement.isAttribute()) {
+			return getCurrentAttributeValue();
+		}
+
+		char[] chars = parser.getTextCharacters(textWindowHolder);
+
+		if (chars == null) {
+			return parser.getText();
+		}
+
+		textWindow.set(chars, textWindowHolder[0], textWindowHolder[1]);
+		return textWindow;
+	}
+
 	/**
 	 * Gets the current attribute value.
 	 * 
@@ -99,6 +178,38 @@ public class XPathPullParserImpl implements XPathPullParser {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void skipElement() throws XMLParsingException {
+		try {
+			if (parser.getEventType() != XmlPullParser.START_TAG) {
+				throw new XMLParsingException("Attempted to skip an element when not at the start of one");
+			}
+
+			trimAttribute();
+
+			int depth = parser.getDepth();
+			int rawEventType;
+
+			do {
+				rawEventType = parser.next();
+
+				if (rawEventType == XmlPullParser.END_DOCUMENT) {
+					throw new XMLParsingException("Document ended before the skipped element did");
+				}
+			} while (rawEventType != XmlPullParser.END_TAG || parser.getDepth() != depth);
+
+			eventType = rawEventType;
+			flagLastElementForRemoval();
+		} catch (XmlPullParserException e) {
+			throw new XMLParsingException(e);
+		} catch (IOException e) {
+			throw new XMLParsingException(e);
+		}
+	}
+
 	/**
 	 * Advances the parser to the next attribute.
 	 * 
@@ -107,8 +218,14 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private int nextAttribute() {
 		// There are attributes here - process them in turn before we
 		// get to the value
-		currentElement = new AttributeXPathElement(new SingleSlashXPathElement(
-				parser.getAttributeName(currentAttributeIndex), currentElement));
+		String name = parser.getAttributeName(currentAttributeIndex);
+		int nameId = parser.getAttributeNameId(currentAttributeIndex);
+
+		if (elementStack != null) {
+			currentElement = elementStack.attribute(name, nameId);
+		} else {
+			currentElement = new AttributeXPathElement(new SingleSlashXPathElement(name, nameId, currentElement));
+		}
 
 		currentAttributeIndex++;
 
@@ -148,7 +265,11 @@ public class XPathPullParserImpl implements XPathPullParser {
 		// As we've started a new element, the attribute index starts from again
 		currentAttributeIndex = 0;
 
-		currentElement = new SingleSlashXPathElement(parser.getName(), currentElement);
+		if (elementStack != null) {
+			currentElement = elementStack.push(parser.getName(), parser.getNameId());
+		} else {
+			currentElement = new SingleSlashXPathElement(parser.getName(), parser.getNameId(), currentElement);
+		}
 
 		// Add predicates
 		addPredicates();
@@ -161,12 +282,30 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private void addPredicates() {
 		int attributeCount = parser.getAttributeCount();
 		if (attributeCount > 0) {
-			for (int i = 0; i < attributeCount; i++) {
-				currentElement.addPredicate(parser.getAttributeName(i), parser.getAttributeValue(i));
+			if (capturedPredicates == null) {
+				for (int i = 0; i < attributeCount; i++) {
+					currentElement.addPredicate(parser.getAttributeName(i), parser.getAttributeValue(i));
+				}
+			} else if (!capturedPredicates.isEmpty()) {
+				for (int i = 0; i < attributeCount; i++) {
+					String attributeName = parser.getAttributeName(i);
+
+					if (capturedPredicates.contains(attributeName)) {
+						currentElement.addPredicate(attributeName, parser.getAttributeValue(i));
+					}
+				}
 			}
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCapturedPredicates(Set<String> attributeNames) {
+		this.capturedPredicates = attributeNames;
+	}
+
 	@Override
 	public boolean isCurrentValueXsiNil() {
 		return (XMLNode.XSI_NIL_TRUE.equals(parser.getAttributeValue(XMLNode.NS_URI_XSI, XMLNode.XSI_NIL_NAME)));
@@ -188,7 +327,11 @@ public class XPathPullParserImpl implements XPathPullParser {
 	private void trimEndedElement() {
 		if (removeLastXPathElement) {
 			// If the flag was set to remove the last XPath element, do it now
-			currentElement = currentElement.getPreviousElement();
+			if (elementStack != null) {
+				currentElement = elementStack.pop();
+			} else {
+				currentElement = currentElement.getPreviousElement();
+			}
 			removeLastXPathElement = false;
 		}
 	}
@@ -212,6 +355,14 @@ public class XPathPullParserImpl implements XPathPullParser {
 		return currentElement;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getDepth() {
+		return parser.getDepth();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -226,5 +377,11 @@ public class XPathPullParserImpl implements XPathPullParser {
 	@Override
 	public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
 		parser.setInput(inputStream, inputEncoding);
+
+		if (elementStack != null) {
+			elementStack.clear();
+			currentElement = null;
+			removeLastXPathElement = false;
+		}
 	}
 }
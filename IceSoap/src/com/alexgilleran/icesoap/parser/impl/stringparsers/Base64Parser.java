@@ -0,0 +1,77 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import java.util.Arrays;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+/**
+ * Parses xsd:base64Binary values into byte arrays. Whitespace anywhere in the
+ * value is ignored, as base64 values are often split over several lines.
+ */
+public class Base64Parser implements StringParser<byte[]> {
+	/** Marks chars that aren't part of the base64 alphabet. */
+	private static final int INVALID = -1;
+	/** The value of each base64 char, or {@link #INVALID}. */
+	private static final int[] VALUES = new int[128];
+	static {
+		Arrays.fill(VALUES, INVALID);
+
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			VALUES[alphabet.charAt(i)] = i;
+		}
+	}
+
+	@Override
+	public byte[] parse(String stringValue, XMLField xmlField) throws XMLParsingException {
+		byte[] bytes = new byte[stringValue.length() * 3 / 4];
+		int byteCount = 0;
+		int buffer = 0;
+		int bufferedChars = 0;
+		boolean padded = false;
+
+		for (int i = 0; i < stringValue.length(); i++) {
+			char c = stringValue.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+
+			if (c == '=') {
+				padded = true;
+				continue;
+			}
+
+			int value = c < VALUES.length ? VALUES[c] : INVALID;
+
+			if (value == INVALID || padded) {
+				throw new XMLParsingException("Encountered invalid base64 value " + stringValue);
+			}
+
+			buffer = (buffer << 6) | value;
+			bufferedChars++;
+
+			if (bufferedChars == 4) {
+				bytes[byteCount++] = (byte) (buffer >> 16);
+				bytes[byteCount++] = (byte) (buffer >> 8);
+				bytes[byteCount++] = (byte) buffer;
+				buffer = 0;
+				bufferedChars = 0;
+			}
+		}
+
+		// Whatever's left over after the last full group of four chars
+		if (bufferedChars == 2) {
+			bytes[byteCount++] = (byte) (buffer >> 4);
+		} else if (bufferedChars == 3) {
+			bytes[byteCount++] = (byte) (buffer >> 10);
+			bytes[byteCount++] = (byte) (buffer >> 2);
+		} else if (bufferedChars == 1) {
+			throw new XMLParsingException("Encountered truncated base64 value " + stringValue);
+		}
+
+		return byteCount == bytes.length ? bytes : Arrays.copyOf(bytes, byteCount);
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import java.math.BigInteger;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+public class BigIntegerParser implements StringParser<BigInteger> {
+
+	@Override
+	public BigInteger parse(String stringValue, XMLField xmlField) throws XMLParsingException {
+		return new BigInteger(stringValue);
+	}
+
+}
@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class BooleanParser implements StringParser<Boolean> {
+public class BooleanParser implements CharSequenceParser<Boolean>, PrimitiveBooleanParser {
 
 	@Override
 	public Boolean parse(String stringValue, XMLField xmlField) {
-		return Boolean.parseBoolean(stringValue);
+		return parseBoolean(stringValue, xmlField);
+	}
+
+	@Override
+	public Boolean parse(CharSequence value, XMLField xmlField) {
+		return parseBoolean(value, xmlField);
+	}
+
+	@Override
+	public boolean parseBoolean(CharSequence value, XMLField xmlField) {
+		return CharSequences.parseBoolean(value);
 	}
 
 }
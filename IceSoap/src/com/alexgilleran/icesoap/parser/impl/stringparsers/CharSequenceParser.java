@@ -0,0 +1,16 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+/**
+ * A {@link StringParser} that can also parse straight from a
+ * {@link CharSequence}, such as a window onto the pull parser's buffer, so that
+ * no {@link String} has to be created for the value.
+ *
+ * @param <ParsedType>
+ *            The type that values are parsed into.
+ */
+public interface CharSequenceParser<ParsedType extends Object> extends StringParser<ParsedType> {
+	ParsedType parse(CharSequence value, XMLField xmlField) throws XMLParsingException;
+}
@@ -0,0 +1,280 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+/**
+ * <p>
+ * Parses numbers and booleans straight from a {@link CharSequence}.
+ * </p>
+ *
+ * <p>
+ * Only plain values are handled here (e.g. "-123" or "12.50"), which is nearly
+ * everything that turns up in SOAP responses. Anything else - exponents,
+ * whitespace, very long numbers, invalid values and so on - is handed to the
+ * normal {@link Integer#parseInt(String)} etc. instead, so the result (or
+ * exception) is always exactly the same as parsing a {@link String}.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+final class CharSequences {
+	/** Most digits an int can have without any chance of overflowing. */
+	private static final int MAX_SAFE_INT_DIGITS = 9;
+	/** Most digits a long can have without any chance of overflowing. */
+	private static final int MAX_SAFE_LONG_DIGITS = 18;
+	/**
+	 * Most digits a double can have while still being exactly representable -
+	 * 10^15 is less than 2^53.
+	 */
+	private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+	/**
+	 * Most digits a float can have while still being exactly representable -
+	 * 10^7 is less than 2^24.
+	 */
+	private static final int MAX_EXACT_FLOAT_DIGITS = 7;
+
+	/** Powers of ten that are exactly representable as doubles. */
+	private static final double[] DOUBLE_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15 };
+	/** Powers of ten that are exactly representable as floats. */
+	private static final float[] FLOAT_POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f };
+
+	/** Value returned by {@link #scanDecimal(CharSequence, int)} if it can't cope. */
+	private static final long NOT_PLAIN = Long.MIN_VALUE;
+
+	/** Static methods only. */
+	private CharSequences() {
+	}
+
+	/**
+	 * Parses an int in the same way as {@link Integer#parseInt(String)}.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @return The parsed int.
+	 * @throws NumberFormatException
+	 *             If the value isn't a valid int.
+	 */
+	static int parseInt(CharSequence value) {
+		long result = parseWholeNumber(value, MAX_SAFE_INT_DIGITS);
+
+		if (result == NOT_PLAIN) {
+			return Integer.parseInt(toStringOrNull(value));
+		}
+
+		return (int) result;
+	}
+
+	/**
+	 * Parses a long in the same way as {@link Long#parseLong(String)}.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @return The parsed long.
+	 * @throws NumberFormatException
+	 *             If the value isn't a valid long.
+	 */
+	static long parseLong(CharSequence value) {
+		long result = parseWholeNumber(value, MAX_SAFE_LONG_DIGITS);
+
+		if (result == NOT_PLAIN) {
+			return Long.parseLong(toStringOrNull(value));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Parses a double in the same way as {@link Double#parseDouble(String)}.
+	 * Plain decimals with few enough digits are converted by dividing their
+	 * digits by a power of ten - as both are exact, the division gives the
+	 * same correctly rounded result as {@link Double#parseDouble(String)}.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @return The parsed double.
+	 * @throws NumberFormatException
+	 *             If the value isn't a valid double.
+	 */
+	static double parseDouble(CharSequence value) {
+		if (value != null) {
+			long scanned = scanDecimal(value, MAX_EXACT_DOUBLE_DIGITS);
+
+			if (scanned != NOT_PLAIN) {
+				double result = getDigits(scanned) / DOUBLE_POWERS_OF_TEN[getFractionDigits(scanned)];
+				return value.charAt(0) == '-' ? -result : result;
+			}
+		}
+
+		return Double.parseDouble(toStringOrNull(value));
+	}
+
+	/**
+	 * Parses a float in the same way as {@link Float#parseFloat(String)} - see
+	 * {@link #parseDouble(CharSequence)}.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @return The parsed float.
+	 * @throws NumberFormatException
+	 *             If the value isn't a valid float.
+	 */
+	static float parseFloat(CharSequence value) {
+		if (value != null) {
+			long scanned = scanDecimal(value, MAX_EXACT_FLOAT_DIGITS);
+
+			if (scanned != NOT_PLAIN) {
+				float result = getDigits(scanned) / FLOAT_POWERS_OF_TEN[getFractionDigits(scanned)];
+				return value.charAt(0) == '-' ? -result : result;
+			}
+		}
+
+		return Float.parseFloat(toStringOrNull(value));
+	}
+
+	/**
+	 * Parses a boolean in the same way as {@link Boolean#parseBoolean(String)}
+	 * - true if the value is "true", ignoring case, otherwise false.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @return The parsed boolean.
+	 */
+	static boolean parseBoolean(CharSequence value) {
+		if (value == null || value.length() != 4) {
+			return false;
+		}
+
+		return equalsIgnoreCase(value.charAt(0), 't') && equalsIgnoreCase(value.charAt(1), 'r')
+				&& equalsIgnoreCase(value.charAt(2), 'u') && equalsIgnoreCase(value.charAt(3), 'e');
+	}
+
+	/**
+	 * Compares chars in the same way as {@link String#equalsIgnoreCase(String)}.
+	 *
+	 * @param c
+	 *            The char to compare.
+	 * @param lowerCase
+	 *            The lower case char to compare against.
+	 * @return true if they're equal, ignoring case.
+	 */
+	private static boolean equalsIgnoreCase(char c, char lowerCase) {
+		return c == lowerCase || Character.toLowerCase(Character.toUpperCase(c)) == lowerCase;
+	}
+
+	/**
+	 * Parses an optionally negative whole number made up of ASCII digits.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @param maxDigits
+	 *            The most digits to parse - longer values aren't parsed.
+	 * @return The number, or {@link #NOT_PLAIN} if the value is null, empty,
+	 *         too long or has anything but digits after the sign.
+	 */
+	private static long parseWholeNumber(CharSequence value, int maxDigits) {
+		if (value == null) {
+			return NOT_PLAIN;
+		}
+
+		int length = value.length();
+		boolean negative = length > 0 && value.charAt(0) == '-';
+		int start = negative ? 1 : 0;
+
+		if (length == start || length - start > maxDigits) {
+			return NOT_PLAIN;
+		}
+
+		long result = 0;
+
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return NOT_PLAIN;
+			}
+
+			result = result * 10 + (c - '0');
+		}
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Scans an optionally signed plain decimal made up of ASCII digits and at
+	 * most one decimal point.
+	 *
+	 * @param value
+	 *            The value to scan.
+	 * @param maxDigits
+	 *            The most digits to scan - longer values aren't scanned.
+	 * @return The digits as a whole number, with the number of digits after the
+	 *         point packed into the top byte (see {@link #getDigits(long)} and
+	 *         {@link #getFractionDigits(long)}), or {@link #NOT_PLAIN} if the
+	 *         value isn't a plain decimal with few enough digits.
+	 */
+	private static long scanDecimal(CharSequence value, int maxDigits) {
+		int length = value.length();
+		int start = length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+		long digits = 0;
+		int digitCount = 0;
+		int pointIndex = -1;
+
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+				if (++digitCount > maxDigits) {
+					return NOT_PLAIN;
+				}
+
+				digits = digits * 10 + (c - '0');
+			} else if (c == '.' && pointIndex < 0) {
+				pointIndex = i;
+			} else {
+				return NOT_PLAIN;
+			}
+		}
+
+		if (digitCount == 0) {
+			return NOT_PLAIN;
+		}
+
+		long fractionDigits = pointIndex < 0 ? 0 : length - pointIndex - 1;
+
+		return (fractionDigits << 56) | digits;
+	}
+
+	/**
+	 * Gets the digits from the result of {@link #scanDecimal(CharSequence, int)}.
+	 *
+	 * @param scanned
+	 *            The scanned value.
+	 * @return The digits as a whole number.
+	 */
+	private static long getDigits(long scanned) {
+		return scanned & 0x00FFFFFFFFFFFFFFL;
+	}
+
+	/**
+	 * Gets the number of digits after the decimal point from the result of
+	 * {@link #scanDecimal(CharSequence, int)}.
+	 *
+	 * @param scanned
+	 *            The scanned value.
+	 * @return The number of digits after the point.
+	 */
+	private static int getFractionDigits(long scanned) {
+		return (int) (scanned >>> 56);
+	}
+
+	/**
+	 * Converts a value to a {@link String} for the fallback parsers, keeping
+	 * nulls as null so they fail in the same way.
+	 *
+	 * @param value
+	 *            The value.
+	 * @return The value as a {@link String}, or null.
+	 */
+	private static String toStringOrNull(CharSequence value) {
+		return value == null ? null : value.toString();
+	}
+}
@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class CharacterParser implements StringParser<Character> {
+public class CharacterParser implements CharSequenceParser<Character>, PrimitiveCharParser {
 
 	@Override
 	public Character parse(String stringValue, XMLField xmlField) {
-		return new Character(stringValue.charAt(0));
+		return parseChar(stringValue, xmlField);
+	}
+
+	@Override
+	public Character parse(CharSequence value, XMLField xmlField) {
+		return parseChar(value, xmlField);
+	}
+
+	@Override
+	public char parseChar(CharSequence value, XMLField xmlField) {
+		return value.charAt(0);
 	}
 
 }
@@ -0,0 +1,137 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+
+/**
+ * <p>
+ * Keeps track of the {@link StringParser} used to convert text values into
+ * each type of {@link XMLField}-annotated field (or the items of a list field).
+ * </p>
+ *
+ * <p>
+ * Converters are built in for Strings, primitives and their wrappers,
+ * {@link BigDecimal}, {@link BigInteger}, {@link Date}, {@link UUID},
+ * byte[] (as base64) and all enums (by constant name). Any other type can be
+ * supported by registering a converter for it with
+ * {@link #register(Class, StringParser)} - fields of that type are then
+ * converted without needing a
+ * {@link com.alexgilleran.icesoap.parser.processor.Processor}.
+ * </p>
+ *
+ * <p>
+ * The converter for each field is looked up once, when the binding for its
+ * class is first built, so register converters before parsing anything that
+ * uses them. The registry is safe to use from multiple threads, and registered
+ * converters will be called from multiple threads, so they must be too.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+public final class ConverterRegistry {
+	/** The converter for each type. */
+	private static final ConcurrentMap<Class<?>, StringParser<?>> CONVERTERS = new ConcurrentHashMap<Class<?>, StringParser<?>>();
+	static {
+		IntegerParser integerParser = new IntegerParser();
+		BooleanParser booleanParser = new BooleanParser();
+		CharacterParser characterParser = new CharacterParser();
+		DoubleParser doubleParser = new DoubleParser();
+		FloatParser floatParser = new FloatParser();
+		LongParser longParser = new LongParser();
+
+		register(Integer.class, integerParser);
+		register(int.class, integerParser);
+		register(Boolean.class, booleanParser);
+		register(boolean.class, booleanParser);
+		register(Character.class, characterParser);
+		register(char.class, characterParser);
+		register(Double.class, doubleParser);
+		register(double.class, doubleParser);
+		register(Long.class, longParser);
+		register(long.class, longParser);
+		register(Float.class, floatParser);
+		register(float.class, floatParser);
+		register(Date.class, new DateParser());
+		register(BigDecimal.class, new BigDecimalParser());
+		register(BigInteger.class, new BigIntegerParser());
+		register(UUID.class, new UUIDParser());
+		register(byte[].class, new Base64Parser());
+	}
+
+	/** Static methods only. */
+	private ConverterRegistry() {
+	}
+
+	/**
+	 * Registers the converter for a type, replacing any existing converter for
+	 * it. To convert a primitive type, register a converter for both it and its
+	 * wrapper (e.g. int.class and Integer.class).
+	 *
+	 * @param type
+	 *            The type that the converter converts to.
+	 * @param converter
+	 *            The converter.
+	 */
+	public static <T> void register(Class<T> type, StringParser<? extends T> converter) {
+		if (type == null || converter == null) {
+			throw new IllegalArgumentException("Both a type and a converter must be supplied");
+		}
+
+		CONVERTERS.put(type, converter);
+	}
+
+	/**
+	 * Gets the converter for a type. Enums without a registered converter get
+	 * an {@link EnumParser}, which is then kept for next time.
+	 *
+	 * @param type
+	 *            The type to convert to.
+	 * @return The converter, or null if there isn't one - including for
+	 *         Strings, which don't need converting.
+	 */
+	public static StringParser<?> getConverter(Class<?> type) {
+		StringParser<?> converter = CONVERTERS.get(type);
+
+		if (converter == null && type.isEnum()) {
+			converter = newEnumParser(type);
+
+			StringParser<?> existing = CONVERTERS.putIfAbsent(type, converter);
+			if (existing != null) {
+				converter = existing;
+			}
+		}
+
+		return converter;
+	}
+
+	/**
+	 * Determines whether text values can be set on a field of a type without a
+	 * nested parser or processor.
+	 *
+	 * @param type
+	 *            The type.
+	 * @return true if the type is String or has a converter.
+	 */
+	public static boolean canConvert(Class<?> type) {
+		return type == String.class || getConverter(type) != null;
+	}
+
+	/**
+	 * Creates an {@link EnumParser} for a class that's known to be an enum.
+	 *
+	 * @param enumClass
+	 *            The enum class.
+	 * @return The new parser.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static StringParser<?> newEnumParser(Class<?> enumClass) {
+		return new EnumParser(enumClass);
+	}
+}
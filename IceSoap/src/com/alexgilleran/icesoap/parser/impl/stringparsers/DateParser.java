@@ -2,21 +2,213 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
 
-public class DateParser implements StringParser<Date> {
+/**
+ * <p>
+ * Parses dates with the format in {@link XMLField#dateFormat()}.
+ * </p>
+ *
+ * <p>
+ * {@link SimpleDateFormat}s are expensive to create and can't be shared
+ * between threads, so one is kept for each format on each thread rather than
+ * creating one for every value. The usual xsd:date and xsd:dateTime formats
+ * (see {@link #XSD_DATE} and {@link #XSD_DATE_TIME}) are parsed by hand
+ * without a {@link SimpleDateFormat} at all, as long as the value is in the
+ * expected form - anything else falls back to {@link SimpleDateFormat}, so
+ * the results are always the same. Values can be parsed straight from the
+ * pull parser's buffer, in which case a {@link String} is only created if the
+ * value has to fall back.
+ * </p>
+ */
+public class DateParser implements CharSequenceParser<Date> {
+	/** Format of an xsd:date - also the default {@link XMLField#dateFormat()}. */
+	public static final String XSD_DATE = "yyyy-MM-dd";
+	/** Format of an xsd:dateTime, ignoring any fractional seconds or zone. */
+	public static final String XSD_DATE_TIME = "yyyy-MM-dd'T'HH:mm:ss";
+	/** {@link #XSD_DATE_TIME} with a 12-hour hour field, as commonly used. */
+	private static final String XSD_DATE_TIME_12_HOUR = "yyyy-MM-dd'T'hh:mm:ss";
+
+	/** Length of a value in {@link #XSD_DATE} form. */
+	private static final int DATE_LENGTH = 10;
+	/** Length of a value in {@link #XSD_DATE_TIME} form. */
+	private static final int DATE_TIME_LENGTH = 19;
+
+	/** The formatter for each thread, against the format pattern. */
+	private static final ConcurrentMap<String, ThreadLocal<SimpleDateFormat>> FORMATS = new ConcurrentHashMap<String, ThreadLocal<SimpleDateFormat>>();
+
+	/** Calendar used by the hand-written parser on each thread. */
+	private static final ThreadLocal<Calendar> CALENDARS = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
 
 	@Override
 	public Date parse(String valueString, XMLField xmlField) throws XMLParsingException {
+		return parse((CharSequence) valueString, xmlField);
+	}
+
+	@Override
+	public Date parse(CharSequence value, XMLField xmlField) throws XMLParsingException {
+		String pattern = xmlField.dateFormat();
+		Date date = null;
+
+		if (XSD_DATE.equals(pattern)) {
+			date = parseIso(value, false, false);
+		} else if (XSD_DATE_TIME.equals(pattern)) {
+			date = parseIso(value, true, false);
+		} else if (XSD_DATE_TIME_12_HOUR.equals(pattern)) {
+			date = parseIso(value, true, true);
+		}
+
+		if (date != null) {
+			return date;
+		}
+
+		String valueString = value.toString();
+
 		try {
-			return new SimpleDateFormat(xmlField.dateFormat()).parse(valueString);
+			return getFormat(pattern).parse(valueString);
 		} catch (ParseException e) {
 			throw new XMLParsingException("Encountered date parsing exception when parsing " + valueString
-					+ " with format " + xmlField.dateFormat() + " for value " + valueString, e);
+					+ " with format " + pattern + " for value " + valueString, e);
 		}
 	}
 
+	/**
+	 * Gets the formatter for a pattern for the current thread, creating it if
+	 * this thread hasn't used the pattern before.
+	 *
+	 * @param pattern
+	 *            The {@link SimpleDateFormat} pattern.
+	 * @return The formatter.
+	 */
+	private static SimpleDateFormat getFormat(final String pattern) {
+		ThreadLocal<SimpleDateFormat> formats = FORMATS.get(pattern);
+
+		if (formats == null) {
+			formats = new ThreadLocal<SimpleDateFormat>() {
+				@Override
+				protected SimpleDateFormat initialValue() {
+					return new SimpleDateFormat(pattern);
+				}
+			};
+
+			ThreadLocal<SimpleDateFormat> existing = FORMATS.putIfAbsent(pattern, formats);
+			if (existing != null) {
+				formats = existing;
+			}
+		}
+
+		return formats.get();
+	}
+
+	/**
+	 * Parses a date in xsd:date or xsd:dateTime form by hand. Like
+	 * {@link SimpleDateFormat}, anything after the end of the pattern (e.g.
+	 * fractional seconds or a time zone) is ignored, the date is in the
+	 * default time zone, and out-of-range fields roll over.
+	 *
+	 * @param value
+	 *            The value to parse.
+	 * @param withTime
+	 *            Whether the value has a time.
+	 * @param twelveHour
+	 *            Whether the hour is in 12-hour form, where 12 means 0.
+	 * @return The parsed date, or null if the value isn't in the expected form
+	 *         and should be parsed by {@link SimpleDateFormat} instead.
+	 */
+	private static Date parseIso(CharSequence value, boolean withTime, boolean twelveHour) {
+		if (value.length() < (withTime ? DATE_TIME_LENGTH : DATE_LENGTH)) {
+			return null;
+		}
+
+		int year = parseDigits(value, 0, 4);
+		int month = parseDigits(value, 5, 2);
+		int day = parseDigits(value, 8, 2);
+
+		if (year < 0 || month < 0 || day < 0 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+			return null;
+		}
+
+		// A digit straight after a field would have been read as part of it
+		if (value.length() > DATE_LENGTH && isDigit(value.charAt(DATE_LENGTH))) {
+			return null;
+		}
+
+		int hour = 0;
+		int minute = 0;
+		int second = 0;
+
+		if (withTime) {
+			hour = parseDigits(value, 11, 2);
+			minute = parseDigits(value, 14, 2);
+			second = parseDigits(value, 17, 2);
+
+			if (hour < 0 || minute < 0 || second < 0 || value.charAt(10) != 'T' || value.charAt(13) != ':'
+					|| value.charAt(16) != ':') {
+				return null;
+			}
+
+			if (value.length() > DATE_TIME_LENGTH && isDigit(value.charAt(DATE_TIME_LENGTH))) {
+				return null;
+			}
+
+			if (twelveHour && hour == 12) {
+				hour = 0;
+			}
+		}
+
+		Calendar calendar = CALENDARS.get();
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+
+		return calendar.getTime();
+	}
+
+	/**
+	 * Parses a fixed number of decimal digits.
+	 *
+	 * @param value
+	 *            The text to parse from.
+	 * @param start
+	 *            The index of the first digit.
+	 * @param count
+	 *            The number of digits.
+	 * @return The number, or -1 if any of the characters isn't a digit.
+	 */
+	private static int parseDigits(CharSequence value, int start, int count) {
+		int result = 0;
+
+		for (int i = start; i < start + count; i++) {
+			char c = value.charAt(i);
+
+			if (!isDigit(c)) {
+				return -1;
+			}
+
+			result = result * 10 + (c - '0');
+		}
+
+		return result;
+	}
+
+	/**
+	 * Determines whether a character is an ASCII digit.
+	 *
+	 * @param c
+	 *            The character.
+	 * @return true if it's 0-9.
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
 }
@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class DoubleParser implements StringParser<Double> {
+public class DoubleParser implements CharSequenceParser<Double>, PrimitiveDoubleParser {
 
 	@Override
 	public Double parse(String stringValue, XMLField xmlField) {
-		return Double.parseDouble(stringValue);
+		return parseDouble(stringValue, xmlField);
+	}
+
+	@Override
+	public Double parse(CharSequence value, XMLField xmlField) {
+		return parseDouble(value, xmlField);
+	}
+
+	@Override
+	public double parseDouble(CharSequence value, XMLField xmlField) {
+		return CharSequences.parseDouble(value);
 	}
 
 }
@@ -0,0 +1,47 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+/**
+ * Parses enum constants by name. The name of every constant is looked up once
+ * when the parser is created, so parsing a value is a single map lookup.
+ *
+ * @param <E>
+ *            The enum type.
+ */
+public class EnumParser<E extends Enum<E>> implements StringParser<E> {
+	/** The enum class. */
+	private final Class<E> enumClass;
+	/** Every constant of the enum, against its name. */
+	private final Map<String, E> constants = new HashMap<String, E>();
+
+	/**
+	 * Creates a new parser for an enum.
+	 *
+	 * @param enumClass
+	 *            The enum class.
+	 */
+	public EnumParser(Class<E> enumClass) {
+		this.enumClass = enumClass;
+
+		for (E constant : enumClass.getEnumConstants()) {
+			constants.put(constant.name(), constant);
+		}
+	}
+
+	@Override
+	public E parse(String stringValue, XMLField xmlField) throws XMLParsingException {
+		E constant = constants.get(stringValue);
+
+		if (constant == null) {
+			throw new XMLParsingException("No constant of enum " + enumClass.getName() + " is named " + stringValue);
+		}
+
+		return constant;
+	}
+
+}
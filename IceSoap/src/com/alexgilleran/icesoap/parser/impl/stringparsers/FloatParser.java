@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class FloatParser implements StringParser<Float> {
+public class FloatParser implements CharSequenceParser<Float>, PrimitiveFloatParser {
 
 	@Override
 	public Float parse(String stringValue, XMLField xmlField) {
-		return Float.parseFloat(stringValue);
+		return parseFloat(stringValue, xmlField);
+	}
+
+	@Override
+	public Float parse(CharSequence value, XMLField xmlField) {
+		return parseFloat(value, xmlField);
+	}
+
+	@Override
+	public float parseFloat(CharSequence value, XMLField xmlField) {
+		return CharSequences.parseFloat(value);
 	}
 
 }
@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class IntegerParser implements StringParser<Integer> {
+public class IntegerParser implements CharSequenceParser<Integer>, PrimitiveIntParser {
 
 	@Override
 	public Integer parse(String stringValue, XMLField xmlField) {
-		return Integer.parseInt(stringValue);
+		return parseInt(stringValue, xmlField);
+	}
+
+	@Override
+	public Integer parse(CharSequence value, XMLField xmlField) {
+		return parseInt(value, xmlField);
+	}
+
+	@Override
+	public int parseInt(CharSequence value, XMLField xmlField) {
+		return CharSequences.parseInt(value);
 	}
 
 }
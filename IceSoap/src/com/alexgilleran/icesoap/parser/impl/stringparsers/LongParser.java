@@ -2,11 +2,21 @@ package com.alexgilleran.icesoap.parser.impl.stringparsers;
 
 import com.alexgilleran.icesoap.annotation.XMLField;
 
-public class LongParser implements StringParser<Long> {
+public class LongParser implements CharSequenceParser<Long>, PrimitiveLongParser {
 
 	@Override
 	public Long parse(String stringValue, XMLField xmlField) {
-		return Long.parseLong(stringValue);
+		return parseLong(stringValue, xmlField);
+	}
+
+	@Override
+	public Long parse(CharSequence value, XMLField xmlField) {
+		return parseLong(value, xmlField);
+	}
+
+	@Override
+	public long parseLong(CharSequence value, XMLField xmlField) {
+		return CharSequences.parseLong(value);
 	}
 
 }
@@ -0,0 +1,11 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+
+/**
+ * Parses a double straight from its text, without boxing it - the text may be a
+ * window onto the pull parser's buffer rather than a {@link String}.
+ */
+public interface PrimitiveDoubleParser {
+	double parseDouble(CharSequence value, XMLField xmlField);
+}
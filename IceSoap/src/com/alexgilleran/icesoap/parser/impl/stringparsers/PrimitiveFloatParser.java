@@ -0,0 +1,11 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+
+/**
+ * Parses a float straight from its text, without boxing it - the text may be a
+ * window onto the pull parser's buffer rather than a {@link String}.
+ */
+public interface PrimitiveFloatParser {
+	float parseFloat(CharSequence value, XMLField xmlField);
+}
@@ -0,0 +1,19 @@
+package com.alexgilleran.icesoap.parser.impl.stringparsers;
+
+import java.util.UUID;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+
+public class UUIDParser implements StringParser<UUID> {
+
+	@Override
+	public UUID parse(String stringValue, XMLField xmlField) throws XMLParsingException {
+		try {
+			return UUID.fromString(stringValue);
+		} catch (IllegalArgumentException e) {
+			throw new XMLParsingException("Encountered invalid UUID " + stringValue, e);
+		}
+	}
+
+}
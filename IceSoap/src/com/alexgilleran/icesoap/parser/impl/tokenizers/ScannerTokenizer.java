@@ -0,0 +1,1502 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
+/**
+ * <p>
+ * IceSoap's own tokenizer - a small hand-written scanner that only does what
+ * parsing SOAP responses needs, so it has much less to do for each byte than a
+ * general purpose parser.
+ * </p>
+ *
+ * <p>
+ * It handles elements, attributes, namespaces, the predefined and numeric
+ * entities, CDATA sections and line ending normalisation. Comments and
+ * processing instructions are skipped, and DOCTYPEs are skipped without being
+ * processed, as SOAP messages can't have them - so entities declared in a DTD
+ * aren't supported. Like XmlPull, it rejects end tags that don't match start
+ * tags, duplicate attributes, unbound prefixes, more than one root element,
+ * text outside the root element and ]]&gt; in text - but it doesn't check
+ * everything a general purpose parser would, e.g. that names only use the
+ * chars XML allows in names.
+ * </p>
+ *
+ * <p>
+ * It scans UTF-8 bytes directly, rather than decoding the whole document into
+ * chars first:
+ * </p>
+ *
+ * <ul>
+ * <li>Text and attribute values are only decoded when they're asked for - an
+ * event just records where its bytes are in the buffer, so text that isn't
+ * bound to anything (whitespace between tags, unmapped elements) is never
+ * decoded at all.</li>
+ * <li>Names are looked up straight from their bytes in a cache kept by the
+ * tokenizer, so a String is only built (and its {@link SymbolTable} ID looked
+ * up) the first time a name is seen, and end tags are checked against start
+ * tags by comparing bytes.</li>
+ * </ul>
+ *
+ * <p>
+ * Documents in other encodings are re-encoded to UTF-8 as they're read, so
+ * they still work, just without the benefit.
+ * </p>
+ *
+ * @author Alex Gilleran
+ */
+public final class ScannerTokenizer implements XmlTokenizer {
+	/** The namespace that the xml prefix is always bound to. */
+	static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+	/** The name (or prefix) of namespace declaration attributes. */
+	static final String XMLNS = "xmlns";
+	/** The number of bytes looked at to detect the encoding. */
+	private static final int DECLARATION_LENGTH = 256;
+	/** The encoding used when none is given or declared. */
+	private static final String DEFAULT_ENCODING = "UTF-8";
+	/** The encoding names are in. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	/** The most names cached - after this, new names aren't added. */
+	private static final int MAX_NAMES = 1024;
+	/** The number of bytes read from the stream at a time. */
+	private static final int BUFFER_SIZE = 8192;
+	/** The longest entity reference allowed, not including &amp; and ;. */
+	private static final int MAX_ENTITY_LENGTH = 10;
+	/** Replaces bytes that aren't valid UTF-8. */
+	private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+	/**
+	 * The chains of cached names, by hash - kept from one document to the
+	 * next, as the names in SOAP responses come from a fixed schema.
+	 */
+	private Name[] names = new Name[64];
+	/** The number of cached names. */
+	private int nameCount;
+
+	/** The stream for the current document. */
+	private InputStream input;
+	/** Bytes read from {@link #input}. */
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	/** The position of the next byte to scan in {@link #buffer}. */
+	private int position;
+	/** The number of bytes in {@link #buffer}. */
+	private int limit;
+	/**
+	 * The start of the bytes that the current event refers to - bytes before
+	 * this can be dropped from the buffer, and the positions recorded for the
+	 * event are relative to it so they survive the buffer being compacted.
+	 */
+	private int mark;
+	/** The number of bytes dropped from the start of {@link #buffer}. */
+	private long discarded;
+	/** Whether the document is being re-encoded to UTF-8 as it's read. */
+	private boolean reencoded;
+	/** The position in the document of the start of the current tag. */
+	private long tagStart;
+	/** The position in the document just after the current tag. */
+	private long tagEnd;
+
+	/** The type of the current event. */
+	private int eventType = XmlPullParser.START_DOCUMENT;
+	/** The depth of the current element. */
+	private int depth;
+	/**
+	 * Whether the current start tag closed itself, so the next event is its
+	 * end tag.
+	 */
+	private boolean emptyElement;
+	/** Whether the root element's start tag has been read. */
+	private boolean rootRead;
+	/** The current element. */
+	private Name element;
+
+	/** The open elements, by depth - 1. */
+	private Name[] openElements = new Name[16];
+	/**
+	 * The number of namespace declarations in scope before each open element
+	 * added its own, by depth - 1.
+	 */
+	private int[] namespaceCounts = new int[16];
+	/** The prefixes of the namespace declarations in scope. */
+	private String[] namespacePrefixes = new String[8];
+	/** The URIs of the namespace declarations in scope. */
+	private String[] namespaceUris = new String[8];
+	/** The number of namespace declarations in scope. */
+	private int namespaceCount;
+
+	/** The number of attributes of the current start tag. */
+	private int attributeCount;
+	/** The names of the attributes. */
+	private Name[] attributeNames = new Name[8];
+	/** The start of each attribute's value, relative to {@link #mark}. */
+	private int[] valueStarts = new int[8];
+	/** The end of each attribute's value, relative to {@link #mark}. */
+	private int[] valueEnds = new int[8];
+	/** The values of the attributes, once they've been decoded. */
+	private String[] attributeValues = new String[8];
+
+	/**
+	 * The start of text that hasn't been decoded yet, relative to
+	 * {@link #mark}, or -1 if there isn't any.
+	 */
+	private int rawTextStart = -1;
+	/** The end of text that hasn't been decoded yet, relative to {@link #mark}. */
+	private int rawTextEnd;
+	/** Decoded text. */
+	private char[] text = new char[256];
+	/** The length of the decoded text. */
+	private int textLength;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+		input = inputStream;
+		position = 0;
+		limit = 0;
+		mark = 0;
+		discarded = 0;
+		reencoded = false;
+		tagStart = 0;
+		tagEnd = 0;
+		eventType = XmlPullParser.START_DOCUMENT;
+		depth = 0;
+		emptyElement = false;
+		rootRead = false;
+		element = null;
+		namespaceCount = 0;
+		attributeCount = 0;
+		rawTextStart = -1;
+		textLength = 0;
+
+		try {
+			fill(DECLARATION_LENGTH);
+
+			if (inputEncoding == null) {
+				inputEncoding = detectEncoding(buffer, limit);
+			}
+
+			if (!isUtf8(inputEncoding)) {
+				InputStream start = new ByteArrayInputStream(Arrays.copyOf(buffer, limit));
+				input = new Utf8EncodingInputStream(new InputStreamReader(new SequenceInputStream(start,
+						inputStream), inputEncoding));
+				limit = 0;
+				reencoded = true;
+			}
+
+			// Skip a byte order mark
+			if (lookingAt("\u00EF\u00BB\u00BF")) {
+				position += 3;
+			}
+		} catch (UnsupportedEncodingException e) {
+			throw new XmlPullParserException("Unsupported encoding " + inputEncoding, null, e);
+		} catch (IOException e) {
+			throw new XmlPullParserException(e.getMessage(), null, e);
+		}
+	}
+
+	/**
+	 * Works out the encoding of a document from its byte order mark or XML
+	 * declaration.
+	 *
+	 * @param start
+	 *            The first bytes of the document.
+	 * @param length
+	 *            The number of bytes in start - about
+	 *            {@link #DECLARATION_LENGTH} is enough.
+	 * @return The name of the encoding.
+	 * @throws IOException
+	 *             Never, in practice - ISO-8859-1 is always supported.
+	 */
+	private static String detectEncoding(byte[] start, int length) throws IOException {
+		if (length >= 2 && (start[0] & 0xFF) == 0xFE && (start[1] & 0xFF) == 0xFF) {
+			return "UTF-16BE";
+		} else if (length >= 2 && (start[0] & 0xFF) == 0xFF && (start[1] & 0xFF) == 0xFE) {
+			return "UTF-16LE";
+		}
+
+		// Everything else that's likely is ASCII-compatible as far as the
+		// declaration goes
+		String declaration = new String(start, 0, length, "ISO-8859-1");
+		int declarationStart = declaration.indexOf("<?xml");
+		int declarationEnd = declaration.indexOf("?>");
+
+		if (declarationStart < 0 || declarationEnd < declarationStart || declarationStart > 3) {
+			return DEFAULT_ENCODING;
+		}
+
+		int encoding = declaration.indexOf("encoding", declarationStart);
+
+		if (encoding < 0 || encoding > declarationEnd) {
+			return DEFAULT_ENCODING;
+		}
+
+		int quote = encoding + "encoding".length();
+		while (quote < declarationEnd && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+			quote++;
+		}
+
+		int endQuote = quote + 1 < declarationEnd ? declaration.indexOf(declaration.charAt(quote), quote + 1) : -1;
+
+		if (endQuote < 0 || endQuote > declarationEnd) {
+			return DEFAULT_ENCODING;
+		}
+
+		return declaration.substring(quote + 1, endQuote);
+	}
+
+	/**
+	 * Determines whether an encoding can be scanned as UTF-8 as it is.
+	 *
+	 * @param encoding
+	 *            The name of the encoding.
+	 * @return true for UTF-8 and ASCII.
+	 */
+	private static boolean isUtf8(String encoding) {
+		return encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8")
+				|| encoding.equalsIgnoreCase("US-ASCII") || encoding.equalsIgnoreCase("ASCII");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int next() throws XmlPullParserException, IOException {
+		if (eventType == XmlPullParser.END_DOCUMENT) {
+			return eventType;
+		}
+
+		if (eventType == XmlPullParser.END_TAG) {
+			closeElement();
+		}
+
+		attributeCount = 0;
+		rawTextStart = -1;
+		textLength = 0;
+
+		if (emptyElement) {
+			// The end tag is the end of the start tag
+			emptyElement = false;
+			tagStart = tagEnd;
+			return eventType = XmlPullParser.END_TAG;
+		}
+
+		while (true) {
+			if (rawTextStart < 0) {
+				// Nothing before here is needed any more
+				mark = position;
+			}
+
+			int c = peek();
+
+			if (c == -1) {
+				if (depth > 0) {
+					throw error("Document ended before element " + openElements[depth - 1].name + " did");
+				}
+
+				return eventType = XmlPullParser.END_DOCUMENT;
+			} else if (c != '<') {
+				scanText();
+
+				if (depth == 0) {
+					// Whitespace outside the root element isn't reported, and
+					// nothing else is allowed there
+					checkWhitespace(mark + rawTextStart, mark + rawTextEnd);
+					rawTextStart = -1;
+				}
+			} else if (lookingAt("<![CDATA[")) {
+				decodeRawText();
+				position += "<![CDATA[".length();
+				readCData();
+			} else if (lookingAt("<!--")) {
+				decodeRawText();
+				position += "<!--".length();
+				skipPast("-->");
+			} else if (lookingAt("<?")) {
+				decodeRawText();
+				position += "<?".length();
+				skipPast("?>");
+			} else if (lookingAt("<!")) {
+				position += "<!".length();
+				skipDoctype();
+			} else if (rawTextStart >= 0 || textLength > 0) {
+				// Report the text before the tag first - it's decoded if and
+				// when it's asked for
+				return eventType = XmlPullParser.TEXT;
+			} else if (lookingAt("</")) {
+				tagStart = discarded + position;
+				position += "</".length();
+				readEndTag();
+				tagEnd = discarded + position;
+				return eventType = XmlPullParser.END_TAG;
+			} else {
+				if (depth == 0) {
+					if (rootRead) {
+						throw error("More than one root element");
+					}
+
+					rootRead = true;
+				}
+
+				tagStart = discarded + position;
+				position++;
+				readStartTag();
+				tagEnd = discarded + position;
+				return eventType = XmlPullParser.START_TAG;
+			}
+		}
+	}
+
+	/**
+	 * Reads a start tag, after the &lt;.
+	 *
+	 * @throws XmlPullParserException
+	 *             If the tag isn't well-formed.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void readStartTag() throws XmlPullParserException, IOException {
+		int nameStart = scanName();
+		Name name = getName(buffer, mark + nameStart, position - mark - nameStart);
+		int namespacesBefore = namespaceCount;
+
+		while (true) {
+			skipWhitespace();
+			int c = read();
+
+			if (c == '>') {
+				break;
+			} else if (c == '/') {
+				if (read() != '>') {
+					throw error("Expected > after / in tag " + name.name);
+				}
+				emptyElement = true;
+				break;
+			} else if (c == -1) {
+				throw error("Document ended inside tag " + name.name);
+			}
+
+			position--;
+			readAttribute(name);
+		}
+
+		checkNames(name, namespacesBefore);
+		openElement(name, namespacesBefore);
+	}
+
+	/**
+	 * Checks that a start tag doesn't have the same attribute or namespace
+	 * declaration twice, and that all the prefixes it uses are bound.
+	 *
+	 * @param name
+	 *            The name of the tag.
+	 * @param namespacesBefore
+	 *            The number of namespace declarations in scope before the
+	 *            tag's own.
+	 * @throws XmlPullParserException
+	 *             If the names are wrong.
+	 */
+	private void checkNames(Name name, int namespacesBefore) throws XmlPullParserException {
+		for (int i = namespacesBefore; i < namespaceCount; i++) {
+			for (int j = namespacesBefore; j < i; j++) {
+				if (namespacePrefixes[i].equals(namespacePrefixes[j])) {
+					throw error("Duplicate namespace declaration for prefix " + namespacePrefixes[i] + " in tag "
+							+ name.name);
+				}
+			}
+		}
+
+		for (int i = 0; i < attributeCount; i++) {
+			Name attribute = attributeNames[i];
+
+			for (int j = 0; j < i; j++) {
+				if (attributeNames[j].name.equals(attribute.name)) {
+					throw error("Duplicate attribute " + attribute.name + " in tag " + name.name);
+				}
+			}
+
+			checkPrefix(attribute);
+		}
+
+		checkPrefix(name);
+	}
+
+	/**
+	 * Checks that the prefix of a name, if it has one, is bound by the
+	 * namespaces in scope.
+	 *
+	 * @param name
+	 *            The name.
+	 * @throws XmlPullParserException
+	 *             If the prefix isn't bound.
+	 */
+	private void checkPrefix(Name name) throws XmlPullParserException {
+		if (name.prefix != null && getNamespaceUri(name.prefix) == null) {
+			throw error("Unbound prefix " + name.prefix + " in " + name.name);
+		}
+	}
+
+	/**
+	 * Reads an attribute of a start tag, recording where its value is rather
+	 * than decoding it - except for namespace declarations, which are added to
+	 * the namespaces in scope rather than the attributes.
+	 *
+	 * @param tagName
+	 *            The name of the tag, for error messages.
+	 * @throws XmlPullParserException
+	 *             If the attribute isn't well-formed.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void readAttribute(Name tagName) throws XmlPullParserException, IOException {
+		int nameStart = scanName();
+		Name name = getName(buffer, mark + nameStart, position - mark - nameStart);
+
+		skipWhitespace();
+		if (read() != '=') {
+			throw error("Expected = after attribute " + name.name + " in tag " + tagName.name);
+		}
+		skipWhitespace();
+
+		int quote = read();
+		if (quote != '"' && quote != '\'') {
+			throw error("Expected a quoted value for attribute " + name.name + " in tag " + tagName.name);
+		}
+
+		int valueStart = position - mark;
+		boolean plain = true;
+
+		while (true) {
+			int c = read();
+
+			if (c == quote) {
+				break;
+			} else if (c == -1 || c == '<') {
+				throw error("Unterminated attribute value");
+			} else if (c == '&') {
+				scanEntity();
+				plain = false;
+			} else if (c >= 0x80 || c == '\r' || c == '\n' || c == '\t') {
+				plain = false;
+			}
+		}
+
+		int valueEnd = position - 1 - mark;
+
+		if (name.declaredPrefix != null) {
+			// Namespace URIs are the same from one document to the next, so
+			// they're worth caching too
+			String uri = plain ? getName(buffer, mark + valueStart, valueEnd - valueStart).name : decodeAttribute(
+					valueStart, valueEnd);
+			addNamespace(name.declaredPrefix, uri);
+		} else {
+			if (attributeCount == attributeNames.length) {
+				growAttributes();
+			}
+
+			attributeNames[attributeCount] = name;
+			valueStarts[attributeCount] = valueStart;
+			valueEnds[attributeCount] = valueEnd;
+			attributeValues[attributeCount] = null;
+			attributeCount++;
+		}
+	}
+
+	/**
+	 * Reads an end tag, after the &lt;/, checking that its bytes match the
+	 * open element's name.
+	 *
+	 * @throws XmlPullParserException
+	 *             If the tag isn't well-formed or doesn't match.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void readEndTag() throws XmlPullParserException, IOException {
+		int nameStart = scanName();
+		int nameLength = position - mark - nameStart;
+		Name open = depth == 0 ? null : openElements[depth - 1];
+
+		if (open == null || !open.matches(buffer, mark + nameStart, nameLength)) {
+			throw error("End tag " + new String(buffer, mark + nameStart, nameLength, UTF_8)
+					+ " doesn't match start tag " + (open == null ? null : open.name));
+		}
+
+		skipWhitespace();
+		if (read() != '>') {
+			throw error("Expected > at end of tag " + open.name);
+		}
+
+		element = open;
+	}
+
+	/**
+	 * Adds an element to the open elements, once its start tag has been read.
+	 *
+	 * @param name
+	 *            The name of the element.
+	 * @param namespacesBefore
+	 *            The number of namespace declarations in scope before the
+	 *            element's own.
+	 */
+	private void openElement(Name name, int namespacesBefore) {
+		if (depth == openElements.length) {
+			Name[] biggerElements = new Name[depth * 2];
+			System.arraycopy(openElements, 0, biggerElements, 0, depth);
+			openElements = biggerElements;
+
+			int[] biggerCounts = new int[depth * 2];
+			System.arraycopy(namespaceCounts, 0, biggerCounts, 0, depth);
+			namespaceCounts = biggerCounts;
+		}
+
+		openElements[depth] = name;
+		namespaceCounts[depth] = namespacesBefore;
+		depth++;
+		element = name;
+	}
+
+	/**
+	 * Removes the current element from the open elements, once its end tag
+	 * has been reported.
+	 */
+	private void closeElement() {
+		depth--;
+		namespaceCount = namespaceCounts[depth];
+		openElements[depth] = null;
+	}
+
+	/**
+	 * Adds a namespace declaration to the namespaces in scope.
+	 *
+	 * @param prefix
+	 *            The prefix - an empty String for the default namespace.
+	 * @param uri
+	 *            The namespace URI.
+	 */
+	private void addNamespace(String prefix, String uri) {
+		if (namespaceCount == namespacePrefixes.length) {
+			namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+			namespaceUris = Arrays.copyOf(namespaceUris, namespaceCount * 2);
+		}
+
+		namespacePrefixes[namespaceCount] = prefix;
+		namespaceUris[namespaceCount] = uri;
+		namespaceCount++;
+	}
+
+	/**
+	 * Gets the URI bound to a prefix by the namespaces in scope.
+	 *
+	 * @param prefix
+	 *            The prefix.
+	 * @return The URI, or null if the prefix isn't bound.
+	 */
+	private String getNamespaceUri(String prefix) {
+		for (int i = namespaceCount - 1; i >= 0; i--) {
+			if (namespacePrefixes[i].equals(prefix)) {
+				return namespaceUris[i];
+			}
+		}
+
+		return "xml".equals(prefix) ? XML_NAMESPACE : null;
+	}
+
+	/**
+	 * Gets the cached name for some bytes, adding it to the cache if it
+	 * isn't there yet.
+	 *
+	 * @param bytes
+	 *            The array holding the name as UTF-8.
+	 * @param start
+	 *            The position of the name in the array.
+	 * @param length
+	 *            The number of bytes in the name.
+	 * @return The name.
+	 */
+	private Name getName(byte[] bytes, int start, int length) {
+		int hash = 0;
+
+		for (int i = start; i < start + length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+
+		hash ^= hash >>> 16;
+
+		for (Name name = names[hash & (names.length - 1)]; name != null; name = name.next) {
+			if (name.hash == hash && name.matches(bytes, start, length)) {
+				return name;
+			}
+		}
+
+		byte[] copy = Arrays.copyOfRange(bytes, start, start + length);
+
+		if (nameCount >= MAX_NAMES) {
+			return new Name(copy, hash, null);
+		}
+
+		if (nameCount >= names.length * 3 / 4) {
+			Name[] bigger = new Name[names.length * 2];
+
+			for (Name chain : names) {
+				Name name = chain;
+
+				while (name != null) {
+					Name next = name.next;
+					int index = name.hash & (bigger.length - 1);
+					name.next = bigger[index];
+					bigger[index] = name;
+					name = next;
+				}
+			}
+
+			names = bigger;
+		}
+
+		int index = hash & (names.length - 1);
+		Name name = new Name(copy, hash, names[index]);
+		names[index] = name;
+		nameCount++;
+
+		return name;
+	}
+
+	/**
+	 * Doubles the room for attributes.
+	 */
+	private void growAttributes() {
+		int length = attributeNames.length * 2;
+
+		attributeNames = Arrays.copyOf(attributeNames, length);
+		valueStarts = Arrays.copyOf(valueStarts, length);
+		valueEnds = Arrays.copyOf(valueEnds, length);
+		attributeValues = Arrays.copyOf(attributeValues, length);
+	}
+
+	/**
+	 * Moves past text up to the next &lt; (or the end of the document),
+	 * recording where it is so it can be decoded later. Entity references are
+	 * checked now so that bad ones are still reported by {@link #next()}.
+	 *
+	 * @throws XmlPullParserException
+	 *             If there's an invalid entity.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void scanText() throws XmlPullParserException, IOException {
+		rawTextStart = position - mark;
+
+		while (true) {
+			byte[] bytes = buffer;
+			int end = limit;
+			int i = position;
+
+			while (i < end && bytes[i] != '<' && bytes[i] != '&' && bytes[i] != ']') {
+				i++;
+			}
+
+			position = i;
+
+			if (i == end) {
+				if (!fill(1)) {
+					break;
+				}
+			} else if (bytes[i] == '&') {
+				position++;
+				scanEntity();
+			} else if (bytes[i] == ']') {
+				if (lookingAt("]]>")) {
+					throw error("]]> isn't allowed in text");
+				}
+
+				position++;
+			} else {
+				break;
+			}
+		}
+
+		rawTextEnd = position - mark;
+	}
+
+	/**
+	 * Checks that bytes in {@link #buffer} are all whitespace.
+	 *
+	 * @param start
+	 *            The position of the first byte.
+	 * @param end
+	 *            The position after the last byte.
+	 * @throws XmlPullParserException
+	 *             If they aren't.
+	 */
+	private void checkWhitespace(int start, int end) throws XmlPullParserException {
+		for (int i = start; i < end; i++) {
+			if (!isWhitespace(buffer[i])) {
+				throw error("Only whitespace is allowed outside the root element");
+			}
+		}
+	}
+
+	/**
+	 * Decodes any text that {@link #scanText()} has recorded onto the decoded
+	 * text - for when the text is interrupted by a comment, CDATA section etc.
+	 * and so can't be left as one run of bytes.
+	 */
+	private void decodeRawText() {
+		if (rawTextStart >= 0) {
+			decode(mark + rawTextStart, mark + rawTextEnd, true, false);
+			rawTextStart = -1;
+		}
+	}
+
+	/**
+	 * Reads the contents of a CDATA section onto the decoded text, after the
+	 * &lt;![CDATA[.
+	 *
+	 * @throws XmlPullParserException
+	 *             If the document ends inside the section.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void readCData() throws XmlPullParserException, IOException {
+		int start = position - mark;
+
+		while (!lookingAt("]]>")) {
+			if (read() == -1) {
+				throw error("Document ended inside a CDATA section");
+			}
+		}
+
+		if (depth > 0) {
+			decode(mark + start, position, false, false);
+		}
+
+		position += "]]>".length();
+	}
+
+	/**
+	 * Moves past an entity reference after the &amp;, checking that it's one
+	 * that can be decoded.
+	 *
+	 * @throws XmlPullParserException
+	 *             If the entity isn't one of the predefined ones or a valid
+	 *             char reference.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void scanEntity() throws XmlPullParserException, IOException {
+		int start = position - mark;
+
+		while (true) {
+			int c = read();
+
+			if (c == ';') {
+				break;
+			} else if (c == -1 || position - mark - start > MAX_ENTITY_LENGTH) {
+				throw error("Unterminated entity reference");
+			}
+		}
+
+		if (decodeEntity(mark + start, position - 1) < 0) {
+			throw error("Unknown entity &"
+					+ new String(buffer, mark + start, position - 1 - mark - start, UTF_8) + ";");
+		}
+	}
+
+	/**
+	 * Works out the char an entity reference stands for.
+	 *
+	 * @param start
+	 *            The position of the reference in {@link #buffer}, after the
+	 *            &amp;.
+	 * @param end
+	 *            The position of the ; after the reference.
+	 * @return The code point of the char, or -1 if it isn't a predefined
+	 *         entity or a valid char reference.
+	 */
+	private int decodeEntity(int start, int end) {
+		if (start < end && buffer[start] == '#') {
+			int radix = 10;
+			int i = start + 1;
+
+			if (i < end && buffer[i] == 'x') {
+				radix = 16;
+				i++;
+			}
+
+			if (i == end) {
+				return -1;
+			}
+
+			int codePoint = 0;
+
+			for (; i < end; i++) {
+				int digit = Character.digit(buffer[i], radix);
+
+				if (digit < 0) {
+					return -1;
+				}
+
+				codePoint = codePoint * radix + digit;
+
+				if (codePoint > Character.MAX_CODE_POINT) {
+					return -1;
+				}
+			}
+
+			return codePoint;
+		} else if (isAscii(start, end, "lt")) {
+			return '<';
+		} else if (isAscii(start, end, "gt")) {
+			return '>';
+		} else if (isAscii(start, end, "amp")) {
+			return '&';
+		} else if (isAscii(start, end, "quot")) {
+			return '"';
+		} else if (isAscii(start, end, "apos")) {
+			return '\'';
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Determines whether bytes in {@link #buffer} are an ASCII String.
+	 *
+	 * @param start
+	 *            The position of the first byte.
+	 * @param end
+	 *            The position after the last byte.
+	 * @param expected
+	 *            The String.
+	 * @return true if the bytes match.
+	 */
+	private boolean isAscii(int start, int end, String expected) {
+		if (end - start != expected.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < expected.length(); i++) {
+			if (buffer[start + i] != expected.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Decodes an attribute value.
+	 *
+	 * @param start
+	 *            The start of the value, relative to {@link #mark}.
+	 * @param end
+	 *            The end of the value, relative to {@link #mark}.
+	 * @return The value.
+	 */
+	private String decodeAttribute(int start, int end) {
+		// Attributes are only decoded at start tags, so the text buffer is
+		// free to use
+		textLength = 0;
+		decode(mark + start, mark + end, true, true);
+		String value = new String(text, 0, textLength);
+		textLength = 0;
+
+		return value;
+	}
+
+	/**
+	 * Decodes UTF-8 bytes from {@link #buffer} onto the end of the decoded
+	 * text, normalising line endings. Invalid bytes are decoded as
+	 * {@link #REPLACEMENT_CHAR}, like an {@link InputStreamReader} would.
+	 *
+	 * @param start
+	 *            The position of the first byte.
+	 * @param end
+	 *            The position after the last byte.
+	 * @param entities
+	 *            Whether to decode entity references - false for CDATA.
+	 * @param attribute
+	 *            Whether this is an attribute value, so whitespace chars
+	 *            become spaces.
+	 */
+	private void decode(int start, int end, boolean entities, boolean attribute) {
+		// There's never more than one char per byte
+		if (textLength + end - start > text.length) {
+			text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + end - start));
+		}
+
+		byte[] bytes = buffer;
+		char[] chars = text;
+		int length = textLength;
+		int i = start;
+
+		while (i < end) {
+			int b = bytes[i++];
+
+			if (b >= 0) {
+				if (b == '&' && entities) {
+					int semicolon = i;
+					while (bytes[semicolon] != ';') {
+						semicolon++;
+					}
+
+					length = appendCodePoint(chars, length, decodeEntity(i, semicolon));
+					i = semicolon + 1;
+				} else if (b == '\r') {
+					if (i < end && bytes[i] == '\n') {
+						i++;
+					}
+					chars[length++] = attribute ? ' ' : '\n';
+				} else if (attribute && (b == '\n' || b == '\t')) {
+					chars[length++] = ' ';
+				} else {
+					chars[length++] = (char) b;
+				}
+			} else {
+				int codePoint;
+				int continuationBytes;
+
+				if ((b & 0xE0) == 0xC0) {
+					codePoint = b & 0x1F;
+					continuationBytes = 1;
+				} else if ((b & 0xF0) == 0xE0) {
+					codePoint = b & 0x0F;
+					continuationBytes = 2;
+				} else if ((b & 0xF8) == 0xF0) {
+					codePoint = b & 0x07;
+					continuationBytes = 3;
+				} else {
+					chars[length++] = REPLACEMENT_CHAR;
+					continue;
+				}
+
+				if (i + continuationBytes > end) {
+					chars[length++] = REPLACEMENT_CHAR;
+					continue;
+				}
+
+				for (int j = 0; j < continuationBytes && codePoint >= 0; j++) {
+					int continuation = bytes[i + j];
+					codePoint = (continuation & 0xC0) == 0x80 ? (codePoint << 6) | (continuation & 0x3F) : -1;
+				}
+
+				if (codePoint < 0 || codePoint > Character.MAX_CODE_POINT) {
+					chars[length++] = REPLACEMENT_CHAR;
+				} else {
+					length = appendCodePoint(chars, length, codePoint);
+					i += continuationBytes;
+				}
+			}
+		}
+
+		textLength = length;
+	}
+
+	/**
+	 * Adds a code point to a char array, as a surrogate pair if it needs one.
+	 *
+	 * @param chars
+	 *            The array.
+	 * @param length
+	 *            The number of chars in the array.
+	 * @param codePoint
+	 *            The code point.
+	 * @return The new number of chars in the array.
+	 */
+	private static int appendCodePoint(char[] chars, int length, int codePoint) {
+		if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			chars[length] = (char) codePoint;
+			return length + 1;
+		}
+
+		return length + Character.toChars(codePoint, chars, length);
+	}
+
+	/**
+	 * Moves past a name, up to the first byte that can't be part of one.
+	 *
+	 * @return The start of the name, relative to {@link #mark} - it ends at
+	 *         {@link #position}.
+	 * @throws XmlPullParserException
+	 *             If there's no name.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private int scanName() throws XmlPullParserException, IOException {
+		int start = position - mark;
+
+		while (true) {
+			int c = peek();
+
+			if (c == -1 || c == '>' || c == '/' || c == '=' || isWhitespace(c)) {
+				break;
+			}
+
+			position++;
+		}
+
+		if (position - mark == start) {
+			throw error("Expected a name");
+		}
+
+		return start;
+	}
+
+	/**
+	 * Skips a DOCTYPE (or other &lt;! declaration) after the &lt;!, including
+	 * any internal subset - its contents are ignored.
+	 *
+	 * @throws XmlPullParserException
+	 *             If the document ends inside it.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void skipDoctype() throws XmlPullParserException, IOException {
+		int brackets = 0;
+		int quote = -1;
+
+		while (true) {
+			int c = read();
+
+			if (c == -1) {
+				throw error("Document ended inside a declaration");
+			} else if (quote != -1) {
+				if (c == quote) {
+					quote = -1;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '[') {
+				brackets++;
+			} else if (c == ']') {
+				brackets--;
+			} else if (c == '>' && brackets <= 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Skips everything up to and including a terminator.
+	 *
+	 * @param terminator
+	 *            The terminator, e.g. --&gt; for a comment.
+	 * @throws XmlPullParserException
+	 *             If the document ends before the terminator.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void skipPast(String terminator) throws XmlPullParserException, IOException {
+		char first = terminator.charAt(0);
+
+		while (true) {
+			int c = read();
+
+			if (c == -1) {
+				throw error("Document ended before " + terminator);
+			} else if (c == first && lookingAt(terminator.substring(1))) {
+				position += terminator.length() - 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Skips any whitespace.
+	 *
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private void skipWhitespace() throws IOException {
+		while (isWhitespace(peek())) {
+			position++;
+		}
+	}
+
+	/**
+	 * Determines whether a byte is XML whitespace.
+	 *
+	 * @param c
+	 *            The byte, or -1 for the end of the document.
+	 * @return true for spaces, tabs and line endings.
+	 */
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Gets the next byte without moving past it.
+	 *
+	 * @return The byte, or -1 at the end of the document.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private int peek() throws IOException {
+		if (position == limit && !fill(1)) {
+			return -1;
+		}
+
+		return buffer[position] & 0xFF;
+	}
+
+	/**
+	 * Gets the next byte and moves past it.
+	 *
+	 * @return The byte, or -1 at the end of the document.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private int read() throws IOException {
+		if (position == limit && !fill(1)) {
+			return -1;
+		}
+
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Determines whether the next bytes are a particular String, without
+	 * moving past them.
+	 *
+	 * @param expected
+	 *            The String, with each char standing for a byte.
+	 * @return true if the next bytes match.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private boolean lookingAt(String expected) throws IOException {
+		if (limit - position < expected.length() && !fill(expected.length())) {
+			return false;
+		}
+
+		for (int i = 0; i < expected.length(); i++) {
+			if ((buffer[position + i] & 0xFF) != expected.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads more of the stream into the buffer, dropping the bytes before
+	 * {@link #mark} and growing the buffer if the current event needs more
+	 * room than it has.
+	 *
+	 * @param needed
+	 *            The number of unscanned bytes needed.
+	 * @return true if there are at least that many, false if the document
+	 *         ends first.
+	 * @throws IOException
+	 *             If the stream can't be read from.
+	 */
+	private boolean fill(int needed) throws IOException {
+		if (mark > 0) {
+			System.arraycopy(buffer, mark, buffer, 0, limit - mark);
+			position -= mark;
+			limit -= mark;
+			discarded += mark;
+			mark = 0;
+		}
+
+		while (limit - position < needed) {
+			if (limit == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+
+			int read = input.read(buffer, limit, buffer.length - limit);
+
+			if (read < 0) {
+				return false;
+			}
+
+			limit += read;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Creates an exception for badly-formed XML.
+	 *
+	 * @param message
+	 *            What's wrong.
+	 * @return The exception.
+	 */
+	private XmlPullParserException error(String message) {
+		return new XmlPullParserException(message + " (depth " + depth + ")", null, null);
+	}
+
+	/**
+	 * Gets the position of the start of the current tag in the document, for
+	 * callers that need to copy the markup as it is - e.g. to split a document
+	 * up.
+	 *
+	 * @return The number of bytes before the &lt; of the current start or end
+	 *         tag - at the end tag of an empty element, the end of its start
+	 *         tag. If the document is {@link #isReencoded() re-encoded}, this
+	 *         counts the re-encoded bytes.
+	 */
+	public long getTagStart() {
+		return tagStart;
+	}
+
+	/**
+	 * Gets the position just after the current tag in the document.
+	 *
+	 * @return The number of bytes up to and including the &gt; of the current
+	 *         start or end tag. If the document is {@link #isReencoded()
+	 *         re-encoded}, this counts the re-encoded bytes.
+	 */
+	public long getTagEnd() {
+		return tagEnd;
+	}
+
+	/**
+	 * Determines whether the document is being re-encoded to UTF-8 as it's
+	 * read, rather than scanned as it is.
+	 *
+	 * @return true if the document's encoding isn't UTF-8 or ASCII.
+	 */
+	public boolean isReencoded() {
+		return reencoded;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return eventType == XmlPullParser.START_TAG || eventType == XmlPullParser.END_TAG ? element.localName : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		return eventType == XmlPullParser.START_TAG || eventType == XmlPullParser.END_TAG ? element.getId()
+				: SymbolTable.UNKNOWN;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeCount() {
+		return eventType == XmlPullParser.START_TAG ? attributeCount : -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeName(int index) {
+		return attributeNames[index].localName;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeNameId(int index) {
+		return attributeNames[index].getId();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(int index) {
+		if (attributeValues[index] == null) {
+			attributeValues[index] = decodeAttribute(valueStarts[index], valueEnds[index]);
+		}
+
+		return attributeValues[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(String namespace, String name) {
+		if (eventType != XmlPullParser.START_TAG) {
+			return null;
+		}
+
+		for (int i = 0; i < attributeCount; i++) {
+			Name attribute = attributeNames[i];
+
+			if (attribute.localName.equals(name)) {
+				String prefix = attribute.prefix;
+
+				// Unprefixed attributes aren't in any namespace
+				if (prefix == null ? namespace == null || namespace.length() == 0 : namespace != null
+						&& namespace.equals(getNamespaceUri(prefix))) {
+					return getAttributeValue(i);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getText() {
+		if (eventType != XmlPullParser.TEXT) {
+			return null;
+		}
+
+		decodeRawText();
+
+		return new String(text, 0, textLength);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char[] getTextCharacters(int[] holderForStartAndLength) {
+		if (eventType != XmlPullParser.TEXT) {
+			return null;
+		}
+
+		decodeRawText();
+
+		holderForStartAndLength[0] = 0;
+		holderForStartAndLength[1] = textLength;
+
+		return text;
+	}
+
+	/**
+	 * A name, with the Strings for it worked out once.
+	 */
+	private static final class Name {
+		/** The hash of the name's bytes. */
+		final int hash;
+		/** The name as UTF-8. */
+		final byte[] bytes;
+		/** The name, including any prefix. */
+		final String name;
+		/** The prefix of the name, or null if it has none. */
+		final String prefix;
+		/** The name without its prefix. */
+		final String localName;
+		/**
+		 * If this is the name of a namespace declaration attribute, the prefix
+		 * it declares - an empty String for the default namespace - otherwise
+		 * null.
+		 */
+		final String declaredPrefix;
+		/**
+		 * The {@link SymbolTable} ID of the local name - looked up again until
+		 * it's known, as the name might be registered after it's cached.
+		 */
+		private int id;
+		/** The next name in the same bucket. */
+		Name next;
+
+		/**
+		 * Creates a new name.
+		 *
+		 * @param bytes
+		 *            The name as UTF-8.
+		 * @param hash
+		 *            The hash of the name.
+		 * @param next
+		 *            The next name in the same bucket.
+		 */
+		Name(byte[] bytes, int hash, Name next) {
+			this.bytes = bytes;
+			this.hash = hash;
+			this.next = next;
+
+			name = new String(bytes, UTF_8).intern();
+
+			int colon = name.indexOf(':');
+			prefix = colon < 0 ? null : name.substring(0, colon).intern();
+			localName = colon < 0 ? name : name.substring(colon + 1).intern();
+
+			if (name.equals(XMLNS)) {
+				declaredPrefix = "";
+			} else if (XMLNS.equals(prefix)) {
+				declaredPrefix = localName;
+			} else {
+				declaredPrefix = null;
+			}
+
+			id = SymbolTable.getInstance().lookup(localName);
+		}
+
+		/**
+		 * Gets the {@link SymbolTable} ID of the local name.
+		 *
+		 * @return The ID, or {@link SymbolTable#UNKNOWN} if the name isn't
+		 *         registered.
+		 */
+		int getId() {
+			if (id == SymbolTable.UNKNOWN) {
+				id = SymbolTable.getInstance().lookup(localName);
+			}
+
+			return id;
+		}
+
+		/**
+		 * Determines whether this is the name for some bytes.
+		 *
+		 * @param other
+		 *            The array holding the bytes.
+		 * @param start
+		 *            The position of the bytes in the array.
+		 * @param length
+		 *            The number of bytes.
+		 * @return true if the bytes are this name.
+		 */
+		boolean matches(byte[] other, int start, int length) {
+			if (length != bytes.length) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] != other[start + i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
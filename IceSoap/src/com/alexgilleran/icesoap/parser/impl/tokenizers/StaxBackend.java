@@ -0,0 +1,76 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import javax.xml.stream.XMLInputFactory;
+
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+
+/**
+ * Backend that reads XML with a StAX {@link javax.xml.stream.XMLStreamReader}
+ * - the JDK's own, or a faster implementation such as Woodstox or Aalto if its
+ * {@link XMLInputFactory} is passed in (or found by
+ * {@link XMLInputFactory#newInstance()}). StAX isn't part of Android, so this
+ * is only for use on the JVM.
+ * 
+ * DTDs and external entities are turned off, as they're not allowed in SOAP
+ * messages.
+ * 
+ * @author Alex Gilleran
+ */
+public class StaxBackend implements TokenizerBackend {
+	/** Creates readers - configured once, then shared. */
+	private final XMLInputFactory factory;
+
+	/**
+	 * Creates a backend with the {@link XMLInputFactory} found by
+	 * {@link XMLInputFactory#newInstance()}.
+	 */
+	public StaxBackend() {
+		this(XMLInputFactory.newInstance());
+	}
+
+	/**
+	 * Creates a backend with a specific {@link XMLInputFactory} - note that it
+	 * gets reconfigured, so it shouldn't be used for anything else.
+	 * 
+	 * @param factory
+	 *            The factory to create readers with.
+	 */
+	public StaxBackend(XMLInputFactory factory) {
+		this.factory = factory;
+
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		// Report text, entities and CDATA as one event, as XmlPull does
+		setIfSupported(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		setIfSupported(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		setIfSupported(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		setIfSupported(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	/**
+	 * Sets a property of the factory, if it has that property.
+	 * 
+	 * @param name
+	 *            The name of the property.
+	 * @param value
+	 *            The value to set.
+	 */
+	private void setIfSupported(String name, Object value) {
+		if (factory.isPropertySupported(name)) {
+			factory.setProperty(name, value);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XmlTokenizer newTokenizer() {
+		return new StaxTokenizer(factory);
+	}
+
+	@Override
+	public String toString() {
+		return "StAX (" + factory.getClass().getName() + ")";
+	}
+}
@@ -0,0 +1,250 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
+/**
+ * Adapts an {@link XMLStreamReader} to {@link XmlTokenizer} - StAX events are
+ * mapped to XmlPull ones, skipping comments, processing instructions and
+ * anything outside the root element, and the depth is kept track of here as
+ * StAX doesn't have one. Like XmlPull's next(), text either side of a skipped
+ * comment or processing instruction is reported as one text event, so StAX's
+ * text has to be copied out as the reader moves past it.
+ * 
+ * @author Alex Gilleran
+ */
+final class StaxTokenizer implements XmlTokenizer {
+	/** Creates a reader for each document. */
+	private final XMLInputFactory factory;
+	/** The reader for the current document. */
+	private XMLStreamReader reader;
+	/** The type of the current event, as an XmlPull event type. */
+	private int eventType = XmlPullParser.START_DOCUMENT;
+	/** The depth of the current element. */
+	private int depth;
+	/**
+	 * The StAX event the reader was left on after reading past the end of some
+	 * text, or -1 if the reader needs to move to the next event.
+	 */
+	private int pending = -1;
+	/** The text of the current text event. */
+	private char[] text = new char[256];
+	/** The length of the text in {@link #text}. */
+	private int textLength;
+
+	/**
+	 * Creates a new tokenizer.
+	 * 
+	 * @param factory
+	 *            Creates a reader for each document.
+	 */
+	StaxTokenizer(XMLInputFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+		try {
+			reader = inputEncoding == null ? factory.createXMLStreamReader(inputStream) : factory
+					.createXMLStreamReader(inputStream, inputEncoding);
+		} catch (XMLStreamException e) {
+			throw new XmlPullParserException(e.getMessage(), null, e);
+		}
+
+		eventType = XmlPullParser.START_DOCUMENT;
+		depth = 0;
+		pending = -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int next() throws XmlPullParserException, IOException {
+		if (eventType == XmlPullParser.END_DOCUMENT) {
+			return eventType;
+		}
+
+		if (eventType == XmlPullParser.END_TAG) {
+			// The depth of an end tag is that of the element it ends
+			depth--;
+		}
+
+		try {
+			while (true) {
+				int event = pending < 0 ? reader.next() : pending;
+				pending = -1;
+
+				switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					return eventType = XmlPullParser.START_TAG;
+				case XMLStreamConstants.END_ELEMENT:
+					return eventType = XmlPullParser.END_TAG;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					if (depth > 0) {
+						readText();
+						return eventType = XmlPullParser.TEXT;
+					}
+					break;
+				case XMLStreamConstants.END_DOCUMENT:
+					return eventType = XmlPullParser.END_DOCUMENT;
+				default:
+					// Comments, processing instructions, DTDs etc - skip
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new XmlPullParserException(e.getMessage(), null, e);
+		}
+	}
+
+	/**
+	 * Copies the text the reader is on, and any text after it up to the next
+	 * event that isn't text, a comment or a processing instruction, into
+	 * {@link #text} - leaving that event in {@link #pending}.
+	 */
+	private void readText() throws XMLStreamException {
+		textLength = 0;
+
+		while (true) {
+			switch (reader.getEventType()) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				int length = reader.getTextLength();
+				if (textLength + length > text.length) {
+					char[] grown = new char[Math.max(text.length * 2, textLength + length)];
+					System.arraycopy(text, 0, grown, 0, textLength);
+					text = grown;
+				}
+				System.arraycopy(reader.getTextCharacters(), reader.getTextStart(), text, textLength, length);
+				textLength += length;
+				break;
+			case XMLStreamConstants.COMMENT:
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				break;
+			default:
+				pending = reader.getEventType();
+				return;
+			}
+
+			reader.next();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return reader.getLocalName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		return eventType == XmlPullParser.START_TAG || eventType == XmlPullParser.END_TAG ? SymbolTable.getInstance()
+				.lookup(getName()) : SymbolTable.UNKNOWN;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeCount() {
+		return eventType == XmlPullParser.START_TAG ? reader.getAttributeCount() : -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeName(int index) {
+		return reader.getAttributeLocalName(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeNameId(int index) {
+		return SymbolTable.getInstance().lookup(getAttributeName(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(int index) {
+		return reader.getAttributeValue(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(String namespace, String name) {
+		if (eventType != XmlPullParser.START_TAG) {
+			return null;
+		}
+
+		return reader.getAttributeValue(namespace, name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getText() {
+		return eventType == XmlPullParser.TEXT ? new String(text, 0, textLength) : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char[] getTextCharacters(int[] holderForStartAndLength) {
+		if (eventType != XmlPullParser.TEXT) {
+			return null;
+		}
+
+		holderForStartAndLength[0] = 0;
+		holderForStartAndLength[1] = textLength;
+
+		return text;
+	}
+}
@@ -0,0 +1,160 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Reads the chars from a {@link Reader} as UTF-8 bytes - lets
+ * {@link ScannerTokenizer} read documents in other encodings by decoding
+ * them and encoding them again, which is slower but only needed for the odd
+ * document that isn't UTF-8 already.
+ *
+ * @author Alex Gilleran
+ */
+final class Utf8EncodingInputStream extends InputStream {
+	/** The UTF-8 bytes for an unpaired surrogate. */
+	private static final byte[] REPLACEMENT = { (byte) 0xEF, (byte) 0xBF, (byte) 0xBD };
+
+	/** The reader to get chars from. */
+	private final Reader reader;
+	/** Chars read from {@link #reader}. */
+	private final char[] chars = new char[2048];
+	/** The encoded chars - up to 3 bytes per char. */
+	private final byte[] bytes = new byte[chars.length * 3 + REPLACEMENT.length];
+	/** The position of the next byte to return in {@link #bytes}. */
+	private int position;
+	/** The number of bytes in {@link #bytes}. */
+	private int limit;
+	/**
+	 * A high surrogate at the end of the last chars read, waiting for the low
+	 * surrogate that goes with it - or 0 if there isn't one.
+	 */
+	private char highSurrogate;
+
+	/**
+	 * Creates a new stream.
+	 *
+	 * @param reader
+	 *            The reader to get chars from.
+	 */
+	Utf8EncodingInputStream(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+
+		return bytes[position++] & 0xFF;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		if (position == limit && !fill()) {
+			return -1;
+		}
+
+		int count = Math.min(length, limit - position);
+		System.arraycopy(bytes, position, buffer, offset, count);
+		position += count;
+
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Reads and encodes more chars.
+	 *
+	 * @return true if there are more bytes, false at the end of the reader.
+	 * @throws IOException
+	 *             If the reader can't be read from.
+	 */
+	private boolean fill() throws IOException {
+		position = 0;
+		limit = 0;
+
+		while (limit == 0) {
+			int read = reader.read(chars, 0, chars.length);
+
+			if (read < 0) {
+				if (highSurrogate != 0) {
+					highSurrogate = 0;
+					System.arraycopy(REPLACEMENT, 0, bytes, 0, REPLACEMENT.length);
+					limit = REPLACEMENT.length;
+					return true;
+				}
+
+				return false;
+			}
+
+			encode(read);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Encodes chars onto {@link #bytes}.
+	 *
+	 * @param count
+	 *            The number of chars in {@link #chars}.
+	 */
+	private void encode(int count) {
+		for (int i = 0; i < count; i++) {
+			char c = chars[i];
+
+			if (highSurrogate != 0) {
+				if (Character.isLowSurrogate(c)) {
+					int codePoint = Character.toCodePoint(highSurrogate, c);
+					highSurrogate = 0;
+
+					bytes[limit++] = (byte) (0xF0 | (codePoint >> 18));
+					bytes[limit++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					bytes[limit++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					bytes[limit++] = (byte) (0x80 | (codePoint & 0x3F));
+					continue;
+				}
+
+				highSurrogate = 0;
+				System.arraycopy(REPLACEMENT, 0, bytes, limit, REPLACEMENT.length);
+				limit += REPLACEMENT.length;
+			}
+
+			if (c < 0x80) {
+				bytes[limit++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[limit++] = (byte) (0xC0 | (c >> 6));
+				bytes[limit++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c)) {
+				highSurrogate = c;
+			} else if (Character.isLowSurrogate(c)) {
+				System.arraycopy(REPLACEMENT, 0, bytes, limit, REPLACEMENT.length);
+				limit += REPLACEMENT.length;
+			} else {
+				bytes[limit++] = (byte) (0xE0 | (c >> 12));
+				bytes[limit++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[limit++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.parser.impl.PullParserFactory;
+
+/**
+ * Backend that reads XML with an {@link XmlPullParser} - on Android this is
+ * the platform's own parser, elsewhere it's whichever XmlPull implementation
+ * (e.g. kXML or xpp3) is on the classpath. This is the default backend.
+ * 
+ * @author Alex Gilleran
+ */
+public class XmlPullBackend implements TokenizerBackend {
+	/** The backend used when none is chosen. */
+	private static final XmlPullBackend DEFAULT = new XmlPullBackend();
+
+	/** Creates parsers, or null to use {@link PullParserFactory}. */
+	private final XmlPullParserFactory factory;
+
+	/**
+	 * Creates a backend that gets its parsers from {@link PullParserFactory}.
+	 */
+	public XmlPullBackend() {
+		this(null);
+	}
+
+	/**
+	 * Creates a backend that gets its parsers from a specific factory.
+	 * 
+	 * @param factory
+	 *            The factory to create parsers with.
+	 */
+	public XmlPullBackend(XmlPullParserFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Gets the backend used when none is chosen.
+	 * 
+	 * @return The default backend.
+	 */
+	public static XmlPullBackend getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XmlTokenizer newTokenizer() {
+		XmlPullParser parser;
+
+		if (factory == null) {
+			parser = PullParserFactory.getInstance().buildParser();
+		} else {
+			try {
+				parser = factory.newPullParser();
+			} catch (XmlPullParserException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		return new XmlPullTokenizer(parser);
+	}
+
+	@Override
+	public String toString() {
+		return "XmlPull";
+	}
+}
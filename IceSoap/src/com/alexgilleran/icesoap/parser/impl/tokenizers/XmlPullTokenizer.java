@@ -0,0 +1,143 @@
+package com.alexgilleran.icesoap.parser.impl.tokenizers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
+/**
+ * Adapts an {@link XmlPullParser} to {@link XmlTokenizer} - the events are
+ * already the same, so this just turns on namespace processing and delegates.
+ * 
+ * @author Alex Gilleran
+ */
+final class XmlPullTokenizer implements XmlTokenizer {
+	/** The wrapped parser. */
+	private final XmlPullParser parser;
+
+	/**
+	 * Wraps a parser.
+	 * 
+	 * @param parser
+	 *            The parser.
+	 */
+	XmlPullTokenizer(XmlPullParser parser) {
+		this.parser = parser;
+
+		try {
+			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+		} catch (XmlPullParserException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setInput(InputStream inputStream, String inputEncoding) throws XmlPullParserException {
+		parser.setInput(inputStream, inputEncoding);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int next() throws XmlPullParserException, IOException {
+		return parser.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getEventType() throws XmlPullParserException {
+		return parser.getEventType();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getDepth() {
+		return parser.getDepth();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return parser.getName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		String name = getName();
+
+		return name == null ? SymbolTable.UNKNOWN : SymbolTable.getInstance().lookup(name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeCount() {
+		return parser.getAttributeCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeName(int index) {
+		return parser.getAttributeName(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getAttributeNameId(int index) {
+		return SymbolTable.getInstance().lookup(getAttributeName(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(int index) {
+		return parser.getAttributeValue(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getAttributeValue(String namespace, String name) {
+		return parser.getAttributeValue(namespace, name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getText() {
+		return parser.getText();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char[] getTextCharacters(int[] holderForStartAndLength) {
+		return parser.getTextCharacters(holderForStartAndLength);
+	}
+}
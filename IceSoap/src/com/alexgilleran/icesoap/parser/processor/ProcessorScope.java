@@ -0,0 +1,52 @@
+package com.alexgilleran.icesoap.parser.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how long an instance of a {@link Processor} can be used for - put
+ * this on a {@link Processor} implementation to let parsers reuse instances
+ * rather than creating a new one for every value. Processors without this
+ * annotation are treated as {@link Scope#VALUE}, so a new instance is created
+ * for every value, as processors may keep state between calls.
+ *
+ * @author Alex Gilleran
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ProcessorScope {
+	/**
+	 * The scope of the processor.
+	 */
+	Scope value();
+
+	/**
+	 * The scopes that a processor can have.
+	 */
+	enum Scope {
+		/**
+		 * One instance is shared by every parser, on every thread - only use
+		 * this for processors that keep no state and are safe to call from
+		 * multiple threads at once.
+		 */
+		SHARED,
+		/**
+		 * One instance is used by each thread - use this for processors that
+		 * have state that's expensive to create (e.g. a formatter) but aren't
+		 * safe to call from multiple threads.
+		 */
+		THREAD,
+		/**
+		 * A new instance is created for each parse - use this for processors
+		 * that keep state between values within one document.
+		 */
+		PARSE,
+		/** A new instance is created for every value. */
+		VALUE
+	}
+}
@@ -0,0 +1,27 @@
+package com.alexgilleran.icesoap.request;
+
+/**
+ * What {@link com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester} does
+ * with the rest of a response once the request has everything it needs from
+ * it - responses are parsed as they arrive, so the result is usually complete
+ * before the whole response has been read (e.g. when there's trailing content
+ * after the result's element).
+ * 
+ * @author Alex Gilleran
+ */
+public enum CompletionPolicy {
+	/**
+	 * Read and discard the rest of the response, so the connection can be
+	 * reused for the next request. This is the default. The result is
+	 * delivered before the rest is read, so it doesn't wait for it.
+	 */
+	DRAIN,
+	/**
+	 * Close the connection without reading the rest of the response, so the
+	 * next request doesn't wait for it to be drained - at the cost of opening
+	 * a new connection for it. Best for responses with a lot of content after
+	 * the result. If the response has already been read to the end, it's
+	 * drained instead, as there's nothing to wait for.
+	 */
+	ABORT
+}
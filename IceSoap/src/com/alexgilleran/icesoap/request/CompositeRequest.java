@@ -0,0 +1,70 @@
+package com.alexgilleran.icesoap.request;
+
+import java.util.List;
+
+import com.alexgilleran.icesoap.parser.IceSoapCompositeParser;
+import com.alexgilleran.icesoap.parser.ParseResults;
+
+/**
+ * This request gets several objects and lists out of one response, reading it
+ * only once - e.g. a SOAP header object, a summary object and a list of items.
+ * Add the classes to parse before executing it, then get the results for each
+ * one when it's complete. See {@link IceSoapCompositeParser} for how elements
+ * are matched to classes.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <SOAPFaultType>
+ *            The type of the fault object that will be parsed from the
+ *            response, should an HTTP Error 500 be encountered.
+ */
+public interface CompositeRequest<SOAPFaultType> extends Request<ParseResults, SOAPFaultType> {
+	/**
+	 * Adds a class to parse a single object of.
+	 *
+	 * @param <T>
+	 *            The class to parse.
+	 * @param targetClass
+	 *            The class to parse.
+	 * @throws IllegalArgumentException
+	 *             If the class has already been added with this method.
+	 */
+	<T> void addTarget(Class<T> targetClass);
+
+	/**
+	 * Adds a class to parse a list of.
+	 *
+	 * @param <T>
+	 *            The class of the items in the list.
+	 * @param itemClass
+	 *            The class of the items in the list.
+	 * @throws IllegalArgumentException
+	 *             If the class has already been added with this method.
+	 */
+	<T> void addListTarget(Class<T> itemClass);
+
+	/**
+	 * Gets the object parsed for a class added with {@link #addTarget(Class)}.
+	 *
+	 * @param <T>
+	 *            The class of the object.
+	 * @param targetClass
+	 *            The class.
+	 * @return The object, or null if the request hasn't completed
+	 *         successfully or nothing was found for the class.
+	 */
+	<T> T getResult(Class<T> targetClass);
+
+	/**
+	 * Gets the list parsed for a class added with
+	 * {@link #addListTarget(Class)}.
+	 *
+	 * @param <T>
+	 *            The class of the items in the list.
+	 * @param itemClass
+	 *            The class.
+	 * @return The list (empty if no items were found), or null if the request
+	 *         hasn't completed successfully or the class wasn't added.
+	 */
+	<T> List<T> getListResult(Class<T> itemClass);
+}
@@ -6,6 +6,7 @@ import android.os.AsyncTask;
 
 import com.alexgilleran.icesoap.observer.SOAPObserver;
 import com.alexgilleran.icesoap.observer.SOAP11Observer;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
 
 /**
  * Encapsulates all the code for making a SOAP Request - to use, create an
@@ -102,6 +103,28 @@ public interface Request<ResultType, SOAPFaultType> {
 	 */
 	SOAPFaultType getSOAPFault();
 
+	/**
+	 * Sets the backend that reads the XML of the response (and of any SOAP
+	 * fault) - if this isn't used, the default XmlPull backend is used.
+	 * 
+	 * @param tokenizerBackend
+	 *            The backend to use, or null for the default.
+	 */
+	void setTokenizerBackend(TokenizerBackend tokenizerBackend);
+
+	/**
+	 * Sets whether to stop reading the response as soon as every field of the
+	 * result has been set, rather than at the end of the result's element -
+	 * the rest of the response is then drained or aborted according to the
+	 * requester's {@link CompletionPolicy}. Only applies to result
+	 * classes whose fields all take a single value. Defaults to false.
+	 * 
+	 * @param stopWhenFieldsSet
+	 *            Whether to stop once every field is set.
+	 * @see com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl#setStopWhenFieldsSet(boolean)
+	 */
+	void setStopWhenFieldsSet(boolean stopWhenFieldsSet);
+
 	/**
 	 * Activates debug mode for this request - debug mode results in the request
 	 * storing the request and response as a String
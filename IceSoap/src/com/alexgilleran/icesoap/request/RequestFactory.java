@@ -4,6 +4,7 @@
 package com.alexgilleran.icesoap.request;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
 import com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester;
 import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
 
@@ -118,6 +119,46 @@ public interface RequestFactory {
 			SOAPEnvelope soapEnvelope, String soapAction, Class<ReturnType> resultClass,
 			Class<SOAPFaultType> soapFaultClass);
 
+	/**
+	 * Creates a {@link CompositeRequest} that will parse a default
+	 * {@link SOAP11Fault} if an HTTP 500 error is encountered. Use this sort of
+	 * request when you want several different objects or lists from the same
+	 * response - add the classes to parse to it before executing it.
+	 * 
+	 * @param url
+	 *            The url to POST the request to.
+	 * @param soapEnvelope
+	 *            The {@link SOAPEnvelope} to post.
+	 * @param soapAction
+	 *            The SOAP action to use. Can be set to null as some SOAP
+	 *            services use this and some don't.
+	 * @return A request with the passed parameters, ready to have targets
+	 *         added, observers registered and be executed.
+	 */
+	CompositeRequest<SOAP11Fault> buildCompositeRequest(String url, SOAPEnvelope soapEnvelope, String soapAction);
+
+	/**
+	 * Builds a {@link CompositeRequest} with the passed parameters. Use this
+	 * sort of request when you want several different objects or lists from
+	 * the same response, and you want to specify a certain class to parse in
+	 * the event of an exception.
+	 * 
+	 * @param url
+	 *            The url to POST the request to.
+	 * @param soapEnvelope
+	 *            The {@link SOAPEnvelope} to post.
+	 * @param soapAction
+	 *            The SOAP action to use. Can be set to null as some SOAP
+	 *            services use this and some don't.
+	 * @param soapFaultClass
+	 *            The class to use to parse the soap fault that will be returned
+	 *            from the server in the event of an HTTP 500 error.
+	 * @return A request with the passed parameters, ready to have targets
+	 *         added, observers registered and be executed.
+	 */
+	<SOAPFaultType> CompositeRequest<SOAPFaultType> buildCompositeRequest(String url, SOAPEnvelope soapEnvelope,
+			String soapAction, Class<SOAPFaultType> soapFaultClass);
+
 	/**
 	 * Sets the implementation of {@link SOAPRequester} that will be used when
 	 * creating requests. If this isn't used, the default
@@ -134,4 +175,22 @@ public interface RequestFactory {
 	 * @return The instance of {@link SOAPRequester}.
 	 */
 	SOAPRequester getSOAPRequester();
+
+	/**
+	 * Sets the backend that requests created from now on will read their
+	 * responses with - see
+	 * {@link Request#setTokenizerBackend(TokenizerBackend)}. If this isn't
+	 * used, the default XmlPull backend will be used.
+	 * 
+	 * @param tokenizerBackend
+	 *            The backend, or null for the default.
+	 */
+	void setTokenizerBackend(TokenizerBackend tokenizerBackend);
+
+	/**
+	 * Gets the backend that requests are created with.
+	 * 
+	 * @return The backend, or null if the default is used.
+	 */
+	TokenizerBackend getTokenizerBackend();
 }
@@ -1,5 +1,6 @@
 package com.alexgilleran.icesoap.request.impl;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -13,7 +14,6 @@ import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.scheme.SocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
@@ -22,6 +22,7 @@ import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.request.CompletionPolicy;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 
 /**
@@ -55,6 +56,8 @@ public class ApacheSOAPRequester implements SOAPRequester {
 
 	/** Apache HTTP Client for making HTTP requests. */
 	private HttpClient httpClient;
+	/** What to do with the rest of a response once it's been parsed. */
+	private CompletionPolicy completionPolicy = CompletionPolicy.DRAIN;
 
 	/**
 	 * {@inheritDoc}
@@ -72,7 +75,9 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	}
 
 	/**
-	 * Performs an HTTP POST request
+	 * Performs an HTTP POST request. The response is read from the connection
+	 * as it's parsed rather than all at once, and releasing it drains or
+	 * aborts the connection according to the {@link CompletionPolicy}.
 	 * 
 	 * @param httpPost
 	 *            The {@link HttpPost} to perform.
@@ -80,13 +85,31 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	 * @throws IOException
 	 *             If there's an IO error.
 	 */
-	private Response doHttpPost(HttpPost httpPost) throws IOException {
+	private Response doHttpPost(final HttpPost httpPost) throws IOException {
 		// Execute HTTP Post Request
 		HttpResponse response = getHttpClient().execute(httpPost);
 
-		HttpEntity res = new BufferedHttpEntity(response.getEntity());
+		final HttpEntity entity = response.getEntity();
+		final CompletionPolicy policy = completionPolicy;
+		final CountingInputStream content = entity == null ? null : new CountingInputStream(entity.getContent());
 
-		return new Response(res.getContent(), response.getStatusLine().getStatusCode());
+		return new Response(content, response.getStatusLine().getStatusCode()) {
+			@Override
+			public void release() throws IOException {
+				if (entity == null) {
+					return;
+				}
+
+				if (policy == CompletionPolicy.ABORT && !content.isFullyRead(entity.getContentLength())) {
+					// Parsing stopped before the end - don't wait for the rest
+					httpPost.abort();
+				} else {
+					// Costs nothing if it's all been read, and keeps the
+					// connection alive
+					entity.consumeContent();
+				}
+			}
+		};
 	}
 
 	/**
@@ -193,4 +216,93 @@ public class ApacheSOAPRequester implements SOAPRequester {
 	public void setSocketTimeout(int timeout) {
 		HttpConnectionParams.setSoTimeout(getHttpClient().getParams(), timeout);
 	}
+
+	/**
+	 * Sets what happens to the rest of a response once the request has
+	 * finished with it - see {@link CompletionPolicy}. Defaults to
+	 * {@link CompletionPolicy#DRAIN}.
+	 * 
+	 * @param policy
+	 *            The policy.
+	 */
+	public void setCompletionPolicy(CompletionPolicy policy) {
+		this.completionPolicy = policy;
+	}
+
+	/**
+	 * Counts the bytes read from a response, so it can tell whether it's been
+	 * read to the end without reading any more of it.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		/** The number of bytes read so far. */
+		private long count;
+		/** Whether the end of the stream has been reached. */
+		private boolean ended;
+
+		/**
+		 * Creates a new stream.
+		 * 
+		 * @param in
+		 *            The stream to count the bytes of.
+		 */
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+
+			if (read < 0) {
+				ended = true;
+			} else {
+				count++;
+			}
+
+			return read;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+
+			if (read < 0) {
+				ended = true;
+			} else {
+				count += read;
+			}
+
+			return read;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+
+			return skipped;
+		}
+
+		/**
+		 * Gets whether the whole stream has been read.
+		 * 
+		 * @param length
+		 *            The length of the stream, or a negative number if it's
+		 *            not known.
+		 * @return true if the end of the stream has been reached (or, if the
+		 *         length is known, read up to), false if there may be more.
+		 */
+		boolean isFullyRead(long length) {
+			return ended || (length >= 0 && count >= length);
+		}
+	}
 }
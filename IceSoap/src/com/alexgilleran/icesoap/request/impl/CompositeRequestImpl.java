@@ -0,0 +1,123 @@
+package com.alexgilleran.icesoap.request.impl;
+
+import java.util.List;
+
+import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.IceSoapCompositeParser;
+import com.alexgilleran.icesoap.parser.ParseResults;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.impl.IceSoapCompositeParserImpl;
+import com.alexgilleran.icesoap.request.CompositeRequest;
+import com.alexgilleran.icesoap.request.SOAPRequester;
+
+/**
+ * Implementation of {@link CompositeRequest}.
+ *
+ * @author Alex Gilleran
+ *
+ * @param <SOAPFaultType>
+ *            The type of the SOAP fault.
+ */
+public class CompositeRequestImpl<SOAPFaultType> extends RequestImpl<ParseResults, SOAPFaultType> implements
+		CompositeRequest<SOAPFaultType> {
+	/** The parser to use to parse the result. */
+	private IceSoapCompositeParser parser;
+
+	/**
+	 * Creates a new request, automatically creating the parser.
+	 *
+	 * @param url
+	 *            The URL to post the request to.
+	 * @param soapEnv
+	 *            The SOAP envelope to send, as a {@link SOAPEnvelope}.
+	 * @param soapAction
+	 *            The SOAP Action to pass in the HTTP header - can be null.
+	 * @param soapFaultClass
+	 *            The class of the SOAPFault that will be returned if one is
+	 *            encountered.
+	 * @param requester
+	 *            The implementation of {@link SOAPRequester} to use for
+	 *            requests.
+	 */
+	protected CompositeRequestImpl(String url, SOAPEnvelope soapEnv, String soapAction,
+			Class<SOAPFaultType> soapFaultClass, SOAPRequester requester) {
+		this(url, soapEnv, soapAction, new IceSoapCompositeParserImpl(), soapFaultClass, requester);
+	}
+
+	/**
+	 * Creates a new request.
+	 *
+	 * @param url
+	 *            The URL to post the request to.
+	 * @param soapEnv
+	 *            The SOAP envelope to send, as a {@link SOAPEnvelope}.
+	 * @param soapAction
+	 *            The SOAP Action to pass in the HTTP header - can be null.
+	 * @param parser
+	 *            The {@link IceSoapCompositeParser} to use to parse the
+	 *            response.
+	 * @param soapFaultClass
+	 *            The class of the SOAPFault that will be returned if one is
+	 *            encountered.
+	 * @param requester
+	 *            The implementation of {@link SOAPRequester} to use for
+	 *            requests.
+	 */
+	protected CompositeRequestImpl(String url, SOAPEnvelope soapEnv, String soapAction,
+			IceSoapCompositeParser parser, Class<SOAPFaultType> soapFaultClass, SOAPRequester requester) {
+		super(url, soapEnv, soapAction, parser, soapFaultClass, requester);
+
+		this.parser = parser;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> void addTarget(Class<T> targetClass) {
+		parser.addTarget(targetClass);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> void addListTarget(Class<T> itemClass) {
+		parser.addListTarget(itemClass);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T getResult(Class<T> targetClass) {
+		ParseResults results = getResult();
+
+		return results == null ? null : results.get(targetClass);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> List<T> getListResult(Class<T> itemClass) {
+		ParseResults results = getResult();
+
+		return results == null ? null : results.getList(itemClass);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The backend is passed on to the parser if it's an
+	 * {@link IceSoapCompositeParserImpl}.
+	 */
+	@Override
+	public void setTokenizerBackend(TokenizerBackend tokenizerBackend) {
+		super.setTokenizerBackend(tokenizerBackend);
+
+		if (parser instanceof IceSoapCompositeParserImpl) {
+			((IceSoapCompositeParserImpl) parser).setTokenizerBackend(tokenizerBackend);
+		}
+	}
+}
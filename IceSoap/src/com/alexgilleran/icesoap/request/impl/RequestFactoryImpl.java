@@ -4,17 +4,21 @@
 package com.alexgilleran.icesoap.request.impl;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.request.CompletionPolicy;
+import com.alexgilleran.icesoap.request.CompositeRequest;
 import com.alexgilleran.icesoap.request.ListRequest;
 import com.alexgilleran.icesoap.request.Request;
 import com.alexgilleran.icesoap.request.SOAP11ListRequest;
 import com.alexgilleran.icesoap.request.SOAP11Request;
 import com.alexgilleran.icesoap.request.RequestFactory;
 import com.alexgilleran.icesoap.request.SOAPRequester;
+import com.alexgilleran.icesoap.soapfault.SOAP11Fault;
 
 /**
  * Factory for requests - retains a single instance of {@link SOAPRequester} to
- * save object creation. Doesn't retain state besides the {@link SOAPRequester},
- * so can be used as a Singleton if desired.
+ * save object creation. Doesn't retain state besides the {@link SOAPRequester}
+ * and {@link TokenizerBackend}, so can be used as a Singleton if desired.
  * 
  * @author Alex Gilleran
  * 
@@ -22,6 +26,8 @@ import com.alexgilleran.icesoap.request.SOAPRequester;
 public class RequestFactoryImpl implements RequestFactory {
 	/** Requester to perform soap requests. */
 	private SOAPRequester soapRequester;
+	/** Backend for requests to read responses with - null for the default. */
+	private TokenizerBackend tokenizerBackend;
 
 	/**
 	 * Instantiates a new {@link RequestFactoryImpl} with the default Apache
@@ -49,8 +55,8 @@ public class RequestFactoryImpl implements RequestFactory {
 	public <ReturnType, SOAPFaultType> Request<ReturnType, SOAPFaultType> buildRequest(String url,
 			SOAPEnvelope soapEnvelope, String soapAction, Class<ReturnType> resultClass,
 			Class<SOAPFaultType> soapFaultType) {
-		return new RequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass, soapFaultType,
-				soapRequester);
+		return configure(new RequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
+				soapFaultType, soapRequester));
 	}
 
 	/**
@@ -60,8 +66,8 @@ public class RequestFactoryImpl implements RequestFactory {
 	public <ReturnType, SOAPFaultType> ListRequest<ReturnType, SOAPFaultType> buildListRequest(String url,
 			SOAPEnvelope soapEnvelope, String soapAction, Class<ReturnType> resultClass,
 			Class<SOAPFaultType> soapFaultType) {
-		return new ListRequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
-				soapFaultType, soapRequester);
+		return configure(new ListRequestImpl<ReturnType, SOAPFaultType>(url, soapEnvelope, soapAction, resultClass,
+				soapFaultType, soapRequester));
 	}
 
 	/**
@@ -70,7 +76,7 @@ public class RequestFactoryImpl implements RequestFactory {
 	@Override
 	public <ReturnType> SOAP11Request<ReturnType> buildRequest(String url, SOAPEnvelope soapEnvelope,
 			String soapAction, Class<ReturnType> resultClass) {
-		return new SOAP11RequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester);
+		return configure(new SOAP11RequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester));
 	}
 
 	/**
@@ -79,7 +85,42 @@ public class RequestFactoryImpl implements RequestFactory {
 	@Override
 	public <ReturnType> SOAP11ListRequest<ReturnType> buildListRequest(String url, SOAPEnvelope soapEnvelope,
 			String soapAction, Class<ReturnType> resultClass) {
-		return new SOAP11ListRequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass, soapRequester);
+		return configure(new SOAP11ListRequestImpl<ReturnType>(url, soapEnvelope, soapAction, resultClass,
+				soapRequester));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CompositeRequest<SOAP11Fault> buildCompositeRequest(String url, SOAPEnvelope soapEnvelope,
+			String soapAction) {
+		return buildCompositeRequest(url, soapEnvelope, soapAction, SOAP11Fault.class);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <SOAPFaultType> CompositeRequest<SOAPFaultType> buildCompositeRequest(String url,
+			SOAPEnvelope soapEnvelope, String soapAction, Class<SOAPFaultType> soapFaultType) {
+		return configure(new CompositeRequestImpl<SOAPFaultType>(url, soapEnvelope, soapAction, soapFaultType,
+				soapRequester));
+	}
+
+	/**
+	 * Applies the settings of this factory to a new request.
+	 * 
+	 * @param request
+	 *            The request.
+	 * @return The same request.
+	 */
+	private <RequestType extends Request<?, ?>> RequestType configure(RequestType request) {
+		if (tokenizerBackend != null) {
+			request.setTokenizerBackend(tokenizerBackend);
+		}
+
+		return request;
 	}
 
 	/**
@@ -97,4 +138,35 @@ public class RequestFactoryImpl implements RequestFactory {
 	public void setSOAPRequester(SOAPRequester soapRequester) {
 		this.soapRequester = soapRequester;
 	}
+
+	/**
+	 * Sets what the requester does with the rest of a response once a request
+	 * has finished with it - see {@link CompletionPolicy}. This only applies if
+	 * the requester is an {@link ApacheSOAPRequester}; other requesters manage
+	 * their own connections.
+	 * 
+	 * @param policy
+	 *            The policy.
+	 */
+	public void setCompletionPolicy(CompletionPolicy policy) {
+		if (soapRequester instanceof ApacheSOAPRequester) {
+			((ApacheSOAPRequester) soapRequester).setCompletionPolicy(policy);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setTokenizerBackend(TokenizerBackend tokenizerBackend) {
+		this.tokenizerBackend = tokenizerBackend;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public TokenizerBackend getTokenizerBackend() {
+		return tokenizerBackend;
+	}
 }
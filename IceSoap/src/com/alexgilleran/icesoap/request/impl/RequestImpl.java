@@ -4,6 +4,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Scanner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import android.os.AsyncTask;
 
@@ -13,6 +16,8 @@ import com.alexgilleran.icesoap.exception.XMLParsingException;
 import com.alexgilleran.icesoap.observer.SOAPObserver;
 import com.alexgilleran.icesoap.observer.registry.ObserverRegistry;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.impl.BaseIceSoapParserImpl;
 import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
 import com.alexgilleran.icesoap.request.Request;
 import com.alexgilleran.icesoap.request.SOAPRequester;
@@ -44,6 +49,19 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	public static final String MESSAGE_ERROR_500_FAILED_SOAPFAULT = MESSAGE_ERROR_500
 			+ ". No returned soapfault could be parsed.";
 
+	/**
+	 * Drains or aborts responses once their results have been delivered, so
+	 * observers never wait for the rest of a response to be read.
+	 */
+	private static final Executor RELEASE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "IceSoap response release");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
 	/** Registry of observers to send events to. */
 	private ObserverRegistry<ResultType, SOAPFaultType> registry = new ObserverRegistry<ResultType, SOAPFaultType>();
 	/** Parser to use to parse the response. */
@@ -77,6 +95,9 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 */
 	private SOAPException caughtException = null;
 
+	/** Backend to read responses with - null for the default. */
+	private TokenizerBackend tokenizerBackend;
+
 	/** Whether this request is in debug mode. **/
 	private boolean debugMode = false;
 	/** Request XML to be stored in debug mode. **/
@@ -251,6 +272,33 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		return soapFault;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The backend is passed on to the parser if it's a
+	 * {@link BaseIceSoapParserImpl}, otherwise it's only used for SOAP faults.
+	 */
+	@Override
+	public void setTokenizerBackend(TokenizerBackend tokenizerBackend) {
+		this.tokenizerBackend = tokenizerBackend;
+
+		if (parser instanceof BaseIceSoapParserImpl) {
+			((BaseIceSoapParserImpl<?>) parser).setTokenizerBackend(tokenizerBackend);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This only has an effect if the parser is an {@link IceSoapParserImpl}.
+	 */
+	@Override
+	public void setStopWhenFieldsSet(boolean stopWhenFieldsSet) {
+		if (parser instanceof IceSoapParserImpl) {
+			((IceSoapParserImpl<?>) parser).setStopWhenFieldsSet(stopWhenFieldsSet);
+		}
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public void setDebugMode(boolean activated) {
@@ -280,6 +328,11 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 	 *            class.
 	 */
 	protected class RequestTask<ProgressReportObject> extends AsyncTask<Void, ProgressReportObject, ResultType> {
+		/**
+		 * The response being read, kept so it can be released once the result
+		 * has been delivered.
+		 */
+		private volatile Response response;
 
 		/**
 		 * {@inheritDoc}
@@ -289,12 +342,24 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 			complete = true;
 			executing = false;
 
-			if (caughtException != null) {
-				registry.notifyException(RequestImpl.this, caughtException);
+			try {
+				if (caughtException != null) {
+					registry.notifyException(RequestImpl.this, caughtException);
+				}
+
+				result = returnedResult;
+				registry.notifyComplete(RequestImpl.this);
+			} finally {
+				releaseResponse();
 			}
+		}
 
-			result = returnedResult;
-			registry.notifyComplete(RequestImpl.this);
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void onCancelled() {
+			releaseResponse();
 		}
 
 		/**
@@ -313,7 +378,6 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		@Override
 		protected ResultType doInBackground(Void... arg0) {
 			executing = true;
-			Response response = null;
 			InputStream responseData = null;
 
 			try {
@@ -324,7 +388,11 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 				throwException(new SOAPException(ioException));
 			}
 
-			if (response != null) {
+			if (response == null) {
+				return null;
+			}
+
+			try {
 				responseData = response.getData();
 
 				if (debugMode) {
@@ -372,12 +440,43 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 				default:
 					throwException(new SOAPException(MESSAGE_ERROR + " " + response.getHttpStatus()));
 				}
-
+			} catch (RuntimeException e) {
+				// There won't be a result to deliver, so don't keep the
+				// connection waiting
+				releaseResponse();
+				throw e;
 			}
 
 			return null;
 		}
 
+		/**
+		 * Lets the requester drain or abort the rest of the response in the
+		 * background, now that everything that's needed has been read from it
+		 * - draining can mean reading a lot more of the response, which the
+		 * result shouldn't wait for.
+		 */
+		private void releaseResponse() {
+			final Response finishedResponse = response;
+			response = null;
+
+			if (finishedResponse == null) {
+				return;
+			}
+
+			RELEASE_EXECUTOR.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						finishedResponse.release();
+					} catch (IOException e) {
+						// Everything needed has already been read, so this
+						// doesn't affect the result
+					}
+				}
+			});
+		}
+
 		/**
 		 * Parses a SOAPFault from incoming data.
 		 * 
@@ -388,7 +487,8 @@ public class RequestImpl<ResultType, SOAPFaultType> implements Request<ResultTyp
 		 *             If an error occurs while parsing.
 		 */
 		private SOAPFaultType parseSoapFault(InputStream soapFaultData) throws XMLParsingException {
-			IceSoapParser<SOAPFaultType> parser = new IceSoapParserImpl<SOAPFaultType>(soapFaultClass);
+			IceSoapParserImpl<SOAPFaultType> parser = new IceSoapParserImpl<SOAPFaultType>(soapFaultClass);
+			parser.setTokenizerBackend(tokenizerBackend);
 
 			return parser.parse(soapFaultData);
 		}
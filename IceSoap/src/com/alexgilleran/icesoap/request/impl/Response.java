@@ -1,7 +1,10 @@
 package com.alexgilleran.icesoap.request.impl;
 
+import java.io.IOException;
 import java.io.InputStream;
 
+import com.alexgilleran.icesoap.request.CompletionPolicy;
+
 /**
  * Encapsulates the details of a response from an SOAP request.
  * 
@@ -44,4 +47,21 @@ public class Response {
 	public int getHttpStatus() {
 		return httpStatus;
 	}
+
+	/**
+	 * Called once the request has read everything it needs from the data -
+	 * which may be before the end of it - and delivered its result to its
+	 * observers, on a background thread. By default this closes the data
+	 * stream; responses that are read from a connection as they arrive
+	 * override this to drain or abort the connection according to a
+	 * {@link CompletionPolicy}.
+	 * 
+	 * @throws IOException
+	 *             If the data can't be closed.
+	 */
+	public void release() throws IOException {
+		if (data != null) {
+			data.close();
+		}
+	}
 }
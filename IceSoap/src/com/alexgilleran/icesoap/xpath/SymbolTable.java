@@ -0,0 +1,116 @@
+package com.alexgilleran.icesoap.xpath;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * Maps the names used in xpaths to small integer IDs, so that matching and
+ * lookups can compare ints rather than Strings.
+ * </p>
+ *
+ * <p>
+ * Names are registered when xpaths are compiled (and when they're put into an
+ * {@link XPathRepository}). When a document is parsed, the names of its
+ * elements and attributes are only looked up, not registered - a name that
+ * hasn't been registered can't match any xpath, so it gets
+ * {@link #UNKNOWN} rather than growing the table. IDs are never removed or
+ * reused, so once a name has an ID it can be kept.
+ * </p>
+ *
+ * <p>
+ * Note that this is a singleton - call getInstance() to get an instance rather
+ * than constructing it. It's safe to use from multiple threads at once.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class SymbolTable {
+	/** The ID of any name that hasn't been registered. */
+	public static final int UNKNOWN = 0;
+
+	/** Instance of the Singleton class */
+	private static final SymbolTable INSTANCE = new SymbolTable();
+
+	/** The ID of every registered name. */
+	private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	/** The last ID that was given out. Guarded by this. */
+	private int lastId = UNKNOWN;
+
+	/**
+	 * Only used by getInstance() as this is a singleton.
+	 */
+	private SymbolTable() {
+	}
+
+	/**
+	 * Gets an instance of the SymbolTable.
+	 *
+	 * @return the Singleton instance of the SymbolTable.
+	 */
+	public static SymbolTable getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Gets the ID of a name, giving it a new one if it doesn't have one yet.
+	 *
+	 * @param name
+	 *            The name to register.
+	 * @return The ID of the name - never {@link #UNKNOWN}.
+	 */
+	public int register(String name) {
+		Integer id = ids.get(name);
+
+		if (id == null) {
+			synchronized (this) {
+				id = ids.get(name);
+
+				if (id == null) {
+					id = ++lastId;
+					ids.put(name, id);
+				}
+			}
+		}
+
+		return id;
+	}
+
+	/**
+	 * Gets the ID of a name without registering it.
+	 *
+	 * @param name
+	 *            The name to look up.
+	 * @return The ID of the name, or {@link #UNKNOWN} if it hasn't been
+	 *         registered.
+	 */
+	public int lookup(String name) {
+		Integer id = ids.get(name);
+
+		return id == null ? UNKNOWN : id;
+	}
+
+	/**
+	 * Determines whether two xpath elements have the same name, comparing
+	 * their IDs if possible.
+	 *
+	 * @param element
+	 *            The first element.
+	 * @param otherElement
+	 *            The second element.
+	 * @return true if the names are the same, otherwise false.
+	 */
+	public static boolean sameName(XPathElement element, XPathElement otherElement) {
+		int id = element.getNameId();
+
+		if (id != UNKNOWN) {
+			return id == otherElement.getNameId();
+		}
+
+		// The name isn't registered, so the IDs can't be compared
+		return element.getName().equals(otherElement.getName());
+	}
+}
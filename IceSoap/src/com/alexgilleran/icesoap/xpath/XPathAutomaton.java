@@ -0,0 +1,909 @@
+package com.alexgilleran.icesoap.xpath;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alexgilleran.icesoap.xpath.XPathRepository.XPathRecord;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * A compiled, read-only form of an {@link XPathRepository}, designed to be
+ * matched against the position of a streaming parser one event at a time.
+ * </p>
+ *
+ * <p>
+ * The xpaths in the repository are merged into a tree of steps (xpaths with
+ * common prefixes share steps), which is then lazily turned into a
+ * deterministic state machine - each state represents every partial match that
+ * is possible at one element of the document. Moving into an element is a
+ * single cached transition from the state of its parent, and moving out of an
+ * element simply goes back to the parent's state, so the cost of matching an
+ * event doesn't depend on how deep the document is or how many xpaths are in
+ * the repository.
+ * </p>
+ *
+ * <p>
+ * Relative xpaths can be compiled against a set of root xpaths, in which case
+ * they match relative to the end of any of the roots. The steps of each
+ * relative xpath are only created once and shared by all the roots, so adding
+ * more roots doesn't multiply the number of steps (or the size of the states)
+ * by the number of relative xpaths.
+ * </p>
+ *
+ * <p>
+ * Position within a document is tracked by a {@link Cursor}, which is cheap to
+ * create and can be reused between parses. The automaton itself is safe to
+ * share between threads, but cursors aren't.
+ * </p>
+ *
+ * <p>
+ * If more than one xpath matches the same node, the one with the most
+ * predicates wins, followed by the one that was put into the repository first.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ * @param <T>
+ *            The type of the object stored against xpaths.
+ */
+public class XPathAutomaton<T> {
+	/** Flag in a position that indicates an exact match at the current node. */
+	private static final int EXACT = 0;
+	/**
+	 * Flag in a position that indicates a match at an ancestor of the current
+	 * node that is waiting on a descendant ('//') step.
+	 */
+	private static final int PENDING = 1;
+	/** The most predicates a transition will cache the results of. */
+	private static final int MAX_CACHED_PREDICATES = 8;
+	/**
+	 * The most states that will be kept - past this the automaton stops
+	 * remembering new states and works them out as they're needed instead.
+	 */
+	private static final int MAX_INTERNED_STATES = 2048;
+	/** The starting size of a cursor's stack of states. */
+	private static final int INITIAL_DEPTH = 16;
+	/** Used for steps without predicates. */
+	private static final String[] NO_STRINGS = new String[0];
+
+	/** All the steps in the automaton, indexed by their id. */
+	private final List<Step> steps = new ArrayList<Step>();
+	/** Interned states, so each set of positions only has one state. */
+	private final ConcurrentMap<PositionSet, State> states = new ConcurrentHashMap<PositionSet, State>();
+	/** The state before the document element has been encountered. */
+	private final State initialState;
+
+	/**
+	 * Compiles a new automaton from the contents of a repository. Note that
+	 * later changes to the repository will not be reflected in the automaton.
+	 *
+	 * @param repository
+	 *            The repository to compile - all of its xpaths must be
+	 *            absolute.
+	 */
+	public XPathAutomaton(XPathRepository<T> repository) {
+		this(null, repository);
+	}
+
+	/**
+	 * Compiles a new automaton from the contents of a repository, matching any
+	 * relative xpaths in it relative to the end of the supplied root xpaths.
+	 * Note that later changes to either repository will not be reflected in
+	 * the automaton.
+	 *
+	 * @param roots
+	 *            The xpaths that relative xpaths are relative to - only the
+	 *            keys are used. Can be null if there are no relative xpaths.
+	 * @param repository
+	 *            The repository to compile.
+	 */
+	public XPathAutomaton(XPathRepository<?> roots, XPathRepository<T> repository) {
+		Step documentStep = new Step(SymbolTable.UNKNOWN, false, false, NO_STRINGS, NO_STRINGS);
+		// The steps of relative xpaths are put under this, then shared with
+		// the last step of every root.
+		Step relativeStep = new Step(SymbolTable.UNKNOWN, false, false, NO_STRINGS, NO_STRINGS);
+
+		List<XPathElement> xpaths = new ArrayList<XPathElement>(repository.keySet());
+		// This sort is stable, so xpaths with the same number of predicates
+		// keep the order they were put into the repository in.
+		Collections.sort(xpaths, new Comparator<XPathElement>() {
+			@Override
+			public int compare(XPathElement xpath1, XPathElement xpath2) {
+				return countPredicates(xpath2) - countPredicates(xpath1);
+			}
+		});
+
+		for (int rank = 0; rank < xpaths.size(); rank++) {
+			XPathElement xpath = xpaths.get(rank);
+			Step baseStep = documentStep;
+
+			if (xpath.getFirstElement().isRelative()) {
+				if (roots == null) {
+					throw new IllegalArgumentException("Attempt was made to compile relative xpath '" + xpath
+							+ "' when the xpath was not attached to an absolute xpath.");
+				}
+
+				baseStep = relativeStep;
+			}
+
+			addXPath(baseStep, xpath, repository.getExact(xpath), rank);
+		}
+
+		if (!relativeStep.successors.isEmpty()) {
+			for (XPathElement root : roots.keySet()) {
+				addSteps(documentStep, root).addSuccessors(relativeStep);
+			}
+		}
+
+		initialState = getState(new int[] { position(documentStep, EXACT) });
+	}
+
+	/**
+	 * Creates a new cursor for tracking a parser's position in a document
+	 * against this automaton.
+	 *
+	 * @return A new cursor, positioned at the start of a document.
+	 */
+	public Cursor newCursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Adds the steps of an xpath to the tree, merging them with any steps that
+	 * are already there, and stores a record against the last one.
+	 *
+	 * @param baseStep
+	 *            The step to add the xpath under.
+	 * @param xpath
+	 *            The xpath to add.
+	 * @param value
+	 *            The value stored against the xpath.
+	 * @param rank
+	 *            The precedence of this xpath - lower ranks win.
+	 */
+	private void addXPath(Step baseStep, XPathElement xpath, T value, int rank) {
+		Step currentStep = addSteps(baseStep, xpath);
+
+		if (rank < currentStep.rank) {
+			currentStep.record = new XPathRecord<T>(xpath, value);
+			currentStep.rank = rank;
+		}
+	}
+
+	/**
+	 * Adds the steps of an xpath to the tree, merging them with any steps that
+	 * are already there.
+	 *
+	 * @param baseStep
+	 *            The step to add the xpath under.
+	 * @param xpath
+	 *            The xpath to add.
+	 * @return The step for the last element of the xpath.
+	 */
+	private Step addSteps(Step baseStep, XPathElement xpath) {
+		List<XPathElement> elements = new ArrayList<XPathElement>();
+		for (XPathElement element = xpath; element != null; element = element.getPreviousElement()) {
+			elements.add(element);
+		}
+
+		Step currentStep = baseStep;
+		for (int i = elements.size() - 1; i >= 0; i--) {
+			currentStep = currentStep.getSuccessor(elements.get(i));
+		}
+
+		return currentStep;
+	}
+
+	/**
+	 * Counts the total predicates in an xpath, including those of its previous
+	 * elements.
+	 *
+	 * @param xpath
+	 *            The xpath to count.
+	 * @return The number of predicates.
+	 */
+	private static int countPredicates(XPathElement xpath) {
+		int count = 0;
+
+		for (XPathElement element = xpath; element != null; element = element.getPreviousElement()) {
+			count += element.getPredicates().size();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Encodes a step and a flag as a position.
+	 *
+	 * @param step
+	 *            The step.
+	 * @param flag
+	 *            Either {@link #EXACT} or {@link #PENDING}.
+	 * @return The encoded position.
+	 */
+	private int position(Step step, int flag) {
+		return (step.id << 1) | flag;
+	}
+
+	/**
+	 * <p>
+	 * Gets the state for a set of positions, creating it if it doesn't exist.
+	 * </p>
+	 *
+	 * <p>
+	 * Lots of xpaths with '//' elements can produce a lot of different states.
+	 * To keep memory use bounded, once {@link #MAX_INTERNED_STATES} states
+	 * exist any new ones aren't kept. The automaton then behaves as a plain
+	 * NFA for those parts of the document: each cursor keeps the set of active
+	 * positions for each depth, and each transition costs time proportional
+	 * to the number of xpaths rather than to the depth of the document.
+	 * </p>
+	 *
+	 * @param positions
+	 *            The positions - can be unsorted and contain duplicates.
+	 * @return The state for the supplied positions.
+	 */
+	private State getState(int[] positions) {
+		PositionSet key = new PositionSet(positions);
+		State state = states.get(key);
+
+		if (state == null) {
+			State newState = new State(key.positions);
+
+			if (states.size() >= MAX_INTERNED_STATES) {
+				return newState;
+			}
+
+			state = states.putIfAbsent(key, newState);
+
+			if (state == null) {
+				state = newState;
+			}
+		}
+
+		return state;
+	}
+
+	/**
+	 * A single step of an xpath - e.g. in <code>/this//xpath</code>,
+	 * <code>/this</code> and <code>//xpath</code> are steps. Steps are shared
+	 * between all the xpaths that have the same steps before them.
+	 */
+	private final class Step {
+		/** The index of this step in {@link XPathAutomaton#steps}. */
+		private final int id;
+		/**
+		 * The {@link SymbolTable} ID of the element or attribute name this
+		 * step matches.
+		 */
+		private final int nameId;
+		/** Whether the step is preceded by a '//'. */
+		private final boolean descendant;
+		/** Whether this step matches an attribute rather than an element. */
+		private final boolean attribute;
+		/** Names of the predicates that must be satisfied, sorted. */
+		private final String[] predicateNames;
+		/** Values of the predicates that must be satisfied. */
+		private final String[] predicateValues;
+		/** Steps that can follow this one. */
+		private final List<Step> successors = new ArrayList<Step>();
+		/** Whether any step that follows this one is a '//' step. */
+		private boolean hasDescendantSuccessors;
+		/** The record of the xpath that ends at this step, if any. */
+		private XPathRecord<T> record;
+		/** The precedence of {@link #record}. */
+		private int rank = Integer.MAX_VALUE;
+
+		/**
+		 * Creates a new step and registers it with the automaton.
+		 *
+		 * @param nameId
+		 *            The ID of the name to match.
+		 * @param descendant
+		 *            Whether the step is a '//' step.
+		 * @param attribute
+		 *            Whether the step is an attribute.
+		 * @param predicateNames
+		 *            The names of the predicates.
+		 * @param predicateValues
+		 *            The values of the predicates.
+		 */
+		private Step(int nameId, boolean descendant, boolean attribute, String[] predicateNames,
+				String[] predicateValues) {
+			this.id = steps.size();
+			this.nameId = nameId;
+			this.descendant = descendant;
+			this.attribute = attribute;
+			this.predicateNames = predicateNames;
+			this.predicateValues = predicateValues;
+
+			steps.add(this);
+		}
+
+		/**
+		 * Gets the step that follows this one for the supplied xpath element,
+		 * creating a new one if none exists yet.
+		 *
+		 * @param element
+		 *            The xpath element to get a step for.
+		 * @return The matching step.
+		 */
+		private Step getSuccessor(XPathElement element) {
+			boolean isDescendant = element.getPrefix().startsWith("//");
+			Map<String, String> predicates = new TreeMap<String, String>(element.getPredicates());
+			String[] names = predicates.keySet().toArray(new String[predicates.size()]);
+			String[] values = predicates.values().toArray(new String[predicates.size()]);
+			int nameId = SymbolTable.getInstance().register(element.getName());
+
+			for (Step successor : successors) {
+				if (successor.nameId == nameId && successor.descendant == isDescendant
+						&& successor.attribute == element.isAttribute()
+						&& Arrays.equals(successor.predicateNames, names)
+						&& Arrays.equals(successor.predicateValues, values)) {
+					return successor;
+				}
+			}
+
+			Step successor = new Step(nameId, isDescendant, element.isAttribute(), names, values);
+			successors.add(successor);
+			hasDescendantSuccessors |= isDescendant;
+
+			return successor;
+		}
+
+		/**
+		 * Makes all the steps that follow another step follow this one too -
+		 * the steps are shared, not copied.
+		 *
+		 * @param other
+		 *            The step to share the successors of.
+		 */
+		private void addSuccessors(Step other) {
+			for (Step successor : other.successors) {
+				if (!successors.contains(successor)) {
+					successors.add(successor);
+				}
+			}
+
+			hasDescendantSuccessors |= other.hasDescendantSuccessors;
+		}
+
+		/**
+		 * Determines whether this step can match a node that is a child of a
+		 * node at the supplied position.
+		 *
+		 * @param fromFlag
+		 *            The flag of the position of this step's predecessor.
+		 * @return true if the step can match.
+		 */
+		private boolean reachableFrom(int fromFlag) {
+			return fromFlag == EXACT || descendant;
+		}
+	}
+
+	/**
+	 * A sorted, duplicate-free set of positions, used as the key for interning
+	 * states.
+	 */
+	private static final class PositionSet {
+		/** The positions. */
+		private final int[] positions;
+		/** Cached hash code. */
+		private final int hash;
+
+		/**
+		 * Creates a new position set.
+		 *
+		 * @param unsorted
+		 *            The positions - may be unsorted and contain duplicates.
+		 */
+		private PositionSet(int[] unsorted) {
+			int[] sorted = unsorted.clone();
+			Arrays.sort(sorted);
+
+			int size = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[size++] = sorted[i];
+				}
+			}
+
+			this.positions = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+			this.hash = Arrays.hashCode(positions);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof PositionSet && Arrays.equals(positions, ((PositionSet) obj).positions);
+		}
+	}
+
+	/**
+	 * A state of the automaton - the set of all partial and complete matches
+	 * at one node in the document.
+	 */
+	private final class State {
+		/** The positions of the state - see {@link XPathAutomaton#position}. */
+		private final int[] positions;
+		/** The best xpath that matches the node, or null. */
+		private final XPathRecord<T> record;
+		/** The positions that are carried down to all children. */
+		private final int[] pendingPositions;
+		/**
+		 * The IDs of every element name that a step is waiting on, sorted so
+		 * they can be binary searched.
+		 */
+		private final int[] transitionNameIds;
+		/** The transition for each of {@link #transitionNameIds}. */
+		private final Transition[] transitions;
+		/** The IDs of every attribute name that a step waits on, sorted. */
+		private final int[] attributeNameIds;
+		/** The best step for each of {@link #attributeNameIds}. */
+		private final Step[] attributeSteps;
+		/**
+		 * The state of a child element with a name no step is waiting on -
+		 * lazily created.
+		 */
+		private volatile State otherState;
+		/**
+		 * Whether nothing can match at this node, its attributes or anywhere
+		 * below it.
+		 */
+		private final boolean exhausted;
+
+		/**
+		 * Creates a new state.
+		 *
+		 * @param positions
+		 *            The positions, sorted and without duplicates.
+		 */
+		@SuppressWarnings("unchecked")
+		private State(int[] positions) {
+			this.positions = positions;
+
+			XPathRecord<T> bestRecord = null;
+			int bestRank = Integer.MAX_VALUE;
+			List<Integer> pending = new ArrayList<Integer>();
+			Map<Integer, List<Step>> candidates = new TreeMap<Integer, List<Step>>();
+			Map<Integer, Step> bestAttributeSteps = new TreeMap<Integer, Step>();
+
+			for (int position : positions) {
+				Step step = steps.get(position >> 1);
+				int flag = position & 1;
+
+				if (flag == EXACT && step.record != null && step.rank < bestRank) {
+					bestRecord = step.record;
+					bestRank = step.rank;
+				}
+
+				if (flag == PENDING || step.hasDescendantSuccessors) {
+					pending.add(position(step, PENDING));
+				}
+
+				for (Step successor : step.successors) {
+					if (!successor.reachableFrom(flag)) {
+						continue;
+					}
+
+					if (successor.attribute) {
+						Step existing = bestAttributeSteps.get(successor.nameId);
+
+						if (successor.record != null && (existing == null || successor.rank < existing.rank)) {
+							bestAttributeSteps.put(successor.nameId, successor);
+						}
+					} else {
+						List<Step> stepsForName = candidates.get(successor.nameId);
+
+						if (stepsForName == null) {
+							stepsForName = new ArrayList<Step>();
+							candidates.put(successor.nameId, stepsForName);
+						}
+
+						if (!stepsForName.contains(successor)) {
+							stepsForName.add(successor);
+						}
+					}
+				}
+			}
+
+			this.record = bestRecord;
+			this.pendingPositions = toIntArray(pending);
+
+			this.transitionNameIds = toIntArray(candidates.keySet());
+			this.transitions = (Transition[]) Array.newInstance(Transition.class, candidates.size());
+			int i = 0;
+			for (List<Step> stepsForName : candidates.values()) {
+				transitions[i++] = new Transition(stepsForName, pendingPositions);
+			}
+
+			this.attributeNameIds = toIntArray(bestAttributeSteps.keySet());
+			this.attributeSteps = bestAttributeSteps.values().toArray(
+					(Step[]) Array.newInstance(Step.class, bestAttributeSteps.size()));
+
+			this.exhausted = record == null && attributeSteps.length == 0 && transitions.length == 0
+					&& pendingPositions.length == 0;
+		}
+
+		/**
+		 * Gets the state of a child element of the node this state represents.
+		 *
+		 * @param element
+		 *            The child element.
+		 * @return The state of the child.
+		 */
+		private State next(XPathElement element) {
+			int nameId = element.getNameId();
+
+			if (nameId != SymbolTable.UNKNOWN) {
+				int index = Arrays.binarySearch(transitionNameIds, nameId);
+
+				if (index >= 0) {
+					return transitions[index].next(element);
+				}
+			}
+
+			State other = otherState;
+			if (other == null) {
+				other = getState(pendingPositions);
+				otherState = other;
+			}
+
+			return other;
+		}
+
+		/**
+		 * Gets the record of the best xpath matching an attribute on the node
+		 * this state represents.
+		 *
+		 * @param attributeNameId
+		 *            The {@link SymbolTable} ID of the name of the attribute.
+		 * @return The matching record or null if there is none.
+		 */
+		private XPathRecord<T> getAttributeRecord(int attributeNameId) {
+			int index = Arrays.binarySearch(attributeNameIds, attributeNameId);
+
+			return index < 0 ? null : attributeSteps[index].record;
+		}
+	}
+
+	/**
+	 * The transition out of a state for one element name. If none of the
+	 * candidate steps have predicates this always goes to the same state,
+	 * otherwise the state depends on which predicates the element satisfies.
+	 */
+	private final class Transition {
+		/** The steps that the element could match. */
+		private final Step[] candidates;
+		/** The names of all the predicates of the candidate steps. */
+		private final String[] predicateNames;
+		/** The values of all the predicates of the candidate steps. */
+		private final String[] predicateValues;
+		/** The positions carried from the state this transition comes from. */
+		private final int[] pendingPositions;
+		/** States reached for each mask of satisfied predicates. */
+		private final State[] statesByMask;
+
+		/**
+		 * Creates a new transition.
+		 *
+		 * @param candidateSteps
+		 *            The steps that the element could match.
+		 * @param pendingPositions
+		 *            The positions carried from the source state.
+		 */
+		@SuppressWarnings("unchecked")
+		private Transition(List<Step> candidateSteps, int[] pendingPositions) {
+			this.candidates = candidateSteps.toArray((Step[]) Array.newInstance(Step.class, candidateSteps.size()));
+			this.pendingPositions = pendingPositions;
+
+			List<String> names = new ArrayList<String>();
+			List<String> values = new ArrayList<String>();
+			for (Step candidate : candidates) {
+				for (int j = 0; j < candidate.predicateNames.length; j++) {
+					int index = indexOf(names, values, candidate.predicateNames[j], candidate.predicateValues[j]);
+
+					if (index < 0) {
+						names.add(candidate.predicateNames[j]);
+						values.add(candidate.predicateValues[j]);
+					}
+				}
+			}
+
+			predicateNames = names.toArray(new String[names.size()]);
+			predicateValues = values.toArray(new String[values.size()]);
+
+			if (predicateNames.length <= MAX_CACHED_PREDICATES) {
+				statesByMask = (State[]) Array.newInstance(State.class, 1 << predicateNames.length);
+			} else {
+				statesByMask = null;
+			}
+		}
+
+		/**
+		 * Gets the state for an element with this transition's name.
+		 *
+		 * @param element
+		 *            The element.
+		 * @return The element's state.
+		 */
+		private State next(XPathElement element) {
+			if (statesByMask == null) {
+				return buildState(element);
+			}
+
+			int mask = 0;
+			for (int i = 0; i < predicateNames.length; i++) {
+				if (predicateValues[i].equals(element.getPredicate(predicateNames[i]))) {
+					mask |= 1 << i;
+				}
+			}
+
+			State state = statesByMask[mask];
+			if (state == null) {
+				state = buildState(element);
+				statesByMask[mask] = state;
+			}
+
+			return state;
+		}
+
+		/**
+		 * Works out the state for an element from scratch.
+		 *
+		 * @param element
+		 *            The element.
+		 * @return The element's state.
+		 */
+		private State buildState(XPathElement element) {
+			int[] positions = Arrays.copyOf(pendingPositions, pendingPositions.length + candidates.length);
+			int size = pendingPositions.length;
+
+			for (Step candidate : candidates) {
+				if (satisfiesPredicates(candidate, element)) {
+					positions[size++] = position(candidate, EXACT);
+				}
+			}
+
+			return getState(Arrays.copyOf(positions, size));
+		}
+
+		/**
+		 * Checks that an element satisfies all the predicates of a step.
+		 *
+		 * @param step
+		 *            The step.
+		 * @param element
+		 *            The element.
+		 * @return Whether the predicates are satisfied.
+		 */
+		private boolean satisfiesPredicates(Step step, XPathElement element) {
+			for (int i = 0; i < step.predicateNames.length; i++) {
+				if (!step.predicateValues[i].equals(element.getPredicate(step.predicateNames[i]))) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Finds the index of a name/value pair in two parallel lists.
+	 *
+	 * @param names
+	 *            The list of names.
+	 * @param values
+	 *            The list of values.
+	 * @param name
+	 *            The name to find.
+	 * @param value
+	 *            The value to find.
+	 * @return The index of the pair, or -1 if it isn't present.
+	 */
+	private static int indexOf(List<String> names, List<String> values, String name, String value) {
+		for (int i = 0; i < names.size(); i++) {
+			if (names.get(i).equals(name) && values.get(i).equals(value)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Converts a collection of integers to an array, in iteration order.
+	 *
+	 * @param collection
+	 *            The collection.
+	 * @return The array.
+	 */
+	private static int[] toIntArray(Collection<Integer> collection) {
+		int[] array = new int[collection.size()];
+		int i = 0;
+
+		for (int value : collection) {
+			array[i++] = value;
+		}
+
+		return array;
+	}
+
+	/**
+	 * <p>
+	 * Tracks a parser's position in a document against the automaton. The
+	 * cursor keeps a state for each depth of the document, so the owner only
+	 * has to call {@link #enter(XPathElement, int)} for start tags it sees -
+	 * end tags never need to be reported.
+	 * </p>
+	 *
+	 * <p>
+	 * It's fine for the owner of the cursor to miss entire elements (for
+	 * instance when a nested parser consumes them) - if the cursor is asked
+	 * about a position it doesn't know about, it works its way back to the
+	 * start of the document through
+	 * {@link XPathElement#getPreviousElement()} and catches up.
+	 * </p>
+	 *
+	 * @author Alex Gilleran
+	 */
+	public final class Cursor {
+		/** The state at each depth of the document - index 0 is the document. */
+		private State[] stateStack;
+		/**
+		 * The deepest index of {@link #stateStack} that is known to be
+		 * correct.
+		 */
+		private int knownDepth = 0;
+		/** Scratch space used when catching up. */
+		private final List<XPathElement> chain = new ArrayList<XPathElement>();
+
+		/**
+		 * Creates a new cursor, positioned at the start of the document.
+		 */
+		@SuppressWarnings("unchecked")
+		private Cursor() {
+			stateStack = (State[]) Array.newInstance(State.class, INITIAL_DEPTH);
+			stateStack[0] = initialState;
+		}
+
+		/**
+		 * Resets the cursor so it no longer relies on anything it has already
+		 * seen - call this before reusing a cursor for a new parse.
+		 */
+		public void reset() {
+			knownDepth = 0;
+		}
+
+		/**
+		 * Moves the cursor into a new element. This should be called for every
+		 * start tag that the owner of the cursor sees.
+		 *
+		 * @param element
+		 *            The element being entered.
+		 * @param depth
+		 *            The depth of the element - 1 for the document element.
+		 * @return The record for the best xpath matching the element, or null
+		 *         if nothing matches.
+		 */
+		public XPathRecord<T> enter(XPathElement element, int depth) {
+			if (depth < 1 || depth - 1 > knownDepth) {
+				return catchUp(element).record;
+			}
+
+			State state = stateStack[depth - 1].next(element);
+			push(depth, state);
+
+			return state.record;
+		}
+
+		/**
+		 * Determines whether nothing can match the element that was most
+		 * recently entered, its attributes, or anything inside it - if this is
+		 * true, the owner of the cursor can skip straight to the end of the
+		 * element.
+		 *
+		 * @return Whether the most recently entered element can be skipped.
+		 */
+		public boolean isExhausted() {
+			return stateStack[knownDepth].exhausted;
+		}
+
+		/**
+		 * Gets the record for the node the parser is currently at, without
+		 * moving into a new element - use this for text, attribute and end tag
+		 * events.
+		 *
+		 * @param node
+		 *            The current node - either an element or an attribute.
+		 * @param depth
+		 *            The depth of the current element (or for an attribute, the
+		 *            element it belongs to).
+		 * @return The record for the best xpath matching the node, or null if
+		 *         nothing matches.
+		 */
+		public XPathRecord<T> lookup(XPathElement node, int depth) {
+			if (node.isAttribute()) {
+				return getState(node.getPreviousElement(), depth).getAttributeRecord(node.getNameId());
+			}
+
+			return getState(node, depth).record;
+		}
+
+		/**
+		 * Gets the state of an element the parser has already entered.
+		 *
+		 * @param element
+		 *            The element.
+		 * @param depth
+		 *            Its depth.
+		 * @return Its state.
+		 */
+		private State getState(XPathElement element, int depth) {
+			if (depth >= 1 && depth <= knownDepth) {
+				return stateStack[depth];
+			}
+
+			return catchUp(element);
+		}
+
+		/**
+		 * Works out the states for an element and all its ancestors, starting
+		 * from the start of the document.
+		 *
+		 * @param element
+		 *            The element to catch up to.
+		 * @return The element's state.
+		 */
+		private State catchUp(XPathElement element) {
+			chain.clear();
+			for (XPathElement ancestor = element; ancestor != null; ancestor = ancestor.getPreviousElement()) {
+				chain.add(ancestor);
+			}
+
+			State state = initialState;
+			int depth = 0;
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				state = state.next(chain.get(i));
+				push(++depth, state);
+			}
+
+			chain.clear();
+			knownDepth = depth;
+
+			return state;
+		}
+
+		/**
+		 * Puts a state on the stack at the supplied depth, making it the
+		 * deepest known state.
+		 *
+		 * @param depth
+		 *            The depth.
+		 * @param state
+		 *            The state.
+		 */
+		private void push(int depth, State state) {
+			if (depth >= stateStack.length) {
+				stateStack = Arrays.copyOf(stateStack, Math.max(depth + 1, stateStack.length * 2));
+			}
+
+			stateStack[depth] = state;
+			knownDepth = depth;
+		}
+	}
+}
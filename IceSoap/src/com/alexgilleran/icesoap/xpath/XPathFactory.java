@@ -1,6 +1,8 @@
 package com.alexgilleran.icesoap.xpath;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jaxen.saxpath.Axis;
 import org.jaxen.saxpath.SAXPathException;
@@ -11,6 +13,7 @@ import org.jaxen.saxpath.helpers.XPathReaderFactory;
 import com.alexgilleran.icesoap.exception.XPathParsingException;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.AttributeXPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.CompiledXPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.DoubleSlashXPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.RelativeXPathElement;
 import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
@@ -22,12 +25,45 @@ import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
  * Note that this is a singleton - call getInstance() to get an instance rather
  * than constructing it.
  * 
+ * Compiled xpaths are cached against their expression string, so compiling the
+ * same expression again (as happens every time a parser is created for the
+ * same class) doesn't parse it again. The cache is bounded - once it holds
+ * {@link #getMaxCacheSize()} expressions, the least recently used one is
+ * dropped. It's safe to use from multiple threads at once.
+ * 
+ * The xpaths it produces are {@link CompiledXPathElement}s, which can't be
+ * changed - so the same instances are handed out for every compile of an
+ * expression, and can be shared between parsers and threads.
+ * 
  * @author Alex Gilleran
  * 
  */
 public class XPathFactory {
+	/** The default maximum number of expressions to cache. */
+	public static final int DEFAULT_MAX_CACHE_SIZE = 512;
+
 	/** Instance of the Singleton class */
-	private static XPathFactory INSTANCE = null;
+	private static final XPathFactory INSTANCE = new XPathFactory();
+
+	/**
+	 * Compiled xpaths, against their expression strings, in least to most
+	 * recently used order. Guarded by itself.
+	 */
+	private final Map<String, XPathRepository<XPathElement>> cache = new LinkedHashMap<String, XPathRepository<XPathElement>>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, XPathRepository<XPathElement>> eldest) {
+			return size() > maxCacheSize;
+		}
+	};
+	/** The maximum number of expressions to cache. Guarded by {@link #cache}. */
+	private int maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+	/** The number of compiles that found the expression in the cache. */
+	private long cacheHits = 0;
+	/** The number of compiles that had to parse the expression. */
+	private long cacheMisses = 0;
 
 	/**
 	 * Only used by getInstance() as this is a singleton.
@@ -41,11 +77,6 @@ public class XPathFactory {
 	 * @return the Singleton instance of the XPathFactory.
 	 */
 	public static XPathFactory getInstance() {
-		// Lazily initialize the instance.
-		if (INSTANCE == null) {
-			INSTANCE = new XPathFactory();
-		}
-
 		return INSTANCE;
 	}
 
@@ -57,6 +88,11 @@ public class XPathFactory {
 	 * or pipe) operator is encountered - if there isn't one, the list will only
 	 * have one item at index 0.
 	 * 
+	 * The repository returned is always a new one, so it can be modified
+	 * without affecting the cache, but the xpaths in it are immutable
+	 * {@link CompiledXPathElement}s that are shared with every other compile
+	 * of the same expression.
+	 * 
 	 * @param xpathString
 	 *            The xpath expression to compile, as a String.
 	 * @return A repository of the XPaths in the compiled expression.
@@ -65,6 +101,62 @@ public class XPathFactory {
 	 *             that are currently unsupported.
 	 */
 	public XPathRepository<XPathElement> compile(String xpathString) throws XPathParsingException {
+		XPathRepository<XPathElement> compiled;
+
+		synchronized (cache) {
+			compiled = cache.get(xpathString);
+
+			if (compiled != null) {
+				cacheHits++;
+			} else {
+				cacheMisses++;
+			}
+		}
+
+		if (compiled == null) {
+			// Parse outside the lock - if another thread does the same
+			// expression at the same time, one result will just overwrite the
+			// other.
+			compiled = parse(xpathString);
+
+			synchronized (cache) {
+				cache.put(xpathString, compiled);
+			}
+		}
+
+		return copy(compiled);
+	}
+
+	/**
+	 * Makes a new repository containing the same xpaths as another, so the
+	 * caller can't change the cached repository. The xpaths themselves are
+	 * immutable, so they're shared rather than copied.
+	 * 
+	 * @param xpaths
+	 *            The repository to copy.
+	 * @return A new repository containing the same xpaths.
+	 */
+	private XPathRepository<XPathElement> copy(XPathRepository<XPathElement> xpaths) {
+		XPathRepository<XPathElement> copy = new XPathRepository<XPathElement>();
+
+		for (XPathElement xpath : xpaths.keySet()) {
+			copy.put(xpath, xpath);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Parses an xpath expression with Jaxen, without going to the cache.
+	 * 
+	 * @param xpathString
+	 *            The xpath expression to parse.
+	 * @return A repository of the XPaths in the expression, as
+	 *         {@link CompiledXPathElement}s.
+	 * @throws XPathParsingException
+	 *             If the passed XPath is invalid.
+	 */
+	private XPathRepository<XPathElement> parse(String xpathString) throws XPathParsingException {
 		try {
 			XPathReader reader = XPathReaderFactory.createReader();
 
@@ -72,7 +164,14 @@ public class XPathFactory {
 			reader.setXPathHandler(handler);
 			reader.parse(xpathString);
 
-			return handler.getXPaths();
+			XPathRepository<XPathElement> compiled = new XPathRepository<XPathElement>();
+
+			for (XPathElement xpath : handler.getXPaths().keySet()) {
+				XPathElement immutableXPath = CompiledXPathElement.of(xpath);
+				compiled.put(immutableXPath, immutableXPath);
+			}
+
+			return compiled;
 		} catch (SAXPathException e) {
 			// This will occur in the event of an invalid XPath - wrap with an
 			// IceSoap exception type and rethrow
@@ -80,6 +179,81 @@ public class XPathFactory {
 		}
 	}
 
+	/**
+	 * Gets the number of calls to {@link #compile(String)} that found their
+	 * expression in the cache.
+	 * 
+	 * @return The number of cache hits.
+	 */
+	public long getCacheHits() {
+		synchronized (cache) {
+			return cacheHits;
+		}
+	}
+
+	/**
+	 * Gets the number of calls to {@link #compile(String)} that had to parse
+	 * their expression because it wasn't in the cache.
+	 * 
+	 * @return The number of cache misses.
+	 */
+	public long getCacheMisses() {
+		synchronized (cache) {
+			return cacheMisses;
+		}
+	}
+
+	/**
+	 * Gets the number of expressions currently in the cache.
+	 * 
+	 * @return The size of the cache.
+	 */
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Gets the maximum number of expressions that will be cached.
+	 * 
+	 * @return The maximum size of the cache.
+	 */
+	public int getMaxCacheSize() {
+		synchronized (cache) {
+			return maxCacheSize;
+		}
+	}
+
+	/**
+	 * Sets the maximum number of expressions that will be cached - if the
+	 * cache is bigger than this, the least recently used expressions are
+	 * dropped straight away. Set to 0 to disable caching.
+	 * 
+	 * @param maxCacheSize
+	 *            The new maximum size.
+	 */
+	public void setMaxCacheSize(int maxCacheSize) {
+		synchronized (cache) {
+			this.maxCacheSize = maxCacheSize;
+
+			while (cache.size() > maxCacheSize) {
+				cache.remove(cache.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Empties the cache and resets the hit and miss counts.
+	 */
+	public void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+			cacheHits = 0;
+			cacheMisses = 0;
+		}
+	}
+
 	/**
 	 * Implementation of Jaxen XPathHandler used to parse XPaths to the IceSoap
 	 * format.
@@ -3,6 +3,7 @@ package com.alexgilleran.icesoap.xpath;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -14,7 +15,7 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
  * against the xpath <code>/this/is/an/xpath</code> and <code>get</code> is
  * executed with the XPathElement <code>//xpath</code>, the stored object will
  * be returned. This is achieved via simple mapping against
- * {@link XPathElement#getName()}, then confirmation via
+ * {@link XPathElement#getNameId()}, then confirmation via
  * {@link XPathElement#matches(XPathElement)}.
  * 
  * This means that retrieval of objects from the repository is fastest using
@@ -31,12 +32,15 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 public class XPathRepository<T> {
 
 	/**
-	 * Holds an index of XPathElements against their names to facilitate faster
-	 * lookups.
+	 * Holds an index of XPathElements against the {@link SymbolTable} IDs of
+	 * their names to facilitate faster lookups.
 	 */
-	private Map<String, Set<XPathElement>> lookupMap = new HashMap<String, Set<XPathElement>>();
-	/** Holds the values stored against XPathElements. */
-	private Map<XPathElement, T> valueMap = new HashMap<XPathElement, T>();
+	private Map<Integer, Set<XPathElement>> lookupMap = new HashMap<Integer, Set<XPathElement>>();
+	/**
+	 * Holds the values stored against XPathElements, in the order they were
+	 * put.
+	 */
+	private Map<XPathElement, T> valueMap = new LinkedHashMap<XPathElement, T>();
 
 	/**
 	 * Instantiates a new {@link XPathRepository} with no data.
@@ -91,12 +95,13 @@ public class XPathRepository<T> {
 	public T remove(XPathElement key) {
 		T returnValue = valueMap.remove(key);
 
-		Set<XPathElement> elements = lookupMap.get(key.getName());
+		int nameId = key.getNameId();
+		Set<XPathElement> elements = lookupMap.get(nameId);
 		if (elements != null) {
 			elements.remove(key);
 
 			if (elements.isEmpty()) {
-				lookupMap.remove(key);
+				lookupMap.remove(nameId);
 			}
 		}
 
@@ -128,6 +133,43 @@ public class XPathRepository<T> {
 		return false;
 	}
 
+	/**
+	 * Gets the object stored against exactly the supplied key, without
+	 * attempting to match it.
+	 * 
+	 * @param key
+	 *            The (exact) key of the record to get.
+	 * @return The value stored against the key, or null if there is none.
+	 */
+	T getExact(XPathElement key) {
+		return valueMap.get(key);
+	}
+
+	/**
+	 * Compiles the current contents of the repository into an
+	 * {@link XPathAutomaton}, which can match elements as they're streamed from
+	 * a parser much faster than {@link #getFullRecord(XPathElement)}.
+	 * 
+	 * @return A new automaton for the repository.
+	 */
+	public XPathAutomaton<T> compile() {
+		return new XPathAutomaton<T>(this);
+	}
+
+	/**
+	 * Compiles the current contents of the repository into an
+	 * {@link XPathAutomaton}, in which relative xpaths match relative to the
+	 * end of any of the supplied root xpaths. Each relative xpath is only
+	 * compiled once, however many roots there are.
+	 * 
+	 * @param roots
+	 *            The xpaths that relative xpaths are relative to.
+	 * @return A new automaton for the repository.
+	 */
+	public XPathAutomaton<T> compile(XPathRepository<?> roots) {
+		return new XPathAutomaton<T>(roots, this);
+	}
+
 	/**
 	 * Gets all the XPathElements with values stores against them in the
 	 * repository.
@@ -150,8 +192,15 @@ public class XPathRepository<T> {
 	 *         {@link XPathElement} that it was stored against.
 	 */
 	public XPathRecord<T> getFullRecord(XPathElement key) {
+		int nameId = key.getNameId();
+
+		if (nameId == SymbolTable.UNKNOWN) {
+			// Every name in the repository is registered, so nothing can match
+			return null;
+		}
+
 		// Look for the set of elements with this name
-		Set<XPathElement> possibleElements = lookupMap.get(key.getName());
+		Set<XPathElement> possibleElements = lookupMap.get(nameId);
 
 		if (possibleElements != null) {
 			// If there's a set of elements here, loop through them and return
@@ -179,10 +228,11 @@ public class XPathRepository<T> {
 	public void put(XPathElement key, T value) {
 		valueMap.put(key, value);
 
-		Set<XPathElement> existingSet = lookupMap.get(key.getName());
+		int nameId = SymbolTable.getInstance().register(key.getName());
+		Set<XPathElement> existingSet = lookupMap.get(nameId);
 
 		if (existingSet == null) {
-			lookupMap.put(key.getName(), newElementSet(key));
+			lookupMap.put(nameId, newElementSet(key));
 		} else {
 			existingSet.add(key);
 		}
@@ -1,5 +1,9 @@
 package com.alexgilleran.icesoap.xpath.elements;
 
+import java.util.Map;
+
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
 /**
  * Represents a single element in an xpath expression. E.g. in the xpath "
  * <code>this//is/an/@xpath</code>", "<code>this</code>", "<code>is</code>", "
@@ -28,6 +32,15 @@ public interface XPathElement extends Cloneable {
 	 */
 	String getName();
 
+	/**
+	 * Gets the ID of the element's name in the {@link SymbolTable}, so names
+	 * can be compared as ints.
+	 * 
+	 * @return The ID of the name, or {@link SymbolTable#UNKNOWN} if the name
+	 *         isn't used by any compiled xpath.
+	 */
+	int getNameId();
+
 	/**
 	 * Performs a deep-copy of this {@link XPathElement} instance - this
 	 * includes deep copies of the entire previous element chain.
@@ -47,6 +60,16 @@ public interface XPathElement extends Cloneable {
 	 */
 	String getPredicate(String predicateName);
 
+	/**
+	 * Gets all the predicates of this element, mapping from predicate name to
+	 * value. E.g. for <code>/xpath[@name="value"]</code> this would return a
+	 * map containing "name" mapped to "value".
+	 * 
+	 * @return An unmodifiable map of predicate names to values - empty if the
+	 *         element has no predicates.
+	 */
+	Map<String, String> getPredicates();
+
 	/**
 	 * <p>
 	 * Adds a predicate to this XPath element. Currently, any predicates added
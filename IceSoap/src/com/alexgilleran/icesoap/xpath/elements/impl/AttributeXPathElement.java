@@ -1,5 +1,8 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import java.util.Collections;
+import java.util.Map;
+
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -16,7 +19,7 @@ public class AttributeXPathElement implements XPathElement {
 	/** Prefix applied to attributes when representing as a {@link String} */
 	private final static String XPATH_ATTRIBUTE_PREFIX = "@";
 	/** The wrapped XPath element. */
-	private XPathElement wrappedElement;
+	private final XPathElement wrappedElement;
 
 	/**
 	 * Instantiates a new {@link AttributeXPathElement}
@@ -30,6 +33,15 @@ public class AttributeXPathElement implements XPathElement {
 		this.wrappedElement = wrappedElement;
 	}
 
+	/**
+	 * Gets the element that this wraps.
+	 * 
+	 * @return The wrapped element.
+	 */
+	XPathElement getWrappedElement() {
+		return wrappedElement;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -61,6 +73,15 @@ public class AttributeXPathElement implements XPathElement {
 		return null;
 	}
 
+	/**
+	 * This element is overridden for attribute elements, as they cannot have
+	 * predicates - this always returns an empty map.
+	 */
+	@Override
+	public Map<String, String> getPredicates() {
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * This element is overridden for attribute elements, as they cannot have
 	 * predicates - this does nothing.
@@ -94,6 +115,14 @@ public class AttributeXPathElement implements XPathElement {
 		return wrappedElement.getName();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		return wrappedElement.getNameId();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
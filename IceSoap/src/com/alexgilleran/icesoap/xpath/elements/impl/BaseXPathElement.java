@@ -1,9 +1,11 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import com.alexgilleran.icesoap.xpath.SymbolTable;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -20,6 +22,11 @@ import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 public abstract class BaseXPathElement implements XPathElement {
 	/** The name of the element. */
 	private String name;
+	/**
+	 * The ID of the name - looked up again until it's known, as the name
+	 * might be registered after this element is created.
+	 */
+	private int nameId = SymbolTable.UNKNOWN;
 	/** The previous element. */
 	private XPathElement previousElement;
 	/**
@@ -41,6 +48,22 @@ public abstract class BaseXPathElement implements XPathElement {
 		this.previousElement = previousElement;
 	}
 
+	/**
+	 * Instantiates a new BaseXPathElement whose name's {@link SymbolTable} ID
+	 * is already known, e.g. from the tokenizer.
+	 * 
+	 * @param name
+	 *            The name of the new element.
+	 * @param nameId
+	 *            The ID of the name, or {@link SymbolTable#UNKNOWN}.
+	 * @param previousElement
+	 *            The previous element - note that this can be set to null.
+	 */
+	public BaseXPathElement(String name, int nameId, XPathElement previousElement) {
+		this(name, previousElement);
+		this.nameId = nameId;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -64,6 +87,18 @@ public abstract class BaseXPathElement implements XPathElement {
 		return name;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		if (nameId == SymbolTable.UNKNOWN) {
+			nameId = SymbolTable.getInstance().lookup(name);
+		}
+
+		return nameId;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -94,7 +129,7 @@ public abstract class BaseXPathElement implements XPathElement {
 	 */
 	@Override
 	public boolean matches(XPathElement otherElement) {
-		if (!getName().equals(otherElement.getName())) {
+		if (!SymbolTable.sameName(this, otherElement)) {
 			return false;
 		}
 
@@ -172,6 +207,14 @@ public abstract class BaseXPathElement implements XPathElement {
 		return predicates.get(predicateName);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, String> getPredicates() {
+		return Collections.unmodifiableMap(predicates);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -198,17 +241,17 @@ public abstract class BaseXPathElement implements XPathElement {
 	/**
 	 * Copies the members accessible at this level of the inheritance hierarchy
 	 * in this object, into a new element - designed to be used by
-	 * {@link #clone()}.
+	 * {@link #clone()}. The previous element isn't copied, as
+	 * {@link #clone()} implementations pass a clone of it to the new element's
+	 * constructor - cloning it again here would clone the whole chain twice at
+	 * every level.
 	 * 
 	 * @param newElement
 	 *            The new element to copy details into.
 	 */
 	protected void copyInto(BaseXPathElement newElement) {
 		newElement.name = name;
-
-		if (previousElement != null) {
-			newElement.previousElement = previousElement.clone();
-		}
+		newElement.nameId = nameId;
 
 		for (String key : predicates.keySet()) {
 			newElement.predicates.put(new String(key), new String(predicates.get(key)));
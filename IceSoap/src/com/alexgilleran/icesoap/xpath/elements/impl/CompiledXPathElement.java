@@ -0,0 +1,515 @@
+package com.alexgilleran.icesoap.xpath.elements.impl;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * An immutable xpath element, as produced by the
+ * {@link com.alexgilleran.icesoap.xpath.XPathFactory}. It behaves the same as
+ * the {@link SingleSlashXPathElement}, {@link DoubleSlashXPathElement} or
+ * {@link RelativeXPathElement} it was made from, but can't be changed once
+ * created - {@link #addPredicate(String, String)} and
+ * {@link #setPreviousElement(XPathElement)} throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * <p>
+ * This means that a compiled xpath can be shared between any number of parsers
+ * and threads without copying it. Rather than attaching a relative xpath to a
+ * root xpath in place, {@link #rebase(XPathElement, XPathElement)} returns a
+ * new chain that ends in the root - the root itself (and any elements before
+ * it) is shared rather than copied. As nothing can change, the hash code of
+ * each element is worked out once when it's created.
+ * </p>
+ *
+ * <p>
+ * Compiled elements are also shared between xpaths: there's only ever one
+ * instance in use for each distinct xpath, so <code>/a/b</code> and
+ * <code>/a/c</code> share the same <code>/a</code>, and comparing two compiled
+ * xpaths with {@link #equals(Object)} is just a reference comparison.
+ * </p>
+ *
+ * <p>
+ * Attributes are represented by an {@link AttributeXPathElement} that wraps a
+ * {@link CompiledXPathElement}.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+public final class CompiledXPathElement implements XPathElement {
+	/** The prefix of a single slash element. */
+	private static final String SINGLE_SLASH_PREFIX = "/";
+	/** The prefix of a double slash element. */
+	private static final String DOUBLE_SLASH_PREFIX = "//";
+	/** The prefix of a relative element. */
+	private static final String RELATIVE_PREFIX = "";
+
+	/**
+	 * Every compiled element that's currently in use, against its key - see
+	 * {@link #intern(String, String, Map, XPathElement)}. The key of each
+	 * element is only referenced by the element itself, so entries disappear
+	 * once their element is no longer used. Guarded by itself.
+	 */
+	private static final Map<Key, WeakReference<CompiledXPathElement>> INTERNED = new WeakHashMap<Key, WeakReference<CompiledXPathElement>>();
+
+	/** The contents of the element, which are also its key in the table. */
+	private final Key key;
+	/** The ID of the element's name in the {@link SymbolTable}. */
+	private final int nameId;
+
+	/**
+	 * Instantiates a new {@link CompiledXPathElement} - only used by
+	 * {@link #intern(String, String, Map, XPathElement)}.
+	 *
+	 * @param key
+	 *            The contents of the element.
+	 */
+	private CompiledXPathElement(Key key) {
+		this.key = key;
+		this.nameId = SymbolTable.getInstance().register(key.name);
+	}
+
+	/**
+	 * <p>
+	 * Gets the compiled element with the supplied contents, creating it if
+	 * there isn't one already.
+	 * </p>
+	 *
+	 * <p>
+	 * As the previous element is always one of these shared elements too, two
+	 * compiled xpaths are the same if and only if they're the same instance -
+	 * so {@link #equals(Object)} is a reference comparison, and xpaths that
+	 * start the same way share the elements that they have in common.
+	 * </p>
+	 *
+	 * @param name
+	 *            The name of the element.
+	 * @param prefix
+	 *            The prefix of the element - one of the prefix constants.
+	 * @param predicates
+	 *            An unmodifiable map of the element's predicates, which won't
+	 *            be copied.
+	 * @param previousElement
+	 *            The previous element, which must already be compiled - can be
+	 *            null.
+	 * @return The shared element.
+	 */
+	private static CompiledXPathElement intern(String name, String prefix, Map<String, String> predicates,
+			XPathElement previousElement) {
+		Key key = new Key(name, prefix, predicates, previousElement);
+
+		synchronized (INTERNED) {
+			WeakReference<CompiledXPathElement> reference = INTERNED.get(key);
+			CompiledXPathElement element = reference == null ? null : reference.get();
+
+			if (element == null) {
+				element = new CompiledXPathElement(key);
+				INTERNED.put(key, new WeakReference<CompiledXPathElement>(element));
+			}
+
+			return element;
+		}
+	}
+
+	/**
+	 * Gets an immutable version of an xpath. If the xpath is already
+	 * immutable, it's returned as-is.
+	 *
+	 * @param xpath
+	 *            The last element of the xpath.
+	 * @return The last element of the immutable version, or null if the xpath
+	 *         is null.
+	 */
+	public static XPathElement of(XPathElement xpath) {
+		if (xpath == null || isCompiled(xpath)) {
+			return xpath;
+		}
+
+		if (xpath.isAttribute()) {
+			XPathElement wrapped = ((AttributeXPathElement) xpath).getWrappedElement();
+
+			return new AttributeXPathElement(of(wrapped));
+		}
+
+		String prefix;
+
+		if (xpath.isRelative()) {
+			prefix = RELATIVE_PREFIX;
+		} else if (xpath.getPrefix().startsWith(DOUBLE_SLASH_PREFIX)) {
+			prefix = DOUBLE_SLASH_PREFIX;
+		} else {
+			prefix = SINGLE_SLASH_PREFIX;
+		}
+
+		return intern(xpath.getName(), prefix, copyPredicates(xpath), of(xpath.getPreviousElement()));
+	}
+
+	/**
+	 * <p>
+	 * Attaches a relative xpath to the end of a root xpath, without changing
+	 * either of them. E.g. rebasing <code>relative/xpath</code> on
+	 * <code>/root</code> returns <code>/root/relative/xpath</code>.
+	 * </p>
+	 *
+	 * <p>
+	 * The elements of the relative xpath are recreated, but the root xpath is
+	 * shared by the result - so rebasing many relative xpaths on the same root
+	 * only stores the root once.
+	 * </p>
+	 *
+	 * @param relativeXPath
+	 *            The last element of the relative xpath.
+	 * @param root
+	 *            The last element of the root xpath.
+	 * @return The last element of the new, absolute xpath.
+	 * @throws IllegalArgumentException
+	 *             If the xpath to rebase isn't relative.
+	 */
+	public static XPathElement rebase(XPathElement relativeXPath, XPathElement root) {
+		if (!relativeXPath.getFirstElement().isRelative()) {
+			throw new IllegalArgumentException("Attempted to rebase xpath '" + relativeXPath
+					+ "' which is not relative");
+		}
+
+		return rebaseChain(of(relativeXPath), of(root));
+	}
+
+	/**
+	 * Recreates an immutable chain of elements with the first element attached
+	 * to a new root.
+	 *
+	 * @param element
+	 *            The last element of the chain to recreate.
+	 * @param root
+	 *            The immutable root to attach the chain to.
+	 * @return The last element of the new chain.
+	 */
+	private static XPathElement rebaseChain(XPathElement element, XPathElement root) {
+		if (element.isAttribute()) {
+			return new AttributeXPathElement(rebaseChain(((AttributeXPathElement) element).getWrappedElement(), root));
+		}
+
+		CompiledXPathElement compiled = (CompiledXPathElement) element;
+
+		if (compiled.isFirstElement()) {
+			// A relative element acts as a single slash one once it has
+			// something before it
+			String prefix = compiled.key.prefix == RELATIVE_PREFIX ? SINGLE_SLASH_PREFIX : compiled.key.prefix;
+
+			return intern(compiled.key.name, prefix, compiled.key.predicates, root);
+		}
+
+		return intern(compiled.key.name, compiled.key.prefix, compiled.key.predicates, rebaseChain(
+				compiled.key.previousElement, root));
+	}
+
+	/**
+	 * Determines whether an xpath element is already immutable.
+	 *
+	 * @param xpath
+	 *            The element to check.
+	 * @return true if the element is a {@link CompiledXPathElement}, or an
+	 *         attribute wrapping one.
+	 */
+	private static boolean isCompiled(XPathElement xpath) {
+		if (xpath instanceof AttributeXPathElement) {
+			return ((AttributeXPathElement) xpath).getWrappedElement() instanceof CompiledXPathElement;
+		}
+
+		return xpath instanceof CompiledXPathElement;
+	}
+
+	/**
+	 * Copies the predicates of an element to a new unmodifiable map.
+	 *
+	 * @param xpath
+	 *            The element to copy the predicates of.
+	 * @return An unmodifiable copy of the predicates.
+	 */
+	private static Map<String, String> copyPredicates(XPathElement xpath) {
+		Map<String, String> source = xpath.getPredicates();
+
+		if (source.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		return Collections.unmodifiableMap(new HashMap<String, String>(source));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return key.name;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNameId() {
+		return nameId;
+	}
+
+	/**
+	 * As a compiled element can't change, there's no need to copy it - this
+	 * returns the element itself.
+	 */
+	@Override
+	public XPathElement clone() {
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPredicate(String predicateName) {
+		return key.predicates.get(predicateName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, String> getPredicates() {
+		return key.predicates;
+	}
+
+	/**
+	 * Compiled elements can't be changed, so this always throws an
+	 * {@link UnsupportedOperationException}.
+	 */
+	@Override
+	public void addPredicate(String name, String value) {
+		throw new UnsupportedOperationException("Compiled xpath '" + this + "' cannot be changed");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Matches in the same way as the element this was compiled from.
+	 */
+	@Override
+	public boolean matches(XPathElement otherElement) {
+		if (isRelative()) {
+			throw new RuntimeException("Attempt was made to match against relative xpath '" + this.toString()
+					+ "' when the xpath was not attached to an absolute xpath.");
+		}
+
+		if (nameId != otherElement.getNameId() || otherElement.isAttribute()) {
+			return false;
+		}
+
+		for (Map.Entry<String, String> predicate : key.predicates.entrySet()) {
+			if (!predicate.getValue().equals(otherElement.getPredicate(predicate.getKey()))) {
+				return false;
+			}
+		}
+
+		if (key.prefix == DOUBLE_SLASH_PREFIX) {
+			// Anything is allowed before a '//' element at the start
+			return isFirstElement() || DescendantMatcher.matches(this, otherElement);
+		}
+
+		if (isFirstElement() != otherElement.isFirstElement()) {
+			return false;
+		}
+
+		return isFirstElement() || key.previousElement.matches(otherElement.getPreviousElement());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XPathElement getPreviousElement() {
+		return key.previousElement;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isFirstElement() {
+		return key.previousElement == null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StringBuilder toStringBuilder() {
+		StringBuilder builder = isFirstElement() ? new StringBuilder() : key.previousElement.toStringBuilder();
+
+		builder.append(key.prefix).append(key.name);
+
+		if (!key.predicates.isEmpty()) {
+			builder.append("[");
+
+			Iterator<Map.Entry<String, String>> it = key.predicates.entrySet().iterator();
+
+			while (it.hasNext()) {
+				Map.Entry<String, String> predicate = it.next();
+				builder.append("@").append(predicate.getKey()).append("=").append("\"").append(predicate.getValue())
+						.append("\"");
+
+				if (it.hasNext()) {
+					builder.append(" and ");
+				}
+			}
+
+			builder.append("]");
+		}
+
+		return builder;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return toStringBuilder().toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isAttribute() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isRelative() {
+		return key.prefix == RELATIVE_PREFIX;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPrefix() {
+		return key.prefix;
+	}
+
+	/**
+	 * Compiled elements can't be changed, so this always throws an
+	 * {@link UnsupportedOperationException} - use
+	 * {@link #rebase(XPathElement, XPathElement)} instead.
+	 */
+	@Override
+	public void setPreviousElement(XPathElement previousElement) {
+		throw new UnsupportedOperationException("Compiled xpath '" + this + "' cannot be changed");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public XPathElement getFirstElement() {
+		XPathElement element = this;
+
+		while (!element.isFirstElement()) {
+			element = element.getPreviousElement();
+		}
+
+		return element;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * This is worked out once when the element is created.
+	 */
+	@Override
+	public int hashCode() {
+		return key.hashCode;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Compiled elements are shared, so this is true only if the other object
+	 * is this same instance.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	/**
+	 * The contents of a compiled element, used to look it up in the table of
+	 * shared elements. The previous element is compared by reference, as it's
+	 * already shared, so comparing two keys doesn't walk the chain.
+	 */
+	private static final class Key {
+		/** The name of the element. */
+		private final String name;
+		/** The prefix of the element - one of the prefix constants. */
+		private final String prefix;
+		/** Unmodifiable map of predicate names to values. */
+		private final Map<String, String> predicates;
+		/** The previous element, or null if this is the first one. */
+		private final XPathElement previousElement;
+		/** The hash code, worked out on construction. */
+		private final int hashCode;
+
+		/**
+		 * Instantiates a new {@link Key}.
+		 *
+		 * @param name
+		 *            The name of the element.
+		 * @param prefix
+		 *            The prefix of the element.
+		 * @param predicates
+		 *            The predicates of the element.
+		 * @param previousElement
+		 *            The previous element - can be null.
+		 */
+		private Key(String name, String prefix, Map<String, String> predicates, XPathElement previousElement) {
+			this.name = name;
+			this.prefix = prefix;
+			this.predicates = predicates;
+			this.previousElement = previousElement;
+
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + name.hashCode();
+			result = prime * result + prefix.hashCode();
+			result = prime * result + predicates.hashCode();
+			result = prime * result + ((previousElement == null) ? 0 : previousElement.hashCode());
+			this.hashCode = result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hashCode == other.hashCode && previousElement == other.previousElement && prefix == other.prefix
+					&& name.equals(other.name) && predicates.equals(other.predicates);
+		}
+	}
+}
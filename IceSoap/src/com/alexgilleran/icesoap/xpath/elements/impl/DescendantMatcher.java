@@ -0,0 +1,141 @@
+package com.alexgilleran.icesoap.xpath.elements.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+
+/**
+ * <p>
+ * Matches xpaths that contain '//' elements against a concrete path.
+ * </p>
+ *
+ * <p>
+ * Rather than trying every ancestor of the path for every '//' in the xpath
+ * (which costs depth to the power of the number of '//' elements), this walks
+ * down the path once, keeping a set of the xpath elements that have matched at
+ * the current depth and a set of those that have matched at any depth above
+ * it. The cost of a match is the length of the path multiplied by the length
+ * of the xpath.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+final class DescendantMatcher {
+	/** The prefix of elements that can be preceded by any number of others. */
+	private static final String DESCENDANT_PREFIX = "//";
+
+	/**
+	 * Not instantiable.
+	 */
+	private DescendantMatcher() {
+		// Static methods only
+	}
+
+	/**
+	 * Determines whether an xpath matches a path - this gives the same result
+	 * as {@link XPathElement#matches(XPathElement)}.
+	 *
+	 * @param xpath
+	 *            The xpath to match - the last element of it.
+	 * @param path
+	 *            The path to match against - the last element of it.
+	 * @return Whether the xpath matches the path.
+	 */
+	static boolean matches(XPathElement xpath, XPathElement path) {
+		List<XPathElement> steps = toList(xpath);
+		List<XPathElement> nodes = toList(path);
+
+		if (steps.get(0).isRelative()) {
+			throw new RuntimeException("Attempt was made to match against relative xpath '" + xpath.toString()
+					+ "' when the xpath was not attached to an absolute xpath.");
+		}
+
+		boolean[] descendant = new boolean[steps.size()];
+		for (int j = 0; j < descendant.length; j++) {
+			descendant[j] = steps.get(j).getPrefix().startsWith(DESCENDANT_PREFIX);
+		}
+
+		// Steps matched at the parent of the current node
+		BitSet matchedAtParent = new BitSet(steps.size());
+		// Steps matched at any ancestor of the current node
+		BitSet matchedAtAncestor = new BitSet(steps.size());
+
+		for (int i = 0; i < nodes.size(); i++) {
+			XPathElement node = nodes.get(i);
+			BitSet matchedHere = new BitSet(steps.size());
+
+			for (int j = 0; j < steps.size(); j++) {
+				boolean reachable;
+
+				if (j == 0) {
+					reachable = descendant[j] || i == 0;
+				} else {
+					reachable = descendant[j] ? matchedAtAncestor.get(j - 1) : matchedAtParent.get(j - 1);
+				}
+
+				if (reachable && matchesNode(steps.get(j), node)) {
+					matchedHere.set(j);
+				}
+			}
+
+			if (matchedHere.isEmpty() && matchedAtAncestor.isEmpty() && !descendant[0]) {
+				// Nothing can match any further down
+				return false;
+			}
+
+			matchedAtAncestor.or(matchedHere);
+			matchedAtParent = matchedHere;
+		}
+
+		return matchedAtParent.get(steps.size() - 1);
+	}
+
+	/**
+	 * Determines whether a single element of an xpath matches a single node of
+	 * a path, ignoring the elements before them.
+	 *
+	 * @param step
+	 *            The element of the xpath.
+	 * @param node
+	 *            The node of the path.
+	 * @return Whether the names and predicates match.
+	 */
+	private static boolean matchesNode(XPathElement step, XPathElement node) {
+		if (node.isAttribute() || !SymbolTable.sameName(step, node)) {
+			return false;
+		}
+
+		for (Map.Entry<String, String> predicate : step.getPredicates().entrySet()) {
+			if (!predicate.getValue().equals(node.getPredicate(predicate.getKey()))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Converts a chain of elements to a list, starting with the first element.
+	 *
+	 * @param lastElement
+	 *            The last element in the chain.
+	 * @return The list.
+	 */
+	private static List<XPathElement> toList(XPathElement lastElement) {
+		List<XPathElement> elements = new ArrayList<XPathElement>();
+
+		for (XPathElement element = lastElement; element != null; element = element.getPreviousElement()) {
+			elements.add(element);
+		}
+
+		Collections.reverse(elements);
+
+		return elements;
+	}
+}
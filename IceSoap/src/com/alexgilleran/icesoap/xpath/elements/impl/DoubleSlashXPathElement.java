@@ -26,6 +26,10 @@ public class DoubleSlashXPathElement extends BaseXPathElement implements Cloneab
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * This uses {@link DescendantMatcher}, so the time taken is proportional
+	 * to the depth of the other element times the length of this xpath, no
+	 * matter how many '//' elements this xpath contains.
 	 */
 	@Override
 	public boolean matches(XPathElement otherElement) {
@@ -36,33 +40,13 @@ public class DoubleSlashXPathElement extends BaseXPathElement implements Cloneab
 
 		// If a // element is the first element, return true as anything before
 		// it is allowed.
-		if (!this.isFirstElement()) {
-			// Loop through all the previous elements that the other element
-			// has, to see if any of them match this node's previous element.
-
-			XPathElement thisPreviousElement = otherElement.getPreviousElement();
-
-			while (thisPreviousElement != null) {
-				if (this.getPreviousElement().matches(thisPreviousElement)) {
-					// the .matches function will have checked all the previous
-					// elements, so return true.
-					return true;
-				}
-
-				// This element didn't match - check the previous one.
-				thisPreviousElement = thisPreviousElement.getPreviousElement();
-			}
-
-			// No matching element could be found - return false.
-			return false;
+		if (this.isFirstElement()) {
+			return true;
 		}
 
-		return true;
+		return DescendantMatcher.matches(this, otherElement);
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
 	@Override
 	public String getPrefix() {
 		return PREFIX;
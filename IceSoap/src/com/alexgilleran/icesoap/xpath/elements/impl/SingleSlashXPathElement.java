@@ -1,5 +1,6 @@
 package com.alexgilleran.icesoap.xpath.elements.impl;
 
+import com.alexgilleran.icesoap.xpath.SymbolTable;
 import com.alexgilleran.icesoap.xpath.elements.XPathElement;
 
 /**
@@ -25,6 +26,21 @@ public class SingleSlashXPathElement extends BaseXPathElement {
 		super(name, previousElement);
 	}
 
+	/**
+	 * Instantiates a new {@link SingleSlashXPathElement} whose name's
+	 * {@link SymbolTable} ID is already known.
+	 * 
+	 * @param name
+	 *            The name of the new element.
+	 * @param nameId
+	 *            The ID of the name, or {@link SymbolTable#UNKNOWN}.
+	 * @param previousElement
+	 *            The previous element - note that this can be set to null.
+	 */
+	public SingleSlashXPathElement(String name, int nameId, XPathElement previousElement) {
+		super(name, nameId, previousElement);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -4,7 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope.Scope;
 
+@ProcessorScope(Scope.SHARED)
 public class CSVProcessor implements Processor<List<Integer>> {
     @Override
     public List<Integer> process(String inputValue) {
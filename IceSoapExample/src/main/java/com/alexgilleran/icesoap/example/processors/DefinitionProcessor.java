@@ -1,6 +1,8 @@
 package com.alexgilleran.icesoap.example.processors;
 
 import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope.Scope;
 
 /**
  * The dictionary service by default gives us definitions with links in them
@@ -11,6 +13,7 @@ import com.alexgilleran.icesoap.parser.processor.Processor;
  * @author Alex Gilleran
  * 
  */
+@ProcessorScope(Scope.SHARED)
 public class DefinitionProcessor implements Processor<String> {
 
 	@Override
@@ -0,0 +1,409 @@
+package com.alexgilleran.icesoap.codegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+import com.alexgilleran.icesoap.parser.GeneratedBinder;
+
+/**
+ * <p>
+ * Annotation processor that generates a {@link GeneratedBinder} for every
+ * class annotated with {@link XMLObject} or declaring {@link XMLField}s, so
+ * that parsers can create instances of it and set its fields without
+ * reflection.
+ * </p>
+ *
+ * <p>
+ * This is entirely optional - just put this module on the annotation processor
+ * path when compiling the classes that IceSoap parses. Classes without a
+ * generated binder are parsed with reflection as normal. Note that generated
+ * code can only set fields and call constructors that aren't private, so to
+ * get the full benefit, {@link XMLField} fields should be package-private or
+ * wider.
+ * </p>
+ *
+ * @author Alex Gilleran
+ *
+ */
+@SupportedAnnotationTypes({ "com.alexgilleran.icesoap.annotation.XMLObject",
+		"com.alexgilleran.icesoap.annotation.XMLField" })
+public class BinderGenerator extends AbstractProcessor {
+	/** Names of the classes that binders have already been generated for. */
+	private Set<String> generatedClasses = new HashSet<String>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		// Generated code only uses Java 6 features, so is fine for anything
+		// newer.
+		return SourceVersion.latestSupported();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<TypeElement> boundClasses = new LinkedHashSet<TypeElement>();
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(XMLObject.class)) {
+			if (element.getKind() == ElementKind.CLASS) {
+				boundClasses.add((TypeElement) element);
+			}
+		}
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(XMLField.class)) {
+			if (element.getEnclosingElement().getKind() == ElementKind.CLASS) {
+				boundClasses.add((TypeElement) element.getEnclosingElement());
+			}
+		}
+
+		for (TypeElement boundClass : boundClasses) {
+			if (isAccessible(boundClass) && generatedClasses.add(boundClass.getQualifiedName().toString())) {
+				try {
+					writeBinder(boundClass);
+				} catch (IOException e) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+							"Could not write IceSoap binder: " + e.getMessage(), boundClass);
+				}
+			}
+		}
+
+		// Other processors may want these annotations too
+		return false;
+	}
+
+	/**
+	 * Determines whether generated code in the same package can refer to a
+	 * class - it, and every class it's nested in, must not be private, and it
+	 * must be top-level or static.
+	 *
+	 * @param boundClass
+	 *            The class to check.
+	 * @return true if a binder can be generated for it.
+	 */
+	private boolean isAccessible(TypeElement boundClass) {
+		Element element = boundClass;
+
+		while (element instanceof TypeElement) {
+			TypeElement type = (TypeElement) element;
+
+			if (type.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+
+			if (type.getNestingKind() == NestingKind.MEMBER) {
+				if (!type.getModifiers().contains(Modifier.STATIC)) {
+					return false;
+				}
+			} else if (type.getNestingKind() != NestingKind.TOP_LEVEL) {
+				// Local or anonymous
+				return false;
+			}
+
+			element = element.getEnclosingElement();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the binder for a class.
+	 *
+	 * @param boundClass
+	 *            The class to generate a binder for.
+	 * @throws IOException
+	 *             If the source file can't be written.
+	 */
+	private void writeBinder(TypeElement boundClass) throws IOException {
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(boundClass);
+		String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(boundClass).toString();
+		String binderName = (packageName.length() == 0 ? binaryName : binaryName.substring(packageName.length() + 1))
+				+ GeneratedBinder.SUFFIX;
+		String className = boundClass.getQualifiedName().toString();
+
+		List<VariableElement> fields = new ArrayList<VariableElement>();
+		for (VariableElement field : ElementFilter.fieldsIn(boundClass.getEnclosedElements())) {
+			if (field.getAnnotation(XMLField.class) != null && isSettable(field) && canGenerateCollection(field)) {
+				fields.add(field);
+			}
+		}
+
+		JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(
+				packageName.length() == 0 ? binderName : packageName + "." + binderName, boundClass);
+		PrintWriter out = new PrintWriter(sourceFile.openWriter());
+
+		try {
+			if (packageName.length() > 0) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+
+			out.println("/** Generated by " + BinderGenerator.class.getName() + " - do not edit. */");
+			out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			out.println("public final class " + binderName + " implements " + GeneratedBinder.class.getName() + "<"
+					+ className + "> {");
+
+			for (VariableElement field : fields) {
+				writeSetter(out, className, field);
+			}
+
+			out.println();
+			out.println("\tpublic " + className + " newInstance() {");
+			out.println(canInstantiate(boundClass) ? "\t\treturn new " + className + "();" : "\t\treturn null;");
+			out.println("\t}");
+
+			out.println();
+			out.println("\tpublic " + GeneratedBinder.class.getName() + ".Setter getSetter(String fieldName) {");
+			for (VariableElement field : fields) {
+				String fieldName = field.getSimpleName().toString();
+				out.println("\t\tif (\"" + fieldName + "\".equals(fieldName)) {");
+				out.println("\t\t\treturn " + setterName(field) + ";");
+				out.println("\t\t}");
+			}
+			out.println("\t\treturn null;");
+			out.println("\t}");
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a constant holding the setter for a field.
+	 *
+	 * @param out
+	 *            The writer to write to.
+	 * @param className
+	 *            The canonical name of the class declaring the field.
+	 * @param field
+	 *            The field.
+	 */
+	private void writeSetter(PrintWriter out, String className, VariableElement field) {
+		String fieldName = field.getSimpleName().toString();
+		String target = "((" + className + ") target)." + fieldName;
+
+		out.println();
+		out.println("\tprivate static final " + GeneratedBinder.class.getName() + ".Setter " + setterName(field)
+				+ " = new " + GeneratedBinder.class.getName() + ".Setter() {");
+		out.println("\t\tpublic void set(Object target, Object value) {");
+
+		TypeMirror type = field.asType();
+		String collectionImplementation = getCollectionImplementation(type);
+
+		if (type.getKind().isPrimitive()) {
+			out.println("\t\t\t" + target + " = " + unboxExpression(type.getKind()) + ";");
+		} else if (collectionImplementation != null) {
+			out.println("\t\t\tif (" + target + " == null) {");
+			out.println("\t\t\t\t" + target + " = new " + collectionImplementation + "("
+					+ initialCapacity(field, collectionImplementation) + ");");
+			out.println("\t\t\t}");
+			out.println("\t\t\t" + target + ".add((" + getCollectionItemType(type) + ") value);");
+		} else {
+			out.println("\t\t\t" + target + " = (" + erasure(type) + ") value;");
+		}
+
+		out.println("\t\t}");
+		out.println("\t};");
+	}
+
+	/**
+	 * Gets the expression that converts the boxed value passed to a setter
+	 * into a primitive - numbers are converted through {@link Number}, as
+	 * parsers set nil number fields to an {@link Integer} 0 whatever their
+	 * type.
+	 *
+	 * @param kind
+	 *            The primitive kind.
+	 * @return The expression.
+	 */
+	private String unboxExpression(TypeKind kind) {
+		switch (kind) {
+		case BOOLEAN:
+			return "((Boolean) value).booleanValue()";
+		case CHAR:
+			return "((Character) value).charValue()";
+		default:
+			String name = kind.name().toLowerCase();
+			return "((Number) value)." + name + "Value()";
+		}
+	}
+
+	/**
+	 * Gets the class of the collection to create for a field, if generated
+	 * code can create one - {@link ArrayList} for {@link Collection},
+	 * {@link List} and {@link ArrayList} fields, {@link LinkedHashSet} for
+	 * {@link Set}, {@link HashSet} and {@link LinkedHashSet} fields.
+	 *
+	 * @param type
+	 *            The type of the field.
+	 * @return The name of the collection class, or null if the type isn't a
+	 *         collection that can be generated for.
+	 */
+	private String getCollectionImplementation(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+
+		String erasedName = erasure(type);
+
+		if (erasedName.equals(Collection.class.getName()) || erasedName.equals(List.class.getName())
+				|| erasedName.equals(ArrayList.class.getName())) {
+			return ArrayList.class.getName();
+		} else if (erasedName.equals(Set.class.getName()) || erasedName.equals(HashSet.class.getName())
+				|| erasedName.equals(LinkedHashSet.class.getName())) {
+			return LinkedHashSet.class.getName();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Determines whether generated code can set a field, as far as its type
+	 * goes - collections it can't create (e.g. {@link java.util.TreeSet}) are
+	 * left to reflection.
+	 *
+	 * @param field
+	 *            The field.
+	 * @return false if the field is a collection that
+	 *         {@link #getCollectionImplementation(TypeMirror)} doesn't know.
+	 */
+	private boolean canGenerateCollection(VariableElement field) {
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror collectionType = types.erasure(processingEnv.getElementUtils()
+				.getTypeElement(Collection.class.getName()).asType());
+		TypeMirror type = field.asType();
+
+		return type.getKind() != TypeKind.DECLARED || !types.isAssignable(types.erasure(type), collectionType)
+				|| getCollectionImplementation(type) != null;
+	}
+
+	/**
+	 * Gets the constructor argument for a new collection, from the field's
+	 * {@link XMLField#capacity()}.
+	 *
+	 * @param field
+	 *            The collection field.
+	 * @param collectionImplementation
+	 *            The name of the collection class.
+	 * @return The initial capacity, or an empty String if the annotation
+	 *         doesn't give one.
+	 */
+	private String initialCapacity(VariableElement field, String collectionImplementation) {
+		int capacity = field.getAnnotation(XMLField.class).capacity();
+
+		if (capacity <= 0) {
+			return "";
+		}
+
+		// Hash sets need room to spare so they don't rehash before they're full
+		return String.valueOf(collectionImplementation.equals(LinkedHashSet.class.getName()) ? capacity * 4 / 3 + 1
+				: capacity);
+	}
+
+	/**
+	 * Gets the type of the items of a collection.
+	 *
+	 * @param type
+	 *            The type of the field.
+	 * @return The erased item type.
+	 */
+	private String getCollectionItemType(TypeMirror type) {
+		List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+
+		return typeArguments.isEmpty() ? Object.class.getName() : erasure(typeArguments.get(0));
+	}
+
+	/**
+	 * Gets the name of the erasure of a type, for use in casts.
+	 *
+	 * @param type
+	 *            The type.
+	 * @return The name of the erased type.
+	 */
+	private String erasure(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	/**
+	 * Determines whether generated code can set a field.
+	 *
+	 * @param field
+	 *            The field.
+	 * @return true if the field isn't private, final or static.
+	 */
+	private boolean isSettable(VariableElement field) {
+		Set<Modifier> modifiers = field.getModifiers();
+
+		return !modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.FINAL)
+				&& !modifiers.contains(Modifier.STATIC);
+	}
+
+	/**
+	 * Determines whether generated code can create an instance of a class with
+	 * its zero-arg constructor.
+	 *
+	 * @param boundClass
+	 *            The class.
+	 * @return true if the class is concrete and has a non-private zero-arg
+	 *         constructor.
+	 */
+	private boolean canInstantiate(TypeElement boundClass) {
+		if (boundClass.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(boundClass.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty()) {
+				return !constructor.getModifiers().contains(Modifier.PRIVATE);
+			}
+		}
+
+		// No zero-arg constructor - the compiler only adds a default one if
+		// there are no constructors at all, in which case we'd have found it
+		// above.
+		return false;
+	}
+
+	/**
+	 * Gets the name of the constant holding the setter for a field.
+	 *
+	 * @param field
+	 *            The field.
+	 * @return The constant name.
+	 */
+	private String setterName(VariableElement field) {
+		return "SET_" + field.getSimpleName();
+	}
+}
@@ -0,0 +1,211 @@
+package com.alexgilleran.icesoap.codegen.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.annotation.XMLObject;
+import com.alexgilleran.icesoap.codegen.BinderGenerator;
+import com.alexgilleran.icesoap.parser.GeneratedBinder;
+
+/**
+ * Compiles sample classes with {@link BinderGenerator} and checks what the
+ * binders it generates do.
+ *
+ * @author Alex Gilleran
+ */
+public class BinderGeneratorTest {
+	private static final String SAMPLE_SOURCE = "package sample;\n" //
+			+ "import java.util.*;\n" //
+			+ "import com.alexgilleran.icesoap.annotation.*;\n" //
+			+ "@XMLObject(\"/sample\")\n" //
+			+ "public class Sample {\n" //
+			+ "	@XMLField(\"count\") int count;\n" //
+			+ "	@XMLField(\"ratio\") double ratio;\n" //
+			+ "	@XMLField(\"flag\") boolean flag;\n" //
+			+ "	@XMLField(\"name\") String name;\n" //
+			+ "	@XMLField(\"names/name\") List<String> names;\n" //
+			+ "	@XMLField(value = \"tags/tag\", capacity = 4) Set<String> tags;\n" //
+			+ "	@XMLField(\"sorted/item\") TreeSet<String> sorted;\n" //
+			+ "	@XMLField(\"hidden\") private String hidden;\n" //
+			+ "	@XMLField(\"fixed\") final String fixed = null;\n" //
+			+ "	public static class Inner {\n" //
+			+ "		@XMLField(\"value\") String value;\n" //
+			+ "	}\n" //
+			+ "}\n";
+
+	private static final String NO_DEFAULT_SOURCE = "package sample;\n" //
+			+ "import com.alexgilleran.icesoap.annotation.*;\n" //
+			+ "@XMLObject(\"/noDefault\")\n" //
+			+ "public class NoDefault {\n" //
+			+ "	@XMLField(\"value\") String value;\n" //
+			+ "	NoDefault(String value) { this.value = value; }\n" //
+			+ "}\n";
+
+	private File directory;
+	private ClassLoader loader;
+
+	@Before
+	public void compileSamples() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		// Only available when running on a JDK
+		Assume.assumeNotNull(compiler);
+
+		directory = File.createTempFile("icesoap-codegen", "");
+		directory.delete();
+		File sourceDirectory = new File(directory, "src/sample");
+		File classDirectory = new File(directory, "classes");
+		sourceDirectory.mkdirs();
+		classDirectory.mkdirs();
+
+		File sample = write(new File(sourceDirectory, "Sample.java"), SAMPLE_SOURCE);
+		File noDefault = write(new File(sourceDirectory, "NoDefault.java"), NO_DEFAULT_SOURCE);
+
+		// The samples only need the annotations - the processor is passed in
+		// directly rather than found on the class path
+		String classPath = new File(XMLObject.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+				.getPath();
+
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+
+		try {
+			CompilationTask task = compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-classpath",
+					classPath, "-d", classDirectory.getPath(), "-s", classDirectory.getPath()), null, fileManager
+					.getJavaFileObjects(sample, noDefault));
+			task.setProcessors(Arrays.asList(new BinderGenerator()));
+
+			assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+		} finally {
+			fileManager.close();
+		}
+
+		loader = new URLClassLoader(new URL[] { classDirectory.toURI().toURL() }, getClass().getClassLoader());
+	}
+
+	@After
+	public void deleteSamples() {
+		if (directory != null) {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testNewInstance() throws Exception {
+		assertEquals(loader.loadClass("sample.Sample"), getBinder("sample.Sample").newInstance().getClass());
+		assertEquals(loader.loadClass("sample.Sample$Inner"), getBinder("sample.Sample$Inner").newInstance()
+				.getClass());
+
+		// No zero-arg constructor, so that's left to reflection
+		assertNull(getBinder("sample.NoDefault").newInstance());
+	}
+
+	@Test
+	public void testSetters() throws Exception {
+		GeneratedBinder<?> binder = getBinder("sample.Sample");
+		Object sample = binder.newInstance();
+
+		binder.getSetter("count").set(sample, Integer.valueOf(3));
+		assertEquals(3, getField(sample, "count"));
+
+		// Nil numbers come through as an Integer whatever the field's type
+		binder.getSetter("ratio").set(sample, Integer.valueOf(0));
+		assertEquals(0d, getField(sample, "ratio"));
+
+		binder.getSetter("flag").set(sample, Boolean.TRUE);
+		assertEquals(true, getField(sample, "flag"));
+
+		binder.getSetter("name").set(sample, "a");
+		assertEquals("a", getField(sample, "name"));
+
+		assertNotNull(getBinder("sample.Sample$Inner").getSetter("value"));
+	}
+
+	@Test
+	public void testCollectionSetters() throws Exception {
+		GeneratedBinder<?> binder = getBinder("sample.Sample");
+		Object sample = binder.newInstance();
+
+		// Collections are created when they're first needed, then added to
+		binder.getSetter("names").set(sample, "a");
+		binder.getSetter("names").set(sample, "b");
+		assertEquals(Arrays.asList("a", "b"), getField(sample, "names"));
+
+		binder.getSetter("tags").set(sample, "x");
+		binder.getSetter("tags").set(sample, "x");
+		Object tags = getField(sample, "tags");
+		assertEquals(LinkedHashSet.class, tags.getClass());
+		assertEquals(1, ((LinkedHashSet<?>) tags).size());
+	}
+
+	@Test
+	public void testFieldsLeftToReflection() throws Exception {
+		GeneratedBinder<?> binder = getBinder("sample.Sample");
+
+		// Collections it can't create, private and final fields, and
+		// anything that isn't an XMLField
+		assertNull(binder.getSetter("sorted"));
+		assertNull(binder.getSetter("hidden"));
+		assertNull(binder.getSetter("fixed"));
+		assertNull(binder.getSetter("missing"));
+	}
+
+	private GeneratedBinder<?> getBinder(String className) throws Exception {
+		return (GeneratedBinder<?>) loader.loadClass(className + GeneratedBinder.SUFFIX).newInstance();
+	}
+
+	private Object getField(Object target, String fieldName) throws Exception {
+		Field field = target.getClass().getDeclaredField(fieldName);
+		field.setAccessible(true);
+
+		return field.get(target);
+	}
+
+	private static File write(File file, String contents) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+
+		file.delete();
+	}
+}
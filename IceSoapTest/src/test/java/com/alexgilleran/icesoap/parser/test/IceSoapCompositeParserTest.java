@@ -0,0 +1,157 @@
+package com.alexgilleran.icesoap.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.ParseResults;
+import com.alexgilleran.icesoap.parser.impl.IceSoapCompositeParserImpl;
+import com.alexgilleran.icesoap.parser.impl.IceSoapListParserImpl;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Customer;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.CustsAndOrders;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Order;
+
+public class IceSoapCompositeParserTest {
+	@Test
+	public void testListsInOnePass() throws XMLParsingException {
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addListTarget(Customer.class);
+		parser.addListTarget(Order.class);
+
+		ParseResults results = parser.parse(SampleXml.getCustomersAndOrders());
+
+		List<Customer> expectedCustomers = new IceSoapListParserImpl<Customer>(Customer.class).parse(SampleXml
+				.getCustomersAndOrders());
+		List<Order> expectedOrders = new IceSoapListParserImpl<Order>(Order.class).parse(SampleXml
+				.getCustomersAndOrders());
+
+		List<Customer> customers = results.getList(Customer.class);
+		assertEquals(4, customers.size());
+		for (int i = 0; i < customers.size(); i++) {
+			assertEquals(expectedCustomers.get(i).getCustomerId(), customers.get(i).getCustomerId());
+			assertEquals(expectedCustomers.get(i).getCompanyName(), customers.get(i).getCompanyName());
+			assertEquals(expectedCustomers.get(i).getFullAddress().getCity(), customers.get(i).getFullAddress()
+					.getCity());
+		}
+
+		List<Order> orders = results.getList(Order.class);
+		assertEquals(12, orders.size());
+		for (int i = 0; i < orders.size(); i++) {
+			if (expectedOrders.get(i) == null) {
+				// xsi:nil
+				assertNull(orders.get(i));
+				continue;
+			}
+
+			assertEquals(expectedOrders.get(i).getCustomerId(), orders.get(i).getCustomerId());
+			assertEquals(expectedOrders.get(i).getEmployeeId(), orders.get(i).getEmployeeId());
+			assertEquals(expectedOrders.get(i).getOrderDate(), orders.get(i).getOrderDate());
+			assertEquals(expectedOrders.get(i).getShipInfo().getShipName(), orders.get(i).getShipInfo()
+					.getShipName());
+		}
+	}
+
+	@Test
+	public void testTargetInsideTarget() throws XMLParsingException {
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addTarget(CustsAndOrders.class);
+		parser.addListTarget(Order.class);
+
+		ParseResults results = parser.parse(SampleXml.getCustomersAndOrders());
+		CustsAndOrders expected = new IceSoapParserImpl<CustsAndOrders>(CustsAndOrders.class).parse(SampleXml
+				.getCustomersAndOrders());
+
+		// Everything outside the orders is still parsed into the outer object
+		CustsAndOrders custsAndOrders = results.get(CustsAndOrders.class);
+		assertEquals(4, custsAndOrders.getCustomers().size());
+		assertEquals(expected.getDifficultField(), custsAndOrders.getDifficultField());
+
+		// ...but the orders only go to the list target
+		assertTrue(custsAndOrders.getOrders() == null || custsAndOrders.getOrders().isEmpty());
+		assertEquals(12, results.getList(Order.class).size());
+		assertEquals(expected.getOrders().get(11).getCustomerId(), results.getList(Order.class).get(11)
+				.getCustomerId());
+	}
+
+	@Test
+	public void testStopsWhenObjectsParsed() throws XMLParsingException {
+		// Everything after the first customer is broken, so it can only be
+		// parsed if the parser stops before it gets there
+		String xml = "<Root><Customers><Customer CustomerID=\"GREAL\"><CompanyName>Great Lakes Food Market</CompanyName>"
+				+ "</Customer><Broken></Customers></Root>";
+
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addTarget(Customer.class);
+
+		ParseResults results = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+		assertEquals("GREAL", results.get(Customer.class).getCustomerId());
+		assertNull(results.get(Order.class));
+
+		// With a list target there could always be more to come
+		parser.addListTarget(Order.class);
+
+		try {
+			parser.parse(new ByteArrayInputStream(xml.getBytes()));
+			fail("The broken XML should have been read");
+		} catch (XMLParsingException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testUnregisteredList() throws XMLParsingException {
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addListTarget(Customer.class);
+
+		ParseResults results = parser.parse(new ByteArrayInputStream("<Root/>".getBytes()));
+
+		// A registered list with no items is empty, an unregistered one isn't
+		// there at all
+		assertTrue(results.getList(Customer.class).isEmpty());
+		assertNull(results.getList(Order.class));
+	}
+
+	@Test
+	public void testDuplicateTargets() {
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addTarget(Customer.class);
+		parser.addListTarget(Customer.class);
+
+		try {
+			parser.addTarget(Customer.class);
+			fail("The same target should only be added once");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		try {
+			parser.addListTarget(Customer.class);
+			fail("The same list target should only be added once");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testParseIntoResults() throws XMLParsingException {
+		IceSoapCompositeParserImpl parser = new IceSoapCompositeParserImpl();
+		parser.addTarget(CustsAndOrders.class);
+		parser.addListTarget(Customer.class);
+
+		ParseResults results = parser.parse(SampleXml.getCustomersAndOrders());
+		CustsAndOrders custsAndOrders = results.get(CustsAndOrders.class);
+
+		assertSame(results, parser.parse(SampleXml.getCustomersAndOrders(), results));
+		assertSame(custsAndOrders, results.get(CustsAndOrders.class));
+		assertEquals(8, results.getList(Customer.class).size());
+	}
+}
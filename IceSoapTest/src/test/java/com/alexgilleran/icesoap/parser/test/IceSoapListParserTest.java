@@ -1,11 +1,16 @@
 package com.alexgilleran.icesoap.parser.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -136,6 +141,253 @@ public class IceSoapListParserTest {
 		}
 	}
 
+	/**
+	 * Tests that list items are found at any depth - the list doesn't end at
+	 * the end of the first item's parent.
+	 * 
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testItemsAtMixedDepths() throws XMLParsingException {
+		checkCustomerIds(
+				"<Root><Customer CustomerID=\"A\"/><X><Customer CustomerID=\"B\"/></X>"
+						+ "<Customer CustomerID=\"C\"/></Root>", "A", "B", "C");
+		checkCustomerIds(
+				"<Root><Customers><Customer CustomerID=\"A\"/></Customers><Group><Inner>"
+						+ "<Customer CustomerID=\"B\"/></Inner><Customer CustomerID=\"C\"/></Group>"
+						+ "<Customer CustomerID=\"D\"/></Root>", "A", "B", "C", "D");
+	}
+
+	private void checkCustomerIds(String xml, String... ids)
+			throws XMLParsingException {
+		List<Customer> customers = new IceSoapListParserImpl<Customer>(
+				Customer.class).parse(new ByteArrayInputStream(xml.getBytes()));
+
+		assertEquals(ids.length, customers.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], customers.get(i).getCustomerId());
+		}
+	}
+
+	@Test
+	public void testParallelLists() throws XMLParsingException, ParseException {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		try {
+			CustomerObserver customerObserver = new CustomerObserver();
+			IceSoapListParserImpl<Customer> customerParser = new IceSoapListParserImpl<Customer>(
+					Customer.class);
+			customerParser.setExecutor(executor);
+			customerParser.setItemsPerChunk(1);
+			customerParser.registerItemObserver(customerObserver);
+
+			checkCustomerList(customerParser.parse(SampleXml
+					.getCustomersAndOrders()));
+			assertEquals(4, customerObserver.counter);
+
+			OrderObserver orderObserver = new OrderObserver();
+			IceSoapListParserImpl<Order> orderParser = new IceSoapListParserImpl<Order>(
+					Order.class);
+			orderParser.setExecutor(executor);
+			orderParser.setItemsPerChunk(5);
+			orderParser.registerItemObserver(orderObserver);
+
+			checkOrderList(orderParser.parse(SampleXml.getCustomersAndOrders()));
+			assertEquals(12, orderObserver.counter);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Checks that a big list split into chunks comes out the same as when it's
+	 * parsed in one go, with markup that a naive split would get wrong.
+	 * 
+	 * @throws XMLParsingException
+	 * @throws UnsupportedEncodingException
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws XMLParsingException,
+			UnsupportedEncodingException {
+		StringBuilder xml = new StringBuilder(
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- <Customer> -->"
+						+ "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+						+ "<soap:Body><Root xmlns=\"http://www.adventure-works.com\">");
+
+		for (int group = 0; group < 3; group++) {
+			xml.append("<Customers group=\"").append(group).append("\">");
+
+			for (int i = 0; i < 250; i++) {
+				xml.append("<Customer CustomerID=\"C").append(group).append('-')
+						.append(i).append("\" note=\"a > b\">")
+						.append("<CompanyName><![CDATA[</Customer> & ")
+						.append(i).append("]]></CompanyName>")
+						.append("<!-- </Customer> -->")
+						.append("<ContactName>J\u00f6rg &amp; ").append(i)
+						.append("</ContactName>")
+						.append("<FullAddress><City>City ").append(i)
+						.append("</City></FullAddress>").append("</Customer>");
+			}
+
+			xml.append("</Customers><Separator><Customer/></Separator>");
+		}
+
+		xml.append("</Root></soap:Body></soap:Envelope>");
+		byte[] document = xml.toString().getBytes("UTF-8");
+
+		List<Customer> expected = new IceSoapListParserImpl<Customer>(
+				Customer.class).parse(new ByteArrayInputStream(document));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			IceSoapListParserImpl<Customer> parser = new IceSoapListParserImpl<Customer>(
+					Customer.class);
+			parser.setExecutor(executor);
+			parser.setItemsPerChunk(16);
+
+			List<Customer> customers = parser.parse(new ByteArrayInputStream(
+					document));
+
+			assertEquals(753, expected.size());
+			assertEquals(expected.size(), customers.size());
+
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getCustomerId(), customers.get(i)
+						.getCustomerId());
+				assertEquals(expected.get(i).getCompanyName(), customers.get(i)
+						.getCompanyName());
+				assertEquals(expected.get(i).getContactName(), customers.get(i)
+						.getContactName());
+
+				if (expected.get(i).getFullAddress() == null) {
+					assertNull(customers.get(i).getFullAddress());
+				} else {
+					assertEquals(expected.get(i).getFullAddress().getCity(),
+							customers.get(i).getFullAddress().getCity());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelFallsBack() throws XMLParsingException,
+			UnsupportedEncodingException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			IceSoapListParserImpl<SingleField> parser = new IceSoapListParserImpl<SingleField>(
+					SingleField.class);
+			parser.setExecutor(executor);
+
+			// Only UTF-8 is split up, anything else is parsed as usual
+			String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><Root>"
+					+ "<field attribute=\"a\">\u00e9</field>"
+					+ "<field attribute=\"b\">2</field></Root>";
+			byte[] document = xml.getBytes("ISO-8859-1");
+			List<SingleField> expected = new IceSoapListParserImpl<SingleField>(
+					SingleField.class).parse(new ByteArrayInputStream(document));
+			List<SingleField> fields = parser.parse(new ByteArrayInputStream(
+					document));
+
+			assertEquals(2, fields.size());
+			assertEquals(expected.get(0).getValue(), fields.get(0).getValue());
+			assertEquals("b", fields.get(1).getAttribute());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelNoMatches() throws XMLParsingException {
+		String xml = "<Customers><Order/></Customers>";
+
+		assertNull(new IceSoapListParserImpl<Customer>(Customer.class)
+				.parse(new ByteArrayInputStream(xml.getBytes())));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			IceSoapListParserImpl<Customer> parser = new IceSoapListParserImpl<Customer>(
+					Customer.class);
+			parser.setExecutor(executor);
+
+			assertNull(parser.parse(new ByteArrayInputStream(xml.getBytes())));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Checks that items under different parents, at the same depth or not,
+	 * come out the same either way - every item in the document.
+	 * 
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testParallelDifferentParents() throws XMLParsingException {
+		String[] documents = {
+				"<Root><X><Customer CustomerID=\"A\"/></X><Y><Customer CustomerID=\"B\"/><Z/></Y>"
+						+ "<X><Customer CustomerID=\"C\"/></X></Root>",
+				"<Root><Customer CustomerID=\"A\"/><X><Customer CustomerID=\"B\"/></X>"
+						+ "<Customer CustomerID=\"C\"/><X><Y><Customer CustomerID=\"D\"/></Y></X></Root>",
+				"<Root><X><Y><Customer CustomerID=\"A\"/></Y></X><X><Customer CustomerID=\"B\"/></X>"
+						+ "<Customer CustomerID=\"C\"/></Root>" };
+		int[] counts = { 3, 4, 3 };
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			for (int document = 0; document < documents.length; document++) {
+				String xml = documents[document];
+				List<Customer> expected = new IceSoapListParserImpl<Customer>(
+						Customer.class).parse(new ByteArrayInputStream(xml
+						.getBytes()));
+
+				IceSoapListParserImpl<Customer> parser = new IceSoapListParserImpl<Customer>(
+						Customer.class);
+				parser.setExecutor(executor);
+				parser.setItemsPerChunk(1);
+				List<Customer> customers = parser
+						.parse(new ByteArrayInputStream(xml.getBytes()));
+
+				assertEquals(xml, counts[document], expected.size());
+				assertEquals(xml, expected.size(), customers.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(xml, expected.get(i).getCustomerId(),
+							customers.get(i).getCustomerId());
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelError() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			IceSoapListParserImpl<Customer> parser = new IceSoapListParserImpl<Customer>(
+					Customer.class);
+			parser.setExecutor(executor);
+			parser.setItemsPerChunk(1);
+
+			String xml = "<Customers><Customer CustomerID=\"A\"/>"
+					+ "<Customer CustomerID=\"B\"><CompanyName>x</Broken></Customer>"
+					+ "</Customers>";
+			parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+			fail("The broken XML should have been found");
+		} catch (XMLParsingException e) {
+			// Expected
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private void checkOrderList(List<Order> purchaseOrders)
 			throws ParseException {
 		// Check the numbers
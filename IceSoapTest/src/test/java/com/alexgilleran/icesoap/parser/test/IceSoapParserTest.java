@@ -3,31 +3,56 @@
  */
 package com.alexgilleran.icesoap.parser.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
 
+import com.alexgilleran.icesoap.annotation.XMLField;
 import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.GeneratedBinder;
 import com.alexgilleran.icesoap.parser.IceSoapParser;
+import com.alexgilleran.icesoap.parser.InstanceFactory;
 import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.ConverterRegistry;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.StringParser;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.AccessorFields;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.Address;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.AddressChild;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Alert;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Booleans;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.CollectionTypes;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.ConvertedTypes;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.GeneratedBinding;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.NilValues;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.PipeTest;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.PrimitiveDefaults;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.PrimitiveObjects;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.ProcessorTest;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.PurchaseOrder;
 import com.alexgilleran.icesoap.parser.test.xmlclasses.Reply;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.ScopedProcessorTest;
 
 /**
  * @author Alex Gilleran
@@ -50,6 +75,57 @@ public class IceSoapParserTest {
 		assertEquals(values.getStringValue(), null);
 	}
 
+	@Test
+	public void testPrimitiveFields() throws XMLParsingException {
+		IceSoapParser<NilValues> parser = new IceSoapParserImpl<NilValues>(NilValues.class);
+
+		NilValues values = parser.parse(SampleXml.getPrimitiveObjects());
+
+		assertEquals('a', values.getCharValue());
+		assertEquals(1, values.getIntValue());
+		assertEquals(2, values.getLongValue());
+		assertEquals(1.5f, values.getFloatValue(), 0);
+		assertEquals(1.6, values.getDoubleValue(), 0);
+		assertTrue(values.isBooleanValue());
+
+		values = parser.parse(SampleXml.getPrimitiveExtremes());
+
+		assertEquals('\u00e9', values.getCharValue());
+		assertEquals(Integer.MIN_VALUE, values.getIntValue());
+		assertEquals(Long.MAX_VALUE, values.getLongValue());
+		assertEquals(Float.floatToRawIntBits(Float.parseFloat("-1.5E-3")),
+				Float.floatToRawIntBits(values.getFloatValue()));
+		assertEquals(Double.doubleToRawLongBits(Double.parseDouble("123456.7891")),
+				Double.doubleToRawLongBits(values.getDoubleValue()));
+		assertTrue(values.isBooleanValue());
+	}
+
+	@Test
+	public void testXsiNilOnPrimitiveFields() throws XMLParsingException {
+		IceSoapParser<PrimitiveDefaults> parser = new IceSoapParserImpl<PrimitiveDefaults>(PrimitiveDefaults.class);
+
+		// Nil sets a primitive field to its default, whatever it started as
+		PrimitiveDefaults values = parser.parse(SampleXml.getNilValues());
+
+		assertEquals('\0', values.getCharValue());
+		assertEquals(0, values.getIntValue());
+		assertEquals(0, values.getLongValue());
+		assertEquals(0, values.getFloatValue(), 0);
+		assertEquals(0, values.getDoubleValue(), 0);
+		assertFalse(values.isBooleanValue());
+
+		// The last value wins whether it's nil or not, and fields without a
+		// value are left alone
+		values = parser.parse(SampleXml.getMixedNilPrimitives());
+
+		assertEquals('\0', values.getCharValue());
+		assertEquals(7, values.getIntValue());
+		assertEquals(3, values.getLongValue());
+		assertEquals(0, values.getFloatValue(), 0);
+		assertEquals(9, values.getDoubleValue(), 0);
+		assertFalse(values.isBooleanValue());
+	}
+
 	@Test
 	public void testPrimitiveObjects() throws XMLParsingException, ParseException {
 		IceSoapParser<PrimitiveObjects> parser = new IceSoapParserImpl<PrimitiveObjects>(PrimitiveObjects.class);
@@ -81,8 +157,72 @@ public class IceSoapParserTest {
 	public void testPurchaseOrder() throws XmlPullParserException, XMLParsingException, ParseException {
 		IceSoapParser<PurchaseOrder> parser = new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class);
 
-		PurchaseOrder po = parser.parse(SampleXml.getPurchaseOrder());
+		assertPurchaseOrder(parser.parse(SampleXml.getPurchaseOrder()));
+	}
+
+	/**
+	 * Same as {@link #testPurchaseOrder()}, but with the pull parser reusing
+	 * its xpath elements.
+	 * 
+	 * @throws XMLParsingException
+	 * @throws ParseException
+	 */
+	@Test
+	public void testPurchaseOrderReusingElements() throws XMLParsingException, ParseException {
+		IceSoapParserImpl<PurchaseOrder> parser = new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class);
+		parser.setReuseXPathElements(true);
+
+		assertPurchaseOrder(parser.parse(SampleXml.getPurchaseOrder()));
+		// Make sure nothing is left over from the first parse
+		assertPurchaseOrder(parser.parse(SampleXml.getPurchaseOrder()));
+	}
+
+	/**
+	 * Parsers for the same class share everything worked out about the
+	 * class, so make sure that several of them can be created and used at
+	 * once from different threads.
+	 *
+	 * @throws Throwable
+	 */
+	@Test
+	public void testPurchaseOrderConcurrently() throws Throwable {
+		final List<PurchaseOrder> orders = Collections.synchronizedList(new ArrayList<PurchaseOrder>());
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[8];
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 20; j++) {
+							IceSoapParser<PurchaseOrder> parser = new IceSoapParserImpl<PurchaseOrder>(
+									PurchaseOrder.class);
+							orders.add(parser.parse(SampleXml.getPurchaseOrder()));
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (!errors.isEmpty()) {
+			throw errors.get(0);
+		}
 
+		assertEquals(threads.length * 20, orders.size());
+		for (PurchaseOrder order : orders) {
+			assertPurchaseOrder(order);
+		}
+	}
+
+	private void assertPurchaseOrder(PurchaseOrder po) throws ParseException {
 		assertEquals(99503l, po.getPurchaseOrderNumber());
 		assertEquals(FORMAT.parse("1999-10-20"), po.getOrderDate());
 
@@ -176,6 +316,29 @@ public class IceSoapParserTest {
 		assertEquals(SampleXml.CSV_CONVERSION_VALUE_3, testResult.getCsvTest()[2]);
 	}
 
+	/**
+	 * Tests that a processor with {@link ProcessorScope.Scope#PARSE} is shared
+	 * by every value in one parse, but not between parses.
+	 * 
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testParseScopedProcessor() throws XMLParsingException {
+		IceSoapParser<ScopedProcessorTest> parser = new IceSoapParserImpl<ScopedProcessorTest>(
+				ScopedProcessorTest.class);
+		String xml = "<ScopedProcessorTest><Count>a</Count><Count>b</Count><Inner><Count>c</Count></Inner>"
+				+ "</ScopedProcessorTest>";
+
+		for (int i = 0; i < 2; i++) {
+			ScopedProcessorTest result = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+			assertEquals(2, result.getCounts().size());
+			assertEquals(Integer.valueOf(1), result.getCounts().get(0));
+			assertEquals(Integer.valueOf(2), result.getCounts().get(1));
+			assertEquals(Integer.valueOf(3), result.getInnerCount());
+		}
+	}
+
 	@Test
 	public void testListOfStrings() throws XMLParsingException {
 		IceSoapParser<Alert> parser = new IceSoapParserImpl<Alert>(Alert.class);
@@ -209,6 +372,201 @@ public class IceSoapParserTest {
 		assertEquals(2, reply.zones.get(1).id);
 	}
 
+	/**
+	 * Tests that a binder generated by the annotation processor (which runs
+	 * over the test classes when they're compiled) is used when present, with
+	 * reflection used for anything it can't do.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGeneratedBinder() throws Exception {
+		GeneratedBinder<?> binder = (GeneratedBinder<?>) Class.forName(
+				GeneratedBinding.class.getName() + GeneratedBinder.SUFFIX).newInstance();
+		assertTrue(binder.newInstance() instanceof GeneratedBinding);
+		assertNotNull(binder.getSetter("names"));
+		assertNull(binder.getSetter("reflected"));
+
+		IceSoapParser<GeneratedBinding> parser = new IceSoapParserImpl<GeneratedBinding>(GeneratedBinding.class);
+		String xml = "<generated><value>42</value><names><name>a</name><name>b</name></names>"
+				+ "<reflected>c</reflected></generated>";
+
+		GeneratedBinding binding = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+		assertEquals(42, binding.getValue());
+		assertEquals(2, binding.getNames().size());
+		assertEquals("a", binding.getNames().get(0));
+		assertEquals("b", binding.getNames().get(1));
+		assertEquals("c", binding.getReflected());
+	}
+
+	/**
+	 * Tests that single values are set and collection values are appended,
+	 * both for fields with generated setters and for fields that are set by
+	 * reflection, and that nothing carries over between parses.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFieldAccessors() throws Exception {
+		GeneratedBinder<?> binder = (GeneratedBinder<?>) Class.forName(
+				AccessorFields.class.getName() + GeneratedBinder.SUFFIX).newInstance();
+
+		for (String field : new String[] { "name", "names", "existing" }) {
+			assertNotNull(field, binder.getSetter(field));
+		}
+		for (String field : new String[] { "reflectedName", "reflectedNames", "reflectedExisting", "reflectedSet" }) {
+			assertNull(field, binder.getSetter(field));
+		}
+
+		IceSoapParser<AccessorFields> parser = new IceSoapParserImpl<AccessorFields>(AccessorFields.class);
+		String xml = "<accessors><name>a</name><name>b</name><reflectedName>a</reflectedName>"
+				+ "<reflectedName>b</reflectedName><names><name>x</name><name>y</name></names>"
+				+ "<reflectedNames><name>x</name><name>y</name></reflectedNames>"
+				+ "<existing><name>x</name></existing><reflectedExisting><name>x</name></reflectedExisting>"
+				+ "<reflectedSet><name>y</name><name>x</name><name>y</name></reflectedSet></accessors>";
+
+		for (int i = 0; i < 2; i++) {
+			AccessorFields fields = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+			// The last value of a single field wins
+			assertEquals("b", fields.getName());
+			assertEquals("b", fields.getReflectedName());
+
+			// Collections are created when they're null and appended to in
+			// document order otherwise
+			assertEquals(Arrays.asList("x", "y"), fields.getNames());
+			assertEquals(Arrays.asList("x", "y"), fields.getReflectedNames());
+			assertEquals(Arrays.asList("z", "x"), fields.getExisting());
+			assertEquals(Arrays.asList("z", "x"), fields.getReflectedExisting());
+			assertEquals(LinkedHashSet.class, fields.getReflectedSet().getClass());
+			assertEquals(Arrays.asList("y", "x"), new ArrayList<String>(fields.getReflectedSet()));
+		}
+	}
+
+	/**
+	 * Tests that array and set fields get every matching value, including
+	 * arrays that outgrow their capacity and nil items, and that nothing is
+	 * left over when the parser is used again.
+	 *
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testArraysAndSets() throws XMLParsingException {
+		IceSoapParser<CollectionTypes> parser = new IceSoapParserImpl<CollectionTypes>(CollectionTypes.class);
+		String xml = "<collections xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+				+ "<ints><int>1</int><int>-2</int><int xsi:nil=\"true\" /><int>4</int></ints>"
+				+ "<doubles><double>1.5</double></doubles><booleans><boolean>true</boolean><boolean>false</boolean></booleans>"
+				+ "<strings><string>a</string><string>b</string></strings>"
+				+ "<entries><entry key=\"x\">1</entry><entry key=\"y\">2</entry></entries>"
+				+ "<tags><tag>b</tag><tag>a</tag><tag>b</tag></tags></collections>";
+
+		for (int i = 0; i < 2; i++) {
+			CollectionTypes collections = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+			assertArrayEquals(new int[] { 1, -2, 0, 4 }, collections.getInts());
+			assertEquals(1, collections.getDoubles().length);
+			assertEquals(1.5, collections.getDoubles()[0], 0);
+			assertTrue(Arrays.equals(new boolean[] { true, false }, collections.getBooleans()));
+			assertArrayEquals(new String[] { "a", "b" }, collections.getStrings());
+			assertEquals(2, collections.getEntries().length);
+			assertEquals("x", collections.getEntries()[0].getKey());
+			assertEquals("1", collections.getEntries()[0].getValue());
+			assertEquals("y", collections.getEntries()[1].getKey());
+			assertEquals("2", collections.getEntries()[1].getValue());
+			assertEquals(new ArrayList<String>(Arrays.asList("b", "a")), new ArrayList<String>(collections.getTags()));
+			assertTrue(collections.getTags() instanceof LinkedHashSet);
+		}
+	}
+
+	/**
+	 * Tests that an existing object can be populated, and that it's added to
+	 * rather than replaced when it's populated again.
+	 *
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testParseIntoExistingObject() throws XMLParsingException {
+		IceSoapParser<CollectionTypes> parser = new IceSoapParserImpl<CollectionTypes>(CollectionTypes.class);
+		String xml = "<collections><ints><int>1</int><int>2</int></ints><strings><string>a</string></strings></collections>";
+		CollectionTypes target = new CollectionTypes();
+
+		assertSame(target, parser.parse(new ByteArrayInputStream(xml.getBytes()), target));
+		assertArrayEquals(new int[] { 1, 2 }, target.getInts());
+		assertArrayEquals(new String[] { "a" }, target.getStrings());
+
+		assertSame(target, parser.parse(new ByteArrayInputStream(xml.getBytes()), target));
+		assertArrayEquals(new int[] { 1, 2, 1, 2 }, target.getInts());
+		assertArrayEquals(new String[] { "a", "a" }, target.getStrings());
+	}
+
+	/**
+	 * Tests that instance factories are used for the parsed object and for
+	 * nested objects.
+	 *
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testInstanceFactory() throws XMLParsingException {
+		final CollectionTypes pooled = new CollectionTypes();
+		final List<CollectionTypes.Entry> createdEntries = new ArrayList<CollectionTypes.Entry>();
+
+		IceSoapParserImpl<CollectionTypes> parser = new IceSoapParserImpl<CollectionTypes>(CollectionTypes.class);
+		parser.setInstanceFactory(CollectionTypes.class, new InstanceFactory<CollectionTypes>() {
+			@Override
+			public CollectionTypes newInstance() {
+				return pooled;
+			}
+		});
+		parser.setInstanceFactory(CollectionTypes.Entry.class, new InstanceFactory<CollectionTypes.Entry>() {
+			@Override
+			public CollectionTypes.Entry newInstance() {
+				CollectionTypes.Entry entry = new CollectionTypes.Entry();
+				createdEntries.add(entry);
+				return entry;
+			}
+		});
+
+		String xml = "<collections><entries><entry key=\"x\">1</entry><entry key=\"y\">2</entry></entries></collections>";
+		CollectionTypes collections = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+		assertSame(pooled, collections);
+		assertEquals(2, createdEntries.size());
+		assertSame(createdEntries.get(0), collections.getEntries()[0]);
+		assertSame(createdEntries.get(1), collections.getEntries()[1]);
+		assertEquals("y", collections.getEntries()[1].getKey());
+	}
+
+	/**
+	 * Tests the built-in converters for less common types, and a converter
+	 * registered for a custom type.
+	 *
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testConverters() throws XMLParsingException {
+		ConverterRegistry.register(ConvertedTypes.Code.class, new StringParser<ConvertedTypes.Code>() {
+			@Override
+			public ConvertedTypes.Code parse(String stringValue, XMLField xmlField) {
+				return new ConvertedTypes.Code(stringValue);
+			}
+		});
+
+		IceSoapParser<ConvertedTypes> parser = new IceSoapParserImpl<ConvertedTypes>(ConvertedTypes.class);
+		String xml = "<converted><status>SUSPENDED</status><id>123e4567-e89b-12d3-a456-426655440000</id>"
+				+ "<big>123456789012345678901234567890</big><data>SWNl\nU29hcA==</data>"
+				+ "<numbers><number>1</number><number>-2</number></numbers><code>XYZ</code></converted>";
+
+		ConvertedTypes converted = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+		assertEquals(ConvertedTypes.Status.SUSPENDED, converted.getStatus());
+		assertEquals(UUID.fromString("123e4567-e89b-12d3-a456-426655440000"), converted.getId());
+		assertEquals(new BigInteger("123456789012345678901234567890"), converted.getBig());
+		assertEquals("IceSoap", new String(converted.getData()));
+		assertEquals(Arrays.asList(1, -2), converted.getNumbers());
+		assertEquals("XYZ", converted.getCode().getValue());
+	}
+
 	@Test
 	public void testXPathUnionSimple() throws XMLParsingException {
 
@@ -246,6 +604,45 @@ public class IceSoapParserTest {
 		assertEquals(null, pipeTest.getInner().getInnerValue2());
 	}
 
+	@Test
+	public void testStopWhenFieldsSet() throws XMLParsingException {
+		// Everything after the last field is broken, so it can only be parsed
+		// if the parser stops before it gets there
+		String xml = "<PurchaseOrder><Address Type=\"Shipping\"><Name>Ellen Adams</Name><Street>123 Maple Street</Street>"
+				+ "<City>Mill Valley</City><State>CA</State><Zip>10999</Zip><Country>USA</Country>"
+				+ "<Trailing><Unclosed></Trailing></Address></PurchaseOrder>";
+
+		IceSoapParserImpl<Address> parser = new IceSoapParserImpl<Address>(Address.class);
+
+		try {
+			parser.parse(new ByteArrayInputStream(xml.getBytes()));
+			fail("The broken XML should have been read");
+		} catch (XMLParsingException e) {
+			// Expected
+		}
+
+		parser.setStopWhenFieldsSet(true);
+		Address address = parser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+		assertEquals("Shipping", address.getType());
+		assertEquals("Ellen Adams", address.getName());
+		assertEquals(10999, address.getZip());
+		assertEquals("USA", address.getCountry());
+
+		// Classes with lists are always parsed to the end of their element
+		IceSoapParserImpl<CollectionTypes> listParser = new IceSoapParserImpl<CollectionTypes>(
+				CollectionTypes.class);
+		listParser.setStopWhenFieldsSet(true);
+
+		try {
+			listParser.parse(new ByteArrayInputStream(("<collections><int>1</int><Trailing><Unclosed></Trailing>"
+					+ "</collections>").getBytes()));
+			fail("The broken XML should have been read");
+		} catch (XMLParsingException e) {
+			// Expected
+		}
+	}
+
 	private PipeTest buildPipeTestObject(String value, String rootName, String valueName, String innerObjectName,
 			String innerValueName1, String innerValueName2) throws XMLParsingException {
 		IceSoapParser<PipeTest> parser = new IceSoapParserImpl<PipeTest>(PipeTest.class);
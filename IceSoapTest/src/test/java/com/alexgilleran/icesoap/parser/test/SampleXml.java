@@ -5,6 +5,9 @@ package com.alexgilleran.icesoap.parser.test;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Alex Gilleran
@@ -51,6 +54,27 @@ public class SampleXml {
 				+ "<String xsi:nil=\"true\" />"
 			+ "</NilValues>";
 	
+	private final static String PRIMITIVE_EXTREMES = "<?xml version=\"1.0\"?>"
+			+ "<NilValues xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+				+ "<char>\u00e9</char>"
+				+ "<int>-2147483648</int>"
+				+ "<long>9223372036854775807</long>"
+				+ "<float>-1.5E-3</float>"
+				+ "<double>123456.7891</double>"
+				+ "<boolean>TRUE</boolean>"
+			+ "</NilValues>";
+
+	private final static String MIXED_NIL_PRIMITIVES = "<?xml version=\"1.0\"?>"
+			+ "<NilValues xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+				+ "<char>a</char>"
+				+ "<char xsi:nil=\"true\" />"
+				+ "<int xsi:nil=\"true\" />"
+				+ "<int>7</int>"
+				+ "<long xsi:nil=\"false\">3</long>"
+				+ "<float xsi:nil=\"true\" />"
+				+ "<boolean xsi:nil=\"true\" />"
+			+ "</NilValues>";
+	
 	public final static int TYPE_CONVERSION_VALUE = 3;
 	public final static String CSV_CONVERSION_VALUE_1 = "alpha";
 	public final static String CSV_CONVERSION_VALUE_2 = "beta";
@@ -397,6 +421,18 @@ public class SampleXml {
 		return new ByteArrayInputStream(NIL_VALUES.getBytes());
 	}
 
+	public static InputStream getPrimitiveExtremes() {
+		try {
+			return new ByteArrayInputStream(PRIMITIVE_EXTREMES.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static InputStream getMixedNilPrimitives() {
+		return new ByteArrayInputStream(MIXED_NIL_PRIMITIVES.getBytes());
+	}
+
 	public static InputStream getPurchaseOrder() {
 		return new ByteArrayInputStream(PURCHASE_ORDER.getBytes());
 	}
@@ -428,4 +464,23 @@ public class SampleXml {
 	public static ByteArrayInputStream getPrimitiveObjects() {
 		return new ByteArrayInputStream(PRIMITIVE_OBJECTS.getBytes());
 	}
+
+	/**
+	 * Gets every sample document, against a name for it - for tests and
+	 * benchmarks that run over all of them.
+	 */
+	public static Map<String, InputStream> getAll() {
+		Map<String, InputStream> all = new LinkedHashMap<String, InputStream>();
+		all.put("SingleFieldsWithAttributes", getSingleFieldsWithAttributes());
+		all.put("NilValues", getNilValues());
+		all.put("PurchaseOrder", getPurchaseOrder());
+		all.put("CustomersAndOrders", getCustomersAndOrders());
+		all.put("InvalidList", getInvalidList());
+		all.put("Booleans", getBooleans());
+		all.put("ProcessorTest", getProcessorTest());
+		all.put("ListOfStrings", getListOfStringsXML());
+		all.put("CrappyList", getCrappyList());
+		all.put("PrimitiveObjects", getPrimitiveObjects());
+		return all;
+	}
 }
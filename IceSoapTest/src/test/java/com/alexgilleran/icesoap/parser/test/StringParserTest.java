@@ -0,0 +1,189 @@
+package com.alexgilleran.icesoap.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.CharBuffer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.BooleanParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.DateParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.DoubleParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.FloatParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.IntegerParser;
+import com.alexgilleran.icesoap.parser.impl.stringparsers.LongParser;
+
+/**
+ * Tests that the string parsers give exactly the same results when parsing
+ * straight from a {@link CharSequence} as the standard Java parsing methods do
+ * on a {@link String}.
+ *
+ * @author Alex Gilleran
+ *
+ */
+public class StringParserTest {
+	private static final String[] NUMBERS = { "0", "-0", "7", "-7", "123456789", "-123456789", "2147483647",
+			"-2147483648", "2147483648", "9223372036854775807", "-9223372036854775808", "9223372036854775808",
+			"0.1", "-0.1", ".5", "5.", "12.50", "3.14159", "0.3", "123456.7891", "999999999999999",
+			"9999999999999999", "1e10", "1.5E-3", "+4.5", "+4", " 12", "12 ", "", "-", ".", "1.2.3", "abc",
+			"NaN", "Infinity", "0x10" };
+
+	private static final String[] DATES = { "2012-03-04", "2012-03-04T05:06:07", "2012-03-04T05:06:07Z",
+			"2012-03-04T05:06:07+10:00", "2012-03-04T05:06:07-05:30", "2012-03-04Z", "2012-03-04+10:00",
+			"2012-03-04T05:06:07.123", "2012-03-04T05:06:07.123456Z", "2012-03-04T12:30:00", "2012-03-04T00:30:00",
+			"2012-03-04T13:30:00", "2012-02-30", "2012-13-45", "2011-12-31T23:59:60", "2012-03-04T25:61:61",
+			"0000-00-00", "2012-3-4", "12012-03-04", "2012-03-040", "2012-03-04T05:06:070", "2012-03-04T5:06:07",
+			"2012/03/04", "2012-03-04 05:06:07", "2012-03-04T05:06", "04/03/2012", " 2012-03-04", "", "abc" };
+
+	/** Fields with each of the date formats that are parsed by hand, and one that isn't. */
+	@SuppressWarnings("unused")
+	private static class DateFields {
+		@XMLField(value = "date")
+		private Date date;
+		@XMLField(value = "dateTime", dateFormat = DateParser.XSD_DATE_TIME)
+		private Date dateTime;
+		@XMLField(value = "dateTime12", dateFormat = "yyyy-MM-dd'T'hh:mm:ss")
+		private Date dateTime12;
+		@XMLField(value = "other", dateFormat = "dd/MM/yyyy")
+		private Date other;
+	}
+
+	@Test
+	public void testIntegers() {
+		IntegerParser parser = new IntegerParser();
+
+		for (String number : NUMBERS) {
+			Object expected;
+			try {
+				expected = Integer.parseInt(number);
+			} catch (NumberFormatException e) {
+				expected = NumberFormatException.class;
+			}
+
+			try {
+				assertEquals(number, expected, parser.parseInt(CharBuffer.wrap(number), null));
+			} catch (NumberFormatException e) {
+				assertEquals(number, expected, NumberFormatException.class);
+			}
+		}
+	}
+
+	@Test
+	public void testLongs() {
+		LongParser parser = new LongParser();
+
+		for (String number : NUMBERS) {
+			Object expected;
+			try {
+				expected = Long.parseLong(number);
+			} catch (NumberFormatException e) {
+				expected = NumberFormatException.class;
+			}
+
+			try {
+				assertEquals(number, expected, parser.parseLong(CharBuffer.wrap(number), null));
+			} catch (NumberFormatException e) {
+				assertEquals(number, expected, NumberFormatException.class);
+			}
+		}
+	}
+
+	@Test
+	public void testDoubles() {
+		DoubleParser parser = new DoubleParser();
+
+		for (String number : NUMBERS) {
+			Object expected;
+			try {
+				// Compare bits so that -0.0 and 0.0 are different
+				expected = Double.doubleToRawLongBits(Double.parseDouble(number));
+			} catch (NumberFormatException e) {
+				expected = NumberFormatException.class;
+			}
+
+			try {
+				assertEquals(number, expected,
+						Double.doubleToRawLongBits(parser.parseDouble(CharBuffer.wrap(number), null)));
+			} catch (NumberFormatException e) {
+				assertEquals(number, expected, NumberFormatException.class);
+			}
+		}
+	}
+
+	@Test
+	public void testFloats() {
+		FloatParser parser = new FloatParser();
+
+		for (String number : NUMBERS) {
+			Object expected;
+			try {
+				expected = Float.floatToRawIntBits(Float.parseFloat(number));
+			} catch (NumberFormatException e) {
+				expected = NumberFormatException.class;
+			}
+
+			try {
+				assertEquals(number, expected, Float.floatToRawIntBits(parser.parseFloat(CharBuffer.wrap(number), null)));
+			} catch (NumberFormatException e) {
+				assertEquals(number, expected, NumberFormatException.class);
+			}
+		}
+	}
+
+	@Test
+	public void testBooleans() {
+		BooleanParser parser = new BooleanParser();
+
+		for (String value : new String[] { "true", "TRUE", "True", "false", "1", "yes", "truer", "", "tru" }) {
+			assertEquals(value, Boolean.parseBoolean(value), parser.parseBoolean(CharBuffer.wrap(value), null));
+		}
+	}
+
+	@Test
+	public void testFallbackKeepsException() {
+		try {
+			new IntegerParser().parseInt(CharBuffer.wrap("12a"), null);
+			fail("Expected a NumberFormatException");
+		} catch (NumberFormatException e) {
+			assertEquals(new NumberFormatException("For input string: \"12a\"").getMessage(), e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDates() throws Exception {
+		DateParser parser = new DateParser();
+
+		for (String fieldName : new String[] { "date", "dateTime", "dateTime12", "other" }) {
+			XMLField xmlField = DateFields.class.getDeclaredField(fieldName).getAnnotation(XMLField.class);
+
+			for (String date : DATES) {
+				Object expected;
+				try {
+					expected = new SimpleDateFormat(xmlField.dateFormat()).parse(date);
+				} catch (ParseException e) {
+					expected = ParseException.class;
+				}
+
+				String message = date + " as " + xmlField.dateFormat();
+
+				try {
+					assertEquals(message, expected, parser.parse(CharBuffer.wrap(date), xmlField));
+				} catch (XMLParsingException e) {
+					assertEquals(message, expected, ParseException.class);
+				}
+
+				try {
+					assertEquals(message, expected, parser.parse(date, xmlField));
+				} catch (XMLParsingException e) {
+					assertEquals(message, expected, ParseException.class);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package com.alexgilleran.icesoap.parser.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.alexgilleran.icesoap.exception.XMLParsingException;
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.ScannerBackend;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.ScannerTokenizer;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.StaxBackend;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.XmlPullBackend;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.PurchaseOrder;
+import com.alexgilleran.icesoap.xml.XMLNode;
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+
+/**
+ * Tests that every {@link TokenizerBackend} produces the same events as the
+ * default XmlPull one.
+ */
+public class TokenizerBackendTest {
+	/** The backends to compare with the default. */
+	private static final TokenizerBackend[] BACKENDS = { new StaxBackend(), new ScannerBackend() };
+
+	/** A document with the less common bits of XML the backends handle. */
+	private static final String AWKWARD_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+			+ "<!-- comment before the root -->\r\n"
+			+ "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:xsi=\""
+			+ XMLNode.NS_URI_XSI + "\">"
+			+ "<soap:Body><a attr='single &amp; quoted' other=\"x&#65;&#x42;\">one &lt; two<!-- hidden -->"
+			+ " &gt; three<![CDATA[ <four> & ]]>five\r\nsix</a>"
+			+ "<?pi ignored?><empty/><empty2 a=\"1\" /><nil xsi:nil=\"true\"/><unicode>é中</unicode>"
+			+ "</soap:Body></soap:Envelope>\n";
+
+	@Test
+	public void testSampleDocuments() throws Exception {
+		for (TokenizerBackend backend : BACKENDS) {
+			for (Map.Entry<String, InputStream> expected : SampleXml.getAll().entrySet()) {
+				InputStream actual = SampleXml.getAll().get(expected.getKey());
+
+				assertEquals(backend + " " + expected.getKey(), dump(XmlPullBackend.getDefault(), expected.getValue()),
+						dump(backend, actual));
+			}
+		}
+	}
+
+	@Test
+	public void testAwkwardDocument() throws Exception {
+		String expected = dump(XmlPullBackend.getDefault(), new ByteArrayInputStream(AWKWARD_XML.getBytes("UTF-8")));
+
+		for (TokenizerBackend backend : BACKENDS) {
+			assertEquals(backend.toString(), expected,
+					dump(backend, new ByteArrayInputStream(AWKWARD_XML.getBytes("UTF-8"))));
+		}
+	}
+
+	@Test
+	public void testLargeDocument() throws Exception {
+		// Bigger than the backends' buffers, with text and tags across the
+		// ends of them
+		StringBuilder xml = new StringBuilder("<list xmlns:x=\"urn:x\">");
+		StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			xml.append("<x:item id=\"").append(i).append("\" note=\"a &amp; b\">\u00e9l\u00e9ment ").append(i)
+					.append(" &lt;&#x4E2D;&gt;</x:item>\n");
+			longText.append("\u4E2D\u6587 text ");
+		}
+		xml.append("<long>").append(longText).append("</long></list>");
+
+		byte[] bytes = xml.toString().getBytes("UTF-8");
+		String expected = dump(XmlPullBackend.getDefault(), new ByteArrayInputStream(bytes));
+
+		for (TokenizerBackend backend : BACKENDS) {
+			assertEquals(backend.toString(), expected, dump(backend, new ByteArrayInputStream(bytes)));
+		}
+	}
+
+	@Test
+	public void testOtherEncodings() throws Exception {
+		String body = "<a b=\"\u00e9\u00e8\">caf\u00e9 \u00fc\u00f1\u00ee</a>";
+		String latin = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" + body;
+		String utf16 = "\uFEFF<?xml version=\"1.0\" encoding=\"UTF-16\"?>" + body;
+		String expected = dump(XmlPullBackend.getDefault(), new ByteArrayInputStream(body.getBytes("UTF-8")));
+
+		for (TokenizerBackend backend : BACKENDS) {
+			assertEquals(backend + " ISO-8859-1", expected,
+					dump(backend, new ByteArrayInputStream(latin.getBytes("ISO-8859-1"))));
+			assertEquals(backend + " UTF-16", expected,
+					dump(backend, new ByteArrayInputStream(utf16.getBytes("UTF-16BE"))));
+		}
+	}
+
+	@Test
+	public void testMalformedDocuments() throws Exception {
+		String[] documents = { "<a><b></a></b>", "<a x=\"1\" x=\"2\"/>",
+				"<a xmlns:p=\"urn:p\" xmlns:p=\"urn:q\"/>", "<a><p:b/></a>", "<a p:x=\"1\"/>",
+				"<a/><b/>", "<a></a><b></a>", "<a/>text", "text<a/>", "<a>one ]]> two</a>",
+				"<a>&unknown;</a>", "<a x=1/>", "<a>" };
+
+		for (String xml : documents) {
+			// Make sure it's actually bad
+			assertMalformed(XmlPullBackend.getDefault(), xml);
+
+			for (TokenizerBackend backend : BACKENDS) {
+				assertMalformed(backend, xml);
+			}
+		}
+
+		// Whatever's allowed still is
+		String xml = "<?xml version=\"1.0\"?>\n<a xmlns:p=\"urn:p\" x=\"1\" p:x=\"2\">]] ]> ]</a>\n<!-- end -->\n";
+		String expected = dump(XmlPullBackend.getDefault(), new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+		for (TokenizerBackend backend : BACKENDS) {
+			assertEquals(backend.toString(), expected, dump(backend, new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+		}
+	}
+
+	@Test
+	public void testSupplementaryChars() throws Exception {
+		String xml = "<a b=\"&#x1F600;\">\uD83D\uDE00&#128512;</a>";
+
+		for (TokenizerBackend backend : BACKENDS) {
+			XmlTokenizer tokenizer = backend.newTokenizer();
+			tokenizer.setInput(new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+
+			assertEquals(XmlPullParser.START_TAG, tokenizer.next());
+			assertEquals("\uD83D\uDE00", tokenizer.getAttributeValue(0));
+			assertEquals(XmlPullParser.TEXT, tokenizer.next());
+			assertEquals(backend.toString(), "\uD83D\uDE00\uD83D\uDE00", tokenizer.getText());
+		}
+	}
+
+	@Test
+	public void testNamesInterned() throws Exception {
+		ScannerBackend backend = new ScannerBackend();
+		XmlTokenizer first = backend.newTokenizer();
+		XmlTokenizer second = backend.newTokenizer();
+
+		first.setInput(SampleXml.getPurchaseOrder(), null);
+		second.setInput(SampleXml.getPurchaseOrder(), null);
+
+		while (first.next() != XmlPullParser.END_DOCUMENT) {
+			second.next();
+
+			if (first.getEventType() == XmlPullParser.START_TAG) {
+				assertSame(first.getName(), second.getName());
+			}
+		}
+	}
+
+	@Test
+	public void testNameIds() throws Exception {
+		String xml = "<x:nameIdTestElement xmlns:x=\"urn:x\" nameIdTestAttribute=\"1\">"
+				+ "<nameIdTestLater/></x:nameIdTestElement>";
+		SymbolTable symbols = SymbolTable.getInstance();
+		int elementId = symbols.register("nameIdTestElement");
+		int attributeId = symbols.register("nameIdTestAttribute");
+		XmlTokenizer[] tokenizers = { XmlPullBackend.getDefault().newTokenizer(), new StaxBackend().newTokenizer(),
+				new ScannerBackend().newTokenizer() };
+
+		for (XmlTokenizer tokenizer : tokenizers) {
+			tokenizer.setInput(new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+
+			assertEquals(XmlPullParser.START_TAG, tokenizer.next());
+			assertEquals(elementId, tokenizer.getNameId());
+			assertEquals(attributeId, tokenizer.getAttributeNameId(0));
+			assertEquals(XmlPullParser.START_TAG, tokenizer.next());
+			assertEquals(symbols.lookup("nameIdTestLater"), tokenizer.getNameId());
+			assertEquals(XmlPullParser.END_TAG, tokenizer.next());
+			assertEquals(XmlPullParser.END_TAG, tokenizer.next());
+			assertEquals(elementId, tokenizer.getNameId());
+			assertEquals(XmlPullParser.END_DOCUMENT, tokenizer.next());
+			assertEquals(SymbolTable.UNKNOWN, tokenizer.getNameId());
+		}
+
+		// A name registered after a tokenizer has seen it still gets its ID
+		int laterId = symbols.register("nameIdTestLater");
+
+		for (XmlTokenizer tokenizer : tokenizers) {
+			tokenizer.setInput(new ByteArrayInputStream(xml.getBytes("UTF-8")), null);
+
+			tokenizer.next();
+			assertEquals(XmlPullParser.START_TAG, tokenizer.next());
+			assertEquals(laterId, tokenizer.getNameId());
+		}
+	}
+
+	@Test
+	public void testScannerTagPositions() throws Exception {
+		String xml = "\uFEFF<?xml version=\"1.0\"?><a x=\"1\">t\u00e9xt<b/><!-- c --></a >";
+		byte[] bytes = xml.getBytes("UTF-8");
+		ScannerTokenizer tokenizer = new ScannerTokenizer();
+		tokenizer.setInput(new ByteArrayInputStream(bytes), null);
+		StringBuilder tags = new StringBuilder();
+
+		while (tokenizer.next() != XmlPullParser.END_DOCUMENT) {
+			if (tokenizer.getEventType() != XmlPullParser.TEXT) {
+				int start = (int) tokenizer.getTagStart();
+				tags.append('[').append(new String(bytes, start, (int) tokenizer.getTagEnd() - start, "UTF-8"))
+						.append(']');
+			}
+		}
+
+		assertFalse(tokenizer.isReencoded());
+		assertEquals("[<a x=\"1\">][<b/>][][</a >]", tags.toString());
+
+		tokenizer.setInput(new ByteArrayInputStream(("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a/>")
+				.getBytes("ISO-8859-1")), null);
+		assertTrue(tokenizer.isReencoded());
+	}
+
+	@Test
+	public void testParseWithBackend() throws XMLParsingException {
+		PurchaseOrder expected = new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class).parse(SampleXml
+				.getPurchaseOrder());
+
+		for (TokenizerBackend backend : BACKENDS) {
+			IceSoapParserImpl<PurchaseOrder> parser = new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class);
+			parser.setTokenizerBackend(backend);
+
+			PurchaseOrder actual = parser.parse(SampleXml.getPurchaseOrder());
+
+			assertEquals(expected.getPurchaseOrderNumber(), actual.getPurchaseOrderNumber());
+			assertEquals(expected.getOrderDate(), actual.getOrderDate());
+			assertEquals(expected.getDeliveryNotes(), actual.getDeliveryNotes());
+			assertEquals(expected.getItem872aa().getPartNumber(), actual.getItem872aa().getPartNumber());
+		}
+	}
+
+	/**
+	 * Checks that a backend throws an exception for a document.
+	 */
+	private void assertMalformed(TokenizerBackend backend, String xml) {
+		try {
+			dump(backend, new ByteArrayInputStream(xml.getBytes("UTF-8")));
+			fail(backend + " accepted " + xml);
+		} catch (XmlPullParserException e) {
+			// Expected
+		} catch (IOException e) {
+			// XmlPull reports a document that ends too soon this way
+		}
+	}
+
+	/**
+	 * Writes out every event a backend produces for a document.
+	 */
+	private String dump(TokenizerBackend backend, InputStream xml) throws XmlPullParserException, IOException {
+		XmlTokenizer tokenizer = backend.newTokenizer();
+		tokenizer.setInput(xml, null);
+		StringBuilder events = new StringBuilder();
+		int[] holder = new int[2];
+
+		while (tokenizer.next() != XmlPullParser.END_DOCUMENT) {
+			events.append(tokenizer.getEventType()).append(' ').append(tokenizer.getDepth()).append(' ');
+
+			switch (tokenizer.getEventType()) {
+			case XmlPullParser.START_TAG:
+				events.append(tokenizer.getName());
+				for (int i = 0; i < tokenizer.getAttributeCount(); i++) {
+					events.append(' ').append(tokenizer.getAttributeName(i)).append('=')
+							.append(tokenizer.getAttributeValue(i));
+				}
+				events.append(" nil=").append(tokenizer.getAttributeValue(XMLNode.NS_URI_XSI, XMLNode.XSI_NIL_NAME));
+				break;
+			case XmlPullParser.END_TAG:
+				events.append(tokenizer.getName());
+				break;
+			case XmlPullParser.TEXT:
+				char[] chars = tokenizer.getTextCharacters(holder);
+				events.append('[').append(tokenizer.getText()).append("][")
+						.append(new String(chars, holder[0], holder[1])).append(']');
+				break;
+			}
+
+			events.append('\n');
+		}
+
+		return events.toString();
+	}
+}
@@ -0,0 +1,97 @@
+package com.alexgilleran.icesoap.parser.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import com.alexgilleran.icesoap.parser.TokenizerBackend;
+import com.alexgilleran.icesoap.parser.XmlTokenizer;
+import com.alexgilleran.icesoap.parser.impl.IceSoapParserImpl;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.ScannerBackend;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.StaxBackend;
+import com.alexgilleran.icesoap.parser.impl.tokenizers.XmlPullBackend;
+import com.alexgilleran.icesoap.parser.test.xmlclasses.PurchaseOrder;
+
+/**
+ * Rough comparison of the {@link TokenizerBackend}s - times reading every
+ * event of the sample documents, and a full parse of a purchase order, with
+ * each backend. Run it as a main class; it isn't a test.
+ */
+public class TokenizerBenchmark {
+	private static final int WARMUP = 2000;
+	private static final int RUNS = 10000;
+
+	public static void main(String[] args) throws Exception {
+		TokenizerBackend[] backends = { XmlPullBackend.getDefault(), new StaxBackend(), ScannerBackend.getDefault() };
+
+		List<byte[]> documents = new ArrayList<byte[]>();
+		for (Map.Entry<String, InputStream> document : SampleXml.getAll().entrySet()) {
+			if (!document.getKey().equals("InvalidList")) {
+				documents.add(read(document.getValue()));
+			}
+		}
+		byte[] purchaseOrder = read(SampleXml.getPurchaseOrder());
+
+		System.out.println(String.format("%-60s %12s %12s", "Backend", "events (us)", "parse (us)"));
+
+		for (TokenizerBackend backend : backends) {
+			IceSoapParserImpl<PurchaseOrder> parser = new IceSoapParserImpl<PurchaseOrder>(PurchaseOrder.class);
+			parser.setTokenizerBackend(backend);
+
+			for (int i = 0; i < WARMUP; i++) {
+				drain(backend, documents);
+				parser.parse(new ByteArrayInputStream(purchaseOrder));
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++) {
+				drain(backend, documents);
+			}
+			long events = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++) {
+				parser.parse(new ByteArrayInputStream(purchaseOrder));
+			}
+			long parse = System.nanoTime() - start;
+
+			System.out.println(String.format("%-60s %12.2f %12.2f", backend, events / 1000d / RUNS, parse / 1000d
+					/ RUNS));
+		}
+	}
+
+	/**
+	 * Reads every event of every document.
+	 */
+	private static void drain(TokenizerBackend backend, List<byte[]> documents) throws Exception {
+		int[] holder = new int[2];
+
+		for (byte[] document : documents) {
+			XmlTokenizer tokenizer = backend.newTokenizer();
+			tokenizer.setInput(new ByteArrayInputStream(document), null);
+
+			while (tokenizer.next() != XmlPullParser.END_DOCUMENT) {
+				if (tokenizer.getEventType() == XmlPullParser.TEXT) {
+					tokenizer.getTextCharacters(holder);
+				}
+			}
+		}
+	}
+
+	private static byte[] read(InputStream stream) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+
+		while ((read = stream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+
+		return out.toByteArray();
+	}
+}
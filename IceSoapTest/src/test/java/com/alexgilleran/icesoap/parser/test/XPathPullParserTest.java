@@ -4,6 +4,9 @@
 package com.alexgilleran.icesoap.parser.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
@@ -37,6 +40,125 @@ public class XPathPullParserTest {
 		XPathPullParser parser = new XPathPullParserImpl();
 		parser.setInput(SampleXml.getPurchaseOrder(), null);
 
+		assertPurchaseOrder(parser);
+	}
+
+	/**
+	 * Same as {@link #testWithPurchaseOrder()}, but with a parser that reuses
+	 * its elements.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testWithPurchaseOrderReusingElements()
+			throws XmlPullParserException, XMLParsingException {
+		XPathPullParser parser = new XPathPullParserImpl(true);
+		parser.setInput(SampleXml.getPurchaseOrder(), null);
+
+		assertPurchaseOrder(parser);
+
+		// Elements at the same depth should be the same object
+		parser.setInput(SampleXml.getPurchaseOrder(), null);
+		parser.next();
+		XPathElement purchaseOrder = parser.getCurrentElement();
+		parser.next();
+		parser.next();
+		parser.next();
+		XPathElement shippingAddress = parser.getCurrentElement();
+		assertSame(purchaseOrder, shippingAddress.getPreviousElement());
+
+		while (!"Billing".equals(parser.getCurrentElement().getPredicate(
+				"Type"))) {
+			parser.next();
+		}
+		assertSame(shippingAddress, parser.getCurrentElement());
+	}
+
+	/**
+	 * Tests that only the requested attributes are captured as predicates, but
+	 * all attributes are still reported as events.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testCapturedPredicates() throws XmlPullParserException,
+			XMLParsingException {
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setCapturedPredicates(Collections.singleton("OrderDate"));
+		parser.setInput(SampleXml.getPurchaseOrder(), null);
+
+		XPathElement expectedXPathElement = new SingleSlashXPathElement(
+				"PurchaseOrder", null);
+		expectedXPathElement.addPredicate("OrderDate", "1999-10-20");
+
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertAttribute(parser, expectedXPathElement, "PurchaseOrderNumber",
+				"99503");
+		assertAttribute(parser, expectedXPathElement, "OrderDate", "1999-10-20");
+
+		parser.setCapturedPredicates(Collections.<String> emptySet());
+
+		expectedXPathElement = new SingleSlashXPathElement("Address",
+				expectedXPathElement);
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertAttribute(parser, expectedXPathElement, "Type", "Shipping");
+	}
+
+	/**
+	 * Tests that skipping an element leaves the parser at its end, with the
+	 * xpath intact.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws XMLParsingException
+	 */
+	@Test
+	public void testSkipElement() throws XmlPullParserException,
+			XMLParsingException {
+		XPathPullParser parser = new XPathPullParserImpl();
+		parser.setInput(SampleXml.getPurchaseOrder(), null);
+
+		XPathElement expectedXPathElement = new SingleSlashXPathElement(
+				"PurchaseOrder", null);
+		expectedXPathElement.addPredicate("PurchaseOrderNumber", "99503");
+		expectedXPathElement.addPredicate("OrderDate", "1999-10-20");
+
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		assertAttribute(parser, expectedXPathElement, "PurchaseOrderNumber",
+				"99503");
+
+		// Skip the shipping address, including its attribute
+		assertEquals(XPathPullParser.ATTRIBUTE, parser.next());
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		parser.skipElement();
+
+		XPathElement addressXPathElement = new SingleSlashXPathElement(
+				"Address", expectedXPathElement);
+		addressXPathElement.addPredicate("Type", "Shipping");
+		assertEquals(XPathPullParser.END_TAG, parser.getEventType());
+		assertEquals(addressXPathElement, parser.getCurrentElement());
+
+		// The billing address should carry on as normal
+		assertEquals(XPathPullParser.START_TAG, parser.next());
+		addressXPathElement.addPredicate("Type", "Billing");
+		assertEquals(addressXPathElement, parser.getCurrentElement());
+		assertAttribute(parser, addressXPathElement, "Type", "Billing");
+		assertTextElement(parser, addressXPathElement, "Name", "Tai Yee");
+	}
+
+	/**
+	 * Moves the parser through the purchase order sample, checking the elements
+	 * it reports along the way.
+	 * 
+	 * @param parser
+	 *            The parser, with the purchase order as its input.
+	 * @throws XMLParsingException
+	 */
+	private void assertPurchaseOrder(XPathPullParser parser)
+			throws XMLParsingException {
 		// Purchase Order Node (root)
 		XPathElement expectedXPathElement = new SingleSlashXPathElement(
 				"PurchaseOrder", null);
@@ -44,7 +166,7 @@ public class XPathPullParserTest {
 		expectedXPathElement.addPredicate("OrderDate", "1999-10-20");
 
 		assertEquals(XPathPullParser.START_TAG, parser.next());
-		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertEquals(expectedXPathElement, current(parser));
 
 		// Purchase Order "PurchaseOrderNumber" Attribute
 		assertAttribute(parser, expectedXPathElement, "PurchaseOrderNumber",
@@ -60,7 +182,7 @@ public class XPathPullParserTest {
 
 		// Shipping Address
 		assertEquals(XPathPullParser.START_TAG, parser.next());
-		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertEquals(expectedXPathElement, current(parser));
 
 		assertAttribute(parser, expectedXPathElement, "Type", "Shipping");
 		assertTextElement(parser, expectedXPathElement, "Name", "Ellen Adams");
@@ -72,12 +194,12 @@ public class XPathPullParserTest {
 		assertTextElement(parser, expectedXPathElement, "Country", "USA");
 
 		assertEquals(XPathPullParser.END_TAG, parser.next());
-		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertEquals(expectedXPathElement, current(parser));
 
 		assertEquals(XPathPullParser.START_TAG, parser.next());
 		// Adding another type predicate will override the previous one
 		expectedXPathElement.addPredicate("Type", "Billing");
-		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertEquals(expectedXPathElement, current(parser));
 
 		// Billing Address
 		assertAttribute(parser, expectedXPathElement, "Type", "Billing");
@@ -90,7 +212,7 @@ public class XPathPullParserTest {
 		assertTextElement(parser, expectedXPathElement, "Country", "USA");
 
 		assertEquals(XPathPullParser.END_TAG, parser.next());
-		assertEquals(expectedXPathElement, parser.getCurrentElement());
+		assertEquals(expectedXPathElement, current(parser));
 
 		expectedXPathElement = expectedXPathElement.getPreviousElement();
 
@@ -98,6 +220,18 @@ public class XPathPullParserTest {
 				"Please leave packages in shed by driveway.");
 	}
 
+	/**
+	 * Gets a copy of the parser's current element, so that it can be compared
+	 * in the same way whether the parser reuses its elements or not.
+	 * 
+	 * @param parser
+	 *            The parser
+	 * @return A copy of the current element.
+	 */
+	private XPathElement current(XPathPullParser parser) {
+		return parser.getCurrentElement().clone();
+	}
+
 	/**
 	 * Moves the parser into a subsequent text element and asserts that its name
 	 * and value are correct
@@ -118,9 +252,10 @@ public class XPathPullParserTest {
 		assertEquals(XPathPullParser.START_TAG, parser.next());
 		XPathElement textXPath = new SingleSlashXPathElement(name,
 				rootXPathElement);
-		assertEquals(textXPath, parser.getCurrentElement());
+		assertEquals(textXPath, current(parser));
 		assertEquals(XPathPullParser.TEXT, parser.next());
 		assertEquals(parser.getCurrentValue(), value);
+		assertEquals(value, parser.getCurrentValueChars().toString());
 		assertEquals(XPathPullParser.END_TAG, parser.next());
 	}
 
@@ -142,7 +277,8 @@ public class XPathPullParserTest {
 			String name, String value) throws XMLParsingException {
 		assertEquals(XPathPullParser.ATTRIBUTE, parser.next());
 		assertEquals(new AttributeXPathElement(new SingleSlashXPathElement(
-				name, node)), parser.getCurrentElement());
+				name, node)), current(parser));
 		assertEquals(value, parser.getCurrentValue());
+		assertEquals(value, parser.getCurrentValueChars().toString());
 	}
 }
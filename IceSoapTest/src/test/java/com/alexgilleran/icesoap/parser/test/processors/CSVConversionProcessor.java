@@ -1,7 +1,10 @@
 package com.alexgilleran.icesoap.parser.test.processors;
 
 import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope.Scope;
 
+@ProcessorScope(Scope.SHARED)
 public class CSVConversionProcessor implements Processor<String[]> {
 
 	@Override
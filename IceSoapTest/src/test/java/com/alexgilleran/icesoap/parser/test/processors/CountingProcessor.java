@@ -0,0 +1,22 @@
+package com.alexgilleran.icesoap.parser.test.processors;
+
+import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope.Scope;
+
+/**
+ * Ignores its input and returns the number of values it's processed - used to
+ * check that one instance is used for a whole parse.
+ * 
+ * @author Alex Gilleran
+ * 
+ */
+@ProcessorScope(Scope.PARSE)
+public class CountingProcessor implements Processor<Integer> {
+	private int count = 0;
+
+	@Override
+	public Integer process(String inputValue) {
+		return ++count;
+	}
+}
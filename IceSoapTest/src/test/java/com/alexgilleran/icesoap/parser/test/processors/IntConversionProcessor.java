@@ -1,6 +1,8 @@
 package com.alexgilleran.icesoap.parser.test.processors;
 
 import com.alexgilleran.icesoap.parser.processor.Processor;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope;
+import com.alexgilleran.icesoap.parser.processor.ProcessorScope.Scope;
 
 /**
  * Converts from an int to a string
@@ -8,6 +10,7 @@ import com.alexgilleran.icesoap.parser.processor.Processor;
  * @author Alex Gilleran
  * 
  */
+@ProcessorScope(Scope.SHARED)
 public class IntConversionProcessor implements Processor<Integer> {
 
 	@Override
@@ -0,0 +1,61 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+/**
+ * The same kinds of fields twice over - the annotation processor generates
+ * setters for the package-private ones when the tests are compiled, and the
+ * private ones are left to reflection.
+ */
+@XMLObject("/accessors")
+public class AccessorFields {
+	@XMLField("name")
+	String name;
+	@XMLField("names/name")
+	List<String> names;
+	@XMLField("existing/name")
+	List<String> existing = new ArrayList<String>(Arrays.asList("z"));
+
+	@XMLField("reflectedName")
+	private String reflectedName;
+	@XMLField("reflectedNames/name")
+	private List<String> reflectedNames;
+	@XMLField("reflectedExisting/name")
+	private List<String> reflectedExisting = new ArrayList<String>(Arrays.asList("z"));
+	@XMLField("reflectedSet/name")
+	private Set<String> reflectedSet;
+
+	public String getName() {
+		return name;
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	public List<String> getExisting() {
+		return existing;
+	}
+
+	public String getReflectedName() {
+		return reflectedName;
+	}
+
+	public List<String> getReflectedNames() {
+		return reflectedNames;
+	}
+
+	public List<String> getReflectedExisting() {
+		return reflectedExisting;
+	}
+
+	public Set<String> getReflectedSet() {
+		return reflectedSet;
+	}
+}
@@ -0,0 +1,66 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.util.Set;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+/**
+ * Class with array and set fields, for testing that every matching element
+ * gets added.
+ */
+@XMLObject("/collections")
+public class CollectionTypes {
+	@XMLObject
+	public static class Entry {
+		@XMLField("@key")
+		private String key;
+		@XMLField
+		private String value;
+
+		public String getKey() {
+			return key;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	@XMLField(value = "ints/int", capacity = 2)
+	private int[] ints;
+	@XMLField("doubles/double")
+	private double[] doubles;
+	@XMLField("booleans/boolean")
+	private boolean[] booleans;
+	@XMLField("strings/string")
+	private String[] strings;
+	@XMLField("entries/entry")
+	private Entry[] entries;
+	@XMLField("tags/tag")
+	private Set<String> tags;
+
+	public int[] getInts() {
+		return ints;
+	}
+
+	public double[] getDoubles() {
+		return doubles;
+	}
+
+	public boolean[] getBooleans() {
+		return booleans;
+	}
+
+	public String[] getStrings() {
+		return strings;
+	}
+
+	public Entry[] getEntries() {
+		return entries;
+	}
+
+	public Set<String> getTags() {
+		return tags;
+	}
+}
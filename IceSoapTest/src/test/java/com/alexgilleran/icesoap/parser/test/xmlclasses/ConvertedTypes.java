@@ -0,0 +1,69 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.UUID;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+/**
+ * Class with fields of the less common types that have converters, and a type
+ * that needs a converter registered for it.
+ */
+@XMLObject("/converted")
+public class ConvertedTypes {
+	public enum Status {
+		ACTIVE, SUSPENDED
+	}
+
+	/** A type that has no built-in converter. */
+	public static class Code {
+		private final String value;
+
+		public Code(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	@XMLField("status")
+	private Status status;
+	@XMLField("id")
+	private UUID id;
+	@XMLField("big")
+	private BigInteger big;
+	@XMLField("data")
+	private byte[] data;
+	@XMLField("numbers/number")
+	private List<Integer> numbers;
+	@XMLField("code")
+	private Code code;
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+	public BigInteger getBig() {
+		return big;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public List<Integer> getNumbers() {
+		return numbers;
+	}
+
+	public Code getCode() {
+		return code;
+	}
+}
@@ -0,0 +1,32 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.util.List;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+/**
+ * Class that the annotation processor generates a binder for when the tests
+ * are compiled - the private field is left to reflection.
+ */
+@XMLObject("/generated")
+public class GeneratedBinding {
+	@XMLField("value")
+	int value;
+	@XMLField("names/name")
+	List<String> names;
+	@XMLField("reflected")
+	private String reflected;
+
+	public int getValue() {
+		return value;
+	}
+
+	public List<String> getNames() {
+		return names;
+	}
+
+	public String getReflected() {
+		return reflected;
+	}
+}
@@ -0,0 +1,54 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+
+/**
+ * Primitive fields that start off with values other than their defaults, so
+ * it's possible to tell whether they've been set.
+ */
+@XMLObject("//NilValues")
+public class PrimitiveDefaults {
+	@XMLField("char")
+	char charValue = 'x';
+
+	@XMLField("int")
+	int intValue = 9;
+
+	@XMLField("long")
+	long longValue = 9;
+
+	@XMLField("float")
+	float floatValue = 9;
+
+	@XMLField("double")
+	double doubleValue = 9;
+
+	@XMLField("boolean")
+	boolean booleanValue = true;
+
+	public char getCharValue() {
+		return charValue;
+	}
+
+	public int getIntValue() {
+		return intValue;
+	}
+
+	public long getLongValue() {
+		return longValue;
+	}
+
+	public float getFloatValue() {
+		return floatValue;
+	}
+
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+	public boolean isBooleanValue() {
+		return booleanValue;
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.alexgilleran.icesoap.parser.test.xmlclasses;
+
+import java.util.List;
+
+import com.alexgilleran.icesoap.annotation.XMLField;
+import com.alexgilleran.icesoap.annotation.XMLObject;
+import com.alexgilleran.icesoap.parser.test.processors.CountingProcessor;
+
+@XMLObject("//ScopedProcessorTest")
+public class ScopedProcessorTest {
+	@XMLField(value = "Count", processor = CountingProcessor.class)
+	private List<Integer> counts;
+
+	@XMLField(value = "Inner/Count", processor = CountingProcessor.class)
+	private Integer innerCount;
+
+	public List<Integer> getCounts() {
+		return counts;
+	}
+
+	public Integer getInnerCount() {
+		return innerCount;
+	}
+}
@@ -18,6 +18,7 @@ import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HttpContext;
 import org.junit.Assert;
@@ -26,12 +27,18 @@ import org.junit.Test;
 
 import com.alexgilleran.icesoap.envelope.SOAPEnvelope;
 import com.alexgilleran.icesoap.envelope.impl.BaseSOAP11Envelope;
+import com.alexgilleran.icesoap.request.CompletionPolicy;
 import com.alexgilleran.icesoap.request.SOAPRequester;
 import com.alexgilleran.icesoap.request.impl.ApacheSOAPRequester;
+import com.alexgilleran.icesoap.request.impl.Response;
 
 public class ApacheSOAPRequesterTest {
 	private String encoding;
 	private SOAPEnvelope envelope;
+	/** The entity to respond with, or null for a mock one. */
+	private TrackingEntity responseEntity;
+	/** The last request posted. */
+	private HttpPost lastPost;
 
 	@Test
 	public void testUtf8Encoding() throws ClientProtocolException, IOException {
@@ -49,6 +56,57 @@ public class ApacheSOAPRequesterTest {
 		requester.doSoapRequest(envelope, "http://target.com");
 	}
 
+	@Test
+	public void testDrainOnRelease() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		responseEntity = new TrackingEntity();
+
+		Response response = new TestApacheSOAPRequester().doSoapRequest(envelope, "http://target.com");
+		response.release();
+
+		Assert.assertTrue(responseEntity.consumed);
+		Assert.assertFalse(lastPost.isAborted());
+	}
+
+	@Test
+	public void testAbortOnRelease() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		responseEntity = new TrackingEntity();
+
+		ApacheSOAPRequester requester = new TestApacheSOAPRequester();
+		requester.setCompletionPolicy(CompletionPolicy.ABORT);
+		Response response = requester.doSoapRequest(envelope, "http://target.com");
+		response.getData().read();
+		response.release();
+
+		Assert.assertFalse(responseEntity.consumed);
+		Assert.assertTrue(lastPost.isAborted());
+	}
+
+	@Test
+	public void testNoAbortWhenFullyRead() throws IOException {
+		encoding = "UTF-8";
+		envelope = buildDifficultEnvelope(encoding);
+		responseEntity = new TrackingEntity();
+
+		ApacheSOAPRequester requester = new TestApacheSOAPRequester();
+		requester.setCompletionPolicy(CompletionPolicy.ABORT);
+		Response response = requester.doSoapRequest(envelope, "http://target.com");
+
+		// Read up to the content length, without hitting the end
+		InputStream data = response.getData();
+		for (int i = 0; i < responseEntity.getContentLength(); i++) {
+			data.read();
+		}
+		response.release();
+
+		// Nothing was left, so the connection is kept
+		Assert.assertTrue(responseEntity.consumed);
+		Assert.assertFalse(lastPost.isAborted());
+	}
+
 	private SOAPEnvelope buildDifficultEnvelope(String encoding) {
 		SOAPEnvelope env = new BaseSOAP11Envelope();
 		env.setEncoding(encoding);
@@ -57,6 +115,20 @@ public class ApacheSOAPRequesterTest {
 		return env;
 	}
 
+	/** Records whether the rest of its content was drained. */
+	private static class TrackingEntity extends ByteArrayEntity {
+		private boolean consumed = false;
+
+		public TrackingEntity() {
+			super("<Envelope/>".getBytes());
+		}
+
+		@Override
+		public void consumeContent() throws IOException {
+			consumed = true;
+		}
+	}
+
 	private class TestApacheSOAPRequester extends ApacheSOAPRequester {
 		@Override
 		protected HttpClient buildHttpClient() {
@@ -76,6 +148,7 @@ public class ApacheSOAPRequesterTest {
 		@Override
 		public HttpResponse execute(HttpUriRequest httpUriRequest) throws IOException, ClientProtocolException {
 			HttpPost httpPost = (HttpPost) httpUriRequest;
+			lastPost = httpPost;
 
 			Assert.assertEquals("text/xml; charset=" + ApacheSOAPRequesterTest.this.encoding,
 					httpPost.getHeaders(ApacheSOAPRequester.CONTENT_TYPE_LABEL)[0].getValue());
@@ -95,7 +168,7 @@ public class ApacheSOAPRequesterTest {
 			HttpEntity mockEntity = createMock(HttpEntity.class);
 			StatusLine statusLine = createMock(StatusLine.class);
 
-			expect(mockResponse.getEntity()).andReturn(mockEntity);
+			expect(mockResponse.getEntity()).andReturn(responseEntity == null ? mockEntity : responseEntity);
 			expect(mockEntity.isRepeatable()).andReturn(false);
 			expect(mockEntity.getContent()).andReturn(is);
 			expect(mockEntity.getContentLength()).andReturn(0l);
@@ -7,9 +7,14 @@ import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -230,4 +235,55 @@ public class RequestTest extends BaseRequestTest<Response> {
 		
 		request.execute();
 	}
+
+	/**
+	 * Ensures the result is delivered before the response is released, so
+	 * observers don't wait for the rest of it to be drained.
+	 */
+	@Test
+	public void testResultDeliveredBeforeRelease() throws IOException, InterruptedException {
+		final CountDownLatch delivered = new CountDownLatch(1);
+		final CountDownLatch released = new CountDownLatch(1);
+		final AtomicBoolean deliveredFirst = new AtomicBoolean();
+
+		InputStream data = SampleResponse.getSingleResponse();
+		com.alexgilleran.icesoap.request.impl.Response slowResponse = new com.alexgilleran.icesoap.request.impl.Response(
+				data, 200) {
+			@Override
+			public void release() throws IOException {
+				try {
+					// Stands in for draining a long response - if this holds
+					// up the result, it'll never be delivered in time
+					deliveredFirst.set(delivered.await(5, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					released.countDown();
+				}
+			}
+		};
+
+		SOAPRequester mockRequester = createMock(SOAPRequester.class);
+		expect(mockRequester.doSoapRequest(getDummyEnvelope(), DUMMY_URL, SOAP_ACTION)).andReturn(slowResponse);
+		replay(mockRequester);
+
+		SOAP11Request<Response> request = new RequestFactoryImpl(mockRequester).buildRequest(DUMMY_URL,
+				getDummyEnvelope(), SOAP_ACTION, Response.class);
+		request.registerObserver(new SOAP11Observer<Response>() {
+			@Override
+			public void onCompletion(Request<Response, SOAP11Fault> request) {
+				delivered.countDown();
+			}
+
+			@Override
+			public void onException(Request<Response, SOAP11Fault> request, SOAPException e) {
+			}
+		});
+
+		request.execute();
+
+		assertTrue(released.await(10, TimeUnit.SECONDS));
+		assertTrue(deliveredFirst.get());
+		assertEquals(expectedResponse, request.getResult());
+	}
 }
@@ -0,0 +1,101 @@
+package com.alexgilleran.icesoap.xpath.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.exception.XPathParsingException;
+import com.alexgilleran.icesoap.xpath.XPathFactory;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.CompiledXPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
+
+public class CompiledXPathElementTest extends XPathTest {
+	@Test
+	public void testCompileWithStrings() throws XPathParsingException {
+		for (String xpathString : getTestXPaths()) {
+			assertEquals(xpathString, compile(xpathString).toString());
+			testAgainstSelf(xpathString);
+		}
+	}
+
+	@Test
+	public void testOf() throws XPathParsingException {
+		XPathElement mutable = new SingleSlashXPathElement("xpath2", new SingleSlashXPathElement("xpath1", null));
+		mutable.addPredicate("pred", "value");
+
+		XPathElement compiled = CompiledXPathElement.of(mutable);
+		assertEquals("/xpath1/xpath2[@pred=\"value\"]", compiled.toString());
+		assertEquals(compile("/xpath1/xpath2[@pred=\"value\"]"), compiled);
+		assertSame(compiled, CompiledXPathElement.of(compiled));
+
+		// Changing the original shouldn't change the compiled version
+		mutable.addPredicate("other", "value");
+		assertEquals("/xpath1/xpath2[@pred=\"value\"]", compiled.toString());
+	}
+
+	@Test
+	public void testRebase() throws XPathParsingException {
+		XPathElement root = compile("/envelope//body");
+		XPathElement relative = compile("relative/xpath");
+
+		XPathElement rebased = CompiledXPathElement.rebase(relative, root);
+		assertEquals("/envelope//body/relative/xpath", rebased.toString());
+		assertEquals(compile("/envelope//body/relative/xpath"), rebased);
+		assertEquals(compile("/envelope//body/relative/xpath").hashCode(), rebased.hashCode());
+
+		// The root is shared rather than copied, and the relative xpath is
+		// unchanged
+		assertSame(root, rebased.getPreviousElement().getPreviousElement());
+		assertEquals("relative/xpath", relative.toString());
+		assertTrue(relative.getFirstElement().isRelative());
+
+		assertTrue(rebased.matches(compile("/envelope/a/b/body/relative/xpath")));
+		assertFalse(rebased.matches(compile("/envelope/relative/xpath")));
+	}
+
+	@Test
+	public void testRebaseAttribute() throws XPathParsingException {
+		XPathElement rebased = CompiledXPathElement.rebase(compile("relative/@attribute"), compile("/root"));
+
+		assertTrue(rebased.isAttribute());
+		assertEquals("/root/relative/@attribute", rebased.toString());
+		assertEquals(compile("/root/relative/@attribute"), rebased);
+	}
+
+	@Test
+	public void testInterned() throws XPathParsingException {
+		XPathFactory.getInstance().clearCache();
+
+		XPathElement first = compile("/xpath1/xpath2[@pred=\"value\"]");
+		XPathFactory.getInstance().clearCache();
+		assertSame(first, compile("/xpath1/xpath2[@pred=\"value\"]"));
+
+		// Common prefixes are shared
+		XPathElement other = compile("/xpath1/other");
+		assertSame(first.getPreviousElement(), other.getPreviousElement());
+
+		// Rebasing ends up with the same instance as compiling the whole
+		// xpath
+		assertSame(compile("/xpath1/xpath2/relative"),
+				CompiledXPathElement.rebase(compile("relative"), compile("/xpath1/xpath2")));
+		assertFalse(first.equals(compile("/xpath1/xpath2[@pred=\"other\"]")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRebaseAbsolute() throws XPathParsingException {
+		CompiledXPathElement.rebase(compile("/absolute"), compile("/root"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSetPreviousElement() throws XPathParsingException {
+		compile("relative").setPreviousElement(compile("/root"));
+	}
+
+	private XPathElement compile(String xpathString) throws XPathParsingException {
+		return XPathFactory.getInstance().compile(xpathString).keySet().iterator().next();
+	}
+}
@@ -26,4 +26,26 @@ public class DoubleSlashXPathElementTest extends XPathTest {
 		assertFalse(matchStrings("//xpath", "/notxpath"));
 		assertFalse(matchStrings("//xpath", "/xpath/notxpath"));
 	}
+
+	@Test
+	public void testMatchesMultipleDescendants() throws XPathParsingException {
+		assertTrue(matchStrings("/root//a//b//c", "/root/x/a/y/b/z/c"));
+		assertTrue(matchStrings("/root//a//b//c", "/root/a/b/c"));
+		assertFalse(matchStrings("/root//a//b//c", "/root/x/b/y/a/z/c"));
+		assertTrue(matchStrings("//a/b//c", "/a/a/b/q/c"));
+		assertFalse(matchStrings("//a/b//c", "/a/q/b/c"));
+		assertFalse(matchStrings("/a//b", "/x/a/b"));
+	}
+
+	@Test
+	public void testMatchesDeepPath() throws XPathParsingException {
+		StringBuilder path = new StringBuilder("/root");
+		for (int i = 0; i < 200; i++) {
+			path.append("/a/b");
+		}
+
+		// Without linear matching this would take forever to fail
+		assertFalse(matchStrings("//a//b//a//b//a//b//c", path.toString()));
+		assertTrue(matchStrings("//a//b//a//b//a//b", path.toString()));
+	}
 }
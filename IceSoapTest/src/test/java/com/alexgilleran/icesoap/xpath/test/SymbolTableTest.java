@@ -0,0 +1,53 @@
+package com.alexgilleran.icesoap.xpath.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.exception.XPathParsingException;
+import com.alexgilleran.icesoap.xpath.SymbolTable;
+import com.alexgilleran.icesoap.xpath.XPathFactory;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
+
+public class SymbolTableTest {
+	private SymbolTable symbols = SymbolTable.getInstance();
+
+	@Test
+	public void testRegister() {
+		assertEquals(SymbolTable.UNKNOWN, symbols.lookup("symbolTableTestName"));
+
+		int id = symbols.register("symbolTableTestName");
+		assertTrue(id != SymbolTable.UNKNOWN);
+		assertEquals(id, symbols.register("symbolTableTestName"));
+		assertEquals(id, symbols.lookup("symbolTableTestName"));
+		assertTrue(id != symbols.register("symbolTableTestOtherName"));
+	}
+
+	@Test
+	public void testCompiledNamesRegistered() throws XPathParsingException {
+		XPathElement compiled = XPathFactory.getInstance().compile("/symbolTableTestCompiled/@attr").keySet()
+				.iterator().next();
+
+		assertEquals(symbols.lookup("attr"), compiled.getNameId());
+		assertEquals(symbols.lookup("symbolTableTestCompiled"), compiled.getPreviousElement().getNameId());
+		assertTrue(compiled.getNameId() != SymbolTable.UNKNOWN);
+	}
+
+	@Test
+	public void testSameName() throws XPathParsingException {
+		// Created before the name is registered
+		XPathElement unregistered = new SingleSlashXPathElement("symbolTableTestLate", null);
+		XPathElement other = new SingleSlashXPathElement("symbolTableTestLate", null);
+		assertEquals(SymbolTable.UNKNOWN, unregistered.getNameId());
+		assertTrue(SymbolTable.sameName(unregistered, other));
+		assertFalse(SymbolTable.sameName(unregistered, new SingleSlashXPathElement("symbolTableTestOther", null)));
+
+		XPathElement compiled = XPathFactory.getInstance().compile("/symbolTableTestLate").keySet().iterator()
+				.next();
+		assertEquals(compiled.getNameId(), unregistered.getNameId());
+		assertTrue(compiled.matches(unregistered));
+	}
+}
@@ -0,0 +1,167 @@
+package com.alexgilleran.icesoap.xpath.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alexgilleran.icesoap.exception.XPathParsingException;
+import com.alexgilleran.icesoap.xpath.XPathAutomaton;
+import com.alexgilleran.icesoap.xpath.XPathFactory;
+import com.alexgilleran.icesoap.xpath.XPathRepository;
+import com.alexgilleran.icesoap.xpath.XPathRepository.XPathRecord;
+import com.alexgilleran.icesoap.xpath.elements.XPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.AttributeXPathElement;
+import com.alexgilleran.icesoap.xpath.elements.impl.SingleSlashXPathElement;
+
+public class XPathAutomatonTest {
+	private XPathRepository<String> repo;
+
+	@Before
+	public void setUp() {
+		repo = new XPathRepository<String>();
+	}
+
+	@Test
+	public void testSingleSlashes() throws XPathParsingException {
+		put("/envelope/body");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		XPathElement envelope = element("/envelope");
+		assertNull(cursor.enter(envelope, 1));
+		assertEquals("/envelope/body", value(cursor.enter(element("/envelope/body"), 2)));
+		assertNull(cursor.enter(element("/envelope/body/other"), 3));
+		assertNull(cursor.enter(element("/envelope/other"), 2));
+		assertNull(cursor.lookup(envelope, 1));
+	}
+
+	@Test
+	public void testDoubleSlashes() throws XPathParsingException {
+		put("//item");
+		put("/envelope//value");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		cursor.enter(element("/envelope"), 1);
+		cursor.enter(element("/envelope/body"), 2);
+		assertEquals("//item", value(cursor.enter(element("/envelope/body/item"), 3)));
+		assertEquals("/envelope//value", value(cursor.enter(element("/envelope/body/item/value"), 4)));
+		assertEquals("/envelope//value", value(cursor.enter(element("/envelope/value"), 2)));
+
+		cursor.reset();
+		cursor.enter(element("/other"), 1);
+		assertEquals("//item", value(cursor.enter(element("/other/item"), 2)));
+		assertNull(cursor.enter(element("/other/item/value"), 3));
+	}
+
+	@Test
+	public void testPredicateSelection() throws XPathParsingException {
+		put("/xpath1/xpath2");
+		put("/xpath1/xpath2[@predicate=\"wrongvalue\"]");
+		put("/xpath1/xpath2[@predicate=\"rightvalue\"]");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		cursor.enter(element("/xpath1"), 1);
+		assertEquals("/xpath1/xpath2[@predicate=\"rightvalue\"]",
+				value(cursor.enter(element("/xpath1/xpath2[@predicate=\"rightvalue\"]"), 2)));
+		assertEquals("/xpath1/xpath2[@predicate=\"wrongvalue\"]",
+				value(cursor.enter(element("/xpath1/xpath2[@predicate=\"wrongvalue\"]"), 2)));
+		assertEquals("/xpath1/xpath2", value(cursor.enter(element("/xpath1/xpath2[@predicate=\"other\"]"), 2)));
+		assertEquals("/xpath1/xpath2", value(cursor.enter(element("/xpath1/xpath2"), 2)));
+	}
+
+	@Test
+	public void testAttributes() throws XPathParsingException {
+		put("/xpath1/xpath");
+		put("/xpath1/@xpath");
+		put("//xpath/@id");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		XPathElement xpath1 = element("/xpath1");
+		cursor.enter(xpath1, 1);
+		assertEquals("/xpath1/@xpath", value(cursor.lookup(attribute("xpath", xpath1), 1)));
+		assertNull(cursor.lookup(attribute("id", xpath1), 1));
+
+		XPathElement xpath = element("/xpath1/xpath");
+		assertEquals("/xpath1/xpath", value(cursor.enter(xpath, 2)));
+		assertEquals("//xpath/@id", value(cursor.lookup(attribute("id", xpath), 2)));
+	}
+
+	@Test
+	public void testCatchUp() throws XPathParsingException {
+		put("/a/b/c");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		// The cursor has never seen /a or /a/b, but should work them out
+		assertEquals("/a/b/c", value(cursor.enter(element("/a/b/c"), 3)));
+		assertEquals("/a/b/c", value(cursor.lookup(element("/a/b/c"), 3)));
+		assertNull(cursor.enter(element("/a/b/d"), 3));
+	}
+
+	@Test
+	public void testExhausted() throws XPathParsingException {
+		put("/envelope/body/value");
+		put("/envelope/body//@id");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile().newCursor();
+
+		cursor.enter(element("/envelope"), 1);
+		assertFalse(cursor.isExhausted());
+		cursor.enter(element("/envelope/header"), 2);
+		assertTrue(cursor.isExhausted());
+		cursor.enter(element("/envelope/body"), 2);
+		assertFalse(cursor.isExhausted());
+		cursor.enter(element("/envelope/body/other"), 3);
+		// Could still have an id attribute
+		assertFalse(cursor.isExhausted());
+		cursor.enter(element("/envelope/body/value"), 3);
+		assertFalse(cursor.isExhausted());
+	}
+
+	@Test
+	public void testRelativeToRoots() throws XPathParsingException {
+		XPathRepository<XPathElement> roots = XPathFactory.getInstance().compile("/a | //b");
+		put("c/d");
+		put("c/@id");
+		put("/a/e");
+
+		XPathAutomaton<String>.Cursor cursor = repo.compile(roots).newCursor();
+
+		assertEquals("c/d", value(cursor.enter(element("/a/c/d"), 3)));
+		assertEquals("c/@id", value(cursor.lookup(attribute("id", element("/a/c")), 2)));
+		assertEquals("/a/e", value(cursor.enter(element("/a/e"), 2)));
+		assertEquals("c/d", value(cursor.enter(element("/x/b/c/d"), 4)));
+		assertNull(cursor.enter(element("/x/c/d"), 3));
+		assertNull(cursor.enter(element("/a/x/c/d"), 4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRelativeXPath() throws XPathParsingException {
+		put("relative/xpath");
+
+		repo.compile();
+	}
+
+	private void put(String xpath) throws XPathParsingException {
+		repo.put(element(xpath), xpath);
+	}
+
+	private XPathElement element(String xpath) throws XPathParsingException {
+		return XPathFactory.getInstance().compile(xpath).keySet().iterator().next();
+	}
+
+	private XPathElement attribute(String name, XPathElement owner) {
+		return new AttributeXPathElement(new SingleSlashXPathElement(name, owner));
+	}
+
+	private String value(XPathRecord<String> record) {
+		return record == null ? null : record.getValue();
+	}
+}
@@ -1,6 +1,7 @@
 package com.alexgilleran.icesoap.xpath.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -59,6 +60,52 @@ public class XPathFactoryTest extends XPathTest {
 		assertEquals("value3", thisElement.getPredicate("pred3"));
 	}
 
+	@Test
+	public void testCache() throws XPathParsingException {
+		factory.clearCache();
+		final String xpathString = "/this/is[@a=\"cached\"]/test";
+
+		XPathElement first = factory.compile(xpathString).keySet().iterator().next();
+		assertEquals(0, factory.getCacheHits());
+		assertEquals(1, factory.getCacheMisses());
+
+		XPathElement second = factory.compile(xpathString).keySet().iterator().next();
+		assertEquals(1, factory.getCacheHits());
+		assertEquals(1, factory.getCacheMisses());
+		assertEquals(1, factory.getCacheSize());
+
+		// Compiled xpaths are immutable, so the same instance is shared
+		assertSame(first, second);
+		assertEquals(xpathString, second.toString());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testCompiledXPathsImmutable() throws XPathParsingException {
+		factory.compile("/this/is/immutable").keySet().iterator().next().addPredicate("changed", "value");
+	}
+
+	@Test
+	public void testCacheBounded() throws XPathParsingException {
+		factory.clearCache();
+		factory.setMaxCacheSize(2);
+
+		try {
+			factory.compile("/one");
+			factory.compile("/two");
+			factory.compile("/one");
+			factory.compile("/three");
+			assertEquals(2, factory.getCacheSize());
+
+			// "/two" was least recently used, so should have been dropped
+			factory.compile("/one");
+			factory.compile("/two");
+			assertEquals(2, factory.getCacheHits());
+			assertEquals(4, factory.getCacheMisses());
+		} finally {
+			factory.setMaxCacheSize(XPathFactory.DEFAULT_MAX_CACHE_SIZE);
+		}
+	}
+
 	public void testWithString(String xpathString) throws XPathParsingException {
 		assertEquals(xpathString, factory.compile(xpathString).keySet().iterator().next().toString());
 	}